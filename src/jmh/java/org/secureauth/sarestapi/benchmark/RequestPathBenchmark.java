@@ -0,0 +1,56 @@
+package org.secureauth.sarestapi.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.secureauth.sarestapi.queries.AuthQuery;
+import org.secureauth.sarestapi.queries.DFPQuery;
+import org.secureauth.sarestapi.queries.FactorsQuery;
+import org.secureauth.sarestapi.queries.IDMQueries;
+import org.secureauth.sarestapi.util.TimeUtils;
+
+/**
+ * Cost of the per request strings other than the body: the timestamp header
+ * and the query URLs.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RequestPathBenchmark {
+
+    private String realm = "secureauth1";
+    private String userId = "jdoe@example.com";
+    private String groupId = "Help Desk Admins";
+
+    @Benchmark
+    public String serverTime() {
+        return TimeUtils.getServerTime(false);
+    }
+
+    @Benchmark
+    public String serverTimeSeconds() {
+        return TimeUtils.getServerTime(true);
+    }
+
+    @Benchmark
+    public String authQuery() {
+        return AuthQuery.queryAuth(realm);
+    }
+
+    @Benchmark
+    public String factorsQuery() {
+        return FactorsQuery.queryFactorsV3(realm, userId);
+    }
+
+    @Benchmark
+    public String userToGroupQuery() {
+        return IDMQueries.queryUserToGroup(realm, userId, groupId);
+    }
+
+    @Benchmark
+    public String dfpValidateQuery() {
+        return DFPQuery.queryDFPValidate(realm);
+    }
+}
@@ -0,0 +1,295 @@
+package org.secureauth.sarestapi.benchmark;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.secureauth.sarestapi.SAAccess;
+import org.secureauth.sarestapi.data.SAAuth;
+import org.secureauth.sarestapi.data.SABaseURL;
+import org.secureauth.sarestapi.data.Response.BaseResponse;
+import org.secureauth.sarestapi.data.Response.FactorsResponse;
+import org.secureauth.sarestapi.data.Response.ResponseObject;
+import org.secureauth.sarestapi.data.Response.UserProfileResponse;
+import org.secureauth.sarestapi.metrics.InMemoryMetricsRecorder;
+import org.secureauth.sarestapi.metrics.LatencyHistogram;
+import org.secureauth.sarestapi.resources.SAExecuter;
+import org.secureauth.sarestapi.simulator.ApplianceSimulator;
+import org.secureauth.sarestapi.tracing.TraceParent;
+import org.secureauth.sarestapi.tracing.TraceSpan;
+import org.secureauth.sarestapi.tracing.Tracer;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+
+/**
+ * <p>
+ * End to end cost of the SAAccess operations against an in-process appliance:
+ * the {@link ApplianceSimulator} of the test fixtures over plain HTTP, which
+ * verifies the signatures, and a WireMock stub over HTTPS. The throughput
+ * and the latency percentiles (sample mode) are measured at 1, 8 and 32
+ * threads sharing one SAAccess, the allocations per operation by the gc
+ * profiler.
+ * </p>
+ * <p>
+ * The "breakdown" configuration traces the requests and prints, at the end of
+ * the trial, the SDK overhead of every operation: the time of the SAAccess call
+ * minus the time of its "http" span, from the request sent until its response
+ * read. Both appliances answer from memory, so the "http" time is the loopback
+ * transport, the response read and, over HTTP, the check of the signature.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public abstract class SAAccessBenchmark {
+
+    private static final String REALM = "secureauth1";
+    private static final String APPLICATION_ID = "8f3c2a6d1e7b4c9fa0d5e2b1c3f4a5b6";
+    private static final String APPLICATION_KEY = "c2b7f8a1d94e4f0b9a6e3d2c1b0a9f8e7d6c5b4a39281706f5e4d3c2b1a09f8e";
+    private static final String USER_ID = "jdoe";
+    private static final String PASSWORD = "Corr3ct-Horse-Battery-Staple";
+    private static final String FACTOR_ID = "9a29542309654256a0d71f9e86095f45";
+
+    @Param({ "http", "https" })
+    public String transport;
+
+    @Param({ "default", "metrics", "coalescing", "breakdown" })
+    public String configuration;
+
+    private ApplianceSimulator simulator;
+    private WireMockServer server;
+    private SAAccess saAccess;
+    private BreakdownTracer breakdown;
+
+    @Setup
+    public void setUp() throws IOException {
+        SABaseURL baseURL;
+        if ("https".equals(transport)) {
+            // the request journal is disabled, it would keep every request of the run.
+            server = new WireMockServer(options().dynamicPort().dynamicHttpsPort().containerThreads(64)
+                    .disableRequestJournal());
+            server.start();
+            stubAppliance();
+            // WireMock serves a self-signed certificate.
+            baseURL = new SABaseURL("localhost", String.valueOf(server.httpsPort()), true, true);
+        } else {
+            simulator = new ApplianceSimulator(REALM, APPLICATION_ID, APPLICATION_KEY).addUser(USER_ID, PASSWORD);
+            simulator.setThreads(64);
+            baseURL = simulator.start();
+        }
+        SAExecuter executer = new SAExecuter(baseURL);
+        switch (configuration) {
+        case "metrics":
+            executer.setMetricsRecorder(new InMemoryMetricsRecorder());
+            break;
+        case "coalescing":
+            executer.setRequestCoalescing(true);
+            break;
+        case "breakdown":
+            breakdown = new BreakdownTracer();
+            executer.setTracer(breakdown);
+            break;
+        default:
+            break;
+        }
+        saAccess = new SAAccess(baseURL, new SAAuth(APPLICATION_ID, APPLICATION_KEY, REALM), executer);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetBreakdown() {
+        if (breakdown != null) {
+            breakdown.reset();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (breakdown != null) {
+            breakdown.print(transport);
+        }
+        if (simulator != null) {
+            simulator.close();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Benchmark
+    public BaseResponse validateUserPassword() {
+        long start = System.nanoTime();
+        BaseResponse response = saAccess.validateUserPassword(USER_ID, PASSWORD);
+        called("validateUserPassword", start);
+        return response;
+    }
+
+    @Benchmark
+    public FactorsResponse factorsByUserV3() {
+        long start = System.nanoTime();
+        FactorsResponse response = saAccess.factorsByUserV3(USER_ID);
+        called("factorsByUserV3", start);
+        return response;
+    }
+
+    @Benchmark
+    public ResponseObject sendPushToAcceptReq() {
+        long start = System.nanoTime();
+        ResponseObject response = saAccess.sendPushToAcceptReq(USER_ID, FACTOR_ID, "192.168.0.10", "Example",
+                "Benchmark");
+        called("sendPushToAcceptReq", start);
+        return response;
+    }
+
+    @Benchmark
+    public UserProfileResponse getUserProfile() {
+        long start = System.nanoTime();
+        UserProfileResponse response = saAccess.getUserProfile(USER_ID);
+        called("getUserProfile", start);
+        return response;
+    }
+
+    private void called(String operation, long start) {
+        if (breakdown != null) {
+            breakdown.calls(operation).record(System.nanoTime() - start);
+        }
+    }
+
+    private void stubAppliance() {
+        String auth = "/" + REALM + "/api/v1/auth";
+        server.stubFor(post(urlPathEqualTo(auth))
+                .willReturn(okJson("{\"status\":\"valid\",\"message\":\"\",\"user_id\":\"" + USER_ID + "\"}")));
+        server.stubFor(post(urlPathEqualTo(auth)).withRequestBody(containing("\"push_accept\"")).atPriority(1)
+                .willReturn(okJson("{\"status\":\"valid\",\"message\":\"\",\"user_id\":\"" + USER_ID
+                        + "\",\"reference_id\":\"1f4b2c3d-5e6f-4a7b-8c9d-0e1f2a3b4c5d\"}")));
+        server.stubFor(get(urlPathEqualTo("/" + REALM + "/api/v3/users/" + USER_ID + "/factors"))
+                .willReturn(okJson("{\"status\":\"found\",\"message\":\"\",\"user_id\":\"" + USER_ID + "\","
+                        + "\"factors\":["
+                        + "{\"type\":\"phone\",\"id\":\"Phone1\",\"value\":\"XXX-XXX-1234\","
+                        + "\"capabilities\":[\"sms\",\"call\"]},"
+                        + "{\"type\":\"email\",\"id\":\"Email1\",\"value\":\"jd***@example.com\"},"
+                        + "{\"type\":\"push\",\"id\":\"" + FACTOR_ID + "\",\"value\":\"Pixel 8\","
+                        + "\"capabilities\":[\"push\",\"push_accept\",\"symbol_accept\"]}]}")));
+        server.stubFor(get(urlPathEqualTo("/" + REALM + "/api/v1/users/" + USER_ID))
+                .willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                        .withBody("{\"status\":\"found\",\"message\":\"\",\"userId\":\"" + USER_ID + "\","
+                                + "\"properties\":{"
+                                + "\"firstName\":{\"value\":\"John\",\"isWritable\":\"true\"},"
+                                + "\"lastName\":{\"value\":\"Doe\",\"isWritable\":\"true\"},"
+                                + "\"email1\":{\"value\":\"jdoe@example.com\",\"isWritable\":\"true\"}},"
+                                + "\"groups\":[\"Staff\",\"VPN Users\"]}")));
+    }
+
+    @Threads(1)
+    public static class OneThread extends SAAccessBenchmark {
+    }
+
+    @Threads(8)
+    public static class EightThreads extends SAAccessBenchmark {
+    }
+
+    @Threads(32)
+    public static class ThirtyTwoThreads extends SAAccessBenchmark {
+    }
+
+    /**
+     * Records the duration of the "http" span of every request under the name
+     * of its call span, next to the calls timed by the benchmark.
+     */
+    private static final class BreakdownTracer implements Tracer {
+
+        private static final String TRACEPARENT = TraceParent.format("4bf92f3577b34da6a3ce929d0e0e4736",
+                "00f067aa0ba902b7", false);
+
+        private final Map<String, LatencyHistogram> calls = new ConcurrentHashMap<>();
+        private final Map<String, LatencyHistogram> http = new ConcurrentHashMap<>();
+
+        @Override
+        public TraceSpan startSpan(String name, TraceSpan parent, long startEpochNanos) {
+            return new Span(name, (Span) parent, startEpochNanos);
+        }
+
+        LatencyHistogram calls(String operation) {
+            return calls.computeIfAbsent(operation, key -> new LatencyHistogram());
+        }
+
+        void reset() {
+            calls.clear();
+            http.clear();
+        }
+
+        void print(String transport) {
+            for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(calls).entrySet()) {
+                LatencyHistogram call = entry.getValue();
+                LatencyHistogram network = http.getOrDefault(entry.getKey(), new LatencyHistogram());
+                System.out.printf("%s over %s: %d calls, call p50 %.1f us p99 %.1f us, http p50 %.1f us p99 %.1f us,"
+                        + " mean SDK overhead %.1f us%n", entry.getKey(), transport, call.getCount(),
+                        micros(call.getValueAtPercentile(50)), micros(call.getValueAtPercentile(99)),
+                        micros(network.getValueAtPercentile(50)), micros(network.getValueAtPercentile(99)),
+                        (call.getMeanNanos() - network.getMeanNanos()) / 1_000);
+            }
+        }
+
+        private static double micros(long nanos) {
+            return nanos / 1_000.0;
+        }
+
+        private final class Span implements TraceSpan {
+            private final String name;
+            private final Span parent;
+            private final long startEpochNanos;
+
+            Span(String name, Span parent, long startEpochNanos) {
+                this.name = name;
+                this.parent = parent;
+                this.startEpochNanos = startEpochNanos;
+            }
+
+            @Override
+            public void setAttribute(String key, String value) {
+            }
+
+            @Override
+            public void setAttribute(String key, long value) {
+            }
+
+            @Override
+            public void setError(String description) {
+            }
+
+            @Override
+            public String getTraceparent() {
+                return TRACEPARENT;
+            }
+
+            @Override
+            public void end(long endEpochNanos) {
+                // http, under the request span, under the call span.
+                if ("http".equals(name) && parent != null && parent.parent != null) {
+                    http.computeIfAbsent(parent.parent.name, key -> new LatencyHistogram())
+                            .record(endEpochNanos - startEpochNanos);
+                }
+            }
+        }
+    }
+}
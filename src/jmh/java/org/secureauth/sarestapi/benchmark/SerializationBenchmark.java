@@ -0,0 +1,63 @@
+package org.secureauth.sarestapi.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.secureauth.sarestapi.data.DFP.DFP;
+import org.secureauth.sarestapi.data.Requests.AuthRequest;
+import org.secureauth.sarestapi.data.Requests.DFPValidateRequest;
+import org.secureauth.sarestapi.resources.Resource;
+import org.secureauth.sarestapi.util.JSONUtil;
+
+/**
+ * Cost of the JSON bodies: a small auth request, and the device fingerprint
+ * (Fingerprint_) sent by DFP validations, read from a browser capture.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SerializationBenchmark {
+
+    private String fingerprintJson;
+    private AuthRequest authRequest;
+    private DFPValidateRequest dfpValidateRequest;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream in = SerializationBenchmark.class.getResourceAsStream("/fingerprint.json")) {
+            fingerprintJson = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        authRequest = new AuthRequest();
+        authRequest.setUser_id("jdoe@example.com");
+        authRequest.setType(Resource.PASSWORD);
+        authRequest.setToken("Corr3ct-Horse-Battery-Staple");
+        DFP dfp = JSONUtil.getDFPFromJSONString(fingerprintJson);
+        dfpValidateRequest = new DFPValidateRequest("jdoe@example.com", "203.0.113.24", dfp);
+    }
+
+    @Benchmark
+    public String authRequestToJson() {
+        return JSONUtil.convertObjectToJSON(authRequest);
+    }
+
+    @Benchmark
+    public String fingerprintToJson() {
+        return JSONUtil.convertObjectToJSON(dfpValidateRequest);
+    }
+
+    @Benchmark
+    public String fingerprintToSingleLineJson() {
+        return JSONUtil.convertObjectToSingleLineJSON(dfpValidateRequest);
+    }
+
+    @Benchmark
+    public DFP fingerprintFromJson() {
+        return JSONUtil.getDFPFromJSONString(fingerprintJson);
+    }
+}
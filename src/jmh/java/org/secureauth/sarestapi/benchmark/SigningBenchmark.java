@@ -0,0 +1,62 @@
+package org.secureauth.sarestapi.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.secureauth.sarestapi.data.SAAuth;
+import org.secureauth.sarestapi.data.Requests.AuthRequest;
+import org.secureauth.sarestapi.queries.AuthQuery;
+import org.secureauth.sarestapi.queries.FactorsQuery;
+import org.secureauth.sarestapi.resources.Resource;
+import org.secureauth.sarestapi.util.HMACUtil;
+import org.secureauth.sarestapi.util.RestApiHeader;
+
+/**
+ * Cost of the Authorization header of a request: the HMAC alone, and the
+ * header of a request with and without a body.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SigningBenchmark {
+
+    private static final String APPLICATION_KEY = "c2b7f8a1d94e4f0b9a6e3d2c1b0a9f8e7d6c5b4a39281706f5e4d3c2b1a09f8e";
+    private static final String TIMESTAMP = "Mon, 19 Oct 2026 10:15:30.123 GMT";
+
+    private SAAuth saAuth;
+    private AuthRequest authRequest;
+    private String authQuery;
+    private String factorsQuery;
+    private String canonicalRequest;
+
+    @Setup
+    public void setUp() {
+        saAuth = new SAAuth("8f3c2a6d1e7b4c9fa0d5e2b1c3f4a5b6", APPLICATION_KEY, "secureauth1");
+        authRequest = new AuthRequest();
+        authRequest.setUser_id("jdoe@example.com");
+        authRequest.setType(Resource.PASSWORD);
+        authRequest.setToken("Corr3ct-Horse-Battery-Staple");
+        authQuery = AuthQuery.queryAuth(saAuth.getRealm());
+        factorsQuery = FactorsQuery.queryFactorsV3(saAuth.getRealm(), "jdoe@example.com");
+        canonicalRequest = Resource.METHOD_GET + "\n" + TIMESTAMP + "\n" + saAuth.getApplicationID() + "\n"
+                + Resource.SLASH + factorsQuery;
+    }
+
+    @Benchmark
+    public String headerWithPayload() {
+        return RestApiHeader.getAuthorizationHeader(saAuth, Resource.METHOD_POST, authQuery, authRequest, TIMESTAMP);
+    }
+
+    @Benchmark
+    public String headerWithoutPayload() {
+        return RestApiHeader.getAuthorizationHeader(saAuth, Resource.METHOD_GET, factorsQuery, TIMESTAMP);
+    }
+
+    @Benchmark
+    public byte[] hmac() throws Exception {
+        return HMACUtil.encode(APPLICATION_KEY, canonicalRequest);
+    }
+}
@@ -42,6 +42,18 @@ public interface ISAAccess {
 	 */
 	FactorsResponse factorsByUser(String userId) throws SARestAPIException;
 
+	/**
+	 * <p>
+	 * Returns the list of Factors available for the specified user, with the
+	 * preferred MFA (/v3/users/factors)
+	 * </p>
+	 * 
+	 * @param userId the userid of the identity you wish to have a list of possible
+	 *               second factors
+	 * @return {@link FactorsResponse}
+	 */
+	FactorsResponse factorsByUserV3(String userId) throws SARestAPIException;
+
 	/**
 	 * <p>
 	 * Returns the list of Factors available for the specified user
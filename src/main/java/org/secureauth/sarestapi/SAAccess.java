@@ -4,10 +4,17 @@ import java.util.Hashtable;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import jakarta.ws.rs.core.Cookie;
 
+import org.secureauth.sarestapi.cache.FactorsCache;
+import org.secureauth.sarestapi.cache.FactorsPrefetcher;
+import org.secureauth.sarestapi.cache.IPEvalCache;
+import org.secureauth.sarestapi.cache.JSObjectCache;
+import org.secureauth.sarestapi.cache.NumberProfileCache;
+import org.secureauth.sarestapi.cache.UserProfileCache;
 import org.secureauth.sarestapi.data.IPEval;
 import org.secureauth.sarestapi.data.PushAcceptStatus;
 import org.secureauth.sarestapi.data.SAAuth;
@@ -54,6 +61,11 @@ import org.secureauth.sarestapi.data.UserProfile.UserProfileKB;
 import org.secureauth.sarestapi.data.UserProfile.UserToGroups;
 import org.secureauth.sarestapi.data.UserProfile.UsersToGroup;
 import org.secureauth.sarestapi.exception.SARestAPIException;
+import org.secureauth.sarestapi.guard.AttemptLimiter;
+import org.secureauth.sarestapi.guard.CidrRules;
+import org.secureauth.sarestapi.guard.OTPDeliveryGuard;
+import org.secureauth.sarestapi.guard.TokenReplayCache;
+import org.secureauth.sarestapi.guard.UnknownUserFilter;
 import org.secureauth.sarestapi.guid.GUIDStrategy;
 import org.secureauth.sarestapi.queries.AccessHistoryQuery;
 import org.secureauth.sarestapi.queries.AuthQuery;
@@ -66,6 +78,7 @@ import org.secureauth.sarestapi.queries.NumberProfileQuery;
 import org.secureauth.sarestapi.queries.StatusQuery;
 import org.secureauth.sarestapi.queries.ThrottleQuery;
 import org.secureauth.sarestapi.queries.ValidateOTPQuery;
+import org.secureauth.sarestapi.resources.OperationScope;
 import org.secureauth.sarestapi.resources.Resource;
 import org.secureauth.sarestapi.resources.SAExecuter;
 import org.secureauth.sarestapi.util.JSONUtil;
@@ -93,6 +106,19 @@ public class SAAccess implements ISAAccess {
     protected SAAuth saAuth;
     protected SAExecuter saExecuter;
     protected SAConfig saConfig;
+    // Optional caches, disabled when null.
+    protected FactorsCache factorsCache;
+    protected UserProfileCache userProfileCache;
+    protected JSObjectCache jsObjectCache;
+    protected IPEvalCache ipEvalCache;
+    protected NumberProfileCache numberProfileCache;
+    protected FactorsPrefetcher factorsPrefetcher;
+    // Optional guards, disabled when null.
+    protected CidrRules cidrRules;
+    protected UnknownUserFilter unknownUserFilter;
+    protected AttemptLimiter attemptLimiter;
+    protected TokenReplayCache tokenReplayCache;
+    protected OTPDeliveryGuard otpDeliveryGuard;
 
     /**
      * <p>
@@ -206,6 +232,199 @@ public class SAAccess implements ISAAccess {
         saConfig.updateConfig(config);
     }
 
+    /**
+     * <p>
+     * Enables the cache of the factors returned by factorsByUser, factorsByUserQP,
+     * factorsByUserV3 and factorsByUserQPV3. The cached factors of a user are
+     * invalidated when this SAAccess creates, updates or deletes the user or
+     * updates its phone number profile.
+     * </p>
+     *
+     * @param factorsCache the cache to use, null disables the cache
+     */
+    public void setFactorsCache(FactorsCache factorsCache) {
+        this.factorsCache = factorsCache;
+    }
+
+    public FactorsCache getFactorsCache() {
+        return factorsCache;
+    }
+
+    /**
+     * <p>
+     * Enables the stale-while-revalidate cache of the profiles returned by
+     * getUserProfile and getUserProfileQP. The cached profile of a user is
+     * invalidated when this SAAccess creates, updates or deletes the user,
+     * updates its phone number profile or associates it to groups.
+     * </p>
+     *
+     * @param userProfileCache the cache to use, null disables the cache
+     */
+    public void setUserProfileCache(UserProfileCache userProfileCache) {
+        this.userProfileCache = userProfileCache;
+    }
+
+    public UserProfileCache getUserProfileCache() {
+        return userProfileCache;
+    }
+
+    /**
+     * <p>
+     * Enables the cache of the JavaScript sources returned by javaScriptSrc and
+     * BehaveBioJSSrc.
+     * </p>
+     *
+     * @param jsObjectCache the cache to use, null disables the cache
+     */
+    public void setJSObjectCache(JSObjectCache jsObjectCache) {
+        this.jsObjectCache = jsObjectCache;
+    }
+
+    public JSObjectCache getJSObjectCache() {
+        return jsObjectCache;
+    }
+
+    /**
+     * <p>
+     * Enables the cache of the results returned by iPEvaluation.
+     * </p>
+     *
+     * @param ipEvalCache the cache to use, null disables the cache
+     */
+    public void setIPEvalCache(IPEvalCache ipEvalCache) {
+        this.ipEvalCache = ipEvalCache;
+    }
+
+    public IPEvalCache getIPEvalCache() {
+        return ipEvalCache;
+    }
+
+    /**
+     * <p>
+     * Enables the cache of the number profiles returned by
+     * PhoneNumberProfileSubmit. The cached profile of a number is invalidated when
+     * this SAAccess updates the phone number profile of that number.
+     * </p>
+     *
+     * @param numberProfileCache the cache to use, null disables the cache
+     */
+    public void setNumberProfileCache(NumberProfileCache numberProfileCache) {
+        this.numberProfileCache = numberProfileCache;
+    }
+
+    public NumberProfileCache getNumberProfileCache() {
+        return numberProfileCache;
+    }
+
+    /**
+     * <p>
+     * Enables the speculative prefetch of the factors of the users validated
+     * with validateUser or validateUserPassword. The next factorsByUserV3 (or
+     * factorsByUserQPV3) of the user is answered with the prefetched response.
+     * The prefetch is cancelled when the validation fails.
+     * </p>
+     *
+     * @param factorsPrefetcher the prefetcher to use, null disables the prefetch
+     */
+    public void setFactorsPrefetcher(FactorsPrefetcher factorsPrefetcher) {
+        this.factorsPrefetcher = factorsPrefetcher;
+    }
+
+    public FactorsPrefetcher getFactorsPrefetcher() {
+        return factorsPrefetcher;
+    }
+
+    /**
+     * <p>
+     * Enables the local CIDR rules. iPEvaluation and adaptiveAuthQuery answer the
+     * addresses matching a rule with a synthetic response instead of querying the
+     * appliance.
+     * </p>
+     *
+     * @param cidrRules the rules to use, null disables them
+     */
+    public void setCidrRules(CidrRules cidrRules) {
+        this.cidrRules = cidrRules;
+    }
+
+    public CidrRules getCidrRules() {
+        return cidrRules;
+    }
+
+    /**
+     * <p>
+     * Enables the filter of unknown users. validateUser and validateUserPassword
+     * answer "not found" locally for the user ids the appliance recently reported
+     * as not found. A user id is removed from the filter when this SAAccess
+     * creates it.
+     * </p>
+     *
+     * @param unknownUserFilter the filter to use, null disables it
+     */
+    public void setUnknownUserFilter(UnknownUserFilter unknownUserFilter) {
+        this.unknownUserFilter = unknownUserFilter;
+    }
+
+    public UnknownUserFilter getUnknownUserFilter() {
+        return unknownUserFilter;
+    }
+
+    /**
+     * <p>
+     * Enables the local attempt limiter of validateUserPassword, validateOTP,
+     * validateOath and validateKba. Attempts over the limit of the user or of the
+     * end user IP address are rejected without querying the appliance. The
+     * attempts of a user are forgotten after a successful validation or a
+     * resetThrottleReq.
+     * </p>
+     *
+     * @param attemptLimiter the limiter to use, null disables it
+     */
+    public void setAttemptLimiter(AttemptLimiter attemptLimiter) {
+        this.attemptLimiter = attemptLimiter;
+    }
+
+    public AttemptLimiter getAttemptLimiter() {
+        return attemptLimiter;
+    }
+
+    /**
+     * <p>
+     * Enables the replay check of validateOTP, validateYubicoToken and
+     * validateUserYubicoOTPToken. A token already submitted for the same user
+     * within the window of the cache is rejected without querying the appliance.
+     * A token is released again when its validation could not reach the
+     * appliance.
+     * </p>
+     *
+     * @param tokenReplayCache the cache to use, null disables the check
+     */
+    public void setTokenReplayCache(TokenReplayCache tokenReplayCache) {
+        this.tokenReplayCache = tokenReplayCache;
+    }
+
+    public TokenReplayCache getTokenReplayCache() {
+        return tokenReplayCache;
+    }
+
+    /**
+     * <p>
+     * Makes the deliverOTP* and deliverAdHocOTP* methods idempotent. A delivery
+     * to the same user, factor or address and channel as one in flight or sent
+     * within the window of the channel returns the response of that delivery
+     * instead of sending the OTP again.
+     * </p>
+     *
+     * @param otpDeliveryGuard the guard to use, null disables it
+     */
+    public void setOTPDeliveryGuard(OTPDeliveryGuard otpDeliveryGuard) {
+        this.otpDeliveryGuard = otpDeliveryGuard;
+    }
+
+    public OTPDeliveryGuard getOTPDeliveryGuard() {
+        return otpDeliveryGuard;
+    }
+
     /**
      * <p>
      * Returns IP Risk Evaluation from the Rest API
@@ -217,6 +436,25 @@ public class SAAccess implements ISAAccess {
      *
      */
     public IPEval iPEvaluation(String userId, String ipAddress) {
+        return operation("iPEvaluation", () -> cachedIPEvaluation(userId, ipAddress));
+    }
+
+    private IPEval cachedIPEvaluation(String userId, String ipAddress) {
+        CidrRules rules = this.cidrRules;
+        if (rules != null) {
+            IPEval local = rules.evaluate(userId, ipAddress);
+            if (local != null) {
+                return local;
+            }
+        }
+        IPEvalCache cache = this.ipEvalCache;
+        if (cache == null) {
+            return requestIPEvaluation(userId, ipAddress);
+        }
+        return cache.get(userId, ipAddress, () -> requestIPEvaluation(userId, ipAddress));
+    }
+
+    private IPEval requestIPEvaluation(String userId, String ipAddress) {
         String ts = getServerTime();
         IPEvalRequest ipEvalRequest = new IPEvalRequest();
         ipEvalRequest.setIp_address(ipAddress);
@@ -250,6 +488,11 @@ public class SAAccess implements ISAAccess {
      * @return {@link FactorsResponse}
      */
     public FactorsResponse factorsByUser(String userId) {
+        return operation("factorsByUser",
+                () -> cachedFactors(userId, FactorsCache.Version.V1, () -> requestFactorsByUser(userId)));
+    }
+
+    private FactorsResponse requestFactorsByUser(String userId) {
         String ts = getServerTime();
         String header = RestApiHeader.getAuthorizationHeader(saAuth, Resource.METHOD_GET,
                 FactorsQuery.queryFactors(saAuth.getRealm(), userId), ts);
@@ -277,6 +520,11 @@ public class SAAccess implements ISAAccess {
      * @return {@link FactorsResponse}
      */
     public FactorsResponse factorsByUserV3(String userId) {
+        return operation("factorsByUserV3", () -> cachedFactors(userId, FactorsCache.Version.V3,
+                () -> prefetchedFactors(userId, () -> requestFactorsByUserV3(userId))));
+    }
+
+    private FactorsResponse requestFactorsByUserV3(String userId) {
         String ts = getServerTime();
         String header = RestApiHeader.getAuthorizationHeader(saAuth, Resource.METHOD_GET,
                 FactorsQuery.queryFactorsV3(saAuth.getRealm(), userId), ts);
@@ -306,6 +554,11 @@ public class SAAccess implements ISAAccess {
      * @return {@link FactorsResponse}
      */
     public FactorsResponse factorsByUserQP(String userId) {
+        return operation("factorsByUserQP",
+                () -> cachedFactors(userId, FactorsCache.Version.V1, () -> requestFactorsByUserQP(userId)));
+    }
+
+    private FactorsResponse requestFactorsByUserQP(String userId) {
         String ts = getServerTime();
         String header = RestApiHeader.getAuthorizationHeader(saAuth, Resource.METHOD_GET,
                 FactorsQuery.queryFactorsQP(saAuth.getRealm()), ts);
@@ -337,6 +590,11 @@ public class SAAccess implements ISAAccess {
      * @return {@link FactorsResponse}
      */
     public FactorsResponse factorsByUserQPV3(String userId) {
+        return operation("factorsByUserQPV3", () -> cachedFactors(userId, FactorsCache.Version.V3,
+                () -> prefetchedFactors(userId, () -> requestFactorsByUserQPV3(userId))));
+    }
+
+    private FactorsResponse requestFactorsByUserQPV3(String userId) {
         String ts = getServerTime();
         String header = RestApiHeader.getAuthorizationHeader(saAuth, Resource.METHOD_GET,
                 FactorsQuery.queryFactorsQPV3(saAuth.getRealm()), ts);
@@ -352,6 +610,23 @@ public class SAAccess implements ISAAccess {
         return null;
     }
 
+    private FactorsResponse cachedFactors(String userId, FactorsCache.Version version,
+            Supplier<FactorsResponse> request) {
+        FactorsCache cache = this.factorsCache;
+        if (cache == null) {
+            return request.get();
+        }
+        return cache.get(saAuth.getRealm(), userId, version, request);
+    }
+
+    private FactorsResponse prefetchedFactors(String userId, Supplier<FactorsResponse> request) {
+        FactorsPrefetcher prefetcher = this.factorsPrefetcher;
+        if (prefetcher == null) {
+            return request.get();
+        }
+        return prefetcher.get(saAuth.getRealm(), userId, request);
+    }
+
     /**
      * <p>
      * Send push to accept request asynchronously
@@ -366,26 +641,30 @@ public class SAAccess implements ISAAccess {
      */
     public ResponseObject sendPushToAcceptReq(String userId, String factorId, String endUserIP, String clientCompany,
             String clientDescription) {
-        return sendPushReq(userId, factorId, endUserIP, clientCompany, clientDescription, PUSH_TO_ACCEPT);
+        return operation("sendPushToAcceptReq",
+                () -> sendPushReq(userId, factorId, endUserIP, clientCompany, clientDescription, PUSH_TO_ACCEPT));
     }
 
     @Override
     public StatefulResponseObject sendPushToAcceptReqStateful(String userId, String factorId, String endUserIP,
             String clientCompany, String clientDescription) {
-        return sendPushToAcceptReqStatefulForType(userId, factorId, endUserIP, clientCompany, clientDescription,
-                PUSH_TO_ACCEPT);
+        return operation("sendPushToAcceptReqStateful",
+                () -> sendPushToAcceptReqStatefulForType(userId, factorId, endUserIP, clientCompany, clientDescription,
+                        PUSH_TO_ACCEPT));
     }
 
     public ResponseObject sendPushToAcceptSymbolReq(String userId, String factorId, String endUserIP,
             String clientCompany, String clientDescription) {
-        return sendPushReq(userId, factorId, endUserIP, clientCompany, clientDescription, SYMBOL_TO_ACCEPT);
+        return operation("sendPushToAcceptSymbolReq",
+                () -> sendPushReq(userId, factorId, endUserIP, clientCompany, clientDescription, SYMBOL_TO_ACCEPT));
     }
 
     @Override
     public StatefulResponseObject sendPushToAcceptSymbolReqStateful(String userId, String factorId, String endUserIP,
             String clientCompany, String clientDescription) {
-        return sendPushToAcceptReqStatefulForType(userId, factorId, endUserIP, clientCompany, clientDescription,
-                SYMBOL_TO_ACCEPT);
+        return operation("sendPushToAcceptSymbolReqStateful",
+                () -> sendPushToAcceptReqStatefulForType(userId, factorId, endUserIP, clientCompany, clientDescription,
+                        SYMBOL_TO_ACCEPT));
     }
 
     private StatefulResponseObject sendPushToAcceptReqStatefulForType(String userId, String factorId, String endUserIP,
@@ -435,6 +714,13 @@ public class SAAccess implements ISAAccess {
      */
     public ResponseObject sendPushBiometricReq(String biometricType, String userId, String factorId, String endUserIP,
             String clientCompany, String clientDescription) {
+        return operation("sendPushBiometricReq",
+                () -> requestSendPushBiometricReq(biometricType, userId, factorId, endUserIP, clientCompany,
+                        clientDescription));
+    }
+
+    private ResponseObject requestSendPushBiometricReq(String biometricType, String userId, String factorId,
+            String endUserIP, String clientCompany, String clientDescription) {
         String ts = getServerTime();
         PushToAcceptBiometricsRequest req = PushToAcceptRequestsFactory.createPushToAcceptBiometricRequest(
                 biometricType, userId, factorId, endUserIP, clientCompany, clientDescription);
@@ -452,6 +738,13 @@ public class SAAccess implements ISAAccess {
     @Override
     public StatefulResponseObject sendPushBiometricReqStateful(String biometricType, String userId, String factorId,
             String endUserIP, String clientCompany, String clientDescription) {
+        return operation("sendPushBiometricReqStateful",
+                () -> requestSendPushBiometricReqStateful(biometricType, userId, factorId, endUserIP, clientCompany,
+                        clientDescription));
+    }
+
+    private StatefulResponseObject requestSendPushBiometricReqStateful(String biometricType, String userId,
+            String factorId, String endUserIP, String clientCompany, String clientDescription) {
         String ts = getServerTime();
         PushToAcceptBiometricsRequest req = PushToAcceptRequestsFactory.createPushToAcceptBiometricRequest(
                 biometricType, userId, factorId, endUserIP, clientCompany, clientDescription);
@@ -476,6 +769,17 @@ public class SAAccess implements ISAAccess {
      * @return {@link FactorsResponse}
      */
     public AdaptiveAuthResponse adaptiveAuthQuery(String userId, String endUserIP) {
+        return operation("adaptiveAuthQuery", () -> requestAdaptiveAuthQuery(userId, endUserIP));
+    }
+
+    private AdaptiveAuthResponse requestAdaptiveAuthQuery(String userId, String endUserIP) {
+        CidrRules rules = this.cidrRules;
+        if (rules != null) {
+            AdaptiveAuthResponse local = rules.adaptiveAuth(userId, endUserIP);
+            if (local != null) {
+                return local;
+            }
+        }
         String ts = getServerTime();
         AdaptiveAuthRequest req = new AdaptiveAuthRequest(userId, endUserIP);
         String header = RestApiHeader.getAuthorizationHeader(saAuth, "POST", AuthQuery.queryAAuth(saAuth.getRealm()),
@@ -493,6 +797,10 @@ public class SAAccess implements ISAAccess {
     }
 
     public PushAcceptStatus queryPushAcceptStatus(String refId) {
+        return operation("queryPushAcceptStatus", () -> requestQueryPushAcceptStatus(refId));
+    }
+
+    private PushAcceptStatus requestQueryPushAcceptStatus(String refId) {
         String ts = getServerTime();
         String getUri = makePushNotificationQueryURI(refId);
         String header = RestApiHeader.getAuthorizationHeader(saAuth, "GET", getUri, ts);
@@ -506,6 +814,11 @@ public class SAAccess implements ISAAccess {
 
     @Override
     public PushAcceptStatus queryPushAcceptStatusStateful(String refId, Cookie sessionAffinityCookie) {
+        return operation("queryPushAcceptStatusStateful",
+                () -> requestQueryPushAcceptStatusStateful(refId, sessionAffinityCookie));
+    }
+
+    private PushAcceptStatus requestQueryPushAcceptStatusStateful(String refId, Cookie sessionAffinityCookie) {
         String ts = getServerTime();
         String getUri = makePushNotificationQueryURI(refId);
         String header = RestApiHeader.getAuthorizationHeader(saAuth, "GET", getUri, ts);
@@ -531,6 +844,11 @@ public class SAAccess implements ISAAccess {
      * @return {@link ResponseObject}
      */
     public BaseResponse validateUser(String userId) {
+        return operation("validateUser",
+                () -> filterUnknownUser(userId, () -> prefetchFactors(userId, () -> requestValidateUser(userId))));
+    }
+
+    private BaseResponse requestValidateUser(String userId) {
         String ts = getServerTime();
         AuthRequest authRequest = new AuthRequest();
 
@@ -559,6 +877,10 @@ public class SAAccess implements ISAAccess {
      * @return base answer
      */
     public ThrottleResponse resetThrottleReq(String userId) {
+        return operation("resetThrottleReq", () -> requestResetThrottleReq(userId));
+    }
+
+    private ThrottleResponse requestResetThrottleReq(String userId) {
         try {
             String ts = getServerTime();
             ThrottleRequest throttleRequest = new ThrottleRequest(0);
@@ -566,9 +888,11 @@ public class SAAccess implements ISAAccess {
             String header = RestApiHeader.getAuthorizationHeader(saAuth, Resource.METHOD_PUT,
                     ThrottleQuery.queryThrottles(saAuth.getRealm(), userId), throttleRequest, ts);
 
-            return saExecuter.executePutRequest(header,
+            ThrottleResponse response = saExecuter.executePutRequest(header,
                     saBaseURL.getApplianceURL() + ThrottleQuery.queryThrottles(saAuth.getRealm(), userId),
                     throttleRequest, ThrottleResponse.class, ts);
+            resetAttempts(userId);
+            return response;
         } catch (Exception e) {
             throw new SARestAPIException("Exception occurred executing REST query:\n" + e.getMessage());
         }
@@ -584,6 +908,10 @@ public class SAAccess implements ISAAccess {
      * @return base answer
      */
     public ThrottleResponse resetThrottleReqQP(String userId) {
+        return operation("resetThrottleReqQP", () -> requestResetThrottleReqQP(userId));
+    }
+
+    private ThrottleResponse requestResetThrottleReqQP(String userId) {
         try {
             String ts = getServerTime();
             ThrottleRequest throttleRequest = new ThrottleRequest(0);
@@ -591,9 +919,11 @@ public class SAAccess implements ISAAccess {
             String header = RestApiHeader.getAuthorizationHeader(saAuth, Resource.METHOD_PUT,
                     ThrottleQuery.queryThrottlesQP(saAuth.getRealm()), throttleRequest, ts);
 
-            return saExecuter.executePutRequest(header,
+            ThrottleResponse response = saExecuter.executePutRequest(header,
                     saBaseURL.getApplianceURL() + ThrottleQuery.queryThrottlesQP(saAuth.getRealm()), userId,
                     throttleRequest, ThrottleResponse.class, ts);
+            resetAttempts(userId);
+            return response;
         } catch (Exception e) {
             throw new SARestAPIException("Exception occurred executing REST query:\n" + e.getMessage(), e);
         }
@@ -606,6 +936,10 @@ public class SAAccess implements ISAAccess {
      * @return base answer
      */
     public ThrottleResponse getThrottleReq(String userId) {
+        return operation("getThrottleReq", () -> requestGetThrottleReq(userId));
+    }
+
+    private ThrottleResponse requestGetThrottleReq(String userId) {
         try {
             String ts = getServerTime();
             String header = RestApiHeader.getAuthorizationHeader(saAuth, Resource.METHOD_GET,
@@ -627,6 +961,10 @@ public class SAAccess implements ISAAccess {
      * @return base answer
      */
     public ThrottleResponse getThrottleReqQP(String userId) {
+        return operation("getThrottleReqQP", () -> requestGetThrottleReqQP(userId));
+    }
+
+    private ThrottleResponse requestGetThrottleReqQP(String userId) {
         try {
             String ts = getServerTime();
             String header = RestApiHeader.getAuthorizationHeader(saAuth, Resource.METHOD_GET,
@@ -650,7 +988,7 @@ public class SAAccess implements ISAAccess {
      * @return {@link ResponseObject}
      */
     public BaseResponse validateUserPassword(String userId, String password) {
-        return validateUserPassword(userId, password, "");
+        return operation("validateUserPassword", () -> validateUserPassword(userId, password, ""));
     }
 
     /**
@@ -664,6 +1002,11 @@ public class SAAccess implements ISAAccess {
      * @return {@link ResponseObject}
      */
     public BaseResponse validateUserPassword(String userId, String password, String enduserIp) {
+        return operation("validateUserPassword", () -> limitAttempts(userId, enduserIp, () -> filterUnknownUser(userId,
+                () -> prefetchFactors(userId, () -> requestValidateUserPassword(userId, password, enduserIp)))));
+    }
+
+    private BaseResponse requestValidateUserPassword(String userId, String password, String enduserIp) {
         String ts = getServerTime();
         AuthRequest authRequest = new AuthRequest();
 
@@ -685,6 +1028,96 @@ public class SAAccess implements ISAAccess {
         return null;
     }
 
+    // Inside the local guards, so only the validations sent to the appliance prefetch.
+    private BaseResponse prefetchFactors(String userId, Supplier<BaseResponse> validation) {
+        FactorsPrefetcher prefetcher = this.factorsPrefetcher;
+        FactorsCache cache = this.factorsCache;
+        String realm = saAuth.getRealm();
+        if (prefetcher == null || userId == null
+                || (cache != null && cache.contains(realm, userId, FactorsCache.Version.V3))) {
+            return validation.get();
+        }
+        boolean speculative = prefetcher.getTrigger() == FactorsPrefetcher.Trigger.VALIDATION_START;
+        if (speculative) {
+            prefetcher.prefetch(realm, userId,
+                    () -> operation("factorsByUserV3", () -> requestFactorsByUserV3(userId)));
+        }
+        BaseResponse response = validation.get();
+        boolean succeeded = response != null && (Resource.STATUS_VALID.equalsIgnoreCase(response.getStatus())
+                || Resource.STATUS_FOUND.equalsIgnoreCase(response.getStatus()));
+        if (!succeeded) {
+            prefetcher.cancel(realm, userId);
+        } else if (!speculative) {
+            prefetcher.prefetch(realm, userId,
+                    () -> operation("factorsByUserV3", () -> requestFactorsByUserV3(userId)));
+        }
+        return response;
+    }
+
+    private BaseResponse limitAttempts(String userId, String enduserIp, Supplier<BaseResponse> request) {
+        AttemptLimiter limiter = this.attemptLimiter;
+        if (limiter == null) {
+            return request.get();
+        }
+        if (!limiter.tryAcquire(saAuth.getRealm(), userId, enduserIp)) {
+            BaseResponse rejected = new BaseResponse();
+            rejected.setStatus(Resource.STATUS_INVALID);
+            rejected.setMessage(AttemptLimiter.REJECTED_MESSAGE);
+            rejected.setUser_id(userId);
+            return rejected;
+        }
+        BaseResponse response = request.get();
+        if (response != null) {
+            limiter.onResult(saAuth.getRealm(), userId, response.getStatus());
+        }
+        return response;
+    }
+
+    private ResponseObject guardDelivery(String userId, OTPDeliveryGuard.Channel channel, String destination,
+            Supplier<ResponseObject> delivery) {
+        OTPDeliveryGuard guard = this.otpDeliveryGuard;
+        if (guard == null) {
+            return delivery.get();
+        }
+        return guard.deliver(saAuth.getRealm(), userId, channel, destination, delivery);
+    }
+
+    private <T> T preventReplay(String userId, String token, Supplier<T> request, Supplier<T> replayed) {
+        TokenReplayCache replays = this.tokenReplayCache;
+        if (replays == null) {
+            return request.get();
+        }
+        if (!replays.tryConsume(saAuth.getRealm(), userId, token)) {
+            return replayed.get();
+        }
+        T response = request.get();
+        if (response == null) {
+            replays.release(saAuth.getRealm(), userId, token);
+        }
+        return response;
+    }
+
+    private void releaseToken(String userId, String token) {
+        TokenReplayCache replays = this.tokenReplayCache;
+        if (replays != null) {
+            replays.release(saAuth.getRealm(), userId, token);
+        }
+    }
+
+    private BaseResponse filterUnknownUser(String userId, Supplier<BaseResponse> request) {
+        UnknownUserFilter filter = this.unknownUserFilter;
+        if (filter == null) {
+            return request.get();
+        }
+        BaseResponse local = filter.check(saAuth.getRealm(), userId);
+        if (local != null) {
+            return local;
+        }
+        BaseResponse response = request.get();
+        filter.record(saAuth.getRealm(), userId, response);
+        return response;
+    }
+
     /**
      * <p>
      * Checks the users pin against SecureAuth Datastore
@@ -695,6 +1128,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link ResponseObject}
      */
     public BaseResponse validateUserPin(String userId, String pin) {
+        return operation("validateUserPin", () -> requestValidateUserPin(userId, pin));
+    }
+
+    private BaseResponse requestValidateUserPin(String userId, String pin) {
         String ts = getServerTime();
         AuthRequest authRequest = new AuthRequest();
 
@@ -726,6 +1163,11 @@ public class SAAccess implements ISAAccess {
      * @return {@link ResponseObject}
      */
     public BaseResponse validateKba(String userId, String answer, String factorId) {
+        return operation("validateKba",
+                () -> limitAttempts(userId, null, () -> requestValidateKba(userId, answer, factorId)));
+    }
+
+    private BaseResponse requestValidateKba(String userId, String answer, String factorId) {
         String ts = getServerTime();
         AuthRequest authRequest = new AuthRequest();
 
@@ -758,6 +1200,11 @@ public class SAAccess implements ISAAccess {
      * @return {@link ResponseObject}
      */
     public BaseResponse validateOath(String userId, String otp, String factorId) {
+        return operation("validateOath",
+                () -> limitAttempts(userId, null, () -> requestValidateOath(userId, otp, factorId)));
+    }
+
+    private BaseResponse requestValidateOath(String userId, String otp, String factorId) {
         String ts = getServerTime();
         AuthRequest authRequest = new AuthRequest();
 
@@ -789,6 +1236,11 @@ public class SAAccess implements ISAAccess {
      * @return {@link ResponseObject}
      */
     public ResponseObject deliverOTPByPhone(String userId, String factorId) {
+        return operation("deliverOTPByPhone", () -> guardDelivery(userId, OTPDeliveryGuard.Channel.CALL, factorId,
+                () -> requestDeliverOTPByPhone(userId, factorId)));
+    }
+
+    private ResponseObject requestDeliverOTPByPhone(String userId, String factorId) {
         String ts = getServerTime();
         AuthRequest authRequest = new AuthRequest();
 
@@ -819,6 +1271,12 @@ public class SAAccess implements ISAAccess {
      * @return {@link ResponseObject}
      */
     public ResponseObject deliverAdHocOTPByPhone(String userId, String phoneNumber) {
+        return operation("deliverAdHocOTPByPhone",
+                () -> guardDelivery(userId, OTPDeliveryGuard.Channel.CALL, phoneNumber,
+                        () -> requestDeliverAdHocOTPByPhone(userId, phoneNumber)));
+    }
+
+    private ResponseObject requestDeliverAdHocOTPByPhone(String userId, String phoneNumber) {
         String ts = getServerTime();
         AuthRequest authRequest = new AuthRequest();
 
@@ -849,6 +1307,11 @@ public class SAAccess implements ISAAccess {
      * @return {@link ResponseObject}
      */
     public ResponseObject deliverOTPBySMS(String userId, String factorId) {
+        return operation("deliverOTPBySMS", () -> guardDelivery(userId, OTPDeliveryGuard.Channel.SMS, factorId,
+                () -> requestDeliverOTPBySMS(userId, factorId)));
+    }
+
+    private ResponseObject requestDeliverOTPBySMS(String userId, String factorId) {
         String ts = getServerTime();
         AuthRequest authRequest = new AuthRequest();
 
@@ -878,6 +1341,35 @@ public class SAAccess implements ISAAccess {
      * @return {@link ValidateOTPResponse}
      */
     public ValidateOTPResponse validateOTP(String userId, String otp) {
+        // the limiter comes first, so an OTP it rejects is not consumed by the replay guard.
+        return operation("validateOTP",
+                () -> limitOTPAttempts(userId, () -> preventReplay(userId, otp, () -> requestValidateOTP(userId, otp),
+                        () -> rejectedOTP(TokenReplayCache.REPLAYED_MESSAGE))));
+    }
+
+    private ValidateOTPResponse limitOTPAttempts(String userId, Supplier<ValidateOTPResponse> request) {
+        AttemptLimiter limiter = this.attemptLimiter;
+        if (limiter == null) {
+            return request.get();
+        }
+        if (!limiter.tryAcquire(saAuth.getRealm(), userId, null)) {
+            return rejectedOTP(AttemptLimiter.REJECTED_MESSAGE);
+        }
+        ValidateOTPResponse response = request.get();
+        if (response != null) {
+            limiter.onResult(saAuth.getRealm(), userId, response.getStatus());
+        }
+        return response;
+    }
+
+    private static ValidateOTPResponse rejectedOTP(String message) {
+        ValidateOTPResponse rejected = new ValidateOTPResponse();
+        rejected.setStatus(Resource.STATUS_INVALID);
+        rejected.setMessage(message);
+        return rejected;
+    }
+
+    private ValidateOTPResponse requestValidateOTP(String userId, String otp) {
         String ts = getServerTime();
         ValidateOTPRequest validateOTPRequest = new ValidateOTPRequest();
 
@@ -908,6 +1400,11 @@ public class SAAccess implements ISAAccess {
      * @return {@link ResponseObject}
      */
     public ResponseObject deliverAdHocOTPBySMS(String userId, String phoneNumber) {
+        return operation("deliverAdHocOTPBySMS", () -> guardDelivery(userId, OTPDeliveryGuard.Channel.SMS, phoneNumber,
+                () -> requestDeliverAdHocOTPBySMS(userId, phoneNumber)));
+    }
+
+    private ResponseObject requestDeliverAdHocOTPBySMS(String userId, String phoneNumber) {
         String ts = getServerTime();
         AuthRequest authRequest = new AuthRequest();
 
@@ -937,6 +1434,19 @@ public class SAAccess implements ISAAccess {
      * @return {@link BaseResponse}
      */
     public BaseResponse validateYubicoToken(String userId, String yubikeyToken) {
+        return operation("validateYubicoToken", () -> preventReplay(userId, yubikeyToken,
+                () -> requestValidateYubicoToken(userId, yubikeyToken), () -> replayedToken(userId)));
+    }
+
+    private static BaseResponse replayedToken(String userId) {
+        BaseResponse rejected = new BaseResponse();
+        rejected.setStatus(Resource.STATUS_INVALID);
+        rejected.setMessage(TokenReplayCache.REPLAYED_MESSAGE);
+        rejected.setUser_id(userId);
+        return rejected;
+    }
+
+    private BaseResponse requestValidateYubicoToken(String userId, String yubikeyToken) {
         String ts = getServerTime();
         AuthRequest authRequest = new AuthRequest();
 
@@ -967,6 +1477,12 @@ public class SAAccess implements ISAAccess {
      * @return {@link ResponseObject}
      */
     public ResponseObject deliverHelpDeskOTPByEmail(String userId, String factorId) {
+        return operation("deliverHelpDeskOTPByEmail",
+                () -> guardDelivery(userId, OTPDeliveryGuard.Channel.HELP_DESK_EMAIL, factorId,
+                        () -> requestDeliverHelpDeskOTPByEmail(userId, factorId)));
+    }
+
+    private ResponseObject requestDeliverHelpDeskOTPByEmail(String userId, String factorId) {
         String ts = getServerTime();
         AuthRequest authRequest = new AuthRequest();
 
@@ -996,6 +1512,11 @@ public class SAAccess implements ISAAccess {
      * @return {@link ResponseObject}
      */
     public ResponseObject deliverOTPByEmail(String userId, String factorId) {
+        return operation("deliverOTPByEmail", () -> guardDelivery(userId, OTPDeliveryGuard.Channel.EMAIL, factorId,
+                () -> requestDeliverOTPByEmail(userId, factorId)));
+    }
+
+    private ResponseObject requestDeliverOTPByEmail(String userId, String factorId) {
         String ts = getServerTime();
         AuthRequest authRequest = new AuthRequest();
 
@@ -1025,6 +1546,12 @@ public class SAAccess implements ISAAccess {
      * @return {@link ResponseObject}
      */
     public ResponseObject deliverAdHocOTPByEmail(String userId, String emailAddress) {
+        return operation("deliverAdHocOTPByEmail",
+                () -> guardDelivery(userId, OTPDeliveryGuard.Channel.EMAIL, emailAddress,
+                        () -> requestDeliverAdHocOTPByEmail(userId, emailAddress)));
+    }
+
+    private ResponseObject requestDeliverAdHocOTPByEmail(String userId, String emailAddress) {
         String ts = getServerTime();
         AuthRequest authRequest = new AuthRequest();
 
@@ -1054,6 +1581,11 @@ public class SAAccess implements ISAAccess {
      * @return {@link ResponseObject}
      */
     public ResponseObject deliverOTPByPush(String userId, String factorId) {
+        return operation("deliverOTPByPush", () -> guardDelivery(userId, OTPDeliveryGuard.Channel.PUSH, factorId,
+                () -> requestDeliverOTPByPush(userId, factorId)));
+    }
+
+    private ResponseObject requestDeliverOTPByPush(String userId, String factorId) {
         String ts = getServerTime();
         AuthRequest authRequest = new AuthRequest();
 
@@ -1084,6 +1616,12 @@ public class SAAccess implements ISAAccess {
      * @return {@link ResponseObject}
      */
     public ResponseObject deliverOTPByHelpDesk(String userId, String factorId) {
+        return operation("deliverOTPByHelpDesk",
+                () -> guardDelivery(userId, OTPDeliveryGuard.Channel.HELP_DESK, factorId,
+                        () -> requestDeliverOTPByHelpDesk(userId, factorId)));
+    }
+
+    private ResponseObject requestDeliverOTPByHelpDesk(String userId, String factorId) {
         String ts = getServerTime();
         AuthRequest authRequest = new AuthRequest();
 
@@ -1120,6 +1658,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link StatefulResponseObject}
      */
     public StatefulResponseObject emailLink(String userId, String factorId) {
+        return operation("emailLink", () -> requestEmailLink(userId, factorId));
+    }
+
+    private StatefulResponseObject requestEmailLink(String userId, String factorId) {
         String ts = getServerTime();
         AuthRequest authRequest = LinkToAcceptFactory.createLinkToAcceptAuthRequest(userId, factorId,
                 Resource.EMAIL_LINK);
@@ -1143,6 +1685,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link StatefulResponseObject}
      */
     public StatefulResponseObject smsLink(String userId, String factorId) {
+        return operation("smsLink", () -> requestSmsLink(userId, factorId));
+    }
+
+    private StatefulResponseObject requestSmsLink(String userId, String factorId) {
         String ts = getServerTime();
         AuthRequest authRequest = LinkToAcceptFactory.createLinkToAcceptAuthRequest(userId, factorId,
                 Resource.SMS_LINK);
@@ -1171,6 +1717,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link PushAcceptStatus}
      */
     public PushAcceptStatus verifyLinkToAcceptStatus(String linkId, Cookie cookie) {
+        return operation("verifyLinkToAcceptStatus", () -> requestVerifyLinkToAcceptStatus(linkId, cookie));
+    }
+
+    private PushAcceptStatus requestVerifyLinkToAcceptStatus(String linkId, Cookie cookie) {
         String ts = getServerTime();
         String header = RestApiHeader.getAuthorizationHeader(saAuth, Resource.METHOD_GET,
                 AuthQuery.queryAuthLink(saAuth.getRealm(), linkId), ts);
@@ -1196,6 +1746,10 @@ public class SAAccess implements ISAAccess {
      *
      */
     public ResponseObject accessHistory(String userId, String ipAddress) {
+        return operation("accessHistory", () -> requestAccessHistory(userId, ipAddress));
+    }
+
+    private ResponseObject requestAccessHistory(String userId, String ipAddress) {
         String ts = getServerTime();
         AccessHistoryRequest accessHistoryRequest = new AccessHistoryRequest();
         accessHistoryRequest.setIp_address(ipAddress);
@@ -1228,6 +1782,10 @@ public class SAAccess implements ISAAccess {
      * @return base response object
      */
     public ResponseObject updateAccessHistory(String userid, String endUserIP) {
+        return operation("updateAccessHistory", () -> requestUpdateAccessHistory(userid, endUserIP));
+    }
+
+    private ResponseObject requestUpdateAccessHistory(String userid, String endUserIP) {
         String ts = getServerTime();
         UpdateUserHistoryRequest req = new UpdateUserHistoryRequest(userid, endUserIP);
         String uri = saAuth.getRealm() + "/api/" + Resource.API_VERSION + "/accesshistory";
@@ -1254,6 +1812,10 @@ public class SAAccess implements ISAAccess {
      *
      */
     public DFPConfirmResponse DFPConfirm(String userId, String fingerprintId) {
+        return operation("DFPConfirm", () -> requestDFPConfirm(userId, fingerprintId));
+    }
+
+    private DFPConfirmResponse requestDFPConfirm(String userId, String fingerprintId) {
         String ts = getServerTime();
         DFPConfirmRequest dfpConfirmRequest = new DFPConfirmRequest();
         dfpConfirmRequest.setUser_id(userId);
@@ -1287,6 +1849,11 @@ public class SAAccess implements ISAAccess {
      *
      */
     public DFPValidateResponse DFPValidateNewFingerprint(String userId, String hostAddress, String jsonString) {
+        return operation("DFPValidateNewFingerprint",
+                () -> requestDFPValidateNewFingerprint(userId, hostAddress, jsonString));
+    }
+
+    private DFPValidateResponse requestDFPValidateNewFingerprint(String userId, String hostAddress, String jsonString) {
         String ts = getServerTime();
         DFPValidateRequest dfpValidateRequest = new DFPValidateRequest();
         DFP dfp = JSONUtil.getDFPFromJSONString(jsonString);
@@ -1312,6 +1879,10 @@ public class SAAccess implements ISAAccess {
 
     @Override
     public DFPValidateResponse DFPValidateNewFingerprint(DFP fingerprint) {
+        return operation("DFPValidateNewFingerprint", () -> requestDFPValidateNewFingerprint(fingerprint));
+    }
+
+    private DFPValidateResponse requestDFPValidateNewFingerprint(DFP fingerprint) {
         String ts = getServerTime();
 
         String header = RestApiHeader.getAuthorizationHeader(saAuth, Resource.METHOD_POST,
@@ -1329,6 +1900,12 @@ public class SAAccess implements ISAAccess {
     @Override
     public DFPValidateResponse DFPScoreFingerprint(String userId, String hostAddress, String fingerprintId,
             String fingerPrintJSON) {
+        return operation("DFPScoreFingerprint",
+                () -> requestDFPScoreFingerprint(userId, hostAddress, fingerprintId, fingerPrintJSON));
+    }
+
+    private DFPValidateResponse requestDFPScoreFingerprint(String userId, String hostAddress, String fingerprintId,
+            String fingerPrintJSON) {
         try {
             String ts = getServerTime();
             DFPConfirmRequest dfpConfirmRequest = new DFPConfirmRequest(userId, fingerprintId);
@@ -1350,6 +1927,10 @@ public class SAAccess implements ISAAccess {
 
     @Override
     public DFPValidateResponse DFPScoreFingerprint(DFP fingerprint) {
+        return operation("DFPScoreFingerprint", () -> requestDFPScoreFingerprint(fingerprint));
+    }
+
+    private DFPValidateResponse requestDFPScoreFingerprint(DFP fingerprint) {
         String ts = getServerTime();
 
         String header = RestApiHeader.getAuthorizationHeader(saAuth, Resource.METHOD_POST,
@@ -1367,6 +1948,12 @@ public class SAAccess implements ISAAccess {
     @Override
     public DFPValidateResponse DFPSaveFingerprint(String userId, String hostAddress, String fingerprintId,
             String fingerPrintJSON) {
+        return operation("DFPSaveFingerprint",
+                () -> requestDFPSaveFingerprint(userId, hostAddress, fingerprintId, fingerPrintJSON));
+    }
+
+    private DFPValidateResponse requestDFPSaveFingerprint(String userId, String hostAddress, String fingerprintId,
+            String fingerPrintJSON) {
         try {
             String ts = getServerTime();
             DFPConfirmRequest dfpConfirmRequest = new DFPConfirmRequest(userId, fingerprintId);
@@ -1394,6 +1981,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link JSObjectResponse}
      */
     public JSObjectResponse javaScriptSrc() {
+        return operation("javaScriptSrc", () -> cachedJSObject(JSObjectCache.Script.DFP, this::requestJavaScriptSrc));
+    }
+
+    private JSObjectResponse requestJavaScriptSrc() {
         String ts = getServerTime();
         String header = RestApiHeader.getAuthorizationHeader(saAuth, "GET", DFPQuery.queryDFPjs(saAuth.getRealm()), ts);
 
@@ -1408,6 +1999,15 @@ public class SAAccess implements ISAAccess {
         return null;
     }
 
+    private JSObjectResponse cachedJSObject(JSObjectCache.Script script, Supplier<JSObjectResponse> request) {
+        JSObjectCache cache = this.jsObjectCache;
+        if (cache == null) {
+            return request.get();
+        }
+        // the refreshes run in the background, under the name of the operation that found the entry stale.
+        return cache.get(saAuth.getRealm(), script, OperationScope.bind(request));
+    }
+
     /**
      * Start of Behavior Bio Metrics Methods
      *
@@ -1421,6 +2021,11 @@ public class SAAccess implements ISAAccess {
      * @return {@link JSObjectResponse}
      */
     public JSObjectResponse BehaveBioJSSrc() {
+        return operation("BehaveBioJSSrc",
+                () -> cachedJSObject(JSObjectCache.Script.BEHAVE_BIO, this::requestBehaveBioJSSrc));
+    }
+
+    private JSObjectResponse requestBehaveBioJSSrc() {
         String ts = getServerTime();
         String header = RestApiHeader.getAuthorizationHeader(saAuth, "GET",
                 BehaveBioQuery.queryBehaveBiojs(saAuth.getRealm()), ts);
@@ -1452,6 +2057,12 @@ public class SAAccess implements ISAAccess {
      */
     public BehaveBioResponse BehaveBioProfileSubmit(String userId, String behaviorProfile, String hostAddress,
             String userAgent) {
+        return operation("BehaveBioProfileSubmit",
+                () -> requestBehaveBioProfileSubmit(userId, behaviorProfile, hostAddress, userAgent));
+    }
+
+    private BehaveBioResponse requestBehaveBioProfileSubmit(String userId, String behaviorProfile, String hostAddress,
+            String userAgent) {
         String ts = getServerTime();
         BehaveBioRequest behaveBioRequest = new BehaveBioRequest();
         behaveBioRequest.setUserId(userId);
@@ -1490,6 +2101,12 @@ public class SAAccess implements ISAAccess {
      *
      */
     public ResponseObject BehaveBioProfileReset(String userId, String fieldName, String fieldType, String deviceType) {
+        return operation("BehaveBioProfileReset",
+                () -> requestBehaveBioProfileReset(userId, fieldName, fieldType, deviceType));
+    }
+
+    private ResponseObject requestBehaveBioProfileReset(String userId, String fieldName, String fieldType,
+            String deviceType) {
         String ts = getServerTime();
         BehaveBioResetRequest behaveBioResetRequest = new BehaveBioResetRequest();
         behaveBioResetRequest.setUserId(userId);
@@ -1532,6 +2149,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link ResponseObject}
      */
     public ResponseObject createUser(NewUserProfile newUserProfile) {
+        return operation("createUser", () -> requestCreateUser(newUserProfile));
+    }
+
+    private ResponseObject requestCreateUser(NewUserProfile newUserProfile) {
         try {
             validateUser(newUserProfile);
             String ts = getServerTime();
@@ -1545,6 +2166,8 @@ public class SAAccess implements ISAAccess {
 
         } catch (Exception e) {
             logger.error("Exception occurred executing REST query:\n" + e.getMessage() + "\n", e);
+        } finally {
+            invalidateUserCaches(newUserProfile == null ? null : newUserProfile.getUserId());
         }
         return null;
     }
@@ -1573,6 +2196,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link ResponseObject}
      */
     public ResponseObject updateUser(String userId, NewUserProfile userProfile) {
+        return operation("updateUser", () -> requestUpdateUser(userId, userProfile));
+    }
+
+    private ResponseObject requestUpdateUser(String userId, NewUserProfile userProfile) {
         try {
             String ts = getServerTime();
             sortKBQKBAbyKey(userProfile);
@@ -1587,6 +2214,8 @@ public class SAAccess implements ISAAccess {
 
         } catch (Exception e) {
             logger.error("Exception occurred executing REST query:\n" + e.getMessage() + "\n", e);
+        } finally {
+            invalidateUserCaches(userId);
         }
         return null;
     }
@@ -1613,6 +2242,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link ResponseObject}
      */
     public ResponseObject updateUserQP(String userId, NewUserProfile userProfile) {
+        return operation("updateUserQP", () -> requestUpdateUserQP(userId, userProfile));
+    }
+
+    private ResponseObject requestUpdateUserQP(String userId, NewUserProfile userProfile) {
         try {
             String ts = getServerTime();
             sortKBQKBAbyKey(userProfile);
@@ -1627,11 +2260,17 @@ public class SAAccess implements ISAAccess {
 
         } catch (Exception e) {
             throw new SARestAPIException("Exception occurred executing REST query:\n" + e.getMessage() + "\n", e);
+        } finally {
+            invalidateUserCaches(userId);
         }
     }
 
     @Override
     public BaseResponse deleteUser(String userId, String domain, boolean deleteRelatedData) {
+        return operation("deleteUser", () -> requestDeleteUser(userId, domain, deleteRelatedData));
+    }
+
+    private BaseResponse requestDeleteUser(String userId, String domain, boolean deleteRelatedData) {
         try {
             String ts = getServerTime();
             DeleteUserRequest deleteUserRequest = new DeleteUserRequest(userId, deleteRelatedData, domain);
@@ -1642,6 +2281,8 @@ public class SAAccess implements ISAAccess {
                     ts, deleteUserRequest, BaseResponse.class);
         } catch (Exception e) {
             throw new SARestAPIException("Exception occurred executing REST query:\n" + e.getMessage() + "\n", e);
+        } finally {
+            invalidateUserCaches(userId);
         }
     }
 
@@ -1655,6 +2296,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link GroupAssociationResponse}
      */
     public ResponseObject addUserToGroup(String userId, String groupName) {
+        return operation("addUserToGroup", () -> requestAddUserToGroup(userId, groupName));
+    }
+
+    private ResponseObject requestAddUserToGroup(String userId, String groupName) {
         try {
             String ts = getServerTime();
             String header = RestApiHeader.getAuthorizationHeader(saAuth, "POST",
@@ -1664,6 +2309,8 @@ public class SAAccess implements ISAAccess {
                     ResponseObject.class);
         } catch (Exception e) {
             throw new SARestAPIException("Exception occurred executing REST query:\n" + e.getMessage() + "\n", e);
+        } finally {
+            invalidateUserCaches(userId);
         }
     }
 
@@ -1679,6 +2326,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link GroupAssociationResponse}
      */
     public ResponseObject addUserToGroupQP(String userId, String groupName) {
+        return operation("addUserToGroupQP", () -> requestAddUserToGroupQP(userId, groupName));
+    }
+
+    private ResponseObject requestAddUserToGroupQP(String userId, String groupName) {
         try {
             String ts = getServerTime();
             String header = RestApiHeader.getAuthorizationHeader(saAuth, "POST",
@@ -1689,6 +2340,8 @@ public class SAAccess implements ISAAccess {
                     ts, ResponseObject.class);
         } catch (Exception e) {
             throw new SARestAPIException("Exception occurred executing REST query:\n" + e.getMessage() + "\n", e);
+        } finally {
+            invalidateUserCaches(userId);
         }
     }
 
@@ -1702,6 +2355,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link GroupAssociationResponse}
      */
     public GroupAssociationResponse addUsersToGroup(UsersToGroup usersToGroup, String groupName) {
+        return operation("addUsersToGroup", () -> requestAddUsersToGroup(usersToGroup, groupName));
+    }
+
+    private GroupAssociationResponse requestAddUsersToGroup(UsersToGroup usersToGroup, String groupName) {
         try {
             String ts = getServerTime();
             String header = RestApiHeader.getAuthorizationHeader(saAuth, Resource.METHOD_POST,
@@ -1712,6 +2369,12 @@ public class SAAccess implements ISAAccess {
                     usersToGroup, ts, GroupAssociationResponse.class);
         } catch (Exception e) {
             throw new SARestAPIException("Exception occurred executing REST query::\n" + e.getMessage() + "\n", e);
+        } finally {
+            if (usersToGroup != null && usersToGroup.getUserIds() != null) {
+                for (String userId : usersToGroup.getUserIds()) {
+                    invalidateUserCaches(userId);
+                }
+            }
         }
     }
 
@@ -1725,6 +2388,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link GroupAssociationResponse}
      */
     public GroupAssociationResponse addGroupToUser(String groupName, String userId) {
+        return operation("addGroupToUser", () -> requestAddGroupToUser(groupName, userId));
+    }
+
+    private GroupAssociationResponse requestAddGroupToUser(String groupName, String userId) {
         try {
             String ts = getServerTime();
 
@@ -1735,6 +2402,8 @@ public class SAAccess implements ISAAccess {
                     GroupAssociationResponse.class);
         } catch (Exception e) {
             throw new SARestAPIException("Exception occurred executing REST query:\n" + e.getMessage() + "\n", e);
+        } finally {
+            invalidateUserCaches(userId);
         }
     }
 
@@ -1748,6 +2417,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link GroupAssociationResponse}
      */
     public GroupAssociationResponse addGroupToUserQP(String groupName, String userId) {
+        return operation("addGroupToUserQP", () -> requestAddGroupToUserQP(groupName, userId));
+    }
+
+    private GroupAssociationResponse requestAddGroupToUserQP(String groupName, String userId) {
         try {
             String ts = getServerTime();
 
@@ -1759,6 +2432,8 @@ public class SAAccess implements ISAAccess {
                     ts, GroupAssociationResponse.class);
         } catch (Exception e) {
             throw new SARestAPIException("Exception occurred executing REST query:\n" + e.getMessage() + "\n", e);
+        } finally {
+            invalidateUserCaches(userId);
         }
     }
 
@@ -1773,6 +2448,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link GroupAssociationResponse}
      */
     public GroupAssociationResponse addUserToGroups(String userId, UserToGroups userToGroups) {
+        return operation("addUserToGroups", () -> requestAddUserToGroups(userId, userToGroups));
+    }
+
+    private GroupAssociationResponse requestAddUserToGroups(String userId, UserToGroups userToGroups) {
         try {
             String ts = getServerTime();
             String header = RestApiHeader.getAuthorizationHeader(saAuth, Resource.METHOD_POST,
@@ -1783,6 +2462,8 @@ public class SAAccess implements ISAAccess {
                     ts, GroupAssociationResponse.class);
         } catch (Exception e) {
             throw new SARestAPIException("Exception occurred executing REST query:\n" + e.getMessage() + "\n", e);
+        } finally {
+            invalidateUserCaches(userId);
         }
     }
 
@@ -1796,6 +2477,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link UserProfileResponse}
      */
     public UserProfileResponse getUserProfile(String userId) {
+        return operation("getUserProfile", () -> cachedUserProfile(userId, () -> requestUserProfile(userId)));
+    }
+
+    private UserProfileResponse requestUserProfile(String userId) {
         String ts = getServerTime();
         String header = RestApiHeader.getAuthorizationHeader(saAuth, "GET",
                 IDMQueries.queryUserProfile(saAuth.getRealm(), userId), ts);
@@ -1823,6 +2508,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link UserProfileResponse}
      */
     public UserProfileResponse getUserProfileQP(String userId) {
+        return operation("getUserProfileQP", () -> cachedUserProfile(userId, () -> requestUserProfileQP(userId)));
+    }
+
+    private UserProfileResponse requestUserProfileQP(String userId) {
         String ts = getServerTime();
         String header = RestApiHeader.getAuthorizationHeader(saAuth, "GET",
                 IDMQueries.queryUserProfileQP(saAuth.getRealm()), ts);
@@ -1838,6 +2527,14 @@ public class SAAccess implements ISAAccess {
         return null;
     }
 
+    private UserProfileResponse cachedUserProfile(String userId, Supplier<UserProfileResponse> request) {
+        UserProfileCache cache = this.userProfileCache;
+        if (cache == null) {
+            return request.get();
+        }
+        return cache.get(saAuth.getRealm(), userId, OperationScope.bind(request));
+    }
+
     /**
      * <p>
      * Administrative Password Reset for the specified user
@@ -1850,6 +2547,10 @@ public class SAAccess implements ISAAccess {
      */
 
     public ResponseObject passwordReset(String userId, String password) {
+        return operation("passwordReset", () -> requestPasswordReset(userId, password));
+    }
+
+    private ResponseObject requestPasswordReset(String userId, String password) {
         String ts = getServerTime();
         UserPasswordRequest userPasswordRequest = new UserPasswordRequest();
         userPasswordRequest.setPassword(password);
@@ -1882,6 +2583,10 @@ public class SAAccess implements ISAAccess {
      */
 
     public ResponseObject passwordResetQP(String userId, String password) {
+        return operation("passwordResetQP", () -> requestPasswordResetQP(userId, password));
+    }
+
+    private ResponseObject requestPasswordResetQP(String userId, String password) {
         String ts = getServerTime();
         UserPasswordRequest userPasswordRequest = new UserPasswordRequest();
         userPasswordRequest.setPassword(password);
@@ -1912,6 +2617,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link ResponseObject}
      */
     public ResponseObject passwordChange(String userId, String currentPassword, String newPassword) {
+        return operation("passwordChange", () -> requestPasswordChange(userId, currentPassword, newPassword));
+    }
+
+    private ResponseObject requestPasswordChange(String userId, String currentPassword, String newPassword) {
         String ts = getServerTime();
         UserPasswordRequest userPasswordRequest = new UserPasswordRequest();
         userPasswordRequest.setCurrentPassword(currentPassword);
@@ -1945,6 +2654,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link ResponseObject}
      */
     public ResponseObject passwordChangeQP(String userId, String currentPassword, String newPassword) {
+        return operation("passwordChangeQP", () -> requestPasswordChangeQP(userId, currentPassword, newPassword));
+    }
+
+    private ResponseObject requestPasswordChangeQP(String userId, String currentPassword, String newPassword) {
         String ts = getServerTime();
         UserPasswordRequest userPasswordRequest = new UserPasswordRequest();
         userPasswordRequest.setCurrentPassword(currentPassword);
@@ -1970,6 +2683,10 @@ public class SAAccess implements ISAAccess {
 
     @Override
     public BaseResponse notifyAuthenticated(String userId, String result, String mfa) {
+        return operation("notifyAuthenticated", () -> requestNotifyAuthenticated(userId, result, mfa));
+    }
+
+    private BaseResponse requestNotifyAuthenticated(String userId, String result, String mfa) {
         String url = saAuth.getRealm() + Resource.APPLIANCE_AUTHENTICATED;
         String serverTime = this.getServerTime();
         Map<String, String> body = Maps.newHashMap();
@@ -2020,6 +2737,19 @@ public class SAAccess implements ISAAccess {
      *
      */
     public NumberProfileResponse PhoneNumberProfileSubmit(String userId, String phoneNumber) {
+        return operation("PhoneNumberProfileSubmit", () -> requestPhoneNumberProfileSubmit(userId, phoneNumber));
+    }
+
+    private NumberProfileResponse requestPhoneNumberProfileSubmit(String userId, String phoneNumber) {
+        NumberProfileCache cache = this.numberProfileCache;
+        if (cache == null) {
+            return requestPhoneNumberProfile(userId, phoneNumber);
+        }
+        return cache.get(saAuth.getRealm(), userId, phoneNumber,
+                () -> requestPhoneNumberProfile(userId, phoneNumber));
+    }
+
+    private NumberProfileResponse requestPhoneNumberProfile(String userId, String phoneNumber) {
         String ts = getServerTime();
         NumberProfileRequest numberProfileRequest = new NumberProfileRequest();
         numberProfileRequest.setUser_id(userId);
@@ -2064,6 +2794,13 @@ public class SAAccess implements ISAAccess {
      */
     public BaseResponse UpdatePhoneNumberProfile(String userId, String phoneNumber, String portedStatus,
             String carrierCode, String carrier, String countryCode, String networkType) {
+        return operation("UpdatePhoneNumberProfile",
+                () -> requestUpdatePhoneNumberProfile(userId, phoneNumber, portedStatus, carrierCode, carrier,
+                        countryCode, networkType));
+    }
+
+    private BaseResponse requestUpdatePhoneNumberProfile(String userId, String phoneNumber, String portedStatus,
+            String carrierCode, String carrier, String countryCode, String networkType) {
         String ts = getServerTime();
         NumberProfileUpdateRequest numberProfileUpdateRequest = new NumberProfileUpdateRequest();
         numberProfileUpdateRequest.setUser_id(userId);
@@ -2088,6 +2825,12 @@ public class SAAccess implements ISAAccess {
         } catch (Exception e) {
             logger.error(new StringBuilder().append("Exception occurred executing REST query::\n")
                     .append(e.getMessage()).append("\n").toString(), e);
+        } finally {
+            invalidateUserCaches(userId);
+            NumberProfileCache numbers = this.numberProfileCache;
+            if (numbers != null) {
+                numbers.invalidate(saAuth.getRealm(), phoneNumber);
+            }
         }
 
         return null;
@@ -2102,6 +2845,14 @@ public class SAAccess implements ISAAccess {
      *         "invalid" according the case.
      */
     public ResponseObject validateUserYubicoOTPToken(String userId, String token) {
+        return operation("validateUserYubicoOTPToken", () -> requestValidateUserYubicoOTPToken(userId, token));
+    }
+
+    private ResponseObject requestValidateUserYubicoOTPToken(String userId, String token) {
+        TokenReplayCache replays = this.tokenReplayCache;
+        if (replays != null && !replays.tryConsume(saAuth.getRealm(), userId, token)) {
+            return this.buildInvalidResponseObjectWithMessage(TokenReplayCache.REPLAYED_MESSAGE);
+        }
         AuthRequest authRequest = new AuthRequest();
         authRequest.setUser_id(userId);
         authRequest.setType(Resource.YUBIKEY);
@@ -2115,10 +2866,12 @@ public class SAAccess implements ISAAccess {
             response = this.saExecuter.executePostRequest(authHeader, this.saBaseURL.getApplianceURL() + uri,
                     authRequest, serverTime, ResponseObject.class);
             if (response == null) {
+                releaseToken(userId, token);
                 response = this.buildInvalidResponseObjectWithMessage("null response.");
             }
         } catch (Throwable th) {
             logger.error("Error validating Yubikey token : ", th);
+            releaseToken(userId, token);
             // invalid response object.
             response = this.buildInvalidResponseObjectWithMessage(th.getMessage());
         }
@@ -2133,6 +2886,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link BaseResponse}
      */
     public BaseResponse getUserStatus(String userId) {
+        return operation("getUserStatus", () -> requestGetUserStatus(userId));
+    }
+
+    private BaseResponse requestGetUserStatus(String userId) {
         try {
             String ts = getServerTime();
 
@@ -2157,6 +2914,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link BaseResponse}
      */
     public BaseResponse getUserStatusQP(String userId) {
+        return operation("getUserStatusQP", () -> requestGetUserStatusQP(userId));
+    }
+
+    private BaseResponse requestGetUserStatusQP(String userId) {
         try {
             String ts = getServerTime();
 
@@ -2180,6 +2941,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link BaseResponse}
      */
     public BaseResponse setUserStatus(String userId, String status) {
+        return operation("setUserStatus", () -> requestSetUserStatus(userId, status));
+    }
+
+    private BaseResponse requestSetUserStatus(String userId, String status) {
         try {
             String ts = getServerTime();
 
@@ -2210,6 +2975,10 @@ public class SAAccess implements ISAAccess {
      * @return {@link BaseResponse}
      */
     public BaseResponse setUserStatusQP(String userId, String status) {
+        return operation("setUserStatusQP", () -> requestSetUserStatusQP(userId, status));
+    }
+
+    private BaseResponse requestSetUserStatusQP(String userId, String status) {
         try {
             String ts = getServerTime();
 
@@ -2246,6 +3015,10 @@ public class SAAccess implements ISAAccess {
      * @return raw response
      */
     public String executeGetRequest(String query) {
+        return operation("executeGetRequest", () -> requestExecuteGetRequest(query));
+    }
+
+    private String requestExecuteGetRequest(String query) {
         String ts = getServerTime();
         query = saAuth.getRealm() + query;
         String header = RestApiHeader.getAuthorizationHeader(saAuth, "GET", query, ts);
@@ -2271,6 +3044,42 @@ public class SAAccess implements ISAAccess {
         return saAuth.getRealm() + "/api/" + Resource.API_VERSION + "/auth";
     }
 
+    // Names the requests sent by the call after the public method, for the metrics, and traces the call.
+    private <T> T operation(String name, Supplier<T> call) {
+        SAExecuter executer = this.saExecuter;
+        return OperationScope.call(name, executer == null ? null : executer.getTracer(), call);
+    }
+
+    private void resetAttempts(String userId) {
+        AttemptLimiter limiter = this.attemptLimiter;
+        if (limiter != null) {
+            limiter.reset(saAuth.getRealm(), userId);
+        }
+    }
+
+    // Called after every IDM write performed for the user, whatever the result.
+    private void invalidateUserCaches(String userId) {
+        if (userId == null) {
+            return;
+        }
+        FactorsCache factors = this.factorsCache;
+        if (factors != null) {
+            factors.invalidate(saAuth.getRealm(), userId);
+        }
+        UserProfileCache profiles = this.userProfileCache;
+        if (profiles != null) {
+            profiles.invalidate(saAuth.getRealm(), userId);
+        }
+        FactorsPrefetcher prefetcher = this.factorsPrefetcher;
+        if (prefetcher != null) {
+            prefetcher.cancel(saAuth.getRealm(), userId);
+        }
+        UnknownUserFilter unknownUsers = this.unknownUserFilter;
+        if (unknownUsers != null) {
+            unknownUsers.forget(saAuth.getRealm(), userId);
+        }
+    }
+
     private ResponseObject buildInvalidResponseObjectWithMessage(String message) {
         ResponseObject response = new ResponseObject();
         response.setStatus("invalid");
@@ -0,0 +1,131 @@
+package org.secureauth.sarestapi.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.secureauth.sarestapi.data.Response.FactorsResponse;
+import org.secureauth.sarestapi.resources.Resource;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * <p>
+ * Bounded TTL cache of {@link FactorsResponse} keyed by realm and user.
+ * Only successful ("found") responses are cached. The entries of a user are
+ * invalidated by {@link org.secureauth.sarestapi.SAAccess} every time it
+ * performs an IDM write for that user (create, update, delete and phone
+ * number profile update). A load that was in flight when the user was
+ * invalidated does not store its result.
+ * </p>
+ * <p>
+ * Cached responses are shared between callers and must be treated as read
+ * only.
+ * </p>
+ */
+public class FactorsCache {
+
+    /**
+     * The factors endpoint versions. The QP variants return the same factors as
+     * their path counterparts so they share the entry.
+     */
+    public enum Version {
+        V1, V3
+    }
+
+    private final Cache<String, FactorsResponse> cache;
+    private final Generations generations = new Generations();
+
+    /**
+     * @param ttl         time to live of an entry after it is written
+     * @param unit        time unit of the ttl
+     * @param maximumSize maximum number of cached responses
+     */
+    public FactorsCache(long ttl, TimeUnit unit, long maximumSize) {
+        this(ttl, unit, maximumSize, Ticker.systemTicker());
+    }
+
+    FactorsCache(long ttl, TimeUnit unit, long maximumSize, Ticker ticker) {
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl, unit)
+                .maximumSize(maximumSize)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached factors of the user, loading (and caching) them when
+     * there is no valid entry.
+     *
+     * @param realm   the realm of the user
+     * @param userId  the user
+     * @param version the factors endpoint version
+     * @param loader  the request used on a cache miss, it may return null
+     * @return the factors response, or null when the loader returned null
+     */
+    public FactorsResponse get(String realm, String userId, Version version, Supplier<FactorsResponse> loader) {
+        String key = key(realm, userId, version);
+        FactorsResponse factors = this.cache.getIfPresent(key);
+        if (factors == null) {
+            String user = userKey(realm, userId);
+            long generation = this.generations.get(user);
+            factors = loader.get();
+            if (factors != null && Resource.STATUS_FOUND.equalsIgnoreCase(factors.getStatus())) {
+                this.cache.put(key, factors);
+                // an invalidation during the load may have run before the put.
+                if (this.generations.get(user) != generation) {
+                    this.cache.asMap().remove(key, factors);
+                }
+            }
+        }
+        return factors;
+    }
+
+    /**
+     * @param realm   the realm of the user
+     * @param userId  the user
+     * @param version the factors endpoint version
+     * @return true when the factors of the user are cached, without counting a
+     *         hit or a miss
+     */
+    public boolean contains(String realm, String userId, Version version) {
+        return this.cache.asMap().containsKey(key(realm, userId, version));
+    }
+
+    /**
+     * Drop every cached version of the factors of the user.
+     *
+     * @param realm  the realm of the user
+     * @param userId the user
+     */
+    public void invalidate(String realm, String userId) {
+        this.generations.advance(userKey(realm, userId));
+        for (Version version : Version.values()) {
+            this.cache.invalidate(key(realm, userId, version));
+        }
+    }
+
+    public void invalidateAll() {
+        this.generations.advanceAll();
+        this.cache.invalidateAll();
+    }
+
+    public long size() {
+        return this.cache.size();
+    }
+
+    public CacheStats stats() {
+        return this.cache.stats();
+    }
+
+    private static String key(String realm, String userId, Version version) {
+        return realm + '|' + version + '|' + userId;
+    }
+
+    private static String userKey(String realm, String userId) {
+        return realm + '|' + userId;
+    }
+}
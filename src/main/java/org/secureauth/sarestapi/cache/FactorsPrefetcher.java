@@ -0,0 +1,173 @@
+package org.secureauth.sarestapi.cache;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.secureauth.sarestapi.data.Response.FactorsResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+
+/**
+ * <p>
+ * Speculative fetch of the factors of a user while (or right after) the user
+ * is validated, since a successful validation is nearly always followed by a
+ * factors request. The prefetched response is kept in a short lived slot and
+ * handed to the next factors request of the user, once.
+ * </p>
+ * <p>
+ * A prefetch is cancelled when the validation fails; if its request has not
+ * started yet it is not sent at all. Unused slots expire after their time to
+ * live.
+ * </p>
+ */
+public class FactorsPrefetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(FactorsPrefetcher.class);
+
+    /**
+     * When the factors are prefetched.
+     */
+    public enum Trigger {
+        /**
+         * As soon as the validation request starts, in parallel with it, once the
+         * local attempt limits and unknown user filter let it through.
+         */
+        VALIDATION_START,
+        /** Once the validation succeeded. */
+        VALIDATION_SUCCESS
+    }
+
+    private final Trigger trigger;
+    private final Executor executor;
+    private final Cache<String, CompletableFuture<FactorsResponse>> slots;
+    private final LongAdder prefetches = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param trigger     when the factors are prefetched
+     * @param ttl         time to live of an unused slot
+     * @param unit        time unit of the ttl
+     * @param maximumSize maximum number of slots
+     * @param executor    executor running the prefetch requests
+     */
+    public FactorsPrefetcher(Trigger trigger, long ttl, TimeUnit unit, long maximumSize, Executor executor) {
+        this(trigger, ttl, unit, maximumSize, executor, Ticker.systemTicker());
+    }
+
+    FactorsPrefetcher(Trigger trigger, long ttl, TimeUnit unit, long maximumSize, Executor executor,
+            Ticker ticker) {
+        this.trigger = trigger;
+        this.executor = executor;
+        this.slots = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl, unit)
+                .maximumSize(maximumSize)
+                .ticker(ticker)
+                .<String, CompletableFuture<FactorsResponse>>removalListener(removal -> {
+                    if (removal.getCause() != RemovalCause.EXPLICIT) {
+                        removal.getValue().cancel(false);
+                    }
+                })
+                .build();
+    }
+
+    public Trigger getTrigger() {
+        return trigger;
+    }
+
+    /**
+     * Starts fetching the factors of the user, unless a prefetch of the user is
+     * already pending.
+     *
+     * @param realm  the realm of the user
+     * @param userId the user
+     * @param loader the factors request
+     */
+    public void prefetch(String realm, String userId, Supplier<FactorsResponse> loader) {
+        this.slots.asMap().computeIfAbsent(key(realm, userId), key -> {
+            this.prefetches.increment();
+            return CompletableFuture.supplyAsync(loader, this.executor);
+        });
+    }
+
+    /**
+     * Cancels the pending prefetch of the user, if any.
+     *
+     * @param realm  the realm of the user
+     * @param userId the user
+     */
+    public void cancel(String realm, String userId) {
+        CompletableFuture<FactorsResponse> slot = this.slots.asMap().remove(key(realm, userId));
+        if (slot != null) {
+            slot.cancel(false);
+        }
+    }
+
+    /**
+     * Returns the prefetched factors of the user, waiting for the prefetch to
+     * complete if needed, or the response of the loader when there is no
+     * prefetch or it failed.
+     *
+     * @param realm  the realm of the user
+     * @param userId the user
+     * @param loader the factors request used on a miss
+     * @return the factors response, or null when the loader returned null
+     */
+    public FactorsResponse get(String realm, String userId, Supplier<FactorsResponse> loader) {
+        CompletableFuture<FactorsResponse> slot = this.slots.asMap().remove(key(realm, userId));
+        if (slot != null) {
+            try {
+                FactorsResponse factors = slot.join();
+                if (factors != null) {
+                    this.hits.increment();
+                    return factors;
+                }
+            } catch (CompletionException e) {
+                logger.warn("Factors prefetch failed, fetching them again", e.getCause());
+            } catch (CancellationException e) {
+                // cancelled by a concurrent failed validation.
+            }
+        }
+        this.misses.increment();
+        return loader.get();
+    }
+
+    /**
+     * @return number of prefetches started
+     */
+    public long getPrefetchCount() {
+        return this.prefetches.sum();
+    }
+
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return ratio of the factors requests answered by a prefetch, 1.0 when
+     *         there was no request
+     */
+    public double getHitRate() {
+        long hitCount = getHitCount();
+        long total = hitCount + getMissCount();
+        return total == 0 ? 1.0 : (double) hitCount / total;
+    }
+
+    private static String key(String realm, String userId) {
+        return realm + '|' + userId;
+    }
+}
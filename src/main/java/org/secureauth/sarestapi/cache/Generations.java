@@ -0,0 +1,36 @@
+package org.secureauth.sarestapi.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Striped generation counters of the cached keys, moved forward by every
+ * invalidation. A load reads the generation of its key before it starts and
+ * drops its result when the generation moved meanwhile, so a load started
+ * before a write can not put the data read before the write back in the cache.
+ * Keys sharing a stripe only lose some stores, never keep stale data.
+ */
+final class Generations {
+
+    private static final int STRIPES = 1024;
+
+    private final AtomicLongArray stripes = new AtomicLongArray(STRIPES);
+
+    long get(String key) {
+        return this.stripes.get(stripe(key));
+    }
+
+    void advance(String key) {
+        this.stripes.incrementAndGet(stripe(key));
+    }
+
+    void advanceAll() {
+        for (int i = 0; i < STRIPES; i++) {
+            this.stripes.incrementAndGet(i);
+        }
+    }
+
+    private static int stripe(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+}
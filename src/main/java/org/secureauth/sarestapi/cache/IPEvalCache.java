@@ -0,0 +1,230 @@
+package org.secureauth.sarestapi.cache;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.secureauth.sarestapi.data.Geoloc;
+import org.secureauth.sarestapi.data.IPEval;
+import org.secureauth.sarestapi.data.IPEvaluation;
+import org.secureauth.sarestapi.util.IPPrefix;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+
+/**
+ * <p>
+ * Cache of {@link IPEval} results indexed by IP address.
+ * </p>
+ * <p>
+ * The risk evaluation and the geolocation of an address have their own TTL. A
+ * cached result is served while its risk evaluation and its geolocation, when
+ * it has one, are fresh; otherwise it is loaded again. A fresh cached
+ * geolocation is kept when a new result comes without one.
+ * </p>
+ * <p>
+ * Addresses can optionally be aggregated by network prefix (for example /24 for
+ * IPv4 and /48 for IPv6): all the addresses of a network then share the result
+ * of the first one evaluated. The cache is bounded by weight, by default an
+ * estimate of the memory used by each result, which can be replaced with a
+ * custom {@link Weigher}.
+ * </p>
+ * <p>
+ * The results are cached independently of the user, a copy carrying the user
+ * and the address of the caller is returned on every hit. The realm is not part
+ * of the key, so a cache must not be shared by the SAAccess of several realms.
+ * </p>
+ */
+public class IPEvalCache {
+
+    /**
+     * Rough estimate, in bytes, of the memory used by a cached result.
+     */
+    public static final Weigher<IPPrefix, IPEval> ESTIMATED_SIZE_WEIGHER = (prefix, eval) -> estimateSize(eval);
+
+    private final Cache<IPPrefix, Entry> cache;
+    private final long riskTtlNanos;
+    private final long geoTtlNanos;
+    private final int ipv4PrefixLength;
+    private final int ipv6PrefixLength;
+    private final Ticker ticker;
+
+    /**
+     * Cache of single addresses using the estimated size weigher.
+     *
+     * @param riskTtl       time to live of the risk evaluation
+     * @param geoTtl        time to live of the geolocation
+     * @param unit          time unit of the TTLs
+     * @param maximumWeight maximum total weight of the cached results
+     */
+    public IPEvalCache(long riskTtl, long geoTtl, TimeUnit unit, long maximumWeight) {
+        this(riskTtl, geoTtl, unit, IPPrefix.IPV4_BITS, IPPrefix.IPV6_BITS, maximumWeight, ESTIMATED_SIZE_WEIGHER);
+    }
+
+    /**
+     * @param riskTtl          time to live of the risk evaluation
+     * @param geoTtl           time to live of the geolocation
+     * @param unit             time unit of the TTLs
+     * @param ipv4PrefixLength IPv4 addresses are aggregated by this prefix length,
+     *                         32 disables the aggregation
+     * @param ipv6PrefixLength IPv6 addresses are aggregated by this prefix length,
+     *                         128 disables the aggregation
+     * @param maximumWeight    maximum total weight of the cached results
+     * @param weigher          weight of a cached result
+     */
+    public IPEvalCache(long riskTtl, long geoTtl, TimeUnit unit, int ipv4PrefixLength, int ipv6PrefixLength,
+            long maximumWeight, Weigher<IPPrefix, IPEval> weigher) {
+        this(riskTtl, geoTtl, unit, ipv4PrefixLength, ipv6PrefixLength, maximumWeight, weigher,
+                Ticker.systemTicker());
+    }
+
+    IPEvalCache(long riskTtl, long geoTtl, TimeUnit unit, int ipv4PrefixLength, int ipv6PrefixLength,
+            long maximumWeight, Weigher<IPPrefix, IPEval> weigher, Ticker ticker) {
+        if (ipv4PrefixLength < 0 || ipv4PrefixLength > IPPrefix.IPV4_BITS || ipv6PrefixLength < 0
+                || ipv6PrefixLength > IPPrefix.IPV6_BITS) {
+            throw new IllegalArgumentException("Invalid aggregation prefix length.");
+        }
+        this.riskTtlNanos = unit.toNanos(riskTtl);
+        this.geoTtlNanos = unit.toNanos(geoTtl);
+        this.ipv4PrefixLength = ipv4PrefixLength;
+        this.ipv6PrefixLength = ipv6PrefixLength;
+        this.ticker = ticker;
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(Math.max(this.riskTtlNanos, this.geoTtlNanos), TimeUnit.NANOSECONDS)
+                .maximumWeight(maximumWeight)
+                .weigher((Weigher<IPPrefix, Entry>) (prefix, entry) -> weigher.weigh(prefix, entry.eval))
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached evaluation of the address, loading (and caching) it when
+     * there is no fresh evaluation. Addresses that can not be parsed are never
+     * cached.
+     *
+     * @param userId    the user of the request
+     * @param ipAddress the evaluated address
+     * @param loader    the request to the appliance, it may return null
+     * @return the evaluation, or whatever the loader returned on a miss
+     */
+    public IPEval get(String userId, String ipAddress, Supplier<IPEval> loader) {
+        IPPrefix key;
+        try {
+            key = IPPrefix.of(ipAddress, this.ipv4PrefixLength, this.ipv6PrefixLength);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return loader.get();
+        }
+        long now = this.ticker.read();
+        Entry entry = this.cache.getIfPresent(key);
+        if (entry != null && now - entry.riskLoadedAt < this.riskTtlNanos
+                && (entry.geoloc() == null || now - entry.geoLoadedAt < this.geoTtlNanos)) {
+            return copy(entry, userId, ipAddress);
+        }
+        IPEval eval = loader.get();
+        if (isCacheable(eval)) {
+            if (eval.getIp_evaluation().getGeoloc() == null && entry != null && entry.geoloc() != null
+                    && now - entry.geoLoadedAt < this.geoTtlNanos) {
+                // keep the cached geolocation (and its age) when the new result has none.
+                this.cache.put(key, new Entry(eval, now, entry.geoLoadedAt, entry.geoloc()));
+            } else {
+                this.cache.put(key, new Entry(eval, now, now, null));
+            }
+        }
+        return eval;
+    }
+
+    public void invalidateAll() {
+        this.cache.invalidateAll();
+    }
+
+    public long size() {
+        return this.cache.size();
+    }
+
+    public CacheStats stats() {
+        return this.cache.stats();
+    }
+
+    private static boolean isCacheable(IPEval eval) {
+        if (eval == null || eval.getIp_evaluation() == null) {
+            return false;
+        }
+        return ResponseStatus.isCacheable(eval.getStatus());
+    }
+
+    private static IPEval copy(Entry entry, String userId, String ipAddress) {
+        IPEvaluation cached = entry.eval.getIp_evaluation();
+        IPEvaluation evaluation = new IPEvaluation();
+        evaluation.setMethod(cached.getMethod());
+        evaluation.setIp(ipAddress);
+        evaluation.setRisk_factor(cached.getRisk_factor());
+        evaluation.setRisk_color(cached.getRisk_color());
+        evaluation.setRisk_desc(cached.getRisk_desc());
+        evaluation.setFactoring(cached.getFactoring());
+        evaluation.setFactor_description(cached.getFactor_description());
+        evaluation.setGeoloc(entry.geoloc());
+        IPEval eval = new IPEval();
+        eval.setStatus(entry.eval.getStatus());
+        eval.setMessage(entry.eval.getMessage());
+        eval.setUser_id(userId);
+        eval.setIp_evaluation(evaluation);
+        return eval;
+    }
+
+    private static int estimateSize(IPEval eval) {
+        int size = 160 + length(eval.getStatus()) + length(eval.getMessage()) + length(eval.getUser_id());
+        IPEvaluation evaluation = eval.getIp_evaluation();
+        if (evaluation != null) {
+            size += 120 + length(evaluation.getMethod()) + length(evaluation.getIp())
+                    + length(evaluation.getRisk_color()) + length(evaluation.getRisk_desc())
+                    + estimateSize(evaluation.getFactoring()) + estimateSize(evaluation.getFactor_description());
+            Geoloc geoloc = evaluation.getGeoloc();
+            if (geoloc != null) {
+                size += 80 + length(geoloc.getCountry()) + length(geoloc.getCountry_code()) + length(geoloc.getRegion())
+                        + length(geoloc.getRegion_code()) + length(geoloc.getCity()) + length(geoloc.getLatitude())
+                        + length(geoloc.getLongtitude()) + length(geoloc.getInternet_service_provider())
+                        + length(geoloc.getOrganization());
+            }
+        }
+        return size;
+    }
+
+    private static int estimateSize(Map<String, String> map) {
+        if (map == null) {
+            return 0;
+        }
+        int size = 64;
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            size += 48 + length(entry.getKey()) + length(entry.getValue());
+        }
+        return size;
+    }
+
+    // Strings are counted as 40 bytes of header plus 2 bytes per char.
+    private static int length(String value) {
+        return value == null ? 0 : 40 + 2 * value.length();
+    }
+
+    private static class Entry {
+        private final IPEval eval;
+        private final long riskLoadedAt;
+        private final long geoLoadedAt;
+        private final Geoloc geoloc;
+
+        Entry(IPEval eval, long riskLoadedAt, long geoLoadedAt, Geoloc geoloc) {
+            this.eval = eval;
+            this.riskLoadedAt = riskLoadedAt;
+            this.geoLoadedAt = geoLoadedAt;
+            this.geoloc = geoloc;
+        }
+
+        // the geolocation kept from a previous result, or the one of the result.
+        Geoloc geoloc() {
+            return this.geoloc != null ? this.geoloc : this.eval.getIp_evaluation().getGeoloc();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package org.secureauth.sarestapi.cache;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.secureauth.sarestapi.data.Response.JSObjectResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Ticker;
+
+/**
+ * <p>
+ * Cache of the DFP and behavioral biometrics JavaScript sources
+ * ({@link JSObjectResponse}) backed by an on-disk snapshot.
+ * </p>
+ * <p>
+ * Every good copy fetched from the appliance is kept in memory and written to a
+ * snapshot file in the snapshot directory (one file per realm and script). A
+ * freshly started node serves the snapshot right away and refreshes it in the
+ * background. Once a copy is older than the refresh interval it keeps being
+ * served while a single background refresh runs on the refresh executor. A
+ * failed refresh keeps the last good copy. Only the first call of a node with
+ * no snapshot waits for the appliance.
+ * </p>
+ */
+public class JSObjectCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(JSObjectCache.class);
+    private static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+    /**
+     * The cached JavaScript sources.
+     */
+    public enum Script {
+        DFP, BEHAVE_BIO
+    }
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Path snapshotDirectory;
+    private final long refreshIntervalNanos;
+    private final Executor refreshExecutor;
+    private final Ticker ticker;
+
+    /**
+     * @param snapshotDirectory directory of the snapshot files, it is created when
+     *                          missing
+     * @param refreshInterval   age after which a copy is refreshed in the
+     *                          background
+     * @param unit              time unit of the refresh interval
+     * @param refreshExecutor   executor running the background refreshes
+     */
+    public JSObjectCache(Path snapshotDirectory, long refreshInterval, TimeUnit unit, Executor refreshExecutor) {
+        this(snapshotDirectory, refreshInterval, unit, refreshExecutor, Ticker.systemTicker());
+    }
+
+    JSObjectCache(Path snapshotDirectory, long refreshInterval, TimeUnit unit, Executor refreshExecutor,
+            Ticker ticker) {
+        if (refreshInterval <= 0) {
+            throw new IllegalArgumentException("Refresh interval must be positive.");
+        }
+        this.snapshotDirectory = snapshotDirectory;
+        this.refreshIntervalNanos = unit.toNanos(refreshInterval);
+        this.refreshExecutor = refreshExecutor;
+        this.ticker = ticker;
+    }
+
+    /**
+     * Returns the last good copy of the script, fetching it when there is neither
+     * a copy in memory nor a snapshot.
+     *
+     * @param realm  the realm of the script
+     * @param script the script
+     * @param loader the request to the appliance, it may return null
+     * @return the script, or whatever the loader returned when nothing was cached
+     */
+    public JSObjectResponse get(String realm, Script script, Supplier<JSObjectResponse> loader) {
+        String key = key(realm, script);
+        Entry entry = this.entries.get(key);
+        if (entry == null) {
+            entry = initialEntry(key);
+            if (entry == null) {
+                return load(key, loader);
+            }
+        }
+        if (this.ticker.read() - entry.loadedAt >= this.refreshIntervalNanos) {
+            refresh(key, entry, loader);
+        }
+        return entry.script;
+    }
+
+    /**
+     * Drop the copies in memory, the snapshots are kept.
+     */
+    public void invalidateAll() {
+        this.entries.clear();
+    }
+
+    private Entry initialEntry(String key) {
+        synchronized (this.entries) {
+            Entry entry = this.entries.get(key);
+            if (entry != null) {
+                return entry;
+            }
+            JSObjectResponse snapshot = readSnapshot(key);
+            if (snapshot == null) {
+                return null;
+            }
+            // a snapshot is refreshed as soon as it is served.
+            entry = new Entry(snapshot, this.ticker.read() - this.refreshIntervalNanos);
+            this.entries.put(key, entry);
+            return entry;
+        }
+    }
+
+    private JSObjectResponse load(String key, Supplier<JSObjectResponse> loader) {
+        JSObjectResponse script = loader.get();
+        if (isGood(script)) {
+            this.entries.put(key, new Entry(script, this.ticker.read()));
+            writeSnapshot(key, script);
+        }
+        return script;
+    }
+
+    private void refresh(String key, Entry entry, Supplier<JSObjectResponse> loader) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            this.refreshExecutor.execute(() -> {
+                try {
+                    if (!isGood(load(key, loader))) {
+                        logger.warn("Refresh of " + key + " failed, serving the last good copy.");
+                    }
+                } catch (RuntimeException e) {
+                    logger.error("Exception occurred refreshing " + key + ":\n" + e.getMessage() + "\n");
+                } finally {
+                    entry.refreshing.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            entry.refreshing.set(false);
+            logger.error("Refresh of " + key + " rejected: " + e.getMessage());
+        }
+    }
+
+    private JSObjectResponse readSnapshot(String key) {
+        Path snapshot = this.snapshotDirectory.resolve(key + SNAPSHOT_EXTENSION);
+        if (!Files.isRegularFile(snapshot)) {
+            return null;
+        }
+        try {
+            JSObjectResponse script = new JSObjectResponse();
+            script.setSrc(new String(Files.readAllBytes(snapshot), StandardCharsets.UTF_8));
+            return isGood(script) ? script : null;
+        } catch (IOException e) {
+            logger.error("Exception occurred reading snapshot " + snapshot + ":\n" + e.getMessage() + "\n");
+            return null;
+        }
+    }
+
+    // Written to a temporary file and moved, so a concurrent reader never sees a partial snapshot.
+    private void writeSnapshot(String key, JSObjectResponse script) {
+        Path snapshot = this.snapshotDirectory.resolve(key + SNAPSHOT_EXTENSION);
+        Path tmp = null;
+        try {
+            Files.createDirectories(this.snapshotDirectory);
+            tmp = Files.createTempFile(this.snapshotDirectory, key, ".tmp");
+            Files.write(tmp, script.getSrc().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+        } catch (IOException e) {
+            logger.error("Exception occurred writing snapshot " + snapshot + ":\n" + e.getMessage() + "\n");
+        } finally {
+            if (tmp != null) {
+                deleteTemporaryFile(tmp);
+            }
+        }
+    }
+
+    private static void deleteTemporaryFile(Path tmp) {
+        try {
+            Files.deleteIfExists(tmp);
+        } catch (IOException e) {
+            logger.error("Exception occurred deleting " + tmp + ":\n" + e.getMessage() + "\n");
+        }
+    }
+
+    private static boolean isGood(JSObjectResponse script) {
+        return script != null && script.getSrc() != null && !script.getSrc().isEmpty();
+    }
+
+    // Also used as the snapshot file name: the realm is URL encoded, so two realms never share a file.
+    private static String key(String realm, Script script) {
+        String encodedRealm = URLEncoder.encode(realm, StandardCharsets.UTF_8).replace("*", "%2A");
+        return encodedRealm + '-' + script.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static class Entry {
+        private final JSObjectResponse script;
+        private final long loadedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(JSObjectResponse script, long loadedAt) {
+            this.script = script;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.secureauth.sarestapi.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.secureauth.sarestapi.data.Response.NumberProfileResponse;
+import org.secureauth.sarestapi.util.PhoneNumbers;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * <p>
+ * Cache of {@link NumberProfileResponse} (number profile and carrier data)
+ * keyed by realm and phone number. The numbers are normalized to E.164, so
+ * formatting variants of a number share the same entry. Numbers that can not
+ * be normalized are never cached.
+ * </p>
+ * <p>
+ * The entry of a number is invalidated by
+ * {@link org.secureauth.sarestapi.SAAccess} every time it updates the phone
+ * number profile of that number. Callers get a copy of the cached profile,
+ * which carries the user of the caller on hits.
+ * </p>
+ */
+public class NumberProfileCache {
+
+    private final Cache<String, NumberProfileResponse> cache;
+    private final Generations generations = new Generations();
+    private final String defaultCountryCode;
+
+    /**
+     * @param ttl                time to live of an entry after it is written
+     * @param unit               time unit of the ttl
+     * @param maximumSize        maximum number of cached profiles
+     * @param defaultCountryCode calling code of the numbers submitted without
+     *                           international prefix (for example "1"), null to
+     *                           only cache numbers with international prefix
+     */
+    public NumberProfileCache(long ttl, TimeUnit unit, long maximumSize, String defaultCountryCode) {
+        this(ttl, unit, maximumSize, defaultCountryCode, Ticker.systemTicker());
+    }
+
+    NumberProfileCache(long ttl, TimeUnit unit, long maximumSize, String defaultCountryCode, Ticker ticker) {
+        this.defaultCountryCode = defaultCountryCode;
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl, unit)
+                .maximumSize(maximumSize)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached profile of the number, loading (and caching) it when
+     * there is no valid entry.
+     *
+     * @param realm       the realm
+     * @param userId      the user of the request
+     * @param phoneNumber the phone number, in any format
+     * @param loader      the request to the appliance, it may return null
+     * @return the profile, or whatever the loader returned on a miss
+     */
+    public NumberProfileResponse get(String realm, String userId, String phoneNumber,
+            Supplier<NumberProfileResponse> loader) {
+        String key = key(realm, phoneNumber);
+        if (key == null) {
+            return loader.get();
+        }
+        NumberProfileResponse cached = this.cache.getIfPresent(key);
+        if (cached != null) {
+            return copy(cached, userId);
+        }
+        long generation = this.generations.get(key);
+        NumberProfileResponse profile = loader.get();
+        if (!isCacheable(profile)) {
+            return profile;
+        }
+        this.cache.put(key, profile);
+        // an invalidation during the load may have run before the put.
+        if (this.generations.get(key) != generation) {
+            this.cache.asMap().remove(key, profile);
+        }
+        return copy(profile, profile.getUser_id());
+    }
+
+    /**
+     * Drop the cached profile of the number.
+     *
+     * @param realm       the realm
+     * @param phoneNumber the phone number, in any format
+     */
+    public void invalidate(String realm, String phoneNumber) {
+        String key = key(realm, phoneNumber);
+        if (key != null) {
+            this.generations.advance(key);
+            this.cache.invalidate(key);
+        }
+    }
+
+    public void invalidateAll() {
+        this.generations.advanceAll();
+        this.cache.invalidateAll();
+    }
+
+    public long size() {
+        return this.cache.size();
+    }
+
+    /**
+     * @return ratio of the cacheable requests that were served from the cache,
+     *         1.0 when there was no request yet
+     */
+    public double getHitRate() {
+        return this.cache.stats().hitRate();
+    }
+
+    public CacheStats stats() {
+        return this.cache.stats();
+    }
+
+    private String key(String realm, String phoneNumber) {
+        String number = PhoneNumbers.toE164(phoneNumber, this.defaultCountryCode);
+        return number == null ? null : realm + '|' + number;
+    }
+
+    private static boolean isCacheable(NumberProfileResponse profile) {
+        if (profile == null || profile.getNumberProfileResult() == null) {
+            return false;
+        }
+        return ResponseStatus.isCacheable(profile.getStatus());
+    }
+
+    private static NumberProfileResponse copy(NumberProfileResponse cached, String userId) {
+        NumberProfileResponse profile = new NumberProfileResponse(cached.getNumberProfileResult());
+        profile.setStatus(cached.getStatus());
+        profile.setMessage(cached.getMessage());
+        profile.setUser_id(userId);
+        return profile;
+    }
+}
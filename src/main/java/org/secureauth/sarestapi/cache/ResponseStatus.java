@@ -0,0 +1,22 @@
+package org.secureauth.sarestapi.cache;
+
+import org.secureauth.sarestapi.resources.Resource;
+
+/**
+ * Status checks shared by the caches.
+ */
+final class ResponseStatus {
+
+    private ResponseStatus() {
+    }
+
+    /**
+     * @param status the status of a response
+     * @return false when the status reports an invalid request or an appliance
+     *         error, such responses are never cached
+     */
+    static boolean isCacheable(String status) {
+        return !Resource.STATUS_INVALID.equalsIgnoreCase(status) && !Resource.STATUS_SERVER_ERROR.equalsIgnoreCase(status)
+                && !Resource.STATUS_ERROR.equalsIgnoreCase(status) && !Resource.STATUS_FAILED.equalsIgnoreCase(status);
+    }
+}
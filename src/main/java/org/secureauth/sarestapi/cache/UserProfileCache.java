@@ -0,0 +1,276 @@
+package org.secureauth.sarestapi.cache;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import org.secureauth.sarestapi.data.Response.UserProfileResponse;
+import org.secureauth.sarestapi.resources.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * <p>
+ * Stale-while-revalidate cache of {@link UserProfileResponse} keyed by realm and
+ * user.
+ * </p>
+ * <p>
+ * A cached profile is returned immediately while it is younger than the soft
+ * TTL. Once the soft TTL is passed the cached profile is still returned, and a
+ * single background refresh is started on the refresh executor. Shortly before
+ * the soft TTL a refresh may start early: the probability grows as the entry
+ * gets closer to the soft TTL and with the time the last request took
+ * (probabilistic early expiration), so concurrent readers of a hot profile do
+ * not all refresh it at the same instant.
+ * </p>
+ * <p>
+ * When a refresh fails because the appliance can not be reached (the request
+ * returns null or throws) the stale profile keeps being served until it is
+ * older than the soft TTL plus the max stale time. After that the entry is
+ * dropped and the next call waits for the appliance. When the appliance answers
+ * that the profile is no longer found the entry is dropped right away.
+ * </p>
+ * <p>
+ * Cached responses are shared between callers and must be treated as read
+ * only.
+ * </p>
+ */
+public class UserProfileCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserProfileCache.class);
+    private static final double DEFAULT_EARLY_REFRESH_BETA = 1.0;
+
+    private final Cache<String, Entry> cache;
+    private final Generations generations = new Generations();
+    private final long softTtlNanos;
+    private final Executor refreshExecutor;
+    private final Ticker ticker;
+    private final DoubleSupplier random;
+    private volatile double earlyRefreshBeta = DEFAULT_EARLY_REFRESH_BETA;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+
+    /**
+     * @param softTtl         age after which a cached profile is refreshed in the
+     *                        background
+     * @param maxStale        how long after the soft TTL a stale profile can still
+     *                        be served while the refresh keeps failing
+     * @param unit            time unit of softTtl and maxStale
+     * @param maximumSize     maximum number of cached profiles
+     * @param refreshExecutor executor running the background refreshes
+     */
+    public UserProfileCache(long softTtl, long maxStale, TimeUnit unit, long maximumSize, Executor refreshExecutor) {
+        this(softTtl, maxStale, unit, maximumSize, refreshExecutor, Ticker.systemTicker(),
+                () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    UserProfileCache(long softTtl, long maxStale, TimeUnit unit, long maximumSize, Executor refreshExecutor,
+            Ticker ticker, DoubleSupplier random) {
+        if (softTtl <= 0 || maxStale < 0) {
+            throw new IllegalArgumentException("Soft TTL must be positive and max stale can not be negative.");
+        }
+        this.softTtlNanos = unit.toNanos(softTtl);
+        this.refreshExecutor = refreshExecutor;
+        this.ticker = ticker;
+        this.random = random;
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(this.softTtlNanos + unit.toNanos(maxStale), TimeUnit.NANOSECONDS)
+                .maximumSize(maximumSize)
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * Tunes the early refresh. 0 disables it, values greater than 1 start the
+     * refreshes earlier. Default is 1.
+     *
+     * @param earlyRefreshBeta the early refresh factor
+     */
+    public void setEarlyRefreshBeta(double earlyRefreshBeta) {
+        if (earlyRefreshBeta < 0) {
+            throw new IllegalArgumentException("Early refresh beta can not be negative.");
+        }
+        this.earlyRefreshBeta = earlyRefreshBeta;
+    }
+
+    /**
+     * Returns the cached profile of the user, loading it when there is no entry
+     * or refreshing it in the background when it is stale.
+     *
+     * @param realm  the realm of the user
+     * @param userId the user
+     * @param loader the request to the appliance, it may return null
+     * @return the profile, or whatever the loader returned on a miss
+     */
+    public UserProfileResponse get(String realm, String userId, Supplier<UserProfileResponse> loader) {
+        String key = key(realm, userId);
+        Entry entry = this.cache.getIfPresent(key);
+        if (entry == null) {
+            this.misses.increment();
+            return load(key, loader);
+        }
+        long now = this.ticker.read();
+        if (now >= entry.softExpiry) {
+            this.staleHits.increment();
+            refresh(key, entry, loader);
+        } else {
+            this.hits.increment();
+            if (refreshEarly(entry, now)) {
+                refresh(key, entry, loader);
+            }
+        }
+        return entry.profile;
+    }
+
+    /**
+     * Drop the cached profile of the user. A load or a refresh in flight for the
+     * user will not store its result.
+     *
+     * @param realm  the realm of the user
+     * @param userId the user
+     */
+    public void invalidate(String realm, String userId) {
+        String key = key(realm, userId);
+        this.generations.advance(key);
+        this.cache.invalidate(key);
+    }
+
+    public void invalidateAll() {
+        this.generations.advanceAll();
+        this.cache.invalidateAll();
+    }
+
+    public long size() {
+        return this.cache.size();
+    }
+
+    /**
+     * @return number of calls served with a fresh profile.
+     */
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return number of calls served with a profile older than the soft TTL.
+     */
+    public long getStaleHitCount() {
+        return this.staleHits.sum();
+    }
+
+    /**
+     * @return number of calls that had to wait for the appliance.
+     */
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return number of background refreshes started.
+     */
+    public long getRefreshCount() {
+        return this.refreshes.sum();
+    }
+
+    /**
+     * @return number of background refreshes that could not reach the appliance.
+     */
+    public long getRefreshFailureCount() {
+        return this.refreshFailures.sum();
+    }
+
+    private UserProfileResponse load(String key, Supplier<UserProfileResponse> loader) {
+        long generation = this.generations.get(key);
+        long start = this.ticker.read();
+        UserProfileResponse profile = loader.get();
+        if (isFound(profile)) {
+            Entry entry = newEntry(profile, start);
+            this.cache.put(key, entry);
+            // an invalidation during the load may have run before the put.
+            if (this.generations.get(key) != generation) {
+                this.cache.asMap().remove(key, entry);
+            }
+        }
+        return profile;
+    }
+
+    // XFetch: refresh when now - loadTime * beta * ln(random) passes the soft expiry.
+    private boolean refreshEarly(Entry entry, long now) {
+        double beta = this.earlyRefreshBeta;
+        if (beta == 0 || entry.loadNanos == 0) {
+            return false;
+        }
+        double gap = -entry.loadNanos * beta * Math.log(this.random.getAsDouble());
+        return now + gap >= entry.softExpiry;
+    }
+
+    private void refresh(String key, Entry entry, Supplier<UserProfileResponse> loader) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        this.refreshes.increment();
+        try {
+            this.refreshExecutor.execute(() -> {
+                try {
+                    long start = this.ticker.read();
+                    UserProfileResponse profile = loader.get();
+                    if (profile == null) {
+                        this.refreshFailures.increment();
+                    } else if (isFound(profile)) {
+                        // only replace the entry that was refreshed, invalidated entries stay out.
+                        this.cache.asMap().replace(key, entry, newEntry(profile, start));
+                    } else {
+                        this.cache.asMap().remove(key, entry);
+                    }
+                } catch (RuntimeException e) {
+                    this.refreshFailures.increment();
+                    logger.error("Exception occurred refreshing user profile:\n" + e.getMessage() + "\n");
+                } finally {
+                    entry.refreshing.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            entry.refreshing.set(false);
+            this.refreshFailures.increment();
+            logger.error("User profile refresh rejected: " + e.getMessage());
+        }
+    }
+
+    private Entry newEntry(UserProfileResponse profile, long start) {
+        long now = this.ticker.read();
+        return new Entry(profile, now + this.softTtlNanos, now - start);
+    }
+
+    private static boolean isFound(UserProfileResponse profile) {
+        return profile != null && Resource.STATUS_FOUND.equalsIgnoreCase(profile.getStatus());
+    }
+
+    private static String key(String realm, String userId) {
+        return realm + '|' + userId;
+    }
+
+    private static class Entry {
+        private final UserProfileResponse profile;
+        private final long softExpiry;
+        private final long loadNanos;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(UserProfileResponse profile, long softExpiry, long loadNanos) {
+            this.profile = profile;
+            this.softExpiry = softExpiry;
+            this.loadNanos = loadNanos;
+        }
+    }
+}
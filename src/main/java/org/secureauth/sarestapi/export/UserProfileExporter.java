@@ -0,0 +1,277 @@
+package org.secureauth.sarestapi.export;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.secureauth.sarestapi.ISAAccess;
+import org.secureauth.sarestapi.data.Response.UserProfileResponse;
+import org.secureauth.sarestapi.exception.SARestAPIException;
+import org.secureauth.sarestapi.util.JSONUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Exports the UserProfile of many users to a JSONL file (one
+ * {@link UserProfileResponse} per line).
+ * </p>
+ * <p>
+ * Profiles are fetched with a bounded number of concurrent requests and written
+ * in the same order as the input file, so only a small window of pending
+ * results (4 times the concurrency) is kept in memory at any time.
+ * User ids whose profile could not be retrieved are written to a
+ * "&lt;output&gt;.failed" file next to the output.
+ * After every checkpoint interval the next input line and the sizes of both
+ * files are saved to the checkpoint file. When the export is started again with
+ * the same checkpoint file both files are truncated back to the saved sizes and
+ * the export resumes from the saved line. The checkpoint file is removed once
+ * the export is completed.
+ * </p>
+ */
+public class UserProfileExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserProfileExporter.class);
+    private static final String NEXT_LINE = "next.line";
+    private static final String OUTPUT_SIZE = "output.size";
+    private static final String FAILED_SIZE = "failed.size";
+    private static final int WINDOW_PER_THREAD = 4;
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+
+    private final ISAAccess saAccess;
+    private final int concurrency;
+    private final boolean queryParams;
+    private int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+
+    /**
+     * @param saAccess    the access used to retrieve the profiles
+     * @param concurrency max number of profile requests executed at the same time
+     * @param queryParams use getUserProfileQP instead of getUserProfile (user ids
+     *                    with special characters)
+     */
+    public UserProfileExporter(ISAAccess saAccess, int concurrency, boolean queryParams) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be a positive integer value.");
+        }
+        this.saAccess = saAccess;
+        this.concurrency = concurrency;
+        this.queryParams = queryParams;
+    }
+
+    public void setCheckpointInterval(int checkpointInterval) {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be a positive integer value.");
+        }
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Export the profiles of the users listed in the input file (one user id per
+     * line, blank lines are ignored).
+     *
+     * @param userIds    file with the user ids to export
+     * @param output     JSONL file where the profiles are written
+     * @param checkpoint file used to resume the export after a failure
+     * @return the export summary
+     * @throws IOException when the input, output or checkpoint files can not be
+     *                     read or written
+     */
+    public ExportSummary export(Path userIds, Path output, Path checkpoint) throws IOException {
+        Properties saved = readCheckpoint(checkpoint);
+        long startLine = Long.parseLong(saved.getProperty(NEXT_LINE, "0"));
+        long outputSize = Long.parseLong(saved.getProperty(OUTPUT_SIZE, "0"));
+        long failedSize = Long.parseLong(saved.getProperty(FAILED_SIZE, "0"));
+        if (startLine > 0) {
+            logger.info("Resuming profile export from line " + startLine + " of " + userIds);
+        }
+        Path failures = output.resolveSibling(output.getFileName() + ".failed");
+        ExportSummary summary = new ExportSummary(startLine);
+        ExecutorService executor = Executors.newFixedThreadPool(this.concurrency);
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileChannel failedChannel = FileChannel.open(failures, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE);
+                BufferedReader reader = Files.newBufferedReader(userIds, StandardCharsets.UTF_8)) {
+            // discard whatever was written after the last checkpoint.
+            BufferedWriter writer = truncate(channel, outputSize);
+            BufferedWriter failed = truncate(failedChannel, failedSize);
+
+            Deque<PendingProfile> window = new ArrayDeque<>();
+            int windowSize = this.concurrency * WINDOW_PER_THREAD;
+            long lineNumber = 0;
+            long nextLine = startLine;
+            String userId;
+            while ((userId = reader.readLine()) != null) {
+                if (lineNumber++ < startLine) {
+                    continue;
+                }
+                final String id = userId.trim();
+                window.addLast(new PendingProfile(id, executor.submit(() -> fetch(id))));
+                if (window.size() >= windowSize) {
+                    nextLine = write(window.removeFirst(), writer, failed, summary, nextLine);
+                    if (nextLine % this.checkpointInterval == 0) {
+                        saveCheckpoint(checkpoint, nextLine, writer, channel, failed, failedChannel);
+                    }
+                }
+            }
+            while (!window.isEmpty()) {
+                nextLine = write(window.removeFirst(), writer, failed, summary, nextLine);
+            }
+            writer.flush();
+            failed.flush();
+        } finally {
+            executor.shutdownNow();
+        }
+        Files.deleteIfExists(checkpoint);
+        return summary;
+    }
+
+    // Returns the JSON line of the profile, an empty string for blank input lines
+    // or null when the profile could not be retrieved.
+    private String fetch(String userId) {
+        if (userId.isEmpty()) {
+            return "";
+        }
+        try {
+            UserProfileResponse profile = this.queryParams ? this.saAccess.getUserProfileQP(userId)
+                    : this.saAccess.getUserProfile(userId);
+            if (profile == null) {
+                return null;
+            }
+            if (profile.getUserId() == null) {
+                profile = withUserId(profile, userId);
+            }
+            return JSONUtil.convertObjectToSingleLineJSON(profile);
+        } catch (SARestAPIException e) {
+            logger.error("Exception occurred exporting the profile of user [" + userId + "]: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // The profile may be shared with the profile cache, so the user id is set on
+    // a copy.
+    private static UserProfileResponse withUserId(UserProfileResponse profile, String userId) {
+        UserProfileResponse copy = new UserProfileResponse();
+        copy.setStatus(profile.getStatus());
+        copy.setMessage(profile.getMessage());
+        copy.setUser_id(profile.getUser_id());
+        copy.setUserId(userId);
+        copy.setProperties(profile.getProperties() == null ? null : new HashMap<>(profile.getProperties()));
+        copy.setKnowledgeBase(profile.getKnowledgeBase() == null ? null
+                : new LinkedHashMap<>(profile.getKnowledgeBase()));
+        copy.setGroups(profile.getGroups());
+        copy.setAccessHistories(profile.getAccessHistories());
+        return copy;
+    }
+
+    private static BufferedWriter truncate(FileChannel channel, long size) throws IOException {
+        channel.truncate(size);
+        channel.position(size);
+        return new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+    }
+
+    private long write(PendingProfile pending, BufferedWriter writer, BufferedWriter failed, ExportSummary summary,
+            long line) throws IOException {
+        String json;
+        try {
+            json = pending.json.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Profile export interrupted at line " + line, e);
+        } catch (ExecutionException e) {
+            json = null;
+        }
+        if (json == null) {
+            failed.write(pending.userId);
+            failed.newLine();
+            summary.failed++;
+        } else if (!json.isEmpty()) {
+            writer.write(json);
+            writer.newLine();
+            summary.exported++;
+        }
+        return line + 1;
+    }
+
+    private void saveCheckpoint(Path checkpoint, long nextLine, BufferedWriter writer, FileChannel channel,
+            BufferedWriter failed, FileChannel failedChannel) throws IOException {
+        writer.flush();
+        channel.force(false);
+        failed.flush();
+        failedChannel.force(false);
+        Properties properties = new Properties();
+        properties.setProperty(NEXT_LINE, Long.toString(nextLine));
+        properties.setProperty(OUTPUT_SIZE, Long.toString(channel.position()));
+        properties.setProperty(FAILED_SIZE, Long.toString(failedChannel.position()));
+        Path tmp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            properties.store(out, "user profile export checkpoint");
+        }
+        Files.move(tmp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Properties readCheckpoint(Path checkpoint) throws IOException {
+        Properties properties = new Properties();
+        if (Files.exists(checkpoint)) {
+            try (InputStream in = Files.newInputStream(checkpoint)) {
+                properties.load(in);
+            }
+        }
+        return properties;
+    }
+
+    private static class PendingProfile {
+        private final String userId;
+        private final Future<String> json;
+
+        PendingProfile(String userId, Future<String> json) {
+            this.userId = userId;
+            this.json = json;
+        }
+    }
+
+    public static class ExportSummary {
+        private final long resumedFromLine;
+        private long exported;
+        private long failed;
+
+        ExportSummary(long resumedFromLine) {
+            this.resumedFromLine = resumedFromLine;
+        }
+
+        public long getResumedFromLine() {
+            return resumedFromLine;
+        }
+
+        public long getExported() {
+            return exported;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        @Override
+        public String toString() {
+            return "exported: " + exported + ", failed: " + failed + ", resumed from line: " + resumedFromLine;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.secureauth.sarestapi.filters;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.secureauth.sarestapi.resources.RequestRateLimiter;
+import org.secureauth.sarestapi.resources.RequestRateLimiter.OperationClass;
+import org.secureauth.sarestapi.resources.Resource;
+
+import jakarta.ws.rs.client.ClientRequestContext;
+import jakarta.ws.rs.client.ClientRequestFilter;
+
+/**
+ * Applies the {@link RequestRateLimiter} of the executer to every request. The
+ * realm and the operation class are taken from the request path
+ * ("/{realm}/api/{version}/{resource}/...") and, for the auth endpoint, from
+ * the type of the auth request, set by the executer in the
+ * {@link #AUTH_TYPE_PROPERTY} property of the request.
+ */
+public class RateLimitFilter implements ClientRequestFilter {
+
+    /**
+     * The request property holding the type of an auth request.
+     */
+    public static final String AUTH_TYPE_PROPERTY = RateLimitFilter.class.getName() + ".authType";
+    private static final Set<String> DELIVERY_TYPES = Set.of(Resource.SMS, Resource.CALL, Resource.EMAIL,
+            Resource.HELP_DESK, Resource.SMS_LINK, Resource.EMAIL_LINK, "push", "push_accept", "push_accept_symbol",
+            Resource.PUSH_ACCEPT_BIOMETRIC);
+
+    private final Supplier<RequestRateLimiter> rateLimiter;
+
+    /**
+     * @param rateLimiter the limiter in use, it may supply null when there is
+     *                    none
+     */
+    public RateLimitFilter(Supplier<RequestRateLimiter> rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public void filter(ClientRequestContext requestContext) throws IOException {
+        RequestRateLimiter limiter = this.rateLimiter.get();
+        if (limiter == null) {
+            return;
+        }
+        String[] segments = requestContext.getUri().getRawPath().split("/");
+        // segments[0] is the empty string before the leading slash.
+        String realm = segments.length > 1 ? segments[1] : "";
+        String resource = segments.length > 4 ? segments[4] : "";
+        limiter.acquire(realm, operationClass(resource, requestContext.getMethod(),
+                (String) requestContext.getProperty(AUTH_TYPE_PROPERTY)));
+    }
+
+    static OperationClass operationClass(String resource, String method, String authType) {
+        switch (resource) {
+        case "auth":
+            return Resource.METHOD_POST.equals(method) && authType != null && DELIVERY_TYPES.contains(authType)
+                    ? OperationClass.OTP_DELIVERY
+                    : OperationClass.AUTH;
+        case "adaptauth":
+        case "authenticated":
+        case "otp":
+            return OperationClass.AUTH;
+        case "users":
+        case "groups":
+            return OperationClass.IDM;
+        case "dfp":
+            return OperationClass.DFP;
+        default:
+            return OperationClass.OTHER;
+        }
+    }
+}
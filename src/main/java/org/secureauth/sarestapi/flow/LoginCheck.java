@@ -0,0 +1,8 @@
+package org.secureauth.sarestapi.flow;
+
+/**
+ * The checks a {@link LoginFlow} can run.
+ */
+public enum LoginCheck {
+    IP_EVALUATION, DFP_SCORE, BEHAVE_BIO, ADAPTIVE_AUTH, FACTORS
+}
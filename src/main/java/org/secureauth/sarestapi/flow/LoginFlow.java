@@ -0,0 +1,237 @@
+package org.secureauth.sarestapi.flow;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.secureauth.sarestapi.ISAAccess;
+import org.secureauth.sarestapi.data.DFP.DFP;
+import org.secureauth.sarestapi.data.IPEval;
+import org.secureauth.sarestapi.data.Response.AdaptiveAuthResponse;
+import org.secureauth.sarestapi.data.Response.BehaveBioResponse;
+import org.secureauth.sarestapi.data.Response.DFPValidateResponse;
+import org.secureauth.sarestapi.data.Response.FactorsResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Runs the independent risk checks of a login concurrently and combines their
+ * results in a {@link LoginVerdict}, so the latency of the login is the one of
+ * the slowest check instead of the sum of all of them.
+ * </p>
+ * <p>
+ * The caller declares the checks to run, each one with an optional veto, and
+ * runs the flow with a deadline. The flow returns as soon as every check is
+ * done, a check vetoes the login or the deadline is hit; in the last two cases
+ * the checks still running are abandoned. Their threads are interrupted, which
+ * stops the checks not started yet and the ones waiting for the rate limiter,
+ * but not a request already sent: it runs until its response or its read
+ * timeout, and its result is dropped.
+ * </p>
+ *
+ * <pre>
+ * LoginVerdict verdict = new LoginFlow(saAccess, executor, userId)
+ *         .ipEvaluation(ip, eval -&gt; eval.getIp_evaluation().getRisk_factor() &gt;= 90)
+ *         .adaptiveAuth(ip)
+ *         .factors()
+ *         .run(2, TimeUnit.SECONDS);
+ * </pre>
+ *
+ * A flow is meant to be run once, by one thread.
+ */
+public class LoginFlow {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginFlow.class);
+
+    private final ISAAccess saAccess;
+    private final Executor executor;
+    private final String userId;
+    private final Map<LoginCheck, Step<?>> steps = new EnumMap<>(LoginCheck.class);
+
+    /**
+     * @param saAccess the access used by the checks
+     * @param executor the executor running the checks, it needs a thread per
+     *                 check for them to run concurrently
+     * @param userId   the user logging in
+     */
+    public LoginFlow(ISAAccess saAccess, Executor executor, String userId) {
+        this.saAccess = saAccess;
+        this.executor = executor;
+        this.userId = userId;
+    }
+
+    public LoginFlow ipEvaluation(String ipAddress) {
+        return ipEvaluation(ipAddress, null);
+    }
+
+    /**
+     * Adds the iPEvaluation check.
+     *
+     * @param ipAddress the IP address of the user
+     * @param veto      true when the evaluation must deny the login, may be null
+     * @return this flow
+     */
+    public LoginFlow ipEvaluation(String ipAddress, Predicate<? super IPEval> veto) {
+        return check(LoginCheck.IP_EVALUATION, () -> saAccess.iPEvaluation(userId, ipAddress), veto);
+    }
+
+    public LoginFlow dfpScore(DFP fingerprint) {
+        return dfpScore(fingerprint, null);
+    }
+
+    /**
+     * Adds the DFPScoreFingerprint check.
+     *
+     * @param fingerprint the fingerprint of the user, with the IP address of the
+     *                    user
+     * @param veto        true when the score must deny the login, may be null
+     * @return this flow
+     */
+    public LoginFlow dfpScore(DFP fingerprint, Predicate<? super DFPValidateResponse> veto) {
+        return check(LoginCheck.DFP_SCORE, () -> saAccess.DFPScoreFingerprint(fingerprint), veto);
+    }
+
+    public LoginFlow behaveBio(String behaviorProfile, String hostAddress, String userAgent) {
+        return behaveBio(behaviorProfile, hostAddress, userAgent, null);
+    }
+
+    /**
+     * Adds the BehaveBioProfileSubmit check.
+     *
+     * @param behaviorProfile the behavioral profile of the user
+     * @param hostAddress     the IP address of the user
+     * @param userAgent       the browser user agent of the user
+     * @param veto            true when the result must deny the login, may be
+     *                        null
+     * @return this flow
+     */
+    public LoginFlow behaveBio(String behaviorProfile, String hostAddress, String userAgent,
+            Predicate<? super BehaveBioResponse> veto) {
+        return check(LoginCheck.BEHAVE_BIO,
+                () -> saAccess.BehaveBioProfileSubmit(userId, behaviorProfile, hostAddress, userAgent), veto);
+    }
+
+    public LoginFlow adaptiveAuth(String endUserIP) {
+        return adaptiveAuth(endUserIP, null);
+    }
+
+    /**
+     * Adds the adaptiveAuthQuery check.
+     *
+     * @param endUserIP the IP address of the user
+     * @param veto      true when the response must deny the login, may be null
+     * @return this flow
+     */
+    public LoginFlow adaptiveAuth(String endUserIP, Predicate<? super AdaptiveAuthResponse> veto) {
+        return check(LoginCheck.ADAPTIVE_AUTH, () -> saAccess.adaptiveAuthQuery(userId, endUserIP), veto);
+    }
+
+    public LoginFlow factors() {
+        return factors(null);
+    }
+
+    /**
+     * Adds the factorsByUserV3 check.
+     *
+     * @param veto true when the factors must deny the login, may be null
+     * @return this flow
+     */
+    public LoginFlow factors(Predicate<? super FactorsResponse> veto) {
+        return check(LoginCheck.FACTORS, () -> saAccess.factorsByUserV3(userId), veto);
+    }
+
+    <T> LoginFlow check(LoginCheck check, Supplier<T> call, Predicate<? super T> veto) {
+        this.steps.put(check, new Step<>(call, veto));
+        return this;
+    }
+
+    /**
+     * Runs the declared checks concurrently.
+     *
+     * @param timeout the deadline of the whole flow
+     * @param unit    time unit of the timeout
+     * @return the combined verdict
+     */
+    public LoginVerdict run(long timeout, TimeUnit unit) {
+        long start = System.nanoTime();
+        long deadline = start + unit.toNanos(timeout);
+        CompletionService<Object> completion = new ExecutorCompletionService<>(this.executor);
+        Map<Future<Object>, LoginCheck> running = new HashMap<>();
+        for (Map.Entry<LoginCheck, Step<?>> step : this.steps.entrySet()) {
+            running.put(completion.submit(step.getValue()::call), step.getKey());
+        }
+
+        Map<LoginCheck, Object> responses = new EnumMap<>(LoginCheck.class);
+        Set<LoginCheck> failed = EnumSet.noneOf(LoginCheck.class);
+        LoginCheck vetoedBy = null;
+        try {
+            while (!running.isEmpty() && vetoedBy == null) {
+                Future<Object> done = completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    break;
+                }
+                LoginCheck check = running.remove(done);
+                Object response = result(check, done);
+                if (response == null) {
+                    failed.add(check);
+                    continue;
+                }
+                responses.put(check, response);
+                if (this.steps.get(check).vetoes(response)) {
+                    vetoedBy = check;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Set<LoginCheck> abandoned = EnumSet.noneOf(LoginCheck.class);
+        for (Map.Entry<Future<Object>, LoginCheck> pending : running.entrySet()) {
+            pending.getKey().cancel(true);
+            abandoned.add(pending.getValue());
+        }
+        return new LoginVerdict(vetoedBy, responses, failed, abandoned, System.nanoTime() - start);
+    }
+
+    private Object result(LoginCheck check, Future<Object> done) {
+        try {
+            return done.get();
+        } catch (ExecutionException e) {
+            logger.error(new StringBuilder().append("Login check ").append(check).append(" failed::\n")
+                    .append(e.getCause().getMessage()).append("\n").toString(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private static class Step<T> {
+        private final Supplier<T> call;
+        private final Predicate<? super T> veto;
+
+        Step(Supplier<T> call, Predicate<? super T> veto) {
+            this.call = call;
+            this.veto = veto;
+        }
+
+        Object call() {
+            return this.call.get();
+        }
+
+        @SuppressWarnings("unchecked")
+        boolean vetoes(Object response) {
+            return this.veto != null && this.veto.test((T) response);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.secureauth.sarestapi.flow;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.secureauth.sarestapi.data.IPEval;
+import org.secureauth.sarestapi.data.Response.AdaptiveAuthResponse;
+import org.secureauth.sarestapi.data.Response.BehaveBioResponse;
+import org.secureauth.sarestapi.data.Response.DFPValidateResponse;
+import org.secureauth.sarestapi.data.Response.FactorsResponse;
+
+/**
+ * <p>
+ * Combined result of the checks of a {@link LoginFlow}.
+ * </p>
+ * <p>
+ * The decision is DENY when a check vetoed the login, INCOMPLETE when the
+ * deadline was hit or a check failed (exception or no response) and ALLOW when
+ * every check completed without a veto. The responses of the completed checks
+ * are available whatever the decision.
+ * </p>
+ */
+public class LoginVerdict {
+
+    public enum Decision {
+        ALLOW, DENY, INCOMPLETE
+    }
+
+    private final Decision decision;
+    private final LoginCheck vetoedBy;
+    private final Map<LoginCheck, Object> responses;
+    private final Set<LoginCheck> failed;
+    private final Set<LoginCheck> abandoned;
+    private final long elapsedNanos;
+
+    LoginVerdict(LoginCheck vetoedBy, Map<LoginCheck, Object> responses, Set<LoginCheck> failed,
+            Set<LoginCheck> abandoned, long elapsedNanos) {
+        if (vetoedBy != null) {
+            this.decision = Decision.DENY;
+        } else if (!failed.isEmpty() || !abandoned.isEmpty()) {
+            this.decision = Decision.INCOMPLETE;
+        } else {
+            this.decision = Decision.ALLOW;
+        }
+        this.vetoedBy = vetoedBy;
+        this.responses = Collections.unmodifiableMap(responses);
+        this.failed = Collections.unmodifiableSet(failed);
+        this.abandoned = Collections.unmodifiableSet(abandoned);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public Decision getDecision() {
+        return decision;
+    }
+
+    /**
+     * @return the check that vetoed the login, null when none did
+     */
+    public LoginCheck getVetoedBy() {
+        return vetoedBy;
+    }
+
+    /**
+     * @return the checks that threw or returned no response
+     */
+    public Set<LoginCheck> getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return the checks still running at the deadline or at a veto, their
+     *         results are not waited for
+     */
+    public Set<LoginCheck> getAbandoned() {
+        return abandoned;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    /**
+     * @param check the check
+     * @return the response of the check, null when it did not complete
+     */
+    public Object getResponse(LoginCheck check) {
+        return responses.get(check);
+    }
+
+    public IPEval getIpEval() {
+        return (IPEval) responses.get(LoginCheck.IP_EVALUATION);
+    }
+
+    public DFPValidateResponse getDfpScore() {
+        return (DFPValidateResponse) responses.get(LoginCheck.DFP_SCORE);
+    }
+
+    public BehaveBioResponse getBehaveBio() {
+        return (BehaveBioResponse) responses.get(LoginCheck.BEHAVE_BIO);
+    }
+
+    public AdaptiveAuthResponse getAdaptiveAuth() {
+        return (AdaptiveAuthResponse) responses.get(LoginCheck.ADAPTIVE_AUTH);
+    }
+
+    public FactorsResponse getFactors() {
+        return (FactorsResponse) responses.get(LoginCheck.FACTORS);
+    }
+
+    @Override
+    public String toString() {
+        return "LoginVerdict{decision=" + decision + ", vetoedBy=" + vetoedBy + ", completed=" + responses.keySet()
+                + ", failed=" + failed + ", abandoned=" + abandoned + ", elapsedMillis=" + getElapsedMillis() + '}';
+    }
+}
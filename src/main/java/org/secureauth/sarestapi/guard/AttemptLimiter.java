@@ -0,0 +1,133 @@
+package org.secureauth.sarestapi.guard;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.secureauth.sarestapi.resources.Resource;
+
+import com.google.common.base.Ticker;
+
+/**
+ * <p>
+ * Local limit of the credential validation attempts (password, OTP, OATH and
+ * KBA) per user id and per end user IP address over a sliding window. Attempts
+ * over a limit are rejected before reaching the network. Every attempt is
+ * counted, the rejected ones too, before it is checked against the limits, so
+ * the attempts of a concurrent burst can not all pass on the same count.
+ * </p>
+ * <p>
+ * The attempts of a user are forgotten after a successful validation and when
+ * the appliance throttle of the user is reset through the SDK, without lowering
+ * the counts of the other users. The counts are approximate: they are kept in
+ * fixed size sketches of lock-free counters, so memory does not grow with the
+ * number of users and addresses, and a count can be slightly higher than the
+ * real one but never lower.
+ * </p>
+ */
+public class AttemptLimiter {
+
+    public static final String REJECTED_MESSAGE = "Too many attempts, try again later.";
+    private static final int DEFAULT_WIDTH = 1 << 16;
+
+    private final int maxAttemptsPerUser;
+    private final int maxAttemptsPerIp;
+    private final SlidingWindowCounter users;
+    private final SlidingWindowCounter ips;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param window             length of the sliding window
+     * @param unit               time unit of the window
+     * @param maxAttemptsPerUser attempts allowed per user id in the window, 0
+     *                           for no limit
+     * @param maxAttemptsPerIp   attempts allowed per end user IP address in the
+     *                           window, 0 for no limit
+     */
+    public AttemptLimiter(long window, TimeUnit unit, int maxAttemptsPerUser, int maxAttemptsPerIp) {
+        this(window, unit, maxAttemptsPerUser, maxAttemptsPerIp, DEFAULT_WIDTH, Ticker.systemTicker());
+    }
+
+    AttemptLimiter(long window, TimeUnit unit, int maxAttemptsPerUser, int maxAttemptsPerIp, int width,
+            Ticker ticker) {
+        if (maxAttemptsPerUser < 0 || maxAttemptsPerIp < 0) {
+            throw new IllegalArgumentException("Max attempts can not be negative.");
+        }
+        this.maxAttemptsPerUser = maxAttemptsPerUser;
+        this.maxAttemptsPerIp = maxAttemptsPerIp;
+        this.users = new SlidingWindowCounter(width, unit.toNanos(window), ticker);
+        this.ips = new SlidingWindowCounter(width, unit.toNanos(window), ticker);
+    }
+
+    /**
+     * Counts an attempt and checks the user and the address against their limits.
+     *
+     * @param realm     the realm of the user
+     * @param userId    the user id
+     * @param enduserIp the end user IP address, null or empty when unknown
+     * @return true when the attempt can be sent to the appliance
+     */
+    public boolean tryAcquire(String realm, String userId, String enduserIp) {
+        boolean checkUser = this.maxAttemptsPerUser > 0 && userId != null;
+        boolean checkIp = this.maxAttemptsPerIp > 0 && enduserIp != null && !enduserIp.isEmpty();
+        boolean overUser = checkUser && this.users.increment(userKey(realm, userId)) > this.maxAttemptsPerUser;
+        boolean overIp = checkIp && this.ips.increment(enduserIp) > this.maxAttemptsPerIp;
+        if (overUser || overIp) {
+            this.rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Forgets the attempts of the user when the validation succeeded.
+     *
+     * @param realm  the realm of the user
+     * @param userId the user id
+     * @param status the status returned by the appliance
+     */
+    public void onResult(String realm, String userId, String status) {
+        if (Resource.STATUS_VALID.equalsIgnoreCase(status) || Resource.STATUS_VERIFIED.equalsIgnoreCase(status)) {
+            reset(realm, userId);
+        }
+    }
+
+    /**
+     * Forgets the attempts of the user.
+     *
+     * @param realm  the realm of the user
+     * @param userId the user id
+     */
+    public void reset(String realm, String userId) {
+        if (userId != null) {
+            this.users.reset(userKey(realm, userId));
+        }
+    }
+
+    /**
+     * @param realm  the realm of the user
+     * @param userId the user id
+     * @return approximate number of attempts of the user in the window
+     */
+    public double getUserAttempts(String realm, String userId) {
+        return this.users.estimate(userKey(realm, userId));
+    }
+
+    /**
+     * @param enduserIp the end user IP address
+     * @return approximate number of attempts from the address in the window
+     */
+    public double getIpAttempts(String enduserIp) {
+        return this.ips.estimate(enduserIp);
+    }
+
+    /**
+     * @return number of attempts rejected locally
+     */
+    public long getRejectedCount() {
+        return this.rejected.sum();
+    }
+
+    private static String userKey(String realm, String userId) {
+        return realm + '|' + userId;
+    }
+}
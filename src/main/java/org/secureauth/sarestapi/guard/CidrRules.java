@@ -0,0 +1,209 @@
+package org.secureauth.sarestapi.guard;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.secureauth.sarestapi.data.IPEval;
+import org.secureauth.sarestapi.data.IPEvaluation;
+import org.secureauth.sarestapi.data.Response.AdaptiveAuthResponse;
+import org.secureauth.sarestapi.resources.Resource;
+import org.secureauth.sarestapi.util.IPPrefix;
+import org.secureauth.sarestapi.util.IPPrefixTrie;
+
+/**
+ * <p>
+ * Local allow/deny rules for IPv4 and IPv6 ranges (CIDR blocks), checked before
+ * asking the appliance for an IP evaluation or an adaptive auth query. An
+ * address matching a rule is answered locally with a synthetic response built
+ * from the verdict of the most specific (longest prefix) rule.
+ * </p>
+ * <p>
+ * The rules are kept in a radix trie that is rebuilt on every reload and then
+ * swapped in, so lookups never wait for a reload and always see either the old
+ * or the new rules. A reload with an invalid rule keeps the old rules.
+ * </p>
+ * <p>
+ * Rules are written one per line as "&lt;verdict&gt; &lt;cidr&gt;", for example
+ * "allow 10.0.0.0/8" or "deny 2001:db8:bad::/48". Blank lines and lines
+ * starting with # are ignored. The verdicts "allow" and "deny" are always
+ * available, others can be registered with {@link #registerVerdict}.
+ * </p>
+ */
+public class CidrRules {
+
+    static final String METHOD = "cidr_rule";
+
+    private final Map<String, CidrVerdict> verdicts = new ConcurrentHashMap<>();
+    private final LongAdder matches = new LongAdder();
+    private volatile IPPrefixTrie<Rule> rules = new IPPrefixTrie<>();
+
+    public CidrRules() {
+        this.verdicts.put(key(CidrVerdict.ALLOW), CidrVerdict.ALLOW);
+        this.verdicts.put(key(CidrVerdict.DENY), CidrVerdict.DENY);
+    }
+
+    /**
+     * Makes the verdict available to the rules, replacing the verdict with the
+     * same name. Rules already loaded keep their verdict until the next reload.
+     *
+     * @param verdict the verdict
+     */
+    public void registerVerdict(CidrVerdict verdict) {
+        this.verdicts.put(key(verdict), verdict);
+    }
+
+    /**
+     * Replace the rules with the rules of the file.
+     *
+     * @param file the rules file
+     * @throws IOException              when the file can not be read
+     * @throws IllegalArgumentException when a rule is not valid, the old rules
+     *                                  are kept
+     */
+    public void reload(Path file) throws IOException {
+        reload(Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Replace the rules.
+     *
+     * @param lines the rules, one per line
+     * @throws IllegalArgumentException when a rule is not valid, the old rules
+     *                                  are kept
+     */
+    public void reload(List<String> lines) {
+        IPPrefixTrie<Rule> trie = new IPPrefixTrie<>();
+        int number = 0;
+        for (String line : lines) {
+            number++;
+            String rule = line.trim();
+            if (rule.isEmpty() || rule.startsWith("#")) {
+                continue;
+            }
+            String[] parts = rule.split("\\s+");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid CIDR rule at line " + number + ": " + rule);
+            }
+            CidrVerdict verdict = this.verdicts.get(parts[0].toLowerCase(Locale.ROOT));
+            if (verdict == null) {
+                throw new IllegalArgumentException("Unknown verdict at line " + number + ": " + parts[0]);
+            }
+            IPPrefix range;
+            try {
+                range = IPPrefix.parse(parts[1]);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid CIDR block at line " + number + ": " + parts[1], e);
+            }
+            trie.put(range, new Rule(range, verdict));
+        }
+        this.rules = trie;
+    }
+
+    /**
+     * @param ipAddress the address
+     * @return the verdict of the most specific rule matching the address, null
+     *         when no rule matches or the address is not valid
+     */
+    public CidrVerdict match(String ipAddress) {
+        Rule rule = find(ipAddress);
+        return rule == null ? null : rule.verdict;
+    }
+
+    /**
+     * @param userId    the user of the request
+     * @param ipAddress the evaluated address
+     * @return a synthetic IP evaluation when a rule matches the address, null
+     *         otherwise
+     */
+    public IPEval evaluate(String userId, String ipAddress) {
+        Rule rule = find(ipAddress);
+        if (rule == null) {
+            return null;
+        }
+        this.matches.increment();
+        IPEvaluation evaluation = new IPEvaluation();
+        evaluation.setMethod(METHOD);
+        evaluation.setIp(ipAddress);
+        evaluation.setRisk_factor(rule.verdict.getRiskFactor());
+        evaluation.setRisk_color(rule.verdict.getRiskColor());
+        evaluation.setRisk_desc(rule.verdict.getRiskDescription());
+        IPEval eval = new IPEval();
+        eval.setStatus(Resource.STATUS_FOUND);
+        eval.setMessage(message(rule));
+        eval.setUser_id(userId);
+        eval.setIp_evaluation(evaluation);
+        return eval;
+    }
+
+    /**
+     * @param userId    the user of the request
+     * @param ipAddress the address of the client
+     * @return a synthetic adaptive auth response when a rule matches the
+     *         address, null otherwise
+     */
+    public AdaptiveAuthResponse adaptiveAuth(String userId, String ipAddress) {
+        Rule rule = find(ipAddress);
+        if (rule == null) {
+            return null;
+        }
+        this.matches.increment();
+        AdaptiveAuthResponse response = new AdaptiveAuthResponse();
+        response.setStatus(Resource.STATUS_FOUND);
+        response.setMessage(message(rule));
+        response.setUser_id(userId);
+        response.setSuggested_action(rule.verdict.getSuggestedAction());
+        return response;
+    }
+
+    /**
+     * @return number of loaded rules
+     */
+    public int getRuleCount() {
+        return this.rules.size();
+    }
+
+    /**
+     * @return number of addresses answered locally
+     */
+    public long getMatchCount() {
+        return this.matches.sum();
+    }
+
+    private Rule find(String ipAddress) {
+        if (ipAddress == null) {
+            return null;
+        }
+        IPPrefix address;
+        try {
+            address = IPPrefix.of(ipAddress, IPPrefix.IPV4_BITS, IPPrefix.IPV6_BITS);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return this.rules.longestMatch(address);
+    }
+
+    private static String key(CidrVerdict verdict) {
+        return verdict.getName().toLowerCase(Locale.ROOT);
+    }
+
+    private static String message(Rule rule) {
+        return "Evaluated locally: " + rule.verdict.getName() + " " + rule.range;
+    }
+
+    private static class Rule {
+        private final IPPrefix range;
+        private final CidrVerdict verdict;
+
+        Rule(IPPrefix range, CidrVerdict verdict) {
+            this.range = range;
+            this.verdict = verdict;
+        }
+    }
+}
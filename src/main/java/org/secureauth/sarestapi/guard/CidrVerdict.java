@@ -0,0 +1,61 @@
+package org.secureauth.sarestapi.guard;
+
+/**
+ * <p>
+ * The answer given locally by {@link CidrRules} for the addresses of a range:
+ * the risk reported in the synthetic IPEval and the action suggested in the
+ * synthetic AdaptiveAuthResponse.
+ * </p>
+ */
+public class CidrVerdict {
+
+    public static final CidrVerdict ALLOW = new CidrVerdict("allow", 0, "green", "Known trusted range", "CONTINUE");
+    public static final CidrVerdict DENY = new CidrVerdict("deny", 100, "red", "Known malicious range", "DENY");
+
+    private final String name;
+    private final int riskFactor;
+    private final String riskColor;
+    private final String riskDescription;
+    private final String suggestedAction;
+
+    /**
+     * @param name            the verdict name used in rule files
+     * @param riskFactor      risk factor of the synthetic IPEval
+     * @param riskColor       risk color of the synthetic IPEval
+     * @param riskDescription risk description of the synthetic IPEval
+     * @param suggestedAction suggested action of the synthetic
+     *                        AdaptiveAuthResponse
+     */
+    public CidrVerdict(String name, int riskFactor, String riskColor, String riskDescription, String suggestedAction) {
+        this.name = name;
+        this.riskFactor = riskFactor;
+        this.riskColor = riskColor;
+        this.riskDescription = riskDescription;
+        this.suggestedAction = suggestedAction;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getRiskFactor() {
+        return riskFactor;
+    }
+
+    public String getRiskColor() {
+        return riskColor;
+    }
+
+    public String getRiskDescription() {
+        return riskDescription;
+    }
+
+    public String getSuggestedAction() {
+        return suggestedAction;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,155 @@
+package org.secureauth.sarestapi.guard;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.secureauth.sarestapi.data.Response.ResponseObject;
+import org.secureauth.sarestapi.resources.Resource;
+
+import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * <p>
+ * Makes the OTP deliveries idempotent within a window. A delivery to the same
+ * user, destination (factor id or ad hoc address) and channel as one in flight
+ * or done within the window of its channel is not sent again: the caller gets
+ * the response of that delivery instead.
+ * </p>
+ * <p>
+ * Only successful ("valid") deliveries are remembered, so a failed delivery
+ * can be retried right away. Responses are shared between callers and must be
+ * treated as read only.
+ * </p>
+ */
+public class OTPDeliveryGuard {
+
+    /**
+     * The delivery channels, each one with its own window.
+     */
+    public enum Channel {
+        SMS, CALL, EMAIL, PUSH, HELP_DESK,
+        /** The OTP emailed to the help desk, a different delivery than HELP_DESK. */
+        HELP_DESK_EMAIL
+    }
+
+    private final long maximumSize;
+    private final Ticker ticker;
+    private final Map<Channel, Cache<String, ResponseObject>> deliveries = new ConcurrentHashMap<>();
+    private final LongAdder deduplicated = new LongAdder();
+
+    /**
+     * @param window      window of every channel, 0 disables the guard until a
+     *                    channel window is set
+     * @param unit        time unit of the window
+     * @param maximumSize maximum number of remembered deliveries per channel
+     */
+    public OTPDeliveryGuard(long window, TimeUnit unit, long maximumSize) {
+        this(window, unit, maximumSize, Ticker.systemTicker());
+    }
+
+    OTPDeliveryGuard(long window, TimeUnit unit, long maximumSize, Ticker ticker) {
+        checkWindow(window);
+        this.maximumSize = maximumSize;
+        this.ticker = ticker;
+        if (window > 0) {
+            for (Channel channel : Channel.values()) {
+                this.deliveries.put(channel, newCache(window, unit));
+            }
+        }
+    }
+
+    /**
+     * Changes the window of a channel. The deliveries remembered for the channel
+     * are forgotten.
+     *
+     * @param channel the channel
+     * @param window  the new window, 0 disables the guard for the channel
+     * @param unit    time unit of the window
+     */
+    public void setWindow(Channel channel, long window, TimeUnit unit) {
+        checkWindow(window);
+        if (window == 0) {
+            this.deliveries.remove(channel);
+            return;
+        }
+        this.deliveries.put(channel, newCache(window, unit));
+    }
+
+    /**
+     * Delivers the OTP unless the same delivery is in flight or was done within
+     * the window of the channel. Concurrent callers of the same delivery wait for
+     * the one sending it.
+     *
+     * @param realm       the realm of the user
+     * @param userId      the user id
+     * @param channel     the delivery channel
+     * @param destination the factor id or the ad hoc address
+     * @param delivery    the request sending the OTP, it may return null
+     * @return the response of the delivery, or null when the delivery returned
+     *         null
+     */
+    public ResponseObject deliver(String realm, String userId, Channel channel, String destination,
+            Supplier<ResponseObject> delivery) {
+        Cache<String, ResponseObject> cache = this.deliveries.get(channel);
+        if (cache == null) {
+            return delivery.get();
+        }
+        String key = realm + '|' + userId + '|' + destination;
+        boolean[] sent = new boolean[1];
+        ResponseObject response;
+        try {
+            response = cache.get(key, () -> {
+                sent[0] = true;
+                return delivery.get();
+            });
+        } catch (InvalidCacheLoadException e) {
+            // the delivery returned null, nothing is remembered.
+            return null;
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        } catch (UncheckedExecutionException | ExecutionError e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+        if (!sent[0]) {
+            this.deduplicated.increment();
+        }
+        if (!Resource.STATUS_VALID.equalsIgnoreCase(response.getStatus())) {
+            cache.asMap().remove(key, response);
+        }
+        return response;
+    }
+
+    /**
+     * @return number of deliveries answered with the response of a previous or
+     *         in flight one
+     */
+    public long getDeduplicatedCount() {
+        return this.deduplicated.sum();
+    }
+
+    private Cache<String, ResponseObject> newCache(long window, TimeUnit unit) {
+        return CacheBuilder.newBuilder()
+                .expireAfterWrite(window, unit)
+                .maximumSize(this.maximumSize)
+                .ticker(this.ticker)
+                .build();
+    }
+
+    private static void checkWindow(long window) {
+        if (window < 0) {
+            throw new IllegalArgumentException("Window can not be negative.");
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.secureauth.sarestapi.guard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * <p>
+ * Approximate sliding window event counter for an unbounded number of keys in
+ * a fixed amount of memory.
+ * </p>
+ * <p>
+ * The counts are kept in a count-min sketch: striped arrays of lock-free
+ * counters where every key is hashed to one counter per row, and the count of
+ * a key is the smallest of its counters. Keys sharing counters can only make
+ * a count higher, never lower. The sliding window is approximated with two
+ * fixed windows: the count of the previous window weighted by the part of it
+ * still inside the sliding window, plus the count of the current one.
+ * </p>
+ * <p>
+ * A reset never lowers the shared counters: the counts of the key at the time
+ * of the reset are kept aside, exactly, and left out of its later counts until
+ * they leave the sliding window.
+ * </p>
+ */
+class SlidingWindowCounter {
+
+    private static final int DEPTH = 4;
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final int width;
+    private final long windowNanos;
+    private final Ticker ticker;
+    // the counts of the reset keys, per key.
+    private final Cache<String, Mark> resets;
+    private volatile Epochs epochs;
+
+    /**
+     * @param width       counters per row, rounded up to a power of two
+     * @param windowNanos length of the sliding window
+     * @param ticker      time source
+     */
+    SlidingWindowCounter(int width, long windowNanos, Ticker ticker) {
+        if (width < 1 || windowNanos <= 0) {
+            throw new IllegalArgumentException("Width and window must be positive.");
+        }
+        int powerOfTwo = Integer.highestOneBit(width);
+        this.width = powerOfTwo < width ? powerOfTwo << 1 : powerOfTwo;
+        this.windowNanos = windowNanos;
+        this.ticker = ticker;
+        // a mark is of no use after two windows; an evicted mark only makes a count higher.
+        this.resets = CacheBuilder.newBuilder().ticker(ticker).maximumSize(this.width)
+                .expireAfterWrite(2 * windowNanos, TimeUnit.NANOSECONDS).build();
+        long epoch = Math.floorDiv(ticker.read(), windowNanos);
+        this.epochs = new Epochs(epoch, new AtomicIntegerArray(DEPTH * this.width),
+                new AtomicIntegerArray(DEPTH * this.width));
+    }
+
+    /**
+     * Counts an event for the key.
+     *
+     * @param key the key
+     * @return the count of the key in the sliding window, including this event
+     */
+    double increment(String key) {
+        long now = this.ticker.read();
+        Epochs current = epochs(now);
+        int[] slots = slots(key);
+        int count = Integer.MAX_VALUE;
+        for (int slot : slots) {
+            count = Math.min(count, current.current.incrementAndGet(slot));
+        }
+        return weighted(current, key, slots, count, now);
+    }
+
+    /**
+     * @param key the key
+     * @return the count of the key in the sliding window
+     */
+    double estimate(String key) {
+        long now = this.ticker.read();
+        Epochs current = epochs(now);
+        int[] slots = slots(key);
+        return weighted(current, key, slots, min(current.current, slots), now);
+    }
+
+    /**
+     * Forgets the events of the key, the counts of the other keys are left as
+     * they are.
+     *
+     * @param key the key
+     */
+    void reset(String key) {
+        Epochs current = epochs(this.ticker.read());
+        int[] slots = slots(key);
+        this.resets.put(key, new Mark(current.index, min(current.previous, slots), min(current.current, slots)));
+    }
+
+    private double weighted(Epochs epochs, String key, int[] slots, int current, long now) {
+        int previous = min(epochs.previous, slots);
+        Mark mark = this.resets.size() == 0 ? null : this.resets.getIfPresent(key);
+        // the counters only grow within a window, so the counts after the mark are never lowered.
+        if (mark != null && mark.index == epochs.index) {
+            previous = Math.max(0, previous - mark.previous);
+            current = Math.max(0, current - mark.current);
+        } else if (mark != null && mark.index == epochs.index - 1) {
+            previous = Math.max(0, previous - mark.current);
+        }
+        if (previous == 0) {
+            return current;
+        }
+        double elapsed = (double) (now - epochs.index * this.windowNanos) / this.windowNanos;
+        return previous * Math.max(0, 1 - elapsed) + current;
+    }
+
+    private Epochs epochs(long now) {
+        long index = Math.floorDiv(now, this.windowNanos);
+        Epochs current = this.epochs;
+        if (current.index == index) {
+            return current;
+        }
+        synchronized (this) {
+            current = this.epochs;
+            if (current.index != index) {
+                // the previous window is only kept when it is the one right before.
+                AtomicIntegerArray previous = current.index == index - 1 ? current.current
+                        : new AtomicIntegerArray(DEPTH * this.width);
+                current = new Epochs(index, new AtomicIntegerArray(DEPTH * this.width), previous);
+                this.epochs = current;
+            }
+            return current;
+        }
+    }
+
+    private int[] slots(String key) {
+        long hash = HASH.hashString(key, StandardCharsets.UTF_8).asLong();
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        int[] slots = new int[DEPTH];
+        for (int row = 0; row < DEPTH; row++) {
+            slots[row] = row * this.width + ((h1 + row * h2) & (this.width - 1));
+        }
+        return slots;
+    }
+
+    private static int min(AtomicIntegerArray counters, int[] slots) {
+        int min = Integer.MAX_VALUE;
+        for (int slot : slots) {
+            min = Math.min(min, counters.get(slot));
+        }
+        return min;
+    }
+
+    private static class Epochs {
+        private final long index;
+        private final AtomicIntegerArray current;
+        private final AtomicIntegerArray previous;
+
+        Epochs(long index, AtomicIntegerArray current, AtomicIntegerArray previous) {
+            this.index = index;
+            this.current = current;
+            this.previous = previous;
+        }
+    }
+
+    private static class Mark {
+        private final long index;
+        private final int previous;
+        private final int current;
+
+        Mark(long index, int previous, int current) {
+            this.index = index;
+            this.previous = previous;
+            this.current = current;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.secureauth.sarestapi.guard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.base.Ticker;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * <p>
+ * Bounded, time windowed set of the (user, token) pairs recently submitted for
+ * validation, used to reject double submits and replays of one time tokens
+ * (OTP, Yubico OTP) without querying the appliance.
+ * </p>
+ * <p>
+ * Only a 64 bit fingerprint and the expiry time of each pair are kept, in
+ * primitive arrays with open addressing, so there is no object per entry. The
+ * table is split into segments with their own lock. A pair is found within a
+ * few probes; when all of them are taken by live pairs the one closest to its
+ * expiry is replaced, so the cache never grows past its capacity and under
+ * pressure a pair may be forgotten before the end of the window.
+ * </p>
+ */
+public class TokenReplayCache {
+
+    public static final String REPLAYED_MESSAGE = "Token already used.";
+    private static final int SEGMENTS = 64;
+    private static final int MAX_PROBES = 16;
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long windowNanos;
+    private final Ticker ticker;
+    private final LongAdder replays = new LongAdder();
+
+    /**
+     * @param window   how long a submitted token is remembered
+     * @param unit     time unit of the window
+     * @param capacity maximum number of remembered tokens, rounded up to a power
+     *                 of two
+     */
+    public TokenReplayCache(long window, TimeUnit unit, int capacity) {
+        this(window, unit, capacity, Ticker.systemTicker());
+    }
+
+    TokenReplayCache(long window, TimeUnit unit, int capacity, Ticker ticker) {
+        if (window <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Window and capacity must be positive.");
+        }
+        int perSegment = Math.max(MAX_PROBES, Integer.highestOneBit(Math.max(1, (capacity - 1) / SEGMENTS)) << 1);
+        for (int i = 0; i < SEGMENTS; i++) {
+            this.segments[i] = new Segment(perSegment);
+        }
+        this.windowNanos = unit.toNanos(window);
+        this.ticker = ticker;
+    }
+
+    /**
+     * Records the token of the user unless it was already submitted within the
+     * window.
+     *
+     * @param realm  the realm of the user
+     * @param userId the user id
+     * @param token  the submitted token
+     * @return true when it is the first submission of the token, false for a
+     *         replay
+     */
+    public boolean tryConsume(String realm, String userId, String token) {
+        long fingerprint = fingerprint(realm, userId, token);
+        boolean first = segment(fingerprint).add(fingerprint, this.ticker.read(), this.windowNanos);
+        if (!first) {
+            this.replays.increment();
+        }
+        return first;
+    }
+
+    /**
+     * Forgets the token, so it can be submitted again. Used when its validation
+     * could not reach the appliance.
+     *
+     * @param realm  the realm of the user
+     * @param userId the user id
+     * @param token  the submitted token
+     */
+    public void release(String realm, String userId, String token) {
+        long fingerprint = fingerprint(realm, userId, token);
+        segment(fingerprint).remove(fingerprint);
+    }
+
+    /**
+     * @return number of replays rejected
+     */
+    public long getReplayCount() {
+        return this.replays.sum();
+    }
+
+    /**
+     * @return number of slots of the table
+     */
+    public int getCapacity() {
+        return SEGMENTS * this.segments[0].fingerprints.length;
+    }
+
+    private Segment segment(long fingerprint) {
+        return this.segments[(int) (fingerprint >>> 58) & (SEGMENTS - 1)];
+    }
+
+    private static long fingerprint(String realm, String userId, String token) {
+        long fingerprint = HASH.newHasher()
+                .putString(String.valueOf(realm), StandardCharsets.UTF_8).putByte((byte) 0)
+                .putString(String.valueOf(userId), StandardCharsets.UTF_8).putByte((byte) 0)
+                .putString(String.valueOf(token), StandardCharsets.UTF_8)
+                .hash().asLong();
+        // 0 marks the empty slots.
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    private static class Segment {
+        private final long[] fingerprints;
+        private final long[] expiries;
+        private final int mask;
+
+        Segment(int size) {
+            this.fingerprints = new long[size];
+            this.expiries = new long[size];
+            this.mask = size - 1;
+        }
+
+        synchronized boolean add(long fingerprint, long now, long windowNanos) {
+            int start = (int) fingerprint & this.mask;
+            int free = -1;
+            int oldest = start;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int slot = (start + probe) & this.mask;
+                long current = this.fingerprints[slot];
+                boolean live = current != 0 && this.expiries[slot] - now > 0;
+                if (live && current == fingerprint) {
+                    return false;
+                }
+                if (!live) {
+                    if (free < 0) {
+                        free = slot;
+                    }
+                } else if (this.expiries[slot] - this.expiries[oldest] < 0) {
+                    oldest = slot;
+                }
+            }
+            int slot = free >= 0 ? free : oldest;
+            this.fingerprints[slot] = fingerprint;
+            this.expiries[slot] = now + windowNanos;
+            return true;
+        }
+
+        synchronized void remove(long fingerprint) {
+            int start = (int) fingerprint & this.mask;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int slot = (start + probe) & this.mask;
+                if (this.fingerprints[slot] == fingerprint) {
+                    this.fingerprints[slot] = 0;
+                    return;
+                }
+            }
+        }
+    }
+}
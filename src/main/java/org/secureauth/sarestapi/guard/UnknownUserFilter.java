@@ -0,0 +1,183 @@
+package org.secureauth.sarestapi.guard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.secureauth.sarestapi.data.Response.BaseResponse;
+import org.secureauth.sarestapi.resources.Resource;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+/**
+ * <p>
+ * Time decaying Bloom filter of the user ids recently confirmed as nonexistent
+ * by the appliance, used to answer "not found" locally while a credential
+ * stuffing wave keeps trying the same unknown user ids.
+ * </p>
+ * <p>
+ * The filter is made of two generations of Bloom filters. New user ids are
+ * added to the current generation and lookups check both. Every half window
+ * the old generation is dropped and a new one started, so a user id is
+ * answered locally for at least half a window and at most a whole window after
+ * it was last confirmed unknown.
+ * </p>
+ * <p>
+ * Bloom filters can return false positives: with the configured probability an
+ * existing user id can be answered "not found". Keep the probability low. User
+ * ids created (or otherwise written) through the SDK are removed from the
+ * filter by remembering them for a window, during which they are never answered
+ * locally.
+ * </p>
+ */
+public class UnknownUserFilter {
+
+    static final String NOT_FOUND_MESSAGE = "User Id was not found.";
+
+    private final long expectedInsertions;
+    private final double falsePositiveProbability;
+    private final long rotationNanos;
+    private final Ticker ticker;
+    private final Cache<String, Boolean> forgotten;
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder answered = new LongAdder();
+
+    private volatile BloomFilter<CharSequence> current;
+    private volatile BloomFilter<CharSequence> previous;
+    private volatile long nextRotation;
+
+    /**
+     * @param window                   how long an unknown user id is answered
+     *                                 locally at most
+     * @param unit                     time unit of the window
+     * @param expectedInsertions       expected number of unknown user ids
+     *                                 recorded per half window
+     * @param falsePositiveProbability probability of answering "not found" for
+     *                                 a user id that was never recorded, for
+     *                                 example 0.000001
+     */
+    public UnknownUserFilter(long window, TimeUnit unit, long expectedInsertions, double falsePositiveProbability) {
+        this(window, unit, expectedInsertions, falsePositiveProbability, Ticker.systemTicker());
+    }
+
+    UnknownUserFilter(long window, TimeUnit unit, long expectedInsertions, double falsePositiveProbability,
+            Ticker ticker) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Window must be positive.");
+        }
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.rotationNanos = Math.max(1, unit.toNanos(window) / 2);
+        this.ticker = ticker;
+        this.forgotten = CacheBuilder.newBuilder()
+                .expireAfterWrite(window, unit)
+                .ticker(ticker)
+                .build();
+        this.current = newFilter();
+        this.previous = newFilter();
+        this.nextRotation = ticker.read() + this.rotationNanos;
+    }
+
+    /**
+     * @param realm  the realm
+     * @param userId the user id
+     * @return a "not found" response when the user id was recently confirmed
+     *         unknown, null when the appliance has to be asked
+     */
+    public BaseResponse check(String realm, String userId) {
+        if (userId == null) {
+            return null;
+        }
+        rotateIfNeeded();
+        String key = key(realm, userId);
+        if (!(this.current.mightContain(key) || this.previous.mightContain(key))
+                || this.forgotten.getIfPresent(key) != null) {
+            return null;
+        }
+        this.answered.increment();
+        BaseResponse response = new BaseResponse();
+        response.setStatus(Resource.STATUS_NOT_FOUND);
+        response.setMessage(NOT_FOUND_MESSAGE);
+        response.setUser_id(userId);
+        return response;
+    }
+
+    /**
+     * Records the user id when the appliance answered that it does not exist.
+     *
+     * @param realm    the realm
+     * @param userId   the user id
+     * @param response the response of the appliance
+     */
+    public void record(String realm, String userId, BaseResponse response) {
+        if (userId == null || response == null || !Resource.STATUS_NOT_FOUND.equalsIgnoreCase(response.getStatus())) {
+            return;
+        }
+        rotateIfNeeded();
+        // a forgotten user id stays forgotten: the answer may come from a request sent before it was created.
+        this.current.put(key(realm, userId));
+        this.recorded.increment();
+    }
+
+    /**
+     * Stops answering locally for the user id, for example once it is created.
+     *
+     * @param realm  the realm
+     * @param userId the user id
+     */
+    public void forget(String realm, String userId) {
+        if (userId != null) {
+            this.forgotten.put(key(realm, userId), Boolean.TRUE);
+        }
+    }
+
+    /**
+     * @return number of unknown user ids recorded
+     */
+    public long getRecordedCount() {
+        return this.recorded.sum();
+    }
+
+    /**
+     * @return number of lookups answered locally
+     */
+    public long getAnsweredCount() {
+        return this.answered.sum();
+    }
+
+    private void rotateIfNeeded() {
+        long now = this.ticker.read();
+        if (now - this.nextRotation < 0) {
+            return;
+        }
+        synchronized (this) {
+            long late = now - this.nextRotation;
+            if (late < 0) {
+                return;
+            }
+            // rotations stay aligned on the half window periods, when more than a
+            // whole period went by without lookups both generations are obsolete.
+            if (late >= this.rotationNanos) {
+                this.previous = newFilter();
+                this.nextRotation += (late / this.rotationNanos + 1) * this.rotationNanos;
+            } else {
+                this.previous = this.current;
+                this.nextRotation += this.rotationNanos;
+            }
+            this.current = newFilter();
+        }
+    }
+
+    private BloomFilter<CharSequence> newFilter() {
+        return BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), this.expectedInsertions,
+                this.falsePositiveProbability);
+    }
+
+    private static String key(String realm, String userId) {
+        return realm + '|' + userId;
+    }
+}
@@ -0,0 +1,208 @@
+package org.secureauth.sarestapi.loadtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.secureauth.sarestapi.data.Response.BaseResponse;
+
+/**
+ * <p>
+ * Drives one operation for a fixed duration and measures its latency,
+ * throughput, outcomes and errors.
+ * </p>
+ * <p>
+ * Without a target rate the operation is called in a loop by a fixed number of
+ * threads (closed loop). With a target rate the calls are started on a fixed
+ * schedule and run by at most the given number of threads (open loop); their
+ * latency is measured from their scheduled start, so the time a call waits for
+ * a free thread when the operation falls behind the rate is part of its
+ * latency.
+ * </p>
+ * <p>
+ * Every report interval the listener receives the report of the interval; the
+ * report of the whole run is returned once the calls still running at the end
+ * of the duration are completed.
+ * </p>
+ */
+public class LoadTest {
+
+    private static final Duration DEFAULT_REPORT_INTERVAL = Duration.ofSeconds(1);
+    private static final long DRAIN_SECONDS = 30;
+
+    private final String operationName;
+    private final Supplier<?> operation;
+    private int concurrency = 1;
+    private double requestsPerSecond;
+    private Duration duration = Duration.ofSeconds(60);
+    private Duration reportInterval = DEFAULT_REPORT_INTERVAL;
+    private Consumer<LoadTestReport> listener = report -> {
+    };
+
+    /**
+     * @param operationName the name of the operation in the reports
+     * @param operation     the operation to drive, a call failing with an
+     *                      exception is counted as an error
+     */
+    public LoadTest(String operationName, Supplier<?> operation) {
+        this.operationName = operationName;
+        this.operation = operation;
+    }
+
+    /**
+     * @param concurrency the number of threads calling the operation
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be a positive integer value.");
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * @param requestsPerSecond the rate at which the calls are started, 0 to call
+     *                          the operation as fast as the threads allow
+     */
+    public void setRequestsPerSecond(double requestsPerSecond) {
+        if (requestsPerSecond < 0 || Double.isNaN(requestsPerSecond)) {
+            throw new IllegalArgumentException("Requests per second must be a positive value.");
+        }
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    public void setDuration(Duration duration) {
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("Duration must be positive.");
+        }
+        this.duration = duration;
+    }
+
+    /**
+     * @param reportInterval the interval of the live reports
+     * @param listener       the receiver of the live reports
+     */
+    public void setListener(Duration reportInterval, Consumer<LoadTestReport> listener) {
+        if (reportInterval.isNegative() || reportInterval.isZero()) {
+            throw new IllegalArgumentException("Report interval must be positive.");
+        }
+        this.reportInterval = reportInterval;
+        this.listener = listener;
+    }
+
+    /**
+     * Runs the load test on the calling thread.
+     *
+     * @return the report of the whole run
+     * @throws InterruptedException when interrupted, the calls are cancelled
+     */
+    public LoadTestReport run() throws InterruptedException {
+        Measures total = new Measures(System.nanoTime());
+        AtomicReference<Measures> interval = new AtomicReference<>(total.fork(total.startNanos));
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "load-test-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = this.reportInterval.toNanos();
+        reporter.scheduleAtFixedRate(() -> {
+            long now = System.nanoTime();
+            Measures ended = interval.getAndSet(total.fork(now));
+            this.listener.accept(report(ended, now));
+        }, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+
+        ExecutorService workers = Executors.newFixedThreadPool(this.concurrency);
+        try {
+            long deadline = total.startNanos + this.duration.toNanos();
+            if (this.requestsPerSecond > 0) {
+                schedule(workers, deadline, interval);
+            } else {
+                loop(workers, deadline, interval);
+            }
+            workers.shutdown();
+            if (!workers.awaitTermination(DRAIN_SECONDS, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } finally {
+            workers.shutdownNow();
+            reporter.shutdownNow();
+        }
+        return report(total, System.nanoTime());
+    }
+
+    private LoadTestReport report(Measures measures, long endNanos) {
+        return measures.report(this.operationName, this.concurrency, this.requestsPerSecond, endNanos);
+    }
+
+    private void loop(ExecutorService workers, long deadline, AtomicReference<Measures> interval)
+            throws InterruptedException {
+        List<Future<?>> threads = new ArrayList<>();
+        for (int i = 0; i < this.concurrency; i++) {
+            threads.add(workers.submit(() -> {
+                long start = System.nanoTime();
+                while (start < deadline && !Thread.currentThread().isInterrupted()) {
+                    call(start, interval.get());
+                    start = System.nanoTime();
+                }
+            }));
+        }
+        for (Future<?> thread : threads) {
+            try {
+                thread.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Load test thread failed", e.getCause());
+            }
+        }
+    }
+
+    private void schedule(ExecutorService workers, long deadline, AtomicReference<Measures> interval)
+            throws InterruptedException {
+        double periodNanos = TimeUnit.SECONDS.toNanos(1) / this.requestsPerSecond;
+        long first = System.nanoTime();
+        for (long i = 0;; i++) {
+            long scheduled = first + (long) (i * periodNanos);
+            if (scheduled >= deadline) {
+                return;
+            }
+            waitUntil(scheduled);
+            workers.execute(() -> call(scheduled, interval.get()));
+        }
+    }
+
+    /**
+     * @param nanoTime the {@link System#nanoTime()} to wait for
+     */
+    static void waitUntil(long nanoTime) throws InterruptedException {
+        long wait;
+        while ((wait = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    private void call(long start, Measures interval) {
+        String outcome;
+        String error = null;
+        try {
+            Object result = this.operation.get();
+            String status = result instanceof BaseResponse ? ((BaseResponse) result).getStatus() : null;
+            outcome = status == null ? "ok" : status;
+        } catch (RuntimeException e) {
+            outcome = null;
+            error = Measures.errorName(e);
+        }
+        long latency = System.nanoTime() - start;
+        interval.record(latency, outcome, error);
+    }
+}
@@ -0,0 +1,125 @@
+package org.secureauth.sarestapi.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.secureauth.sarestapi.metrics.LatencyHistogram;
+
+/**
+ * The measures of a load test run, or of an interval of the run. Latencies are
+ * in milliseconds. The outcomes count the completed calls by response status
+ * ("ok" for responses without status) and the errors count the failed calls by
+ * exception.
+ */
+public class LoadTestReport {
+
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    private final String operation;
+    private final int concurrency;
+    private final double targetRequestsPerSecond;
+    private final double elapsedSeconds;
+    private final long requests;
+    private final double throughput;
+    private final double meanMillis;
+    private final double maxMillis;
+    private final Map<String, Double> percentileMillis = new LinkedHashMap<>();
+    private final Map<String, Long> outcomes;
+    private final Map<String, Long> errors;
+
+    LoadTestReport(String operation, int concurrency, double targetRequestsPerSecond, long elapsedNanos,
+            LatencyHistogram latencies, Map<String, Long> outcomes, Map<String, Long> errors) {
+        this.operation = operation;
+        this.concurrency = concurrency;
+        this.targetRequestsPerSecond = targetRequestsPerSecond;
+        this.elapsedSeconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        this.requests = latencies.getCount();
+        this.throughput = this.elapsedSeconds > 0 ? this.requests / this.elapsedSeconds : 0;
+        this.meanMillis = millis(latencies.getMeanNanos());
+        this.maxMillis = millis(latencies.getMaxNanos());
+        for (double percentile : PERCENTILES) {
+            this.percentileMillis.put("p" + (percentile == (long) percentile ? Long.toString((long) percentile)
+                    : Double.toString(percentile)), millis(latencies.getValueAtPercentile(percentile)));
+        }
+        this.outcomes = outcomes;
+        this.errors = errors;
+    }
+
+    private static double millis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @return the rate the calls were started at, 0 when they were not paced
+     */
+    public double getTargetRequestsPerSecond() {
+        return targetRequestsPerSecond;
+    }
+
+    public double getElapsedSeconds() {
+        return elapsedSeconds;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return the completed and failed calls per second
+     */
+    public double getThroughput() {
+        return throughput;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    /**
+     * @return the latencies of the p50, p90, p99 and p99.9 percentiles
+     */
+    public Map<String, Double> getPercentileMillis() {
+        return percentileMillis;
+    }
+
+    public Map<String, Long> getOutcomes() {
+        return outcomes;
+    }
+
+    public Map<String, Long> getErrors() {
+        return errors;
+    }
+
+    public long getErrorCount() {
+        return errors.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%s: %d requests in %.1fs, %.1f req/s, %d errors, latency ms mean %.2f", operation,
+                requests, elapsedSeconds, throughput, getErrorCount(), meanMillis));
+        percentileMillis.forEach((name, value) -> text.append(String.format(" %s %.2f", name, value)));
+        text.append(String.format(" max %.2f", maxMillis));
+        if (!outcomes.isEmpty()) {
+            text.append(", outcomes ").append(outcomes);
+        }
+        if (!errors.isEmpty()) {
+            text.append(", errors ").append(errors);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,71 @@
+package org.secureauth.sarestapi.loadtest;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.secureauth.sarestapi.metrics.LatencyHistogram;
+
+/**
+ * The measures of a run or of an interval of the run, the measures of an
+ * interval are also added to the measures of the run.
+ */
+final class Measures {
+
+    final long startNanos;
+    private final Measures total;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    Measures(long startNanos) {
+        this(startNanos, null);
+    }
+
+    private Measures(long startNanos, Measures total) {
+        this.startNanos = startNanos;
+        this.total = total;
+    }
+
+    Measures fork(long startNanos) {
+        return new Measures(startNanos, this);
+    }
+
+    /**
+     * @param latencyNanos the latency of the call
+     * @param outcome      the outcome of a completed call, null for a failed one
+     * @param error        the error of a failed call
+     */
+    void record(long latencyNanos, String outcome, String error) {
+        this.latencies.record(latencyNanos);
+        if (outcome != null) {
+            this.outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+        } else {
+            this.errors.computeIfAbsent(error, key -> new LongAdder()).increment();
+        }
+        if (this.total != null) {
+            this.total.record(latencyNanos, outcome, error);
+        }
+    }
+
+    LoadTestReport report(String operation, int concurrency, double requestsPerSecond, long endNanos) {
+        return new LoadTestReport(operation, concurrency, requestsPerSecond, endNanos - this.startNanos,
+                this.latencies, counts(this.outcomes), counts(this.errors));
+    }
+
+    private static Map<String, Long> counts(Map<String, LongAdder> adders) {
+        Map<String, Long> counts = new TreeMap<>();
+        adders.forEach((key, count) -> counts.put(key, count.sum()));
+        return counts;
+    }
+
+    // the SDK wraps the failures of the requests, the root cause tells them apart.
+    static String errorName(Throwable error) {
+        Throwable cause = error;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,98 @@
+package org.secureauth.sarestapi.loadtest;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reads the traffic logs written by {@link TrafficRecorder}.
+ */
+public final class TrafficLog {
+
+    private TrafficLog() {
+    }
+
+    /**
+     * @param file the log file
+     * @return the recorded requests, ordered by start
+     * @throws IOException when the file can not be read or is not a traffic log;
+     *                     a log truncated in the middle of a request (recorder
+     *                     not closed) is read up to that request
+     */
+    public static List<TrafficRecord> read(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in);
+        }
+    }
+
+    public static List<TrafficRecord> read(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        if (in.readInt() != TrafficRecorder.MAGIC) {
+            throw new IOException("Not a traffic log.");
+        }
+        int version = in.readUnsignedByte();
+        if (version != TrafficRecorder.VERSION) {
+            throw new IOException("Unsupported traffic log version " + version + ".");
+        }
+        in.readLong(); // start of the recording
+        List<String> strings = new ArrayList<>();
+        List<TrafficRecord> records = new ArrayList<>();
+        long offsetMicros = 0;
+        int tag;
+        while ((tag = in.read()) >= 0) {
+            try {
+                if (tag == TrafficRecorder.STRING) {
+                    strings.add(in.readUTF());
+                } else if (tag == TrafficRecorder.REQUEST) {
+                    offsetMicros += unZigZag(readVarLong(in));
+                    String operation = string(strings, readVarLong(in));
+                    String method = string(strings, readVarLong(in));
+                    String path = string(strings, readVarLong(in));
+                    String outcome = string(strings, readVarLong(in));
+                    int status = (int) readVarLong(in);
+                    long requestSize = readVarLong(in);
+                    long responseSize = readVarLong(in) - 1;
+                    long latencyMicros = readVarLong(in);
+                    records.add(new TrafficRecord(offsetMicros, operation, method, path, status, outcome, requestSize,
+                            responseSize, latencyMicros));
+                } else {
+                    throw new IOException("Corrupted traffic log, unknown record " + tag + ".");
+                }
+            } catch (EOFException e) {
+                break;
+            }
+        }
+        records.sort(Comparator.comparingLong(TrafficRecord::getOffsetMicros));
+        return records;
+    }
+
+    private static String string(List<String> strings, long index) throws IOException {
+        if (index < 0 || index >= strings.size()) {
+            throw new IOException("Corrupted traffic log, unknown string " + index + ".");
+        }
+        return strings.get((int) index);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupted traffic log, malformed number.");
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
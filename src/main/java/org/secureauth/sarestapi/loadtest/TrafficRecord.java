@@ -0,0 +1,81 @@
+package org.secureauth.sarestapi.loadtest;
+
+/**
+ * A request read from a traffic log, see {@link TrafficRecorder}.
+ */
+public class TrafficRecord {
+
+    private final long offsetMicros;
+    private final String operation;
+    private final String method;
+    private final String path;
+    private final int status;
+    private final String outcome;
+    private final long requestSize;
+    private final long responseSize;
+    private final long latencyMicros;
+
+    TrafficRecord(long offsetMicros, String operation, String method, String path, int status, String outcome,
+            long requestSize, long responseSize, long latencyMicros) {
+        this.offsetMicros = offsetMicros;
+        this.operation = operation;
+        this.method = method;
+        this.path = path;
+        this.status = status;
+        this.outcome = outcome;
+        this.requestSize = requestSize;
+        this.responseSize = responseSize;
+        this.latencyMicros = latencyMicros;
+    }
+
+    /**
+     * @return the start of the request, from the start of the recording
+     */
+    public long getOffsetMicros() {
+        return offsetMicros;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the templated path, "/{realm}/api/v1/users/{userId}/factors"
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getOutcome() {
+        return outcome;
+    }
+
+    public long getRequestSize() {
+        return requestSize;
+    }
+
+    /**
+     * @return the size of the response body, -1 when unknown
+     */
+    public long getResponseSize() {
+        return responseSize;
+    }
+
+    public long getLatencyMicros() {
+        return latencyMicros;
+    }
+
+    @Override
+    public String toString() {
+        return "+" + offsetMicros + "us " + operation + " " + method + " " + path + " " + status + " " + outcome + " "
+                + requestSize + "/" + responseSize + "B " + latencyMicros + "us";
+    }
+}
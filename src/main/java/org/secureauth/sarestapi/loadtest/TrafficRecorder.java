@@ -0,0 +1,142 @@
+package org.secureauth.sarestapi.loadtest;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Records the shape and timing of the requests of an
+ * {@link org.secureauth.sarestapi.resources.SAExecuter} to a compact binary log,
+ * read back by {@link TrafficLog}.
+ * </p>
+ * <p>
+ * Only the operation, the method, the templated path (the realm and the user,
+ * group and link IDs replaced by placeholders, no query string), the status,
+ * the outcome, the body sizes and the timing are recorded: no body, header or
+ * user data is. The strings are written once and then referenced by index, so
+ * a request takes about 10 bytes.
+ * </p>
+ * <p>
+ * A failure to write the log is logged once and stops the recording, the
+ * requests are not affected.
+ * </p>
+ */
+public class TrafficRecorder implements AutoCloseable {
+
+    static final int MAGIC = 0x53415452; // "SATR"
+    static final int VERSION = 1;
+    static final int STRING = 1;
+    static final int REQUEST = 2;
+
+    private static final Logger logger = LoggerFactory.getLogger(TrafficRecorder.class);
+
+    private final DataOutputStream out;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Integer> strings = new HashMap<>();
+    private long previousOffsetMicros;
+    private boolean failed;
+
+    /**
+     * @param file the log file, replaced if it exists
+     * @throws IOException when the file can not be created
+     */
+    public TrafficRecorder(Path file) throws IOException {
+        this(Files.newOutputStream(file));
+    }
+
+    /**
+     * @param out the stream of the log, closed with the recorder
+     * @throws IOException when the header of the log can not be written
+     */
+    public TrafficRecorder(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+        this.out.writeLong(System.currentTimeMillis());
+    }
+
+    /**
+     * @param operation    the SAAccess operation which sent the request
+     * @param method       the HTTP method
+     * @param path         the templated path
+     * @param status       the HTTP status, 0 when there was no response
+     * @param outcome      the status of the response body, or the HTTP status
+     * @param requestSize  the size of the request body
+     * @param responseSize the size of the response body, -1 when unknown
+     * @param startNanos   the {@link System#nanoTime()} the request started at
+     * @param latencyNanos the latency of the request
+     */
+    public synchronized void record(String operation, String method, String path, int status, String outcome,
+            long requestSize, long responseSize, long startNanos, long latencyNanos) {
+        if (this.failed) {
+            return;
+        }
+        try {
+            int operationIndex = index(operation);
+            int methodIndex = index(method);
+            int pathIndex = index(path);
+            int outcomeIndex = index(outcome);
+            // requests are recorded as they end, so their start offsets are not ordered.
+            long offsetMicros = TimeUnit.NANOSECONDS.toMicros(startNanos - this.startNanos);
+            this.out.writeByte(REQUEST);
+            writeVarLong(zigZag(offsetMicros - this.previousOffsetMicros));
+            writeVarLong(operationIndex);
+            writeVarLong(methodIndex);
+            writeVarLong(pathIndex);
+            writeVarLong(outcomeIndex);
+            writeVarLong(Math.max(0, status));
+            writeVarLong(Math.max(0, requestSize));
+            writeVarLong(Math.max(-1, responseSize) + 1);
+            writeVarLong(Math.max(0, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+            this.previousOffsetMicros = offsetMicros;
+        } catch (IOException e) {
+            this.failed = true;
+            logger.error("Exception occurred recording the traffic, the recording is stopped: " + e.getMessage());
+        }
+    }
+
+    public synchronized void flush() throws IOException {
+        this.out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.failed = true;
+        this.out.close();
+    }
+
+    private int index(String value) throws IOException {
+        String string = value == null ? "" : value;
+        Integer index = this.strings.get(string);
+        if (index == null) {
+            index = this.strings.size();
+            this.strings.put(string, index);
+            this.out.writeByte(STRING);
+            this.out.writeUTF(string);
+        }
+        return index;
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            this.out.writeByte((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        this.out.writeByte((int) remaining);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
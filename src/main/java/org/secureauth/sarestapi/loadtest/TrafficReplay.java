@@ -0,0 +1,170 @@
+package org.secureauth.sarestapi.loadtest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.secureauth.sarestapi.data.SAAuth;
+import org.secureauth.sarestapi.data.SABaseURL;
+import org.secureauth.sarestapi.data.SAConfig;
+import org.secureauth.sarestapi.data.Response.BaseResponse;
+import org.secureauth.sarestapi.resources.Resource;
+import org.secureauth.sarestapi.resources.SAExecuter;
+import org.secureauth.sarestapi.util.RestApiHeader;
+import org.secureauth.sarestapi.util.TimeUtils;
+
+/**
+ * <p>
+ * Re-issues the requests of a traffic log through an {@link SAExecuter},
+ * typically against a local stub appliance, on the schedule they were recorded
+ * with, optionally sped up or slowed down.
+ * </p>
+ * <p>
+ * The placeholders of the recorded paths are filled with the realm of the
+ * given {@link SAAuth}, the replay user IDs (used in turn) and fixed group and
+ * link IDs; query strings are not recorded, so the query parameter endpoints
+ * are replayed without their user. The bodies are replaced by a JSON object of
+ * about the recorded size, so the stub must accept any body. Requests are
+ * signed as the SDK signs them.
+ * </p>
+ * <p>
+ * The latencies are measured from the scheduled start of every request, a
+ * request waiting for a free thread is late and its wait is part of its
+ * latency.
+ * </p>
+ */
+public class TrafficReplay {
+
+    private static final String PADDING = "replay";
+    // length of the JSON object holding the padding, as JSONUtil writes it.
+    private static final int PADDING_OVERHEAD = 20;
+    private static final long DRAIN_SECONDS = 30;
+
+    private final SABaseURL saBaseURL;
+    private final SAAuth saAuth;
+    private final SAExecuter saExecuter;
+    private int concurrency = 64;
+    private List<String> userIds = List.of("replay-user");
+    private String groupId = "replay-group";
+    private String linkId = "replay-link";
+
+    public TrafficReplay(SABaseURL saBaseURL, SAAuth saAuth, SAExecuter saExecuter) {
+        this.saBaseURL = saBaseURL;
+        this.saAuth = saAuth;
+        this.saExecuter = saExecuter;
+    }
+
+    /**
+     * @param concurrency max number of requests in flight
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be a positive integer value.");
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * @param userIds the users replacing the recorded user IDs, in turn
+     */
+    public void setUserIds(List<String> userIds) {
+        if (userIds.isEmpty()) {
+            throw new IllegalArgumentException("At least one user ID is needed.");
+        }
+        this.userIds = List.copyOf(userIds);
+    }
+
+    public void setGroupId(String groupId) {
+        this.groupId = groupId;
+    }
+
+    public void setLinkId(String linkId) {
+        this.linkId = linkId;
+    }
+
+    /**
+     * @param records the requests to replay, see {@link TrafficLog#read}
+     * @param speed   the replay speed, 1 for the recorded rate, 2 for twice the
+     *                recorded rate
+     * @return the reports of the replay by operation, with the report of all the
+     *         requests under "all"
+     * @throws InterruptedException when interrupted, the pending requests are
+     *                              cancelled
+     */
+    public Map<String, LoadTestReport> replay(List<TrafficRecord> records, double speed)
+            throws InterruptedException {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Speed must be a positive value.");
+        }
+        Measures total = new Measures(System.nanoTime());
+        Map<String, Measures> operations = new TreeMap<>();
+        for (TrafficRecord record : records) {
+            operations.computeIfAbsent(record.getOperation(), operation -> total.fork(total.startNanos));
+        }
+        ExecutorService workers = Executors.newFixedThreadPool(this.concurrency);
+        try {
+            for (int i = 0; i < records.size(); i++) {
+                TrafficRecord record = records.get(i);
+                long scheduled = total.startNanos
+                        + (long) (TimeUnit.MICROSECONDS.toNanos(record.getOffsetMicros()) / speed);
+                String query = query(record.getPath(), this.userIds.get(i % this.userIds.size()));
+                Measures measures = operations.get(record.getOperation());
+                LoadTest.waitUntil(scheduled);
+                workers.execute(() -> send(record, query, scheduled, measures));
+            }
+            workers.shutdown();
+            if (!workers.awaitTermination(DRAIN_SECONDS, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        long end = System.nanoTime();
+        double rate = records.isEmpty() ? 0 : records.size() * speed
+                / Math.max(1e-6, records.get(records.size() - 1).getOffsetMicros() / 1e6);
+        Map<String, LoadTestReport> reports = new TreeMap<>();
+        operations.forEach((operation, measures) -> reports.put(operation,
+                measures.report(operation, this.concurrency, 0, end)));
+        reports.put("all", total.report("all", this.concurrency, rate, end));
+        return reports;
+    }
+
+    // the query of the executer and of the signature, relative to the appliance URL.
+    String query(String path, String userId) {
+        String query = path.startsWith(Resource.SLASH) ? path.substring(1) : path;
+        return query.replace("{realm}", this.saAuth.getRealm())
+                .replace("{userId}", userId)
+                .replace("{groupId}", this.groupId)
+                .replace("{linkId}", this.linkId);
+    }
+
+    private void send(TrafficRecord record, String query, long scheduled, Measures measures) {
+        String outcome;
+        String error = null;
+        try {
+            BaseResponse response = execute(record, query);
+            outcome = response == null || response.getStatus() == null ? "ok" : response.getStatus();
+        } catch (RuntimeException e) {
+            outcome = null;
+            error = Measures.errorName(e);
+        }
+        measures.record(System.nanoTime() - scheduled, outcome, error);
+    }
+
+    private BaseResponse execute(TrafficRecord record, String query) {
+        String ts = TimeUtils.getServerTime(SAConfig.getInstance().getOldIdPSupport());
+        String url = this.saBaseURL.getApplianceURL() + query;
+        if (Resource.METHOD_GET.equals(record.getMethod())) {
+            String header = RestApiHeader.getAuthorizationHeader(this.saAuth, Resource.METHOD_GET, query, ts);
+            return this.saExecuter.executeGetRequest(header, url, ts, BaseResponse.class);
+        }
+        Map<String, String> payload = Map.of(PADDING,
+                "x".repeat((int) Math.max(0, record.getRequestSize() - PADDING_OVERHEAD)));
+        String header = RestApiHeader.getAuthorizationHeader(this.saAuth, record.getMethod(), query, payload, ts);
+        return this.saExecuter.executeGenericRawRequest(header, url, ts, record.getMethod(), payload,
+                BaseResponse.class);
+    }
+}
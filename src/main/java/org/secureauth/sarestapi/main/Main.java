@@ -9,7 +9,9 @@ import org.secureauth.sarestapi.main.api.DiagnosticApi;
 import org.secureauth.sarestapi.main.api.NoImplementedYetApi;
 import org.secureauth.sarestapi.main.api.Parameters;
 import org.secureauth.sarestapi.main.api.fingerprint.DFPApi;
+import org.secureauth.sarestapi.main.api.loadtest.LoadTestApi;
 import org.secureauth.sarestapi.main.api.users.UsersProfileApi;
+import org.secureauth.sarestapi.main.api.users.UsersProfileExportApi;
 import org.secureauth.sarestapi.main.api.users.UsersProfileQPApi;
 import org.secureauth.sarestapi.resources.SAExecuter;
 
@@ -37,6 +39,8 @@ public class Main {
         DIAGNOSTIC_APIS.put( "v1.dfp.score", new DFPApi() );
         DIAGNOSTIC_APIS.put( "v1.users.profile", new UsersProfileApi());
         DIAGNOSTIC_APIS.put( "v1.users.profile.qp", new UsersProfileQPApi() );
+        DIAGNOSTIC_APIS.put( "v1.users.profile.export", new UsersProfileExportApi() );
+        DIAGNOSTIC_APIS.put( "loadtest", new LoadTestApi( DIAGNOSTIC_APIS ) );
     }
 
     public static void main(String [] args) {
@@ -85,9 +89,10 @@ public class Main {
             Future<Object> future = executor.submit(() -> diagnosticApi.run( params, saAccess ));
             System.out.print("Running..");
             while ( !future.isDone() ) {
-                System.out.print( "." );
+                System.out.print( diagnosticApi.progress() );
                 Thread.sleep(300);
             }
+            System.out.print( diagnosticApi.progress() );
             System.out.println( "Done!" );
             System.out.println( future.get() );
         } catch (ExecutionException exc) {
@@ -7,4 +7,11 @@ public interface DiagnosticApi {
     Object run(Parameters parameters, ISAAccess saAccess);
 
     String printHelp();
+
+    /**
+     * @return what to print while the service runs, polled every 300ms
+     */
+    default String progress() {
+        return ".";
+    }
 }
@@ -0,0 +1,124 @@
+package org.secureauth.sarestapi.main.api.loadtest;
+
+import com.google.common.collect.ImmutableMap;
+import org.secureauth.sarestapi.ISAAccess;
+import org.secureauth.sarestapi.loadtest.LoadTest;
+import org.secureauth.sarestapi.loadtest.LoadTestReport;
+import org.secureauth.sarestapi.main.api.DiagnosticApi;
+import org.secureauth.sarestapi.main.api.HelpBuilder;
+import org.secureauth.sarestapi.main.api.Parameters;
+import org.secureauth.sarestapi.util.JSONUtil;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+/**
+ * Drives a diagnostic service or an SAAccess operation for a fixed duration,
+ * printing the report of every interval while it runs. The parameters of the
+ * load test are also handed to the driven service or operation.
+ */
+public class LoadTestApi implements DiagnosticApi {
+
+    private static final String OPERATION = "operation";
+    private static final String CONCURRENCY = "concurrency";
+    private static final String RPS = "rps";
+    private static final String DURATION = "duration";
+    private static final String REPORT_INTERVAL = "report_interval";
+    private static final String OUTPUT_PATH = "output_path";
+    private static final String USER_ID = "user_id";
+    private static final String PASSWORD = "password";
+    private static final String FACTOR_ID = "factor_id";
+    private static final String END_USER_IP = "end_user_ip";
+    private static final String DEFAULT_CONCURRENCY = "8";
+    private static final String DEFAULT_RPS = "0";
+    private static final String DEFAULT_DURATION = "60";
+    private static final String DEFAULT_REPORT_INTERVAL = "1";
+    private static final String DEFAULT_END_USER_IP = "127.0.0.1";
+
+    private static final Map<String, BiFunction<Parameters, ISAAccess, Object>> OPERATIONS = ImmutableMap
+            .<String, BiFunction<Parameters, ISAAccess, Object>>builder()
+            .put( "validateUser", (params, saAccess) -> saAccess.validateUser( params.getMandatory( USER_ID ) ) )
+            .put( "validateUserPassword", (params, saAccess) -> saAccess.validateUserPassword(
+                    params.getMandatory( USER_ID ), params.getMandatory( PASSWORD ) ) )
+            .put( "factorsByUser", (params, saAccess) -> saAccess.factorsByUser( params.getMandatory( USER_ID ) ) )
+            .put( "getUserProfile", (params, saAccess) -> saAccess.getUserProfile( params.getMandatory( USER_ID ) ) )
+            .put( "getThrottleReq", (params, saAccess) -> saAccess.getThrottleReq( params.getMandatory( USER_ID ) ) )
+            .put( "sendPushToAcceptReq", (params, saAccess) -> saAccess.sendPushToAcceptReq(
+                    params.getMandatory( USER_ID ), params.getMandatory( FACTOR_ID ),
+                    params.getOrDefault( END_USER_IP, DEFAULT_END_USER_IP ), "", "" ) )
+            .build();
+
+    private final Map<String, DiagnosticApi> services;
+    private final AtomicReference<String> progress = new AtomicReference<>( "" );
+
+    /**
+     * @param services the diagnostic services which can be driven, by name
+     */
+    public LoadTestApi(Map<String, DiagnosticApi> services) {
+        this.services = services;
+    }
+
+    @Override
+    public Object run(Parameters parameters, ISAAccess saAccess) {
+        final String name = parameters.getMandatory( OPERATION );
+        final BiFunction<Parameters, ISAAccess, Object> operation = operation( name );
+        final LoadTest loadTest = new LoadTest( name, () -> operation.apply( parameters, saAccess ) );
+        loadTest.setConcurrency( Integer.parseInt( parameters.getOrDefault( CONCURRENCY, DEFAULT_CONCURRENCY ) ) );
+        loadTest.setRequestsPerSecond( Double.parseDouble( parameters.getOrDefault( RPS, DEFAULT_RPS ) ) );
+        loadTest.setDuration( Duration.ofSeconds( Long.parseLong( parameters.getOrDefault( DURATION, DEFAULT_DURATION ) ) ) );
+        loadTest.setListener(
+                Duration.ofSeconds( Long.parseLong( parameters.getOrDefault( REPORT_INTERVAL, DEFAULT_REPORT_INTERVAL ) ) ),
+                report -> this.progress.set( System.lineSeparator() + report ) );
+        try {
+            final LoadTestReport report = loadTest.run();
+            final String outputPath = parameters.getOrDefault( OUTPUT_PATH, "" );
+            if( ! outputPath.isEmpty() ) {
+                Files.write( Paths.get( outputPath ), JSONUtil.convertObjectToJSON( report ).getBytes( StandardCharsets.UTF_8 ) );
+            }
+            return report;
+        } catch (IOException exc) {
+            throw new RuntimeException( exc );
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( exc );
+        }
+    }
+
+    private BiFunction<Parameters, ISAAccess, Object> operation(final String name) {
+        final BiFunction<Parameters, ISAAccess, Object> operation = OPERATIONS.get( name );
+        if( operation != null ) {
+            return operation;
+        }
+        final DiagnosticApi service = this.services.get( name );
+        if( service == null || service == this ) {
+            throw new IllegalArgumentException( name + " is not a load testable operation. Operations are : "
+                    + OPERATIONS.keySet() + " and the services " + this.services.keySet() );
+        }
+        return service::run;
+    }
+
+    @Override
+    public String progress() {
+        return this.progress.getAndSet( "" );
+    }
+
+    @Override
+    public String printHelp() {
+        return new HelpBuilder()
+                .mandatory( OPERATION + " (a service or one of " + OPERATIONS.keySet() + ")" )
+                .optional( CONCURRENCY, DEFAULT_CONCURRENCY )
+                .optional( RPS + " (calls started per second, 0 for as fast as possible)", DEFAULT_RPS )
+                .optional( DURATION + " (seconds)", DEFAULT_DURATION )
+                .optional( REPORT_INTERVAL + " (seconds)", DEFAULT_REPORT_INTERVAL )
+                .optional( OUTPUT_PATH + " (JSON report)" )
+                .optional( USER_ID + ", " + PASSWORD + ", " + FACTOR_ID + " (as needed by the operation)" )
+                .optional( END_USER_IP, DEFAULT_END_USER_IP )
+                .print();
+    }
+}
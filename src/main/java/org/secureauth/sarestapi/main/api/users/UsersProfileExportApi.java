@@ -0,0 +1,48 @@
+package org.secureauth.sarestapi.main.api.users;
+
+import org.secureauth.sarestapi.ISAAccess;
+import org.secureauth.sarestapi.export.UserProfileExporter;
+import org.secureauth.sarestapi.main.api.DiagnosticApi;
+import org.secureauth.sarestapi.main.api.HelpBuilder;
+import org.secureauth.sarestapi.main.api.Parameters;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class UsersProfileExportApi implements DiagnosticApi {
+
+    private static final String USER_IDS_PATH = "user_ids_path";
+    private static final String OUTPUT_PATH = "output_path";
+    private static final String CHECKPOINT_PATH = "checkpoint_path";
+    private static final String CONCURRENCY = "concurrency";
+    private static final String QUERY_PARAMS = "qp";
+    private static final String DEFAULT_CONCURRENCY = "8";
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    @Override
+    public Object run(Parameters parameters, ISAAccess saAccess) {
+        final Path output = Paths.get( parameters.getMandatory( OUTPUT_PATH ) );
+        final Path checkpoint = Paths.get( parameters.getOrDefault( CHECKPOINT_PATH, output + CHECKPOINT_SUFFIX ) );
+        final UserProfileExporter exporter = new UserProfileExporter(
+                saAccess,
+                Integer.parseInt( parameters.getOrDefault( CONCURRENCY, DEFAULT_CONCURRENCY ) ),
+                Boolean.parseBoolean( parameters.getOrDefault( QUERY_PARAMS, "false" ) ) );
+        try {
+            return exporter.export( Paths.get( parameters.getMandatory( USER_IDS_PATH ) ), output, checkpoint );
+        } catch (IOException exc) {
+            throw new RuntimeException( exc );
+        }
+    }
+
+    @Override
+    public String printHelp() {
+        return new HelpBuilder()
+                .mandatory( USER_IDS_PATH )
+                .mandatory( OUTPUT_PATH )
+                .optional( CHECKPOINT_PATH, OUTPUT_PATH + CHECKPOINT_SUFFIX )
+                .optional( CONCURRENCY, DEFAULT_CONCURRENCY )
+                .optional( QUERY_PARAMS, "false" )
+                .print();
+    }
+}
@@ -0,0 +1,48 @@
+package org.secureauth.sarestapi.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * Keeps the measures of every operation in memory, to be scraped with
+ * {@link #getOperations()}. The memory used grows with the number of distinct
+ * operations only.
+ * </p>
+ */
+public class InMemoryMetricsRecorder implements MetricsRecorder {
+
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+    @Override
+    public void record(String operation, String outcome, long bytesOut, long bytesIn, long latencyNanos) {
+        this.operations.computeIfAbsent(operation, OperationMetrics::new)
+                .record(outcome, bytesOut, bytesIn, latencyNanos);
+    }
+
+    /**
+     * @return the live measures of every operation recorded so far, sorted by
+     *         operation
+     */
+    public Map<String, OperationMetrics> getOperations() {
+        return Collections.unmodifiableMap(new TreeMap<>(this.operations));
+    }
+
+    /**
+     * @param operation the operation
+     * @return the live measures of the operation, null when it was never
+     *         recorded
+     */
+    public OperationMetrics getOperation(String operation) {
+        return this.operations.get(operation);
+    }
+
+    /**
+     * Drops every measure.
+     */
+    public void reset() {
+        this.operations.clear();
+    }
+}
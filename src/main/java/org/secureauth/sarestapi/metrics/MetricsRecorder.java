@@ -0,0 +1,35 @@
+package org.secureauth.sarestapi.metrics;
+
+/**
+ * <p>
+ * Receives the measures of every request sent to the appliance by a
+ * {@link org.secureauth.sarestapi.resources.SAExecuter}. Implementations are
+ * called on the requesting thread, once per request, and must be thread safe
+ * and fast.
+ * </p>
+ * <p>
+ * The operation is the name of the {@link org.secureauth.sarestapi.SAAccess}
+ * method that sent the request (factorsByUser, validateOTP, createUser...).
+ * The outcome is the status of the response body when it has one ("found",
+ * "valid", "invalid"...), the HTTP status code otherwise, and "error" when no
+ * response was received or it could not be read.
+ * </p>
+ */
+public interface MetricsRecorder {
+
+    /**
+     * Records nothing, the default of the executers.
+     */
+    MetricsRecorder NOOP = (operation, outcome, bytesOut, bytesIn, latencyNanos) -> {
+    };
+
+    /**
+     * @param operation    the logical operation
+     * @param outcome      the outcome of the request
+     * @param bytesOut     size of the request body, 0 when it has none
+     * @param bytesIn      size of the response body, -1 when unknown
+     * @param latencyNanos time from the start of the request to the end of the
+     *                     response read
+     */
+    void record(String operation, String outcome, long bytesOut, long bytesIn, long latencyNanos);
+}
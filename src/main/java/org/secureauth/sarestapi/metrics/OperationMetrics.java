@@ -0,0 +1,64 @@
+package org.secureauth.sarestapi.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live measures of one operation kept by an {@link InMemoryMetricsRecorder}.
+ */
+public class OperationMetrics {
+
+    private final String operation;
+    private final LongAdder count = new LongAdder();
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    OperationMetrics(String operation) {
+        this.operation = operation;
+    }
+
+    void record(String outcome, long requestBytes, long responseBytes, long latencyNanos) {
+        this.count.increment();
+        this.outcomes.computeIfAbsent(outcome == null ? "unknown" : outcome, key -> new LongAdder()).increment();
+        this.bytesOut.add(Math.max(0, requestBytes));
+        this.bytesIn.add(Math.max(0, responseBytes));
+        this.latency.record(latencyNanos);
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return number of requests per outcome, sorted by outcome
+     */
+    public Map<String, Long> getOutcomes() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        outcomes.forEach((outcome, total) -> snapshot.put(outcome, total.sum()));
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    /**
+     * @return size of the response bodies whose size was known
+     */
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
@@ -0,0 +1,421 @@
+package org.secureauth.sarestapi.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.regex.Pattern;
+
+import org.secureauth.sarestapi.SAAccess;
+import org.secureauth.sarestapi.cache.FactorsCache;
+import org.secureauth.sarestapi.cache.FactorsPrefetcher;
+import org.secureauth.sarestapi.cache.IPEvalCache;
+import org.secureauth.sarestapi.cache.NumberProfileCache;
+import org.secureauth.sarestapi.cache.UserProfileCache;
+import org.secureauth.sarestapi.resources.RequestRateLimiter;
+import org.secureauth.sarestapi.resources.SAExecuter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * <p>
+ * Publishes the SDK metrics in the Prometheus text format, from an embedded
+ * HTTP server (GET /metrics) or with {@link #scrape()}. The server is only
+ * started on demand:
+ * </p>
+ *
+ * <pre>
+ * InMemoryMetricsRecorder recorder = new InMemoryMetricsRecorder();
+ * saExecuter.setMetricsRecorder(recorder);
+ * PrometheusExporter exporter = new PrometheusExporter(recorder).addAccess(saAccess).addExecuter(saExecuter);
+ * exporter.start(new InetSocketAddress("localhost", 9464));
+ * </pre>
+ * <p>
+ * The requests of the recorder are published as counters (saidp_requests_total
+ * per operation and outcome, request and response bytes) and as a summary of
+ * their latency since the recorder was created or reset
+ * (saidp_request_duration_seconds, quantiles 0.5, 0.9 and 0.99). Every other
+ * value is read when scraped, from the sources added to the exporter; a value
+ * of NaN is not published, so an optional cache that is not set does not show.
+ * </p>
+ */
+public class PrometheusExporter implements AutoCloseable {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    public static final String PATH = "/metrics";
+
+    private static final Pattern NAME = Pattern.compile("[a-zA-Z_:][a-zA-Z0-9_:]*");
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99 };
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final InMemoryMetricsRecorder recorder;
+    private final Map<String, Family> families = new LinkedHashMap<>();
+    private HttpServer server;
+
+    /**
+     * @param recorder the recorder of the executers, null to publish the added
+     *                 sources only
+     */
+    public PrometheusExporter(InMemoryMetricsRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Publishes the hit ratio of the caches of an access (saidp_cache_hit_ratio
+     * per cache), as they are set when scraped.
+     *
+     * @param access the access
+     * @return this exporter
+     * @throws IllegalArgumentException when an access was already added without
+     *                                  a name, use {@link #addAccess(String, SAAccess)}
+     *                                  to publish several ones
+     */
+    public PrometheusExporter addAccess(SAAccess access) {
+        return addAccess(null, access);
+    }
+
+    /**
+     * Publishes the hit ratio of the caches of an access, with an "access" label
+     * telling it from the other accesses of the application.
+     *
+     * @param name   the name of the access, null for no label
+     * @param access the access
+     * @return this exporter
+     * @throws IllegalArgumentException when an access of that name was already
+     *                                  added
+     */
+    public PrometheusExporter addAccess(String name, SAAccess access) {
+        String help = "Ratio of the requests served by an SDK cache.";
+        addGauge("saidp_cache_hit_ratio", help, named("access", name, "cache", "factors"), () -> {
+            FactorsCache cache = access.getFactorsCache();
+            return cache == null ? Double.NaN : cache.stats().hitRate();
+        });
+        addGauge("saidp_cache_hit_ratio", help, named("access", name, "cache", "factors_prefetch"), () -> {
+            FactorsPrefetcher prefetcher = access.getFactorsPrefetcher();
+            return prefetcher == null ? Double.NaN : prefetcher.getHitRate();
+        });
+        addGauge("saidp_cache_hit_ratio", help, named("access", name, "cache", "user_profile"), () -> {
+            UserProfileCache cache = access.getUserProfileCache();
+            if (cache == null) {
+                return Double.NaN;
+            }
+            long hits = cache.getHitCount() + cache.getStaleHitCount();
+            long total = hits + cache.getMissCount();
+            return total == 0 ? 1.0 : (double) hits / total;
+        });
+        addGauge("saidp_cache_hit_ratio", help, named("access", name, "cache", "ip_eval"), () -> {
+            IPEvalCache cache = access.getIPEvalCache();
+            return cache == null ? Double.NaN : cache.stats().hitRate();
+        });
+        addGauge("saidp_cache_hit_ratio", help, named("access", name, "cache", "number_profile"), () -> {
+            NumberProfileCache cache = access.getNumberProfileCache();
+            return cache == null ? Double.NaN : cache.getHitRate();
+        });
+        return this;
+    }
+
+    /**
+     * Publishes the requests of an executer served by an identical in flight
+     * request, and the ones rejected by its rate limiter.
+     *
+     * @param executer the executer
+     * @return this exporter
+     * @throws IllegalArgumentException when an executer was already added
+     *                                  without a name, use
+     *                                  {@link #addExecuter(String, SAExecuter)} to
+     *                                  publish several ones
+     */
+    public PrometheusExporter addExecuter(SAExecuter executer) {
+        return addExecuter(null, executer);
+    }
+
+    /**
+     * Publishes the coalesced and rate limited requests of an executer, with an
+     * "executer" label telling it from the other executers of the application.
+     *
+     * @param name     the name of the executer, null for no label
+     * @param executer the executer
+     * @return this exporter
+     * @throws IllegalArgumentException when an executer of that name was already
+     *                                  added
+     */
+    public PrometheusExporter addExecuter(String name, SAExecuter executer) {
+        Map<String, String> labels = name == null ? Map.of() : Map.of("executer", name);
+        addCounter("saidp_coalesced_requests_total", "GET requests served by an identical in flight request.",
+                labels, executer::getCoalescedRequestCount);
+        addCounter("saidp_rate_limited_requests_total", "Requests rejected by the client side rate limits.",
+                labels, () -> {
+                    RequestRateLimiter limiter = executer.getRateLimiter();
+                    return limiter == null ? Double.NaN : limiter.getRejectedCount();
+                });
+        return this;
+    }
+
+    /**
+     * Publishes the utilization of a thread pool, such as the executor of the
+     * cache refreshes or of the login flows: the ratio of its busy threads to its
+     * maximum size, its busy threads and its queued tasks.
+     *
+     * @param pool     the name of the pool
+     * @param executor the pool
+     * @return this exporter
+     */
+    public PrometheusExporter addExecutor(String pool, ThreadPoolExecutor executor) {
+        Map<String, String> labels = Map.of("pool", pool);
+        addGauge("saidp_pool_utilization_ratio", "Ratio of the busy threads of a pool to its maximum size.", labels,
+                () -> (double) executor.getActiveCount() / executor.getMaximumPoolSize());
+        addGauge("saidp_pool_active_threads", "Busy threads of a pool.", labels, executor::getActiveCount);
+        addGauge("saidp_pool_queued_tasks", "Tasks waiting for a thread of a pool.", labels,
+                () -> executor.getQueue().size());
+        return this;
+    }
+
+    /**
+     * Publishes a value that can go up and down, such as the state of a circuit
+     * breaker.
+     *
+     * @param name   the metric name, shared by the values with other labels
+     * @param help   the description of the metric
+     * @param labels the labels of this value
+     * @param value  the value, read when scraped, NaN to skip it
+     * @return this exporter
+     * @throws IllegalArgumentException when the metric already has a value with
+     *                                  these labels
+     */
+    public PrometheusExporter addGauge(String name, String help, Map<String, String> labels, DoubleSupplier value) {
+        return add(name, help, "gauge", labels, value);
+    }
+
+    /**
+     * Publishes a value that only goes up.
+     *
+     * @param name   the metric name, it should end with "_total"
+     * @param help   the description of the metric
+     * @param labels the labels of this value
+     * @param value  the value, read when scraped, NaN to skip it
+     * @return this exporter
+     * @throws IllegalArgumentException when the metric already has a value with
+     *                                  these labels
+     */
+    public PrometheusExporter addCounter(String name, String help, Map<String, String> labels, DoubleSupplier value) {
+        return add(name, help, "counter", labels, value);
+    }
+
+    /**
+     * Starts serving the metrics at {@value #PATH}.
+     *
+     * @param address the address to listen to, port 0 for any free port
+     * @return the address listened to
+     * @throws IOException when the address can not be bound
+     */
+    public synchronized InetSocketAddress start(InetSocketAddress address) throws IOException {
+        if (this.server != null) {
+            throw new IllegalStateException("Exporter already started.");
+        }
+        HttpServer httpServer = HttpServer.create(address, 0);
+        httpServer.createContext(PATH, this::handle);
+        httpServer.start();
+        this.server = httpServer;
+        return httpServer.getAddress();
+    }
+
+    /**
+     * Stops the server, if started.
+     */
+    public synchronized void stop() {
+        if (this.server != null) {
+            this.server.stop(0);
+            this.server = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * @return the current metrics in the Prometheus text format
+     */
+    public String scrape() {
+        StringBuilder text = new StringBuilder();
+        if (this.recorder != null && !this.recorder.getOperations().isEmpty()) {
+            writeRequests(text, this.recorder.getOperations().values());
+        }
+        List<Family> snapshot;
+        synchronized (this.families) {
+            snapshot = new ArrayList<>(this.families.values());
+        }
+        for (Family family : snapshot) {
+            family.write(text);
+        }
+        return text.toString();
+    }
+
+    private PrometheusExporter add(String name, String help, String type, Map<String, String> labels,
+            DoubleSupplier value) {
+        if (!NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid metric name: " + name);
+        }
+        for (String label : labels.keySet()) {
+            if (!NAME.matcher(label).matches() || label.contains(":")) {
+                throw new IllegalArgumentException("Invalid label name: " + label);
+            }
+        }
+        synchronized (this.families) {
+            Family family = this.families.computeIfAbsent(name, key -> new Family(name, help, type));
+            if (!family.type.equals(type)) {
+                throw new IllegalArgumentException("Metric " + name + " is already a " + family.type);
+            }
+            String series = labels(labels);
+            // two values of the same series would be published as duplicate samples.
+            for (Sample sample : family.samples) {
+                if (sample.labels.equals(series)) {
+                    throw new IllegalArgumentException("Metric " + name + series + " is already published");
+                }
+            }
+            family.samples.add(new Sample(series, value));
+        }
+        return this;
+    }
+
+    private static Map<String, String> named(String nameLabel, String name, String label, String value) {
+        return name == null ? Map.of(label, value) : Map.of(nameLabel, name, label, value);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void writeRequests(StringBuilder text, Collection<OperationMetrics> operations) {
+        header(text, "saidp_requests_total", "Requests sent to the appliance.", "counter");
+        for (OperationMetrics metrics : operations) {
+            for (Map.Entry<String, Long> outcome : metrics.getOutcomes().entrySet()) {
+                sample(text, "saidp_requests_total",
+                        labels(Map.of("operation", metrics.getOperation(), "outcome", outcome.getKey())),
+                        outcome.getValue());
+            }
+        }
+        header(text, "saidp_request_bytes_total", "Size of the request bodies.", "counter");
+        for (OperationMetrics metrics : operations) {
+            sample(text, "saidp_request_bytes_total", labels(Map.of("operation", metrics.getOperation())),
+                    metrics.getBytesOut());
+        }
+        header(text, "saidp_response_bytes_total", "Size of the response bodies of a known size.", "counter");
+        for (OperationMetrics metrics : operations) {
+            sample(text, "saidp_response_bytes_total", labels(Map.of("operation", metrics.getOperation())),
+                    metrics.getBytesIn());
+        }
+        header(text, "saidp_request_duration_seconds", "Latency of the requests sent to the appliance.", "summary");
+        for (OperationMetrics metrics : operations) {
+            LatencyHistogram latency = metrics.getLatency();
+            for (double quantile : QUANTILES) {
+                sample(text, "saidp_request_duration_seconds",
+                        labels(Map.of("operation", metrics.getOperation(), "quantile", Double.toString(quantile))),
+                        latency.getValueAtPercentile(quantile * 100) / NANOS_PER_SECOND);
+            }
+            String labels = labels(Map.of("operation", metrics.getOperation()));
+            sample(text, "saidp_request_duration_seconds_sum", labels, latency.getSumNanos() / NANOS_PER_SECOND);
+            sample(text, "saidp_request_duration_seconds_count", labels, latency.getCount());
+        }
+    }
+
+    private static void header(StringBuilder text, String name, String help, String type) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder text, String name, String labels, double value) {
+        text.append(name).append(labels).append(' ').append(format(value)).append('\n');
+    }
+
+    static String format(double value) {
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    // the labels sorted by name, so a series always has the same text.
+    static String labels(Map<String, String> labels) {
+        if (labels.isEmpty()) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder("{");
+        labels.keySet().stream().sorted().forEach(name -> {
+            if (text.length() > 1) {
+                text.append(',');
+            }
+            text.append(name).append("=\"").append(escape(labels.get(name))).append('"');
+        });
+        return text.append('}').toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static class Family {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final List<Sample> samples = new CopyOnWriteArrayList<>();
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help.replace("\\", "\\\\").replace("\n", "\\n");
+            this.type = type;
+        }
+
+        void write(StringBuilder text) {
+            StringBuilder values = new StringBuilder();
+            for (Sample sample : this.samples) {
+                double value = sample.value.getAsDouble();
+                if (!Double.isNaN(value)) {
+                    sample(values, this.name, sample.labels, value);
+                }
+            }
+            if (values.length() > 0) {
+                header(text, this.name, this.help, this.type);
+                text.append(values);
+            }
+        }
+    }
+
+    private static class Sample {
+        private final String labels;
+        private final DoubleSupplier value;
+
+        Sample(String labels, DoubleSupplier value) {
+            this.labels = labels;
+            this.value = value;
+        }
+    }
+}
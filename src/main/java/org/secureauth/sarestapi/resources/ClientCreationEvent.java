@@ -0,0 +1,30 @@
+package org.secureauth.sarestapi.resources;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of the creation of the HTTP client of an
+ * {@link SAExecuter}, TLS initialization included.
+ */
+@Name("org.secureauth.sarestapi.ClientCreation")
+@Label("IdP Client Creation")
+@Category({ "SecureAuth", "IdP REST API" })
+@Description("Creation of the HTTP client of an executer")
+@StackTrace(false)
+class ClientCreationEvent extends Event {
+
+    @Label("Appliance")
+    String appliance;
+
+    @Label("Self Signed")
+    @Description("Whether the certificate of the appliance is trusted without a chain")
+    boolean selfSigned;
+
+    @Label("Succeeded")
+    boolean succeeded;
+}
@@ -0,0 +1,155 @@
+package org.secureauth.sarestapi.resources;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.secureauth.sarestapi.resources.FaultInjector.Fault;
+
+import jakarta.ws.rs.client.ClientRequestContext;
+import jakarta.ws.rs.client.ClientRequestFilter;
+import jakarta.ws.rs.client.ClientResponseContext;
+import jakarta.ws.rs.client.ClientResponseFilter;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Applies the faults drawn by the {@link FaultInjector} of the executer to
+ * every request, under the operation of its {@link RequestExchange}.
+ */
+class FaultInjectionFilter implements ClientRequestFilter, ClientResponseFilter {
+
+    private static final String SLOW_BODY_PROPERTY = FaultInjectionFilter.class.getName() + ".bytesPerSecond";
+
+    private final Supplier<FaultInjector> faultInjector;
+
+    /**
+     * @param faultInjector the injector in use, it may supply null when there is
+     *                      none
+     */
+    FaultInjectionFilter(Supplier<FaultInjector> faultInjector) {
+        this.faultInjector = faultInjector;
+    }
+
+    @Override
+    public void filter(ClientRequestContext requestContext) throws IOException {
+        FaultInjector injector = this.faultInjector.get();
+        if (injector == null) {
+            return;
+        }
+        RequestExchange exchange = RequestExchange.current();
+        List<Fault> faults = injector.draw(exchange == null ? null : exchange.operation());
+        long bytesPerSecond = Long.MAX_VALUE;
+        for (Fault fault : faults) {
+            switch (fault.getKind()) {
+            case LATENCY:
+                sleep(fault.getValue());
+                break;
+            case RESET:
+                throw new SocketException("Connection reset (injected fault)");
+            case STATUS:
+                requestContext.abortWith(errorResponse((int) fault.getValue()));
+                return;
+            case SLOW_BODY:
+                bytesPerSecond = Math.min(bytesPerSecond, fault.getValue());
+                break;
+            default:
+                break;
+            }
+        }
+        if (bytesPerSecond != Long.MAX_VALUE) {
+            requestContext.setProperty(SLOW_BODY_PROPERTY, bytesPerSecond);
+        }
+    }
+
+    @Override
+    public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext) {
+        Object bytesPerSecond = requestContext.getProperty(SLOW_BODY_PROPERTY);
+        if (bytesPerSecond != null && responseContext.hasEntity()) {
+            responseContext.setEntityStream(
+                    new SlowInputStream(responseContext.getEntityStream(), (Long) bytesPerSecond));
+        }
+    }
+
+    private static Response errorResponse(int status) {
+        Response.ResponseBuilder response = Response.status(status).type(MediaType.APPLICATION_JSON);
+        if (status == 429) {
+            response.header("Retry-After", "1");
+            return response.entity("{\"status\":\"throttled\",\"message\":\"Injected fault.\"}").build();
+        }
+        return response.entity("{\"status\":\"server_error\",\"message\":\"Injected fault.\"}").build();
+    }
+
+    private static void sleep(long nanos) throws InterruptedIOException {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during an injected latency");
+        }
+    }
+
+    /**
+     * Reads a stream no faster than the given rate.
+     */
+    static class SlowInputStream extends FilterInputStream {
+
+        private final long bytesPerSecond;
+        private long startNanos;
+        private long read;
+
+        SlowInputStream(InputStream in, long bytesPerSecond) {
+            super(in);
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public int read() throws IOException {
+            pace(1);
+            int b = super.read();
+            if (b >= 0) {
+                this.read++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            // at most a tenth of a second of the rate at once, so the pace stays even.
+            int count = super.read(b, off, (int) Math.max(1, Math.min(len, this.bytesPerSecond / 10)));
+            if (count > 0) {
+                pace(count);
+                this.read += count;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, Math.max(1, this.bytesPerSecond / 10)));
+            pace(skipped);
+            this.read += skipped;
+            return skipped;
+        }
+
+        // waits until the rate allows the given bytes on top of the ones already read.
+        private void pace(long bytes) throws InterruptedIOException {
+            long now = System.nanoTime();
+            if (this.startNanos == 0) {
+                this.startNanos = now;
+            }
+            long due = this.startNanos + (this.read + bytes) * TimeUnit.SECONDS.toNanos(1) / this.bytesPerSecond;
+            if (due > now) {
+                sleep(due - now);
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package org.secureauth.sarestapi.resources;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Client side faults injected in the requests of an {@link SAExecuter}, to test
+ * the timeouts, retries and breakers of an application: added latency,
+ * connection resets, error responses (5xx, 429) and slow response bodies.
+ * </p>
+ * <p>
+ * Every rule applies a fault to a share of the requests of one
+ * {@link org.secureauth.sarestapi.SAAccess} operation, or of all of them. The
+ * rules of a request are drawn in the order they were added: the latencies add
+ * up, the first reset or error response drawn ends the request before it is
+ * sent and the slowest body rate applies. Rules can be added, removed and the
+ * injector disabled at any time.
+ * </p>
+ * <p>
+ * The draws come from a seeded random, so a sequence of requests sent by one
+ * thread gets the same faults on every run with the same seed.
+ * </p>
+ *
+ * <pre>
+ * FaultInjector faults = new FaultInjector(42);
+ * faults.addRule("validateUserPassword", 0.1, FaultInjector.Fault.status(503));
+ * faults.addRule(null, 0.5, FaultInjector.Fault.latency(Duration.ofMillis(200)));
+ * saExecuter.setFaultInjector(faults);
+ * </pre>
+ */
+public class FaultInjector {
+
+    /**
+     * The faults that can be injected.
+     */
+    public static final class Fault {
+
+        /**
+         * The kinds of fault.
+         */
+        public enum Kind {
+            /** The request is delayed before it is sent. */
+            LATENCY,
+            /** The request fails as if the appliance reset the connection. */
+            RESET,
+            /** The request is answered with an error status, without being sent. */
+            STATUS,
+            /** The response body is read at a limited rate. */
+            SLOW_BODY
+        }
+
+        private final Kind kind;
+        private final long value;
+
+        private Fault(Kind kind, long value) {
+            this.kind = kind;
+            this.value = value;
+        }
+
+        public static Fault latency(Duration latency) {
+            if (latency.isNegative()) {
+                throw new IllegalArgumentException("Latency can not be negative.");
+            }
+            return new Fault(Kind.LATENCY, latency.toNanos());
+        }
+
+        public static Fault reset() {
+            return new Fault(Kind.RESET, 0);
+        }
+
+        /**
+         * @param status the status of the response, 429 responses ask to retry
+         *               after one second
+         */
+        public static Fault status(int status) {
+            if (status < 400 || status > 599) {
+                throw new IllegalArgumentException("Status must be an error status (4xx or 5xx).");
+            }
+            return new Fault(Kind.STATUS, status);
+        }
+
+        /**
+         * @param bytesPerSecond the rate the response body is read at
+         */
+        public static Fault slowBody(long bytesPerSecond) {
+            if (bytesPerSecond < 1) {
+                throw new IllegalArgumentException("Bytes per second must be a positive value.");
+            }
+            return new Fault(Kind.SLOW_BODY, bytesPerSecond);
+        }
+
+        public Kind getKind() {
+            return this.kind;
+        }
+
+        /**
+         * @return the latency in nanoseconds, the status or the body rate in bytes
+         *         per second, according to the kind of the fault
+         */
+        public long getValue() {
+            return this.value;
+        }
+
+        @Override
+        public String toString() {
+            return this.kind + (this.kind == Kind.RESET ? "" : "(" + this.value + ")");
+        }
+    }
+
+    private final List<Rule> rules = new CopyOnWriteArrayList<>();
+    private final LongAdder injected = new LongAdder();
+    private Random random;
+    private volatile boolean enabled = true;
+
+    /**
+     * @param seed the seed of the draws
+     */
+    public FaultInjector(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Restarts the draws from the given seed.
+     */
+    public synchronized void setSeed(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @param enabled false to stop injecting faults, keeping the rules
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Adds a rule.
+     *
+     * @param operation   the name of the SAAccess method, null for every request
+     * @param probability the share of the requests getting the fault, from 0 to 1
+     * @param fault       the fault
+     */
+    public void addRule(String operation, double probability, Fault fault) {
+        if (!(probability >= 0 && probability <= 1)) {
+            throw new IllegalArgumentException("Probability must be between 0 and 1.");
+        }
+        this.rules.add(new Rule(operation, probability, fault));
+    }
+
+    /**
+     * Removes the rules of an operation.
+     *
+     * @param operation the name of the SAAccess method, null for the rules of
+     *                  every request
+     */
+    public void removeRules(String operation) {
+        this.rules.removeIf(rule -> rule.operation == null ? operation == null : rule.operation.equals(operation));
+    }
+
+    public void clearRules() {
+        this.rules.clear();
+    }
+
+    /**
+     * @return number of requests that got at least one fault
+     */
+    public long getInjectedCount() {
+        return this.injected.sum();
+    }
+
+    /**
+     * Draws the faults of a request.
+     *
+     * @param operation the operation of the request
+     * @return the faults to apply, in order, none when the request goes through
+     *         untouched
+     */
+    List<Fault> draw(String operation) {
+        if (!this.enabled || this.rules.isEmpty()) {
+            return List.of();
+        }
+        List<Fault> faults = new ArrayList<>();
+        synchronized (this) {
+            for (Rule rule : this.rules) {
+                if ((rule.operation == null || rule.operation.equals(operation))
+                        && this.random.nextDouble() < rule.probability) {
+                    faults.add(rule.fault);
+                }
+            }
+        }
+        if (!faults.isEmpty()) {
+            this.injected.increment();
+        }
+        return faults;
+    }
+
+    private static class Rule {
+        private final String operation;
+        private final double probability;
+        private final Fault fault;
+
+        Rule(String operation, double probability, Fault fault) {
+            this.operation = operation;
+            this.probability = probability;
+            this.fault = fault;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package org.secureauth.sarestapi.resources;
+
+import java.util.function.Supplier;
+
+import org.secureauth.sarestapi.tracing.TraceSpan;
+import org.secureauth.sarestapi.tracing.Tracer;
+
+/**
+ * <p>
+ * Names the requests sent by the calling thread while an operation runs, for
+ * the metrics, the traces, the flight recorder and the traffic recorder. The
+ * {@link org.secureauth.sarestapi.SAAccess} methods run in a scope of their own
+ * name; a scope opened inside another one is ignored, so the requests are
+ * named after the outermost method. Requests sent outside of any scope are
+ * named "other".
+ * </p>
+ * <p>
+ * With a tracer, the outermost scope opens the span of the call, from its start
+ * to its end. The "sign" spans of its signatures and the spans of its requests
+ * are children of it, so calls answered without a request (caches, guards) are
+ * traced as well.
+ * </p>
+ * <p>
+ * The scope also collects the time spent signing its requests, which is handed
+ * to its next request, or dropped when no request is sent for it. Signatures
+ * computed outside of a scope are not measured.
+ * </p>
+ *
+ * <pre>
+ * return OperationScope.call("validateUser", tracer, () -&gt; requestValidateUser(userId));
+ * </pre>
+ */
+public final class OperationScope implements AutoCloseable {
+
+    private static final ThreadLocal<OperationScope> CURRENT = new ThreadLocal<>();
+    // returned for the nested scopes, closing it does nothing.
+    private static final OperationScope NESTED = new OperationScope(null, Tracer.NOOP);
+
+    private final String name;
+    private final Tracer tracer;
+    private TraceSpan span;
+    private TraceSpan signSpan;
+    private long signingNanos;
+
+    private OperationScope(String name, Tracer tracer) {
+        this.name = name;
+        this.tracer = tracer;
+    }
+
+    /**
+     * @param name   the name of the operation
+     * @param tracer the tracer of the call span, null for none
+     * @return the scope, to close once the operation is done
+     */
+    static OperationScope open(String name, Tracer tracer) {
+        if (CURRENT.get() != null) {
+            return NESTED;
+        }
+        OperationScope scope = new OperationScope(name, tracer == null ? Tracer.NOOP : tracer);
+        if (scope.tracer != Tracer.NOOP) {
+            scope.span = scope.tracer.startSpan(name, null, RequestExchange.epochNanos(System.nanoTime()));
+        }
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Runs an operation in a scope of the given name, without a call span.
+     *
+     * @param name the name of the operation
+     * @param call the operation
+     * @return the result of the operation
+     */
+    public static <T> T call(String name, Supplier<T> call) {
+        return call(name, null, call);
+    }
+
+    /**
+     * Runs an operation in a scope of the given name.
+     *
+     * @param name   the name of the operation
+     * @param tracer the tracer of the call span, null for none
+     * @param call   the operation
+     * @return the result of the operation
+     */
+    public static <T> T call(String name, Tracer tracer, Supplier<T> call) {
+        OperationScope scope = open(name, tracer);
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            if (scope.span != null) {
+                scope.span.setError(e.getClass().getSimpleName());
+            }
+            throw e;
+        } finally {
+            scope.close();
+        }
+    }
+
+    /**
+     * Binds a call to the scope of the calling thread, for the calls run later by
+     * another thread (background refreshes).
+     *
+     * @param call the call
+     * @return the call, run in a scope of the same name and tracer as the
+     *         current one
+     */
+    public static <T> Supplier<T> bind(Supplier<T> call) {
+        OperationScope scope = CURRENT.get();
+        if (scope == null) {
+            return call;
+        }
+        String name = scope.name;
+        Tracer tracer = scope.tracer;
+        return () -> call(name, tracer, call);
+    }
+
+    /**
+     * Opens the "sign" span of a signature computed by the calling thread, if it
+     * runs a traced scope.
+     *
+     * @return the start of the signature, to hand to {@link #signed(long)}
+     */
+    public static long signing() {
+        long start = System.nanoTime();
+        OperationScope scope = CURRENT.get();
+        if (scope != null && scope.span != null) {
+            scope.signSpan = scope.tracer.startSpan("sign", scope.span, RequestExchange.epochNanos(start));
+        }
+        return start;
+    }
+
+    /**
+     * Closes the "sign" span opened by {@link #signing()} and adds the signing
+     * time to the scope of the calling thread, if any.
+     *
+     * @param start the start of the signature
+     */
+    public static void signed(long start) {
+        long end = System.nanoTime();
+        OperationScope scope = CURRENT.get();
+        if (scope == null) {
+            return;
+        }
+        scope.signingNanos += end - start;
+        if (scope.signSpan != null) {
+            scope.signSpan.end(RequestExchange.epochNanos(end));
+            scope.signSpan = null;
+        }
+    }
+
+    /**
+     * @return the scope of the calling thread, null when there is none
+     */
+    static OperationScope current() {
+        return CURRENT.get();
+    }
+
+    String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return the span of the call, null when it is not traced
+     */
+    TraceSpan getSpan() {
+        return this.span;
+    }
+
+    /**
+     * @return the signing time collected since the previous call
+     */
+    long takeSigningNanos() {
+        long nanos = this.signingNanos;
+        this.signingNanos = 0;
+        return nanos;
+    }
+
+    @Override
+    public void close() {
+        if (this != NESTED && CURRENT.get() == this) {
+            CURRENT.remove();
+            if (this.span != null) {
+                this.span.end(RequestExchange.epochNanos(System.nanoTime()));
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.secureauth.sarestapi.resources;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.secureauth.sarestapi.exception.SARestAPIException;
+
+/**
+ * <p>
+ * Single flight execution of identical requests.
+ * While a request identified by a key is in flight, any other caller asking
+ * for the same key waits for it and receives the same result (or the same
+ * failure) instead of sending its own request. Once the request completes the
+ * key is released, so later callers always send a new request: nothing is
+ * cached.
+ * </p>
+ * <p>
+ * Only use it for idempotent requests. Callers of a coalesced request share
+ * the same response instance, so it must be treated as read only.
+ * </p>
+ */
+public class RequestCoalescer {
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Callable<T> request) throws SARestAPIException {
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> leader = this.inFlight.putIfAbsent(key, call);
+        if (leader != null) {
+            this.coalesced.increment();
+            // the follower sends nothing, its signature is not part of any request.
+            OperationScope scope = OperationScope.current();
+            if (scope != null) {
+                scope.takeSigningNanos();
+            }
+            return (T) await(leader, key);
+        }
+        try {
+            T result = request.call();
+            this.inFlight.remove(key, call);
+            call.complete(result);
+            return result;
+        } catch (Exception e) {
+            this.inFlight.remove(key, call);
+            call.completeExceptionally(e);
+            if (e instanceof SARestAPIException) {
+                throw (SARestAPIException) e;
+            }
+            throw new SARestAPIException(e);
+        }
+    }
+
+    /**
+     * @return number of requests that were served by another in flight request.
+     */
+    public long getCoalescedCount() {
+        return this.coalesced.sum();
+    }
+
+    /**
+     * @return number of distinct requests currently in flight.
+     */
+    public int getInFlightCount() {
+        return this.inFlight.size();
+    }
+
+    private Object await(CompletableFuture<Object> leader, String key) {
+        try {
+            return leader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SARestAPIException("Interrupted while waiting for coalesced request: " + key, e);
+        } catch (ExecutionException e) {
+            throw new SARestAPIException("Coalesced request failed: " + key, e.getCause());
+        }
+    }
+}
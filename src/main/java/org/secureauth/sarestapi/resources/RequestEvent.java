@@ -0,0 +1,79 @@
+package org.secureauth.sarestapi.resources;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of a request sent to the appliance by an
+ * {@link SAExecuter}. The path is templated so no user ends up in a recording.
+ */
+@Name(RequestEvent.NAME)
+@Label("IdP Request")
+@Category({ "SecureAuth", "IdP REST API" })
+@Description("A request sent to the IdP appliance")
+@StackTrace(false)
+class RequestEvent extends Event {
+
+    static final String NAME = "org.secureauth.sarestapi.Request";
+
+    @Label("Operation")
+    @Description("SAAccess method that sent the request")
+    String operation;
+
+    @Label("Realm")
+    String realm;
+
+    @Label("Method")
+    String method;
+
+    @Label("Path")
+    @Description("Request path with the realm, user, group and link IDs replaced by placeholders")
+    String path;
+
+    @Label("Status")
+    @Description("HTTP status code, 0 when no response was received")
+    int status;
+
+    @Label("Outcome")
+    @Description("Status of the response body, the HTTP status code when it has none, or error")
+    String outcome;
+
+    @Label("Request Size")
+    @DataAmount
+    long requestSize;
+
+    @Label("Response Size")
+    @Description("Content length of the response, -1 when unknown")
+    @DataAmount
+    long responseSize;
+
+    @Label("Queue Wait")
+    @Description("Time waiting for the client side rate limits")
+    @Timespan
+    long queueWait;
+
+    @Label("Connect")
+    @Description("Time from the sending of the request to the response headers, connection setup included")
+    @Timespan
+    long connect;
+
+    @Label("Sign")
+    @Description("Time signing the request, before the event start")
+    @Timespan
+    long sign;
+
+    @Label("Serialize")
+    @Timespan
+    long serialize;
+
+    @Label("Read")
+    @Description("Time reading and parsing the response body")
+    @Timespan
+    long read;
+}
@@ -0,0 +1,319 @@
+package org.secureauth.sarestapi.resources;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import org.secureauth.sarestapi.data.Response.BaseResponse;
+import org.secureauth.sarestapi.loadtest.TrafficRecorder;
+import org.secureauth.sarestapi.metrics.MetricsRecorder;
+import org.secureauth.sarestapi.tracing.TraceSpan;
+import org.secureauth.sarestapi.tracing.Tracer;
+import org.secureauth.sarestapi.util.JSONUtil;
+
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Measures one request of an {@link SAExecuter}, from its start to the end of
+ * the response read, and hands the measures to the metrics recorder, to the
+ * traffic recorder and to the flight recorder when closed. The spans of the
+ * request are opened as it runs, under the call span of its
+ * {@link OperationScope}, if any.
+ */
+final class RequestExchange implements AutoCloseable {
+
+    private static final String OTHER_OPERATION = "other";
+    private static final Set<String> ID_PARENTS = Set.of("users", "groups", "link");
+    // the endpoints taking the user as a query parameter end with one of these.
+    private static final Set<String> QUERY_PARAMETER_ENDPOINTS = Set.of("factors", "groups", "users", "resetpwd",
+            "changepwd", "throttle");
+    private static final ThreadLocal<RequestExchange> CURRENT = new ThreadLocal<>();
+    private static final long EPOCH_OFFSET_NANOS = System.currentTimeMillis() * 1_000_000 - System.nanoTime();
+
+    private final MetricsRecorder recorder;
+    private final Tracer tracer;
+    private final TrafficRecorder traffic;
+    private final String method;
+    private final String query;
+    private final String operation;
+    private final RequestExchange previous;
+    private final RequestEvent event = new RequestEvent();
+    private final long signNanos;
+    private final long startNanos;
+    private final TraceSpan parentSpan;
+    private long queueNanos;
+    private long serializeNanos;
+    private long connectNanos;
+    private long readNanos;
+    private long bytesOut;
+    private long bytesIn = -1;
+    private int status;
+    private String outcome;
+    private TraceSpan span;
+    private TraceSpan httpSpan;
+    private String[] realmAndPath;
+
+    private RequestExchange(MetricsRecorder recorder, Tracer tracer, TrafficRecorder traffic, String method,
+            String query) {
+        this.recorder = recorder;
+        this.tracer = tracer;
+        this.traffic = traffic;
+        this.method = method;
+        this.query = query;
+        this.previous = CURRENT.get();
+        OperationScope scope = OperationScope.current();
+        this.operation = scope == null ? OTHER_OPERATION : scope.getName();
+        this.signNanos = scope == null ? 0 : scope.takeSigningNanos();
+        this.parentSpan = scope == null ? null : scope.getSpan();
+        this.event.begin();
+        this.startNanos = System.nanoTime();
+        if (tracer != Tracer.NOOP) {
+            startSpans();
+        }
+    }
+
+    static RequestExchange start(MetricsRecorder recorder, Tracer tracer, String method, String query) {
+        return start(recorder, tracer, null, method, query);
+    }
+
+    static RequestExchange start(MetricsRecorder recorder, Tracer tracer, TrafficRecorder traffic, String method,
+            String query) {
+        RequestExchange exchange = new RequestExchange(recorder == null ? MetricsRecorder.NOOP : recorder,
+                tracer == null ? Tracer.NOOP : tracer, traffic, method, query);
+        CURRENT.set(exchange);
+        return exchange;
+    }
+
+    /**
+     * @return the exchange of the request running on the calling thread, null
+     *         when there is none
+     */
+    static RequestExchange current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Adds time spent waiting for the rate limits to the running request of the
+     * calling thread, if any.
+     *
+     * @param nanos the time waited
+     */
+    static void queued(long nanos) {
+        RequestExchange exchange = CURRENT.get();
+        if (exchange != null) {
+            exchange.queueNanos += nanos;
+        }
+    }
+
+    /**
+     * @param payload the request body
+     * @return the JSON entity of the body
+     */
+    Entity<String> json(Object payload) {
+        long start = System.nanoTime();
+        String json = JSONUtil.convertObjectToJSON(payload);
+        this.bytesOut = json == null ? 0 : json.getBytes(StandardCharsets.UTF_8).length;
+        long end = System.nanoTime();
+        this.serializeNanos += end - start;
+        childSpan("serialize", start, end);
+        return Entity.entity(json, MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * Opens the "http" span of the request when it is sent.
+     *
+     * @return the traceparent header of the span, null when there is none
+     */
+    String traceparent() {
+        if (this.span == null) {
+            return null;
+        }
+        if (this.httpSpan == null) {
+            this.httpSpan = this.tracer.startSpan("http", this.span, epochNanos(System.nanoTime()));
+            if (this.httpSpan == null) {
+                return null;
+            }
+            this.httpSpan.setAttribute("http.request.method", this.method);
+        }
+        return this.httpSpan.getTraceparent();
+    }
+
+    /**
+     * Reads the response body, recording its size and outcome.
+     *
+     * @param response  the response
+     * @param valueType the type of the body
+     * @return the body
+     */
+    <T> T read(Response response, Class<T> valueType) {
+        long start = System.nanoTime();
+        this.connectNanos = start - this.startNanos - this.serializeNanos - this.queueNanos;
+        this.status = response.getStatus();
+        this.bytesIn = response.getLength();
+        T value = response.readEntity(valueType);
+        this.readNanos = System.nanoTime() - start;
+        String bodyStatus = value instanceof BaseResponse ? ((BaseResponse) value).getStatus() : null;
+        this.outcome = bodyStatus != null ? bodyStatus : String.valueOf(this.status);
+        return value;
+    }
+
+    @Override
+    public void close() {
+        long endNanos = System.nanoTime();
+        long latencyNanos = endNanos - this.startNanos;
+        this.event.end();
+        if (this.previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(this.previous);
+        }
+        String result = this.outcome == null ? "error" : this.outcome;
+        if (this.span != null) {
+            endSpans(result, endNanos);
+        }
+        boolean recorded = this.recorder != MetricsRecorder.NOOP;
+        boolean committed = this.event.shouldCommit();
+        if (!recorded && !committed && this.traffic == null) {
+            return;
+        }
+        if (recorded) {
+            this.recorder.record(this.operation, result, this.bytesOut, this.bytesIn, latencyNanos);
+        }
+        if (this.traffic != null) {
+            this.traffic.record(this.operation, this.method, realmAndPath()[1], this.status, result, this.bytesOut,
+                    this.bytesIn, this.startNanos, latencyNanos);
+        }
+        if (committed) {
+            String[] realmAndPath = realmAndPath();
+            this.event.operation = this.operation;
+            this.event.realm = realmAndPath[0];
+            this.event.method = this.method;
+            this.event.path = realmAndPath[1];
+            this.event.status = this.status;
+            this.event.outcome = result;
+            this.event.requestSize = this.bytesOut;
+            this.event.responseSize = this.bytesIn;
+            this.event.queueWait = this.queueNanos;
+            this.event.connect = Math.max(0, this.connectNanos);
+            this.event.sign = this.signNanos;
+            this.event.serialize = this.serializeNanos;
+            this.event.read = this.readNanos;
+            this.event.commit();
+        }
+    }
+
+    private void startSpans() {
+        String[] realmAndPath = realmAndPath();
+        this.span = this.tracer.startSpan(this.method + ' ' + realmAndPath[1], this.parentSpan,
+                epochNanos(this.startNanos));
+        if (this.span == null) {
+            return;
+        }
+        this.span.setAttribute("sa.operation", this.operation);
+        this.span.setAttribute("sa.realm", realmAndPath[0]);
+        this.span.setAttribute("http.request.method", this.method);
+        this.span.setAttribute("url.template", realmAndPath[1]);
+    }
+
+    private void childSpan(String name, long startNanos, long endNanos) {
+        if (this.span == null) {
+            return;
+        }
+        TraceSpan child = this.tracer.startSpan(name, this.span, epochNanos(startNanos));
+        if (child != null) {
+            child.end(epochNanos(endNanos));
+        }
+    }
+
+    private void endSpans(String result, long endNanos) {
+        long endEpochNanos = epochNanos(endNanos);
+        if (this.httpSpan != null) {
+            if (this.status != 0) {
+                this.httpSpan.setAttribute("http.response.status_code", this.status);
+            } else {
+                this.httpSpan.setError("No response");
+            }
+            this.httpSpan.end(endEpochNanos);
+        }
+        this.span.setAttribute("sa.outcome", result);
+        if (this.outcome == null) {
+            this.span.setError("Request failed");
+        }
+        this.span.end(endEpochNanos);
+    }
+
+    static long epochNanos(long nanoTime) {
+        return EPOCH_OFFSET_NANOS + nanoTime;
+    }
+
+    // the template of the query, computed once for the spans and the recorders.
+    private String[] realmAndPath() {
+        if (this.realmAndPath == null) {
+            this.realmAndPath = template(this.query);
+        }
+        return this.realmAndPath;
+    }
+
+    /**
+     * Splits a request URL ("https://host:port/{realm}/api/v1/users/{userId}...")
+     * in its realm and its path, where the realm and the IDs following "users",
+     * "groups" and "link" are replaced by placeholders and the query string is
+     * dropped. A user named like an endpoint taking the user as a query parameter
+     * ("factors", "throttle"...) is reported as that endpoint.
+     *
+     * @param query the request URL
+     * @return the realm and the templated path
+     */
+    static String[] template(String query) {
+        String path = query;
+        int scheme = path.indexOf("://");
+        if (scheme >= 0) {
+            int slash = path.indexOf('/', scheme + 3);
+            path = slash < 0 ? "/" : path.substring(slash);
+        }
+        int parameters = path.indexOf('?');
+        if (parameters >= 0) {
+            path = path.substring(0, parameters);
+        }
+        String[] segments = path.split("/", -1);
+        // segments[0] is the empty string before the leading slash.
+        String realm = segments.length > 1 ? segments[1] : "";
+        StringBuilder template = new StringBuilder();
+        for (int i = 1; i < segments.length; i++) {
+            template.append('/');
+            if (i == 1 && !realm.isEmpty()) {
+                template.append("{realm}");
+            } else if (i > 4 && isId(segments, i)) {
+                template.append(placeholder(segments[i - 1]));
+            } else {
+                template.append(segments[i]);
+            }
+        }
+        return new String[] { realm, template.toString() };
+    }
+
+    private static boolean isId(String[] segments, int i) {
+        return ID_PARENTS.contains(segments[i - 1]) && !segments[i].isEmpty()
+                && !(i == 5 && segments.length == 6 && QUERY_PARAMETER_ENDPOINTS.contains(segments[i]));
+    }
+
+    private static String placeholder(String parent) {
+        switch (parent) {
+        case "users":
+            return "{userId}";
+        case "groups":
+            return "{groupId}";
+        default:
+            return "{linkId}";
+        }
+    }
+
+    /**
+     * The name of the {@link OperationScope} the request was started in, "other"
+     * when the executer is used outside of any scope.
+     */
+    String operation() {
+        return this.operation;
+    }
+}
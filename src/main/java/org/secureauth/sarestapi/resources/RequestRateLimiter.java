@@ -0,0 +1,250 @@
+package org.secureauth.sarestapi.resources;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.secureauth.sarestapi.exception.SARestAPIException;
+
+import com.google.common.base.Ticker;
+
+/**
+ * <p>
+ * Client side token bucket limits of the requests sent to the appliance, per
+ * realm and per operation class. A limit set for a null realm applies to every
+ * realm without a limit of its own. Limits can be changed at any time, the
+ * tokens already accumulated by a bucket are kept (up to the new burst).
+ * </p>
+ * <p>
+ * A request over the limit waits for a token up to the max wait of the calling
+ * thread (the default one, or the one of its {@link #withPolicy} scope) and is
+ * rejected with a {@link SARestAPIException} when it does not get one in time;
+ * a max wait of 0 rejects it right away. Waiting requests get the tokens by
+ * priority, then by arrival.
+ * </p>
+ */
+public class RequestRateLimiter {
+
+    /**
+     * The operation classes, each one with its own limits.
+     */
+    public enum OperationClass {
+        /** Credential validations, adaptive auth and the authenticated notifications. */
+        AUTH,
+        /** OTP, push and link deliveries. */
+        OTP_DELIVERY,
+        /** Users, groups, factors and throttle requests. */
+        IDM,
+        /** Device fingerprint requests. */
+        DFP,
+        /** Every other request (IP evaluation, behave bio, number profile...). */
+        OTHER
+    }
+
+    private static final String ANY_REALM = "";
+
+    private final Ticker ticker;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket.Limit> limits = new ConcurrentHashMap<>();
+    private final ThreadLocal<Policy> policies = new ThreadLocal<>();
+    private final LongAdder rejected = new LongAdder();
+    // held while the limits change and while a bucket is created from them.
+    private final Object limitsLock = new Object();
+    private volatile long defaultMaxWaitNanos;
+
+    /**
+     * @param defaultMaxWait how long a request waits for a token by default, 0
+     *                       to reject it right away
+     * @param unit           time unit of the max wait
+     */
+    public RequestRateLimiter(long defaultMaxWait, TimeUnit unit) {
+        this(defaultMaxWait, unit, Ticker.systemTicker());
+    }
+
+    RequestRateLimiter(long defaultMaxWait, TimeUnit unit, Ticker ticker) {
+        this.ticker = ticker;
+        this.defaultMaxWaitNanos = toMaxWaitNanos(defaultMaxWait, unit);
+    }
+
+    public void setDefaultMaxWait(long maxWait, TimeUnit unit) {
+        this.defaultMaxWaitNanos = toMaxWaitNanos(maxWait, unit);
+    }
+
+    /**
+     * Sets or changes a limit.
+     *
+     * @param realm             the realm, null for every realm without its own
+     *                          limit
+     * @param operationClass    the operation class
+     * @param requestsPerSecond sustained rate
+     * @param burst             requests allowed at once after an idle period
+     */
+    public void setLimit(String realm, OperationClass operationClass, double requestsPerSecond, int burst) {
+        if (requestsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive.");
+        }
+        String key = key(realm, operationClass);
+        TokenBucket.Limit limit = new TokenBucket.Limit(requestsPerSecond, burst);
+        synchronized (this.limitsLock) {
+            this.limits.put(key, limit);
+            if (realm == null) {
+                for (Map.Entry<String, TokenBucket> bucket : this.buckets.entrySet()) {
+                    if (bucket.getValue().isShared() && bucket.getKey().endsWith(key)) {
+                        bucket.getValue().setLimit(limit, true);
+                    }
+                }
+            } else {
+                TokenBucket bucket = this.buckets.get(key);
+                if (bucket != null) {
+                    bucket.setLimit(limit, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes a limit. The realms of a removed realm limit fall back to the limit
+     * set for every realm, if any.
+     *
+     * @param realm          the realm, null for the limit of every realm
+     * @param operationClass the operation class
+     */
+    public void removeLimit(String realm, OperationClass operationClass) {
+        String key = key(realm, operationClass);
+        synchronized (this.limitsLock) {
+            this.limits.remove(key);
+            for (Map.Entry<String, TokenBucket> bucket : this.buckets.entrySet()) {
+                boolean removed = realm == null ? bucket.getValue().isShared() && bucket.getKey().endsWith(key)
+                        : bucket.getKey().equals(key);
+                if (removed && this.buckets.remove(bucket.getKey(), bucket.getValue())) {
+                    // the waiting requests go through, the next ones get a new bucket if a limit applies.
+                    bucket.getValue().close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the priority and max wait of the requests sent by the calling thread
+     * until the returned scope is closed.
+     *
+     * <pre>
+     * try (RequestRateLimiter.Scope scope = limiter.withPolicy(10, 0, TimeUnit.SECONDS)) {
+     *     saAccess.validateUserPassword(userId, password);
+     * }
+     * </pre>
+     *
+     * @param priority higher priority requests get the tokens first
+     * @param maxWait  how long the requests wait for a token, 0 to reject them
+     *                 right away
+     * @param unit     time unit of the max wait
+     * @return the scope restoring the previous policy when closed
+     */
+    public Scope withPolicy(int priority, long maxWait, TimeUnit unit) {
+        long maxWaitNanos = toMaxWaitNanos(maxWait, unit);
+        Policy previous = this.policies.get();
+        this.policies.set(new Policy(priority, maxWaitNanos));
+        return () -> {
+            if (previous == null) {
+                this.policies.remove();
+            } else {
+                this.policies.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Takes a token for a request, waiting for it according to the policy of the
+     * calling thread.
+     *
+     * @param realm          the realm of the request
+     * @param operationClass the operation class of the request
+     * @throws SARestAPIException when no token was available in time
+     */
+    public void acquire(String realm, OperationClass operationClass) throws SARestAPIException {
+        TokenBucket bucket = bucket(realm, operationClass);
+        if (bucket == null) {
+            return;
+        }
+        Policy policy = this.policies.get();
+        int priority = policy == null ? 0 : policy.priority;
+        long maxWaitNanos = policy == null ? this.defaultMaxWaitNanos : policy.maxWaitNanos;
+        boolean acquired;
+        long start = System.nanoTime();
+        try {
+            acquired = bucket.acquire(priority, maxWaitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SARestAPIException("Interrupted while waiting for the rate limit of " + operationClass, e);
+        } finally {
+            RequestExchange.queued(System.nanoTime() - start);
+        }
+        if (!acquired) {
+            this.rejected.increment();
+            throw new SARestAPIException(
+                    "Rate limit exceeded for " + operationClass + " requests of realm " + realm + ".");
+        }
+    }
+
+    /**
+     * @return number of requests rejected by a limit
+     */
+    public long getRejectedCount() {
+        return this.rejected.sum();
+    }
+
+    private TokenBucket bucket(String realm, OperationClass operationClass) {
+        String key = key(realm, operationClass);
+        TokenBucket bucket = this.buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        // the limit is read with the bucket created, so a limit set meanwhile is not lost.
+        synchronized (this.limitsLock) {
+            return this.buckets.computeIfAbsent(key, k -> newBucket(k, operationClass));
+        }
+    }
+
+    private TokenBucket newBucket(String key, OperationClass operationClass) {
+        TokenBucket.Limit limit = this.limits.get(key);
+        boolean shared = limit == null;
+        if (shared) {
+            limit = this.limits.get(key(null, operationClass));
+            if (limit == null) {
+                return null;
+            }
+        }
+        // every realm gets its own bucket, even when it uses the limit shared by all realms.
+        return new TokenBucket(limit, shared, this.ticker);
+    }
+
+    private static long toMaxWaitNanos(long maxWait, TimeUnit unit) {
+        if (maxWait < 0) {
+            throw new IllegalArgumentException("Max wait can not be negative.");
+        }
+        return unit.toNanos(maxWait);
+    }
+
+    private static String key(String realm, OperationClass operationClass) {
+        return (realm == null ? ANY_REALM : realm) + '|' + operationClass;
+    }
+
+    /**
+     * Restores the previous policy of the thread when closed.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static class Policy {
+        private final int priority;
+        private final long maxWaitNanos;
+
+        Policy(int priority, long maxWaitNanos) {
+            this.priority = priority;
+            this.maxWaitNanos = maxWaitNanos;
+        }
+    }
+}
@@ -12,6 +12,7 @@ import java.security.cert.CertificateException;
 import java.util.Optional;
 
 import javax.net.ssl.*;
+import jakarta.ws.rs.Priorities;
 import jakarta.ws.rs.client.*;
 import jakarta.ws.rs.core.Cookie;
 import jakarta.ws.rs.core.MediaType;
@@ -28,11 +29,14 @@ import org.secureauth.sarestapi.data.UserProfile.NewUserProfile;
 import org.secureauth.sarestapi.data.UserProfile.UserToGroups;
 import org.secureauth.sarestapi.data.UserProfile.UsersToGroup;
 import org.secureauth.sarestapi.exception.SARestAPIException;
+import org.secureauth.sarestapi.filters.RateLimitFilter;
 import org.secureauth.sarestapi.filters.SACheckRequestFilter;
 import org.secureauth.sarestapi.guid.GUIDStrategy;
 import org.secureauth.sarestapi.guid.XRequestIDFilter;
+import org.secureauth.sarestapi.loadtest.TrafficRecorder;
+import org.secureauth.sarestapi.metrics.MetricsRecorder;
 import org.secureauth.sarestapi.ssl.SATrustManagerFactory;
-import org.secureauth.sarestapi.util.JSONUtil;
+import org.secureauth.sarestapi.tracing.Tracer;
 import org.secureauth.sarestapi.util.RestApiHeader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -88,6 +92,19 @@ public class SAExecuter {
     // sessions.
     private static final String SESSION_AFFINITY_COOKIE_NAME = "INGRESSCOOKIE";
     private Integer idpApiTimeout;
+    // Identical concurrent GET requests share a single call when enabled, by default with -Drest.api.coalescing=true.
+    private RequestCoalescer requestCoalescer = Boolean.getBoolean("rest.api.coalescing") ? new RequestCoalescer()
+            : null;
+    // Client side rate limits, none when null.
+    private RequestRateLimiter rateLimiter = null;
+    // Records every request, does nothing by default.
+    private MetricsRecorder metricsRecorder = MetricsRecorder.NOOP;
+    // Opens the spans of every request, none by default.
+    private Tracer tracer = Tracer.NOOP;
+    // Records the shape and timing of every request, none by default.
+    private TrafficRecorder trafficRecorder;
+    // Injects faults in the requests, none by default.
+    private FaultInjector faultInjector;
     // Default is do nothing.
     private ClientRequestFilter xRequestIDFilter = (requestContext) -> {
     };
@@ -139,15 +156,117 @@ public class SAExecuter {
         this.idpApiTimeout = timeoutInMillis;
     }
 
+    /**
+     * Enable or disable the coalescing of identical concurrent GET requests (same
+     * realm, path and query). When enabled, callers of a coalesced request share
+     * the same response instance. Stateful (cookie) requests are never coalesced.
+     *
+     * @param enabled true to enable coalescing
+     */
+    public void setRequestCoalescing(boolean enabled) {
+        if (enabled && this.requestCoalescer == null) {
+            this.requestCoalescer = new RequestCoalescer();
+        } else if (!enabled) {
+            this.requestCoalescer = null;
+        }
+    }
+
+    /**
+     * @return number of GET requests served by an identical in flight request.
+     */
+    public long getCoalescedRequestCount() {
+        RequestCoalescer coalescer = this.requestCoalescer;
+        return coalescer == null ? 0 : coalescer.getCoalescedCount();
+    }
+
+    /**
+     * Set the client side rate limits of the requests sent by this executer. The
+     * limits of the limiter can be changed while it is in use.
+     *
+     * @param rateLimiter the limiter to use, null for no limit
+     */
+    public void setRateLimiter(RequestRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    public RequestRateLimiter getRateLimiter() {
+        return this.rateLimiter;
+    }
+
+    /**
+     * Set the recorder of the requests sent by this executer. Every request is
+     * recorded under the name of the {@link org.secureauth.sarestapi.SAAccess}
+     * method that sent it.
+     *
+     * @param metricsRecorder the recorder to use, null disables the metrics
+     */
+    public void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder == null ? MetricsRecorder.NOOP : metricsRecorder;
+    }
+
+    public MetricsRecorder getMetricsRecorder() {
+        return this.metricsRecorder;
+    }
+
+    /**
+     * Set the tracer of the requests sent by this executer, and of the calls of
+     * the SAAccess using it. The traceparent of every traced request is sent to
+     * the appliance with its X-Request-ID.
+     *
+     * @param tracer the tracer to use, null disables the tracing
+     */
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer == null ? Tracer.NOOP : tracer;
+    }
+
+    public Tracer getTracer() {
+        return this.tracer;
+    }
+
+    /**
+     * Set the recorder of the traffic of this executer, to replay it later with
+     * {@link org.secureauth.sarestapi.loadtest.TrafficReplay}. Closing the
+     * recorder is left to the caller.
+     *
+     * @param trafficRecorder the recorder to use, null stops the recording
+     */
+    public void setTrafficRecorder(TrafficRecorder trafficRecorder) {
+        this.trafficRecorder = trafficRecorder;
+    }
+
+    public TrafficRecorder getTrafficRecorder() {
+        return this.trafficRecorder;
+    }
+
+    /**
+     * Set the faults injected in the requests sent by this executer, for
+     * resilience tests. The rules of the injector can be changed while it is in
+     * use.
+     *
+     * @param faultInjector the injector to use, null stops the injection
+     */
+    public void setFaultInjector(FaultInjector faultInjector) {
+        this.faultInjector = faultInjector;
+    }
+
+    public FaultInjector getFaultInjector() {
+        return this.faultInjector;
+    }
+
     // Set up our Connection
     private void createConnection() throws SARestAPIException {
+        ClientCreationEvent creationEvent = new ClientCreationEvent();
+        creationEvent.begin();
         ClientConfig config = new ClientConfig();
         try {
-            SSLContext ctx = null;
-            ctx = SSLContext.getInstance(TLS);
-            ctx.init(null, SATrustManagerFactory.createTrustsManagersFor(this.saBaseURL), new SecureRandom());
+            SSLContext ctx = initSSLContext();
             config.register(SACheckRequestFilter.class);
             config.register(this.xRequestIDFilter);
+            // after the rate limits, so the http span does not include their wait.
+            config.register(new TraceparentFilter(), Priorities.USER + 100);
+            config.register(new RateLimitFilter(this::getRateLimiter));
+            // after the traceparent, so the http span includes the injected faults.
+            config.register(new FaultInjectionFilter(this::getFaultInjector), Priorities.USER + 200);
             client = ClientBuilder.newBuilder()
                     .withConfig(config)
                     .sslContext(ctx)
@@ -155,10 +274,37 @@ public class SAExecuter {
                     .build();
             client.property(ClientProperties.CONNECT_TIMEOUT, this.idpApiTimeout);
             client.property(ClientProperties.READ_TIMEOUT, this.idpApiTimeout);
+            creationEvent.succeeded = true;
         } catch (NoSuchAlgorithmException | KeyManagementException | KeyStoreException | CertificateException e) {
             logger.error("Exception occurred while attempting to associating our SSL cert to the session: "
                     + e.getMessage());
             throw new SARestAPIException("Unable to create connection object, creation attempt returned NULL.", e);
+        } finally {
+            creationEvent.end();
+            if (creationEvent.shouldCommit()) {
+                creationEvent.appliance = this.saBaseURL.getAppliance();
+                creationEvent.selfSigned = this.saBaseURL.isSelfSigned();
+                creationEvent.commit();
+            }
+        }
+    }
+
+    private SSLContext initSSLContext()
+            throws NoSuchAlgorithmException, KeyManagementException, KeyStoreException, CertificateException {
+        TlsInitEvent tlsEvent = new TlsInitEvent();
+        tlsEvent.begin();
+        try {
+            SSLContext ctx = SSLContext.getInstance(TLS);
+            ctx.init(null, SATrustManagerFactory.createTrustsManagersFor(this.saBaseURL), new SecureRandom());
+            tlsEvent.succeeded = true;
+            return ctx;
+        } finally {
+            tlsEvent.end();
+            if (tlsEvent.shouldCommit()) {
+                tlsEvent.appliance = this.saBaseURL.getAppliance();
+                tlsEvent.protocol = TLS;
+                tlsEvent.commit();
+            }
         }
     }
 
@@ -169,6 +315,7 @@ public class SAExecuter {
 
     public <T> T executeGetRequestStateful(String auth, Cookie ingressCookie, String query, String ts,
             Class<T> valueType) throws SARestAPIException {
+        RequestExchange exchange = startExchange(Resource.METHOD_GET, query);
         try {
             if (client == null) {
                 createConnection();
@@ -176,19 +323,32 @@ public class SAExecuter {
             WebTarget target = client.target(query);
             Response response = target.request().accept(MediaType.APPLICATION_JSON).header("Authorization", auth)
                     .header(tsHeader, ts).cookie(ingressCookie).get();
-            T genericResponse = response.readEntity(valueType);
+            T genericResponse = exchange.read(response, valueType);
             response.close();
             return genericResponse;
         } catch (Exception e) {
             throw new SARestAPIException("Exception Get Request: \nQuery:\n\t" + query, e);
+        } finally {
+            exchange.close();
         }
     }
 
     public <T> T executeGetRequest(String auth, String query, String userId, String ts, Class<T> valueType)
             throws SARestAPIException {
+        RequestCoalescer coalescer = this.requestCoalescer;
+        if (coalescer != null) {
+            return coalescer.execute(coalescingKey(query, userId, valueType),
+                    () -> getRequest(auth, query, userId, ts, valueType));
+        }
+        return getRequest(auth, query, userId, ts, valueType);
+    }
+
+    private <T> T getRequest(String auth, String query, String userId, String ts, Class<T> valueType)
+            throws SARestAPIException {
 
         WebTarget target = null;
         Response response = null;
+        RequestExchange exchange = startExchange(Resource.METHOD_GET, query);
         try {
             if (client == null) {
                 createConnection();
@@ -202,11 +362,12 @@ public class SAExecuter {
             response = target.request().accept(MediaType.APPLICATION_JSON).header("Authorization", auth)
                     .header(tsHeader, ts).get();
             // consider using response.ok(valueType).build(); instead.
-            return response.readEntity(valueType);
+            return exchange.read(response, valueType);
         } catch (Exception e) {
             throw new SARestAPIException("Exception Get Request: \nQuery:\n\t" + query, e);
         } finally {
             closeResponseSafe(response);
+            exchange.close();
         }
     }
 
@@ -227,6 +388,7 @@ public class SAExecuter {
             throws SARestAPIException {
 
         Response response = null;
+        RequestExchange exchange = startExchange(Resource.METHOD_POST, query);
         try {
             if (client == null) {
                 createConnection();
@@ -236,20 +398,23 @@ public class SAExecuter {
             target = client.target(query);
             response = target.request().accept(MediaType.APPLICATION_JSON).header("Authorization", auth)
                     .header(tsHeader, ts)
-                    .post(Entity.entity(JSONUtil.convertObjectToJSON(authRequest), MediaType.APPLICATION_JSON));
+                    .property(RateLimitFilter.AUTH_TYPE_PROPERTY, authType(authRequest))
+                    .post(exchange.json(authRequest));
 
-            return response.readEntity(valueType);
+            return exchange.read(response, valueType);
         } catch (Exception e) {
             throw new SARestAPIException("Exception Delivering OTP by Push: \nQuery:\n\t" +
                     query + "\nError:" + e.getMessage(), e);
         } finally {
             closeResponseSafe(response);
+            exchange.close();
         }
     }
 
     public <T extends StatefulResponseObject> T executePostRequestStateful(String auth, String query,
             AuthRequest authRequest, String ts, Class<T> valueType) throws SARestAPIException {
         Response response = null;
+        RequestExchange exchange = startExchange(Resource.METHOD_POST, query);
         try {
             if (client == null) {
                 createConnection();
@@ -257,9 +422,10 @@ public class SAExecuter {
             WebTarget target = client.target(query);
             response = target.request().accept(MediaType.APPLICATION_JSON).header("Authorization", auth)
                     .header(tsHeader, ts)
-                    .post(Entity.entity(JSONUtil.convertObjectToJSON(authRequest), MediaType.APPLICATION_JSON));
+                    .property(RateLimitFilter.AUTH_TYPE_PROPERTY, authType(authRequest))
+                    .post(exchange.json(authRequest));
             StatefulResponseObject ro = new StatefulResponseObject();
-            T responseObject = response.readEntity(valueType);
+            T responseObject = exchange.read(response, valueType);
             responseObject.setSessionAffinityCookie(
                     // return a null-empty cookie when the session affinity cookie is not found.
                     response.getCookies().getOrDefault(SESSION_AFFINITY_COOKIE_NAME,
@@ -270,6 +436,7 @@ public class SAExecuter {
                     query + "\nError:" + e.getMessage(), e);
         } finally {
             closeResponseSafe(response);
+            exchange.close();
         }
     }
 
@@ -283,6 +450,7 @@ public class SAExecuter {
 
         WebTarget target = null;
         Response response = null;
+        RequestExchange exchange = startExchange(Resource.METHOD_PUT, query);
         try {
             if (client == null) {
                 createConnection();
@@ -295,13 +463,14 @@ public class SAExecuter {
             }
             response = target.request().accept(MediaType.APPLICATION_JSON).header("Authorization", auth)
                     .header(tsHeader, ts)
-                    .put(Entity.entity(JSONUtil.convertObjectToJSON(payloadRequest), MediaType.APPLICATION_JSON));
+                    .put(exchange.json(payloadRequest));
             // consider using response.ok(valueType).build(); instead.
-            return response.readEntity(responseValueType);
+            return exchange.read(response, responseValueType);
         } catch (SARestAPIException e) {
             throw new SARestAPIException("Exception Put Request: \nQuery:\n\t" + query + "\n", e);
         } finally {
             closeResponseSafe(response);
+            exchange.close();
         }
     }
 
@@ -313,6 +482,7 @@ public class SAExecuter {
     public <T> T executePostRawRequest(String auth, String query, String userId, String groupId, Object authRequest,
             Class<T> valueType, String ts) throws SARestAPIException {
         Response response = null;
+        RequestExchange exchange = startExchange(Resource.METHOD_POST, query);
         try {
             if (client == null) {
                 createConnection();
@@ -325,18 +495,21 @@ public class SAExecuter {
             }
             response = target.request().accept(MediaType.APPLICATION_JSON).header("Authorization", auth)
                     .header(tsHeader, ts)
-                    .post(Entity.entity(JSONUtil.convertObjectToJSON(authRequest), MediaType.APPLICATION_JSON));
-            return response.readEntity(valueType);
+                    .property(RateLimitFilter.AUTH_TYPE_PROPERTY, authType(authRequest))
+                    .post(exchange.json(authRequest));
+            return exchange.read(response, valueType);
         } catch (Exception e) {
             throw new SARestAPIException("Exception Post Request: \nQuery:\n\t" + query, e);
         } finally {
             closeResponseSafe(response);
+            exchange.close();
         }
     }
 
     public <T> T executeGenericRawRequest(String auth, String query, String ts, String method, Object authRequest,
             Class<T> valueType) throws SARestAPIException {
         Response response = null;
+        RequestExchange exchange = startExchange(method, query);
         try {
             if (client == null) {
                 createConnection();
@@ -347,10 +520,11 @@ public class SAExecuter {
             WebTarget target = client.target(query);
             response = target.request().accept(MediaType.APPLICATION_JSON).header("Authorization", auth)
                     .header(tsHeader, ts)
-                    .build(method, Entity.entity(JSONUtil.convertObjectToJSON(authRequest), MediaType.APPLICATION_JSON))
+                    .property(RateLimitFilter.AUTH_TYPE_PROPERTY, authType(authRequest))
+                    .build(method, exchange.json(authRequest))
                     .invoke();
 
-            return response.readEntity(valueType);
+            return exchange.read(response, valueType);
         } catch (Exception e) {
             throw new SARestAPIException("Exception Request: \nQuery:\n\t" + query + "\nError:" + e.getMessage(), e);
         } finally {
@@ -358,6 +532,7 @@ public class SAExecuter {
                 client.property(ClientProperties.SUPPRESS_HTTP_COMPLIANCE_VALIDATION, false);
             }
             closeResponseSafe(response);
+            exchange.close();
         }
     }
 
@@ -375,6 +550,7 @@ public class SAExecuter {
             Class<T> valueType, String ts) throws SARestAPIException {
         WebTarget target = null;
         Response response = null;
+        RequestExchange exchange = startExchange(Resource.METHOD_POST, query);
         try {
             if (client == null) {
                 createConnection();
@@ -387,11 +563,12 @@ public class SAExecuter {
             }
             response = target.request().accept(MediaType.APPLICATION_JSON).header("Authorization", auth)
                     .header(tsHeader, ts).post(Entity.entity("", MediaType.APPLICATION_JSON));
-            return response.readEntity(valueType);
+            return exchange.read(response, valueType);
         } catch (Exception e) {
             throw new SARestAPIException("Exception Post Request: \nQuery:\n\t" + query, e);
         } finally {
             closeResponseSafe(response);
+            exchange.close();
         }
     }
 
@@ -400,9 +577,19 @@ public class SAExecuter {
     }
 
     public String executeRawGetRequest(String auth, String query, String userId, String ts) throws SARestAPIException {
+        RequestCoalescer coalescer = this.requestCoalescer;
+        if (coalescer != null) {
+            return coalescer.execute(coalescingKey(query, userId, String.class),
+                    () -> rawGetRequest(auth, query, userId, ts));
+        }
+        return rawGetRequest(auth, query, userId, ts);
+    }
+
+    private String rawGetRequest(String auth, String query, String userId, String ts) throws SARestAPIException {
 
         WebTarget target = null;
         Response response = null;
+        RequestExchange exchange = startExchange(Resource.METHOD_GET, query);
         try {
             if (client == null) {
                 createConnection();
@@ -414,11 +601,12 @@ public class SAExecuter {
             }
             response = target.request().accept(MediaType.APPLICATION_JSON).header("Authorization", auth)
                     .header(tsHeader, ts).get(Response.class);
-            return response.readEntity(String.class);
+            return exchange.read(response, String.class);
         } catch (Exception e) {
             throw new SARestAPIException("Exception getting User Factors: \nQuery:\n\t" + query, e);
         } finally {
             closeResponseSafe(response);
+            exchange.close();
         }
     }
 
@@ -514,18 +702,21 @@ public class SAExecuter {
 
         WebTarget target = null;
         Response response = null;
+        RequestExchange exchange = startExchange(Resource.METHOD_GET, query);
         T jsObjectResponse = null;
         try {
 
             target = client.target(query);
             response = target.request().accept(MediaType.APPLICATION_JSON).header("Authorization", auth)
                     .header(tsHeader, ts).get();
-            jsObjectResponse = response.readEntity(valueType);
+            jsObjectResponse = exchange.read(response, valueType);
             response.close();
         } catch (Exception e) {
             logger.error(new StringBuilder().append("Exception getting JS Object SRC: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString());
             logger.trace("Detailed trace: ", e);
+        } finally {
+            exchange.close();
         }
 
         return jsObjectResponse;
@@ -659,6 +850,23 @@ public class SAExecuter {
         }
     }
 
+    // The query already holds the realm and the path; the user goes as a query
+    // param when provided.
+    private String coalescingKey(String query, String userId, Class<?> valueType) {
+        return new StringBuilder().append(Resource.METHOD_GET).append(' ').append(query)
+                .append("?username=").append(userId).append(' ').append(valueType.getName()).toString();
+    }
+
+    // The type of an auth request classifies it for the rate limiter, which only
+    // sees the serialized body.
+    private static String authType(Object payload) {
+        return payload instanceof AuthRequest ? ((AuthRequest) payload).getType() : null;
+    }
+
+    private RequestExchange startExchange(String method, String query) {
+        return RequestExchange.start(this.metricsRecorder, this.tracer, this.trafficRecorder, method, query);
+    }
+
     private void closeResponseSafe(Response response) {
         if (response != null) {
             response.close();
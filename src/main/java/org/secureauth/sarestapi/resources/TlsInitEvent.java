@@ -0,0 +1,29 @@
+package org.secureauth.sarestapi.resources;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of the TLS initialization of an {@link SAExecuter}: the
+ * creation of its trust managers and SSL context.
+ */
+@Name("org.secureauth.sarestapi.TlsInit")
+@Label("IdP TLS Initialization")
+@Category({ "SecureAuth", "IdP REST API" })
+@Description("Creation of the trust managers and SSL context of an executer")
+@StackTrace(false)
+class TlsInitEvent extends Event {
+
+    @Label("Appliance")
+    String appliance;
+
+    @Label("Protocol")
+    String protocol;
+
+    @Label("Succeeded")
+    boolean succeeded;
+}
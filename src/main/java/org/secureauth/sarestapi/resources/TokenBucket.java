@@ -0,0 +1,145 @@
+package org.secureauth.sarestapi.resources;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.base.Ticker;
+
+/**
+ * Token bucket with a queue of waiting callers ordered by priority, then by
+ * arrival. Only the head of the queue can take a token, so a burst of low
+ * priority callers can not starve a high priority one.
+ */
+class TokenBucket {
+
+    private static final Comparator<Waiter> ORDER = Comparator.comparingInt((Waiter waiter) -> -waiter.priority)
+            .thenComparingLong(waiter -> waiter.sequence);
+
+    private final Ticker ticker;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(ORDER);
+    private Limit limit;
+    private boolean shared;
+    private boolean closed;
+    private double tokens;
+    private long refilledAt;
+    private long sequence;
+
+    TokenBucket(Limit limit, boolean shared, Ticker ticker) {
+        this.limit = limit;
+        this.shared = shared;
+        this.ticker = ticker;
+        this.tokens = limit.burst;
+        this.refilledAt = ticker.read();
+    }
+
+    /**
+     * @param priority     higher priorities are served first
+     * @param maxWaitNanos how long to wait for a token
+     * @return true when a token was taken, false when the wait timed out
+     * @throws InterruptedException when interrupted while waiting
+     */
+    boolean acquire(int priority, long maxWaitNanos) throws InterruptedException {
+        this.lock.lock();
+        try {
+            long deadline = this.ticker.read() + maxWaitNanos;
+            Waiter waiter = new Waiter(priority, this.sequence++);
+            this.waiters.add(waiter);
+            try {
+                while (true) {
+                    long now = this.ticker.read();
+                    refill(now);
+                    if (this.closed) {
+                        return true;
+                    }
+                    boolean head = this.waiters.peek() == waiter;
+                    if (head && this.tokens >= 1) {
+                        this.tokens -= 1;
+                        return true;
+                    }
+                    long remaining = deadline - now;
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    long wait = head ? Math.min(remaining, nanosUntilToken()) : remaining;
+                    this.changed.awaitNanos(Math.max(1, wait));
+                }
+            } finally {
+                this.waiters.remove(waiter);
+                // the next waiter may be able to take a token now.
+                this.changed.signalAll();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    void setLimit(Limit limit, boolean shared) {
+        this.lock.lock();
+        try {
+            refill(this.ticker.read());
+            this.limit = limit;
+            this.shared = shared;
+            this.tokens = Math.min(this.tokens, limit.burst);
+            this.changed.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    boolean isShared() {
+        this.lock.lock();
+        try {
+            return this.shared;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Lets every current and future caller through.
+     */
+    void close() {
+        this.lock.lock();
+        try {
+            this.closed = true;
+            this.changed.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void refill(long now) {
+        double elapsedSeconds = (now - this.refilledAt) / (double) TimeUnit.SECONDS.toNanos(1);
+        this.tokens = Math.min(this.limit.burst, this.tokens + elapsedSeconds * this.limit.requestsPerSecond);
+        this.refilledAt = now;
+    }
+
+    private long nanosUntilToken() {
+        return (long) Math.ceil((1 - this.tokens) / this.limit.requestsPerSecond * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    static class Limit {
+        private final double requestsPerSecond;
+        private final int burst;
+
+        Limit(double requestsPerSecond, int burst) {
+            this.requestsPerSecond = requestsPerSecond;
+            this.burst = burst;
+        }
+    }
+
+    private static class Waiter {
+        private final int priority;
+        private final long sequence;
+
+        Waiter(int priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.secureauth.sarestapi.resources;
+
+import org.secureauth.sarestapi.tracing.TraceParent;
+
+import jakarta.ws.rs.client.ClientRequestContext;
+import jakarta.ws.rs.client.ClientRequestFilter;
+
+/**
+ * Sends the traceparent of the "http" span of the running request, if any.
+ */
+class TraceparentFilter implements ClientRequestFilter {
+
+    @Override
+    public void filter(ClientRequestContext requestContext) {
+        RequestExchange exchange = RequestExchange.current();
+        String traceparent = exchange == null ? null : exchange.traceparent();
+        if (traceparent != null) {
+            requestContext.getHeaders().putSingle(TraceParent.HEADER, traceparent);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.secureauth.sarestapi.tracing;
+
+import java.util.regex.Pattern;
+
+/**
+ * Formats the W3C trace context header ("traceparent") of a span, version 00:
+ * "00-{trace id}-{span id}-{flags}".
+ */
+public final class TraceParent {
+
+    public static final String HEADER = "traceparent";
+
+    private static final Pattern TRACE_ID = Pattern.compile("[0-9a-f]{32}");
+    private static final Pattern SPAN_ID = Pattern.compile("[0-9a-f]{16}");
+    private static final String INVALID_TRACE_ID = "00000000000000000000000000000000";
+    private static final String INVALID_SPAN_ID = "0000000000000000";
+
+    private TraceParent() {
+    }
+
+    /**
+     * @param traceId 32 lowercase hex characters, not all zeros
+     * @param spanId  16 lowercase hex characters, not all zeros
+     * @param sampled whether the trace is recorded
+     * @return the header value, null when an ID is invalid
+     */
+    public static String format(String traceId, String spanId, boolean sampled) {
+        if (!isValid(traceId, spanId)) {
+            return null;
+        }
+        return "00-" + traceId + '-' + spanId + (sampled ? "-01" : "-00");
+    }
+
+    public static boolean isValid(String traceId, String spanId) {
+        return traceId != null && spanId != null && TRACE_ID.matcher(traceId).matches()
+                && SPAN_ID.matcher(spanId).matches() && !INVALID_TRACE_ID.equals(traceId)
+                && !INVALID_SPAN_ID.equals(spanId);
+    }
+}
@@ -0,0 +1,28 @@
+package org.secureauth.sarestapi.tracing;
+
+/**
+ * A span opened by a {@link Tracer}.
+ */
+public interface TraceSpan {
+
+    void setAttribute(String key, String value);
+
+    void setAttribute(String key, long value);
+
+    /**
+     * Marks the span as failed.
+     *
+     * @param description what went wrong
+     */
+    void setError(String description);
+
+    /**
+     * @return the W3C traceparent header of the span, null to send none
+     */
+    String getTraceparent();
+
+    /**
+     * @param endEpochNanos the end of the span, in nanoseconds since the epoch
+     */
+    void end(long endEpochNanos);
+}
@@ -0,0 +1,53 @@
+package org.secureauth.sarestapi.tracing;
+
+/**
+ * <p>
+ * Opens the spans of the calls of {@link org.secureauth.sarestapi.SAAccess} and
+ * of the requests they send to the appliance through a
+ * {@link org.secureauth.sarestapi.resources.SAExecuter}. Every call gets a span
+ * named after its method, with a "sign" child per signature and a child per
+ * request, named after its method and path template ("GET
+ * /{realm}/api/v1/users/{userId}"). The span of a request has the child spans
+ * "serialize" (requests with a body) and "http". The traceparent of the "http"
+ * span is sent to the appliance, next to the X-Request-ID header.
+ * </p>
+ * <p>
+ * The SDK has no tracing dependency; an OpenTelemetry tracer can be adapted
+ * with:
+ * </p>
+ *
+ * <pre>
+ * Tracer tracer = (name, parent, startEpochNanos) -&gt; {
+ *     SpanBuilder builder = otelTracer.spanBuilder(name).setStartTimestamp(startEpochNanos, TimeUnit.NANOSECONDS);
+ *     if (parent != null) {
+ *         builder.setParent(Context.current().with(((OtelSpan) parent).span));
+ *     }
+ *     return new OtelSpan(builder.startSpan());
+ * };
+ * </pre>
+ *
+ * where OtelSpan implements {@link TraceSpan} over the OpenTelemetry span, its
+ * traceparent being
+ * {@code TraceParent.format(context.getTraceId(), context.getSpanId(), context.isSampled())}.
+ * Implementations are called on the requesting thread and must be thread safe.
+ */
+@FunctionalInterface
+public interface Tracer {
+
+    /**
+     * Opens no span, the default of the executers.
+     */
+    Tracer NOOP = (name, parent, startEpochNanos) -> null;
+
+    /**
+     * @param name            the span name
+     * @param parent          the parent span, null for the span of a call (or of
+     *                        a request sent outside of any call), which should
+     *                        then be a child of the current span of the
+     *                        application, if any
+     * @param startEpochNanos the start of the span, in nanoseconds since the
+     *                        epoch
+     * @return the span, null to skip it and its children
+     */
+    TraceSpan startSpan(String name, TraceSpan parent, long startEpochNanos);
+}
@@ -0,0 +1,173 @@
+package org.secureauth.sarestapi.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+
+import com.google.common.net.InetAddresses;
+
+/**
+ * <p>
+ * An IPv4 or IPv6 network prefix (an address and a prefix length) with the
+ * bits past the prefix length cleared, so every address of the network has the
+ * same prefix. A single address is a prefix of 32 (IPv4) or 128 (IPv6) bits.
+ * </p>
+ * <p>
+ * Only address literals are accepted, host names are never resolved.
+ * IPv4-mapped IPv6 addresses are handled as IPv4 addresses.
+ * </p>
+ */
+public final class IPPrefix {
+
+    public static final int IPV4_BITS = 32;
+    public static final int IPV6_BITS = 128;
+
+    private final byte[] address;
+    private final int length;
+    private final int hashCode;
+
+    private IPPrefix(byte[] address, int length) {
+        if (length < 0 || length > address.length * 8) {
+            throw new IllegalArgumentException("Invalid prefix length: " + length);
+        }
+        this.address = mask(address, length);
+        this.length = length;
+        this.hashCode = 31 * Arrays.hashCode(this.address) + length;
+    }
+
+    /**
+     * @param cidr an address ("10.1.2.3", "2001:db8::1") or a CIDR block
+     *             ("10.0.0.0/8", "2001:db8::/32")
+     * @return the prefix
+     * @throws IllegalArgumentException when cidr is not a valid address or block
+     */
+    public static IPPrefix parse(String cidr) {
+        String value = cidr.trim();
+        int slash = value.indexOf('/');
+        byte[] address = toBytes(slash < 0 ? value : value.substring(0, slash));
+        int length = address.length * 8;
+        if (slash >= 0) {
+            try {
+                length = Integer.parseInt(value.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid prefix length in: " + cidr, e);
+            }
+        }
+        return new IPPrefix(address, length);
+    }
+
+    /**
+     * @param ip         the address
+     * @param ipv4Length prefix length used for IPv4 addresses
+     * @param ipv6Length prefix length used for IPv6 addresses
+     * @return the network of the address
+     * @throws IllegalArgumentException when ip is not a valid address
+     */
+    public static IPPrefix of(String ip, int ipv4Length, int ipv6Length) {
+        byte[] address = toBytes(ip.trim());
+        return new IPPrefix(address, address.length == 4 ? ipv4Length : ipv6Length);
+    }
+
+    public boolean isIPv4() {
+        return this.address.length == 4;
+    }
+
+    public int getLength() {
+        return this.length;
+    }
+
+    /**
+     * @param index bit position, 0 being the most significant bit of the address
+     * @return the bit at the position, 0 or 1
+     */
+    public int bit(int index) {
+        return (this.address[index >>> 3] >>> (7 - (index & 7))) & 1;
+    }
+
+    /**
+     * @param other a prefix of the same family
+     * @return true when the network of this prefix contains the other prefix
+     */
+    public boolean contains(IPPrefix other) {
+        if (other.address.length != this.address.length || other.length < this.length) {
+            return false;
+        }
+        return commonPrefixLength(other) >= this.length;
+    }
+
+    /**
+     * @param other a prefix of the same family
+     * @return number of leading bits both prefixes have in common, at most the
+     *         shortest of the two prefix lengths
+     */
+    public int commonPrefixLength(IPPrefix other) {
+        int max = Math.min(this.length, other.length);
+        int common = 0;
+        for (int i = 0; i < this.address.length && common < max; i++) {
+            int diff = (this.address[i] ^ other.address[i]) & 0xFF;
+            common += diff == 0 ? 8 : Integer.numberOfLeadingZeros(diff) - 24;
+            if (diff != 0) {
+                break;
+            }
+        }
+        return Math.min(common, max);
+    }
+
+    /**
+     * @param length a prefix length not greater than the length of this prefix
+     * @return the network of this prefix with the given length
+     */
+    public IPPrefix truncate(int length) {
+        if (length > this.length) {
+            throw new IllegalArgumentException("Can not extend prefix " + this + " to /" + length);
+        }
+        return length == this.length ? this : new IPPrefix(this.address, length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IPPrefix)) {
+            return false;
+        }
+        IPPrefix other = (IPPrefix) o;
+        return this.length == other.length && Arrays.equals(this.address, other.address);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hashCode;
+    }
+
+    @Override
+    public String toString() {
+        try {
+            return InetAddresses.toAddrString(InetAddress.getByAddress(this.address)) + "/" + this.length;
+        } catch (UnknownHostException e) {
+            // unreachable: the address always has 4 or 16 bytes.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] toBytes(String ip) {
+        if (ip.isEmpty()) {
+            throw new IllegalArgumentException("Empty IP address");
+        }
+        return InetAddresses.forString(ip).getAddress();
+    }
+
+    private static byte[] mask(byte[] address, int length) {
+        byte[] masked = address.clone();
+        for (int i = 0; i < masked.length; i++) {
+            int bits = length - i * 8;
+            if (bits <= 0) {
+                masked[i] = 0;
+            } else if (bits < 8) {
+                masked[i] &= (byte) (0xFF << (8 - bits));
+            }
+        }
+        return masked;
+    }
+}
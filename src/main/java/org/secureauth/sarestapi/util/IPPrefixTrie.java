@@ -0,0 +1,119 @@
+package org.secureauth.sarestapi.util;
+
+/**
+ * <p>
+ * Path compressed binary radix trie of IPv4 and IPv6 prefixes, used for longest
+ * prefix matching of addresses. Only the nodes holding a prefix and the
+ * branching nodes are stored, so the trie has less than two nodes per prefix
+ * whatever the prefix lengths.
+ * </p>
+ * <p>
+ * The trie is not safe for concurrent writes. Lookups are safe once the trie is
+ * no longer modified, so it is meant to be built and then published (for
+ * example through a volatile field) and replaced as a whole.
+ * </p>
+ *
+ * @param <V> type of the values associated to the prefixes
+ */
+public class IPPrefixTrie<V> {
+
+    private final Node<V> ipv4Root = new Node<>(IPPrefix.parse("0.0.0.0/0"), null);
+    private final Node<V> ipv6Root = new Node<>(IPPrefix.parse("::/0"), null);
+    private int size;
+
+    /**
+     * Associates the value to the prefix, replacing the value previously
+     * associated to the same prefix.
+     *
+     * @param prefix the prefix
+     * @param value  the value, not null
+     */
+    public void put(IPPrefix prefix, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported.");
+        }
+        Node<V> parent = prefix.isIPv4() ? this.ipv4Root : this.ipv6Root;
+        if (parent.prefix.equals(prefix)) {
+            setValue(parent, value);
+            return;
+        }
+        while (true) {
+            int bit = prefix.bit(parent.prefix.getLength());
+            Node<V> child = parent.children[bit];
+            if (child == null) {
+                parent.children[bit] = new Node<>(prefix, value);
+                this.size++;
+                return;
+            }
+            if (child.prefix.equals(prefix)) {
+                setValue(child, value);
+                return;
+            }
+            if (child.prefix.contains(prefix)) {
+                parent = child;
+                continue;
+            }
+            Node<V> node;
+            if (prefix.contains(child.prefix)) {
+                node = new Node<>(prefix, value);
+                this.size++;
+            } else {
+                // neither contains the other: branch at their last common bit.
+                node = new Node<>(prefix.truncate(prefix.commonPrefixLength(child.prefix)), null);
+                node.children[prefix.bit(node.prefix.getLength())] = new Node<>(prefix, value);
+                this.size++;
+            }
+            node.children[child.prefix.bit(node.prefix.getLength())] = child;
+            parent.children[bit] = node;
+            return;
+        }
+    }
+
+    /**
+     * @param address a single address (a /32 or /128 prefix)
+     * @return the value of the longest prefix containing the address, or null
+     *         when no prefix contains it
+     */
+    public V longestMatch(IPPrefix address) {
+        Node<V> node = address.isIPv4() ? this.ipv4Root : this.ipv6Root;
+        V match = null;
+        while (node != null && node.prefix.contains(address)) {
+            if (node.value != null) {
+                match = node.value;
+            }
+            if (node.prefix.getLength() == address.getLength()) {
+                break;
+            }
+            node = node.children[address.bit(node.prefix.getLength())];
+        }
+        return match;
+    }
+
+    /**
+     * @return number of prefixes in the trie
+     */
+    public int size() {
+        return this.size;
+    }
+
+    private void setValue(Node<V> node, V value) {
+        if (node.value == null) {
+            this.size++;
+        }
+        node.value = value;
+    }
+
+    private static class Node<V> {
+        private final IPPrefix prefix;
+        private V value;
+        private final Node<V>[] children;
+
+        Node(IPPrefix prefix, V value) {
+            this.prefix = prefix;
+            this.value = value;
+            @SuppressWarnings("unchecked")
+            Node<V>[] children = (Node<V>[]) new Node<?>[2];
+            this.children = children;
+        }
+    }
+}
@@ -32,6 +32,9 @@ OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
 public final class JSONUtil {
     private static final Logger logger = LoggerFactory.getLogger(JSONUtil.class);
 
+    // ObjectWriter is immutable and thread safe, so the single line writer is shared.
+    private static final ObjectWriter SINGLE_LINE_WRITER = new ObjectMapper().writer();
+
     private JSONUtil(){}
 
      public static String convertObjectToJSON(Object object){
@@ -45,6 +48,17 @@ public final class JSONUtil {
         return json;
     }
 
+    // Same as convertObjectToJSON but without pretty printing, so the result fits in a single line (JSONL).
+    public static String convertObjectToSingleLineJSON(Object object){
+        String json = null;
+        try {
+            json = SINGLE_LINE_WRITER.writeValueAsString(object);
+        }catch(IOException jpe){
+            logger.error(jpe.getMessage(), jpe);
+        }
+        return json;
+    }
+
 
     public static DFPValidateRequest getObjectFromJSONString(String dfpJsonString){
         ObjectMapper mapper = new ObjectMapper();
@@ -0,0 +1,71 @@
+package org.secureauth.sarestapi.util;
+
+/**
+ * Phone number helpers.
+ */
+public class PhoneNumbers {
+
+    private static final int E164_MAX_DIGITS = 15;
+    private static final int E164_MIN_DIGITS = 7;
+
+    private PhoneNumbers() {
+    }
+
+    /**
+     * <p>
+     * Normalizes a phone number to the E.164 format ("+" followed by up to 15
+     * digits), so formatting variants of the same number give the same result:
+     * "+1 (555) 010-9999", "001.555.010.9999" and "555 010 9999" with default
+     * country code "1" all give "+15550109999".
+     * </p>
+     * <p>
+     * Spaces, dashes, dots, slashes and parentheses are ignored. A leading "+"
+     * or "00" is the international prefix. Other numbers are national numbers:
+     * a single leading 0 (trunk prefix) is dropped and the default country code
+     * is always added. A number without any prefix starting with the digits of
+     * the default country code is ambiguous, it may or may not already include
+     * it, so it is not normalized.
+     * </p>
+     *
+     * @param phoneNumber        the phone number
+     * @param defaultCountryCode calling code of national numbers (for example
+     *                           "1" or "44"), null when national numbers are not
+     *                           accepted
+     * @return the E.164 number, or null when the number can not be normalized
+     */
+    public static String toE164(String phoneNumber, String defaultCountryCode) {
+        if (phoneNumber == null) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(phoneNumber.length());
+        boolean plus = false;
+        for (int i = 0; i < phoneNumber.length(); i++) {
+            char c = phoneNumber.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            } else if (c == '+' && digits.length() == 0 && !plus) {
+                plus = true;
+            } else if (c != ' ' && c != '-' && c != '.' && c != '/' && c != '(' && c != ')') {
+                return null;
+            }
+        }
+        String number = digits.toString();
+        if (!plus) {
+            if (number.startsWith("00")) {
+                number = number.substring(2);
+            } else if (defaultCountryCode == null) {
+                return null;
+            } else if (number.startsWith("0")) {
+                number = defaultCountryCode + number.substring(1);
+            } else if (number.startsWith(defaultCountryCode)) {
+                return null;
+            } else {
+                number = defaultCountryCode + number;
+            }
+        }
+        if (number.length() < E164_MIN_DIGITS || number.length() > E164_MAX_DIGITS || number.startsWith("0")) {
+            return null;
+        }
+        return "+" + number;
+    }
+}
@@ -5,6 +5,7 @@ import java.nio.charset.StandardCharsets;
 
 import org.apache.commons.codec.binary.Base64;
 import org.secureauth.sarestapi.data.*;
+import org.secureauth.sarestapi.resources.OperationScope;
 import org.secureauth.sarestapi.resources.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,6 +54,7 @@ public final class RestApiHeader {
     // Payload in header
     public static String getAuthorizationHeader(SAAuth saAuth, String requestMethod, String uriPath, Object object,
             String ts) {
+        long start = OperationScope.signing();
 
         // Build our string for the AuthHeader
         StringBuilder stringBuilder = new StringBuilder();
@@ -80,11 +82,13 @@ public final class RestApiHeader {
             logger.error("Exception Encoding\n" + uee.getMessage() + "\n", uee);
         }
 
+        OperationScope.signed(start);
         return authHeader;
     }
 
     // No Payload in header
     public static String getAuthorizationHeader(SAAuth saAuth, String requestMethod, String uriPath, String ts) {
+        long start = OperationScope.signing();
         // Build our string for the AuthHeader
         StringBuilder stringBuilder = new StringBuilder();
         stringBuilder.append(requestMethod).append("\n")
@@ -106,6 +110,7 @@ public final class RestApiHeader {
         logger.trace("Auth Header before second encoding  " + appId + "\n");
         authHeader = "Basic " + Base64.encodeBase64String(appId.getBytes(StandardCharsets.UTF_8));
 
+        OperationScope.signed(start);
         return authHeader;
     }
 
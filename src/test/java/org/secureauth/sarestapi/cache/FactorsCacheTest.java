@@ -0,0 +1,87 @@
+package org.secureauth.sarestapi.cache;
+
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.Test;
+import org.secureauth.sarestapi.data.Response.FactorsResponse;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FactorsCacheTest {
+
+	private final AtomicLong nanos = new AtomicLong();
+	private final FactorsCache cache = new FactorsCache(1, TimeUnit.MINUTES, 100, new Ticker() {
+		@Override
+		public long read() {
+			return nanos.get();
+		}
+	});
+
+	@Test
+	void foundResponseIsCachedUntilItExpires() {
+		AtomicInteger calls = new AtomicInteger();
+
+		cache.get("realm1", "user1", FactorsCache.Version.V1, () -> response("found", calls));
+		cache.get("realm1", "user1", FactorsCache.Version.V1, () -> response("found", calls));
+		assertEquals(1, calls.get());
+
+		nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+		cache.get("realm1", "user1", FactorsCache.Version.V1, () -> response("found", calls));
+		assertEquals(2, calls.get());
+	}
+
+	@Test
+	void failedResponseIsNotCached() {
+		AtomicInteger calls = new AtomicInteger();
+
+		FactorsResponse first = cache.get("realm1", "user1", FactorsCache.Version.V3, () -> response("not_found", calls));
+		cache.get("realm1", "user1", FactorsCache.Version.V3, () -> null);
+		cache.get("realm1", "user1", FactorsCache.Version.V3, () -> response("not_found", calls));
+
+		assertEquals("not_found", first.getStatus());
+		assertEquals(2, calls.get());
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void invalidateDropsEveryVersionOfTheUser() {
+		AtomicInteger calls = new AtomicInteger();
+		cache.get("realm1", "user1", FactorsCache.Version.V1, () -> response("found", calls));
+		cache.get("realm1", "user1", FactorsCache.Version.V3, () -> response("found", calls));
+		cache.get("realm1", "user2", FactorsCache.Version.V1, () -> response("found", calls));
+
+		assertTrue(cache.contains("realm1", "user1", FactorsCache.Version.V3));
+
+		cache.invalidate("realm1", "user1");
+
+		assertEquals(1, cache.size());
+		assertFalse(cache.contains("realm1", "user1", FactorsCache.Version.V3));
+		assertTrue(cache.contains("realm1", "user2", FactorsCache.Version.V1));
+	}
+
+	@Test
+	void loadInFlightDuringInvalidationIsNotCached() {
+		AtomicInteger calls = new AtomicInteger();
+
+		FactorsResponse loaded = cache.get("realm1", "user1", FactorsCache.Version.V3, () -> {
+			FactorsResponse beforeWrite = response("found", calls);
+			cache.invalidate("realm1", "user1");
+			return beforeWrite;
+		});
+
+		assertEquals("found", loaded.getStatus());
+		assertEquals(0, cache.size());
+		cache.get("realm1", "user1", FactorsCache.Version.V3, () -> response("found", calls));
+		assertEquals(1, cache.size());
+	}
+
+	private static FactorsResponse response(String status, AtomicInteger calls) {
+		calls.incrementAndGet();
+		FactorsResponse response = new FactorsResponse();
+		response.setStatus(status);
+		return response;
+	}
+}
@@ -0,0 +1,86 @@
+package org.secureauth.sarestapi.cache;
+
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.Test;
+import org.secureauth.sarestapi.data.Response.FactorsResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FactorsPrefetcherTest {
+
+	private final AtomicLong nanos = new AtomicLong();
+	private final List<Runnable> pending = new ArrayList<>();
+	private final AtomicInteger calls = new AtomicInteger();
+	private final FactorsPrefetcher prefetcher = new FactorsPrefetcher(FactorsPrefetcher.Trigger.VALIDATION_START,
+			30, TimeUnit.SECONDS, 100, pending::add, new Ticker() {
+				@Override
+				public long read() {
+					return nanos.get();
+				}
+			});
+
+	@Test
+	void prefetchedFactorsAreUsedOnce() {
+		FactorsResponse prefetched = new FactorsResponse();
+		prefetcher.prefetch("realm1", "alice", () -> prefetched);
+		runPending();
+
+		assertSame(prefetched, prefetcher.get("realm1", "alice", this::load));
+		assertNotSame(prefetched, prefetcher.get("realm1", "alice", this::load));
+		assertEquals(1, calls.get());
+		assertEquals(1, prefetcher.getHitCount());
+		assertEquals(1, prefetcher.getMissCount());
+		assertEquals(0.5, prefetcher.getHitRate(), 0.0001);
+	}
+
+	@Test
+	void cancelledPrefetchIsNotSent() {
+		prefetcher.prefetch("realm1", "alice", this::load);
+
+		prefetcher.cancel("realm1", "alice");
+		runPending();
+
+		assertEquals(0, calls.get());
+		prefetcher.get("realm1", "alice", this::load);
+		assertEquals(1, prefetcher.getMissCount());
+	}
+
+	@Test
+	void failedPrefetchFallsBackToTheLoader() {
+		prefetcher.prefetch("realm1", "alice", () -> null);
+		runPending();
+
+		assertNotNull(prefetcher.get("realm1", "alice", this::load));
+		assertEquals(1, calls.get());
+		assertEquals(0, prefetcher.getHitCount());
+	}
+
+	@Test
+	void unusedSlotExpires() {
+		prefetcher.prefetch("realm1", "alice", FactorsResponse::new);
+		runPending();
+
+		nanos.addAndGet(TimeUnit.MINUTES.toNanos(1));
+		prefetcher.get("realm1", "alice", this::load);
+
+		assertEquals(1, calls.get());
+		assertEquals(1, prefetcher.getPrefetchCount());
+	}
+
+	private FactorsResponse load() {
+		calls.incrementAndGet();
+		return new FactorsResponse();
+	}
+
+	private void runPending() {
+		List<Runnable> tasks = new ArrayList<>(pending);
+		pending.clear();
+		tasks.forEach(Runnable::run);
+	}
+}
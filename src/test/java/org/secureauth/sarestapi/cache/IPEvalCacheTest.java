@@ -0,0 +1,126 @@
+package org.secureauth.sarestapi.cache;
+
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.Test;
+import org.secureauth.sarestapi.data.Geoloc;
+import org.secureauth.sarestapi.data.IPEval;
+import org.secureauth.sarestapi.data.IPEvaluation;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IPEvalCacheTest {
+
+	private final AtomicLong nanos = new AtomicLong();
+	private final AtomicInteger calls = new AtomicInteger();
+	private final Ticker ticker = new Ticker() {
+		@Override
+		public long read() {
+			return nanos.get();
+		}
+	};
+
+	@Test
+	void cachedEvaluationIsReturnedForTheCallerUserAndAddress() {
+		IPEvalCache cache = newCache(32, 128);
+
+		cache.get("user1", "10.0.0.1", () -> eval(10));
+		IPEval hit = cache.get("user2", "10.0.0.1", () -> eval(90));
+
+		assertEquals(1, calls.get());
+		assertEquals(10, hit.getIp_evaluation().getRisk_factor());
+		assertEquals("user2", hit.getUser_id());
+		assertNotNull(hit.getIp_evaluation().getGeoloc());
+		assertEquals(20, cache.get("user1", "10.0.0.2", () -> eval(20)).getIp_evaluation().getRisk_factor());
+		assertEquals(2, calls.get());
+	}
+
+	@Test
+	void addressesAreAggregatedByPrefix() {
+		IPEvalCache cache = newCache(24, 48);
+
+		cache.get("user1", "10.0.0.1", () -> eval(10));
+		IPEval sameNetwork = cache.get("user1", "10.0.0.200", () -> eval(90));
+		cache.get("user1", "10.0.1.1", () -> eval(30));
+		cache.get("user1", "2001:db8:1:1::1", () -> eval(40));
+		IPEval sameIPv6Network = cache.get("user1", "2001:db8:1:ffff::2", () -> eval(90));
+
+		assertEquals(10, sameNetwork.getIp_evaluation().getRisk_factor());
+		assertEquals("10.0.0.200", sameNetwork.getIp_evaluation().getIp());
+		assertEquals(40, sameIPv6Network.getIp_evaluation().getRisk_factor());
+		assertEquals(3, calls.get());
+	}
+
+	@Test
+	void expiredGeolocationIsLoadedAgain() {
+		IPEvalCache cache = newCache(32, 128);
+		cache.get("user1", "10.0.0.1", () -> eval(10));
+
+		nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+		IPEval reloaded = cache.get("user1", "10.0.0.1", () -> eval(90));
+		assertEquals(90, reloaded.getIp_evaluation().getRisk_factor());
+		assertNotNull(reloaded.getIp_evaluation().getGeoloc());
+		assertEquals(2, calls.get());
+	}
+
+	@Test
+	void resultsWithoutGeolocationLiveForTheRiskTtl() {
+		IPEvalCache cache = newCache(32, 128);
+		IPEval eval = eval(10);
+		eval.getIp_evaluation().setGeoloc(null);
+		cache.get("user1", "10.0.0.1", () -> eval);
+
+		nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+		IPEval hit = cache.get("user1", "10.0.0.1", () -> eval(90));
+		assertEquals(10, hit.getIp_evaluation().getRisk_factor());
+		assertNull(hit.getIp_evaluation().getGeoloc());
+
+		nanos.addAndGet(TimeUnit.MINUTES.toNanos(4));
+		assertEquals(90, cache.get("user1", "10.0.0.1", () -> eval(90)).getIp_evaluation().getRisk_factor());
+		assertEquals(2, calls.get());
+	}
+
+	@Test
+	void invalidAddressesAndFailuresAreNotCached() {
+		IPEvalCache cache = newCache(32, 128);
+
+		cache.get("user1", "not-an-ip", () -> eval(10));
+		cache.get("user1", "not-an-ip", () -> eval(10));
+		cache.get("user1", "10.0.0.1", () -> null);
+
+		assertEquals(2, calls.get());
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void weigherBoundsTheCache() {
+		IPEvalCache cache = new IPEvalCache(5, 1, TimeUnit.MINUTES, 32, 128, 3, (prefix, eval) -> 1, ticker);
+
+		for (int i = 0; i < 10; i++) {
+			cache.get("user1", "10.0.0." + i, () -> eval(10));
+		}
+
+		assertTrue(cache.size() <= 3);
+	}
+
+	private IPEvalCache newCache(int ipv4PrefixLength, int ipv6PrefixLength) {
+		return new IPEvalCache(5, 1, TimeUnit.MINUTES, ipv4PrefixLength, ipv6PrefixLength, 1_000_000,
+				IPEvalCache.ESTIMATED_SIZE_WEIGHER, ticker);
+	}
+
+	private IPEval eval(int riskFactor) {
+		calls.incrementAndGet();
+		Geoloc geoloc = new Geoloc();
+		geoloc.setCountry("Argentina");
+		IPEvaluation evaluation = new IPEvaluation();
+		evaluation.setRisk_factor(riskFactor);
+		evaluation.setGeoloc(geoloc);
+		IPEval eval = new IPEval();
+		eval.setStatus("verified");
+		eval.setIp_evaluation(evaluation);
+		return eval;
+	}
+}
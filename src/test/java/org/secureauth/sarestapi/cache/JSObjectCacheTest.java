@@ -0,0 +1,92 @@
+package org.secureauth.sarestapi.cache;
+
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.secureauth.sarestapi.data.Response.JSObjectResponse;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JSObjectCacheTest {
+
+	@TempDir
+	Path folder;
+
+	private final AtomicLong nanos = new AtomicLong();
+	private final List<Runnable> refreshes = new ArrayList<>();
+	private final Ticker ticker = new Ticker() {
+		@Override
+		public long read() {
+			return nanos.get();
+		}
+	};
+
+	@Test
+	void scriptIsRefreshedInBackgroundAfterTheInterval() {
+		JSObjectCache cache = newCache();
+		AtomicInteger calls = new AtomicInteger();
+
+		cache.get("realm1", JSObjectCache.Script.DFP, () -> script("v1", calls));
+		cache.get("realm1", JSObjectCache.Script.DFP, () -> script("v2", calls));
+		assertEquals(1, calls.get());
+
+		nanos.addAndGet(TimeUnit.MINUTES.toNanos(11));
+		assertEquals("v1", cache.get("realm1", JSObjectCache.Script.DFP, () -> script("v2", calls)).getSrc());
+		refreshes.get(0).run();
+		assertEquals("v2", cache.get("realm1", JSObjectCache.Script.DFP, () -> script("v3", calls)).getSrc());
+	}
+
+	@Test
+	void lastGoodCopyIsKeptWhenRefreshFails() {
+		JSObjectCache cache = newCache();
+		cache.get("realm1", JSObjectCache.Script.BEHAVE_BIO, () -> script("v1", new AtomicInteger()));
+		nanos.addAndGet(TimeUnit.MINUTES.toNanos(11));
+
+		cache.get("realm1", JSObjectCache.Script.BEHAVE_BIO, () -> null);
+		refreshes.get(0).run();
+
+		assertEquals("v1", cache.get("realm1", JSObjectCache.Script.BEHAVE_BIO, () -> null).getSrc());
+	}
+
+	@Test
+	void newNodeServesTheSnapshotAndRefreshesIt() {
+		newCache().get("realm1", JSObjectCache.Script.DFP, () -> script("v1", new AtomicInteger()));
+		JSObjectCache restarted = newCache();
+		AtomicInteger calls = new AtomicInteger();
+
+		JSObjectResponse served = restarted.get("realm1", JSObjectCache.Script.DFP, () -> script("v2", calls));
+
+		assertEquals("v1", served.getSrc());
+		assertEquals(0, calls.get());
+		assertEquals(1, refreshes.size());
+		assertNull(restarted.get("realm2", JSObjectCache.Script.DFP, () -> null));
+	}
+
+	@Test
+	void realmsWithSimilarNamesHaveTheirOwnSnapshot() {
+		newCache().get("realm/1", JSObjectCache.Script.DFP, () -> script("v1", new AtomicInteger()));
+		newCache().get("realm_1", JSObjectCache.Script.DFP, () -> script("v2", new AtomicInteger()));
+		JSObjectCache restarted = newCache();
+
+		assertEquals("v1", restarted.get("realm/1", JSObjectCache.Script.DFP, () -> null).getSrc());
+		assertEquals("v2", restarted.get("realm_1", JSObjectCache.Script.DFP, () -> null).getSrc());
+	}
+
+	private JSObjectCache newCache() {
+		return new JSObjectCache(folder, 10, TimeUnit.MINUTES, refreshes::add, ticker);
+	}
+
+	private static JSObjectResponse script(String src, AtomicInteger calls) {
+		calls.incrementAndGet();
+		JSObjectResponse script = new JSObjectResponse();
+		script.setSrc(src);
+		return script;
+	}
+}
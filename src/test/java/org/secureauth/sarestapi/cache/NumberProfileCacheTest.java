@@ -0,0 +1,100 @@
+package org.secureauth.sarestapi.cache;
+
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.Test;
+import org.secureauth.sarestapi.data.NumberProfile.NumberProfileResult;
+import org.secureauth.sarestapi.data.Response.NumberProfileResponse;
+import org.secureauth.sarestapi.util.PhoneNumbers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NumberProfileCacheTest {
+
+	private final AtomicLong nanos = new AtomicLong();
+	private final AtomicInteger calls = new AtomicInteger();
+	private final NumberProfileCache cache = new NumberProfileCache(1, TimeUnit.DAYS, 100, "1", new Ticker() {
+		@Override
+		public long read() {
+			return nanos.get();
+		}
+	});
+
+	@Test
+	void numbersAreNormalizedToE164() {
+		assertEquals("+15550109999", PhoneNumbers.toE164("+1 (555) 010-9999", "1"));
+		assertEquals("+15550109999", PhoneNumbers.toE164("001.555.010.9999", "1"));
+		// national numbers starting with the country code digits are ambiguous.
+		assertNull(PhoneNumbers.toE164("1-555-010-9999", "1"));
+		assertEquals("+4949112345", PhoneNumbers.toE164("0491 12345", "49"));
+		assertEquals("+15550109999", PhoneNumbers.toE164("555 010 9999", "1"));
+		assertEquals("+442079460000", PhoneNumbers.toE164("020 7946 0000", "44"));
+		assertNull(PhoneNumbers.toE164("555 010 9999", null));
+		assertNull(PhoneNumbers.toE164("555-CALL-NOW", "1"));
+		assertNull(PhoneNumbers.toE164("+1 555 010 9999 999 99", "1"));
+	}
+
+	@Test
+	void formattingVariantsShareTheEntry() {
+		cache.get("realm1", "user1", "+1 (555) 010-9999", this::profile);
+		NumberProfileResponse hit = cache.get("realm1", "user2", "555.010.9999", this::profile);
+
+		assertEquals(1, calls.get());
+		assertEquals("user2", hit.getUser_id());
+		assertEquals(0.5, cache.getHitRate(), 0.0001);
+	}
+
+	@Test
+	void updateOfTheNumberInvalidatesTheEntry() {
+		cache.get("realm1", "user1", "+15550109999", this::profile);
+
+		cache.invalidate("realm1", "(555) 010-9999");
+		cache.get("realm1", "user1", "+15550109999", this::profile);
+
+		assertEquals(2, calls.get());
+	}
+
+	@Test
+	void entriesExpireAndFailuresAreNotCached() {
+		cache.get("realm1", "user1", "+15550109999", this::profile);
+		nanos.addAndGet(TimeUnit.DAYS.toNanos(2));
+		cache.get("realm1", "user1", "+15550109999", () -> null);
+		cache.get("realm1", "user1", "+15550109999", this::profile);
+
+		assertEquals(2, calls.get());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	void invalidatedProfileIsNotStoredByAnInFlightLoad() {
+		NumberProfileResponse loaded = cache.get("realm1", "user1", "+15550109999", () -> {
+			NumberProfileResponse beforeUpdate = profile();
+			cache.invalidate("realm1", "+15550109999");
+			return beforeUpdate;
+		});
+
+		assertEquals("found", loaded.getStatus());
+		assertEquals(0, cache.size());
+		cache.get("realm1", "user1", "+15550109999", this::profile);
+		assertEquals(2, calls.get());
+	}
+
+	@Test
+	void loadedProfileIsNotSharedWithTheCache() {
+		NumberProfileResponse loaded = cache.get("realm1", "user1", "+15550109999", this::profile);
+		loaded.setStatus("invalid");
+
+		assertEquals("found", cache.get("realm1", "user2", "+15550109999", this::profile).getStatus());
+		assertEquals(1, calls.get());
+	}
+
+	private NumberProfileResponse profile() {
+		calls.incrementAndGet();
+		NumberProfileResponse response = new NumberProfileResponse(new NumberProfileResult());
+		response.setStatus("found");
+		return response;
+	}
+}
@@ -0,0 +1,104 @@
+package org.secureauth.sarestapi.cache;
+
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.Test;
+import org.secureauth.sarestapi.data.Response.UserProfileResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserProfileCacheTest {
+
+	private final AtomicLong nanos = new AtomicLong();
+	private final List<Runnable> refreshes = new ArrayList<>();
+	private double random = 1.0;
+	private final UserProfileCache cache = new UserProfileCache(1, 5, TimeUnit.MINUTES, 100, refreshes::add,
+			new Ticker() {
+				@Override
+				public long read() {
+					return nanos.get();
+				}
+			}, () -> random);
+
+	@Test
+	void staleProfileIsServedWhileItIsRefreshedInBackground() {
+		cache.get("realm1", "user1", () -> profile("v1"));
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(61));
+
+		UserProfileResponse stale = cache.get("realm1", "user1", () -> profile("v2"));
+		cache.get("realm1", "user1", () -> profile("v3"));
+
+		assertEquals("v1", stale.getUserId());
+		assertEquals(1, refreshes.size());
+		refreshes.get(0).run();
+		assertEquals("v2", cache.get("realm1", "user1", () -> profile("v4")).getUserId());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(2, cache.getStaleHitCount());
+	}
+
+	@Test
+	void staleProfileIsServedForABoundedTimeWhenApplianceIsDown() {
+		cache.get("realm1", "user1", () -> profile("v1"));
+		nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+		cache.get("realm1", "user1", () -> null);
+		refreshes.get(0).run();
+
+		assertEquals("v1", cache.get("realm1", "user1", () -> null).getUserId());
+		assertEquals(1, cache.getRefreshFailureCount());
+
+		nanos.addAndGet(TimeUnit.MINUTES.toNanos(5));
+		assertNull(cache.get("realm1", "user1", () -> null));
+	}
+
+	@Test
+	void profileIsRefreshedEarlyNearTheSoftTtl() {
+		cache.get("realm1", "user1", () -> {
+			nanos.addAndGet(TimeUnit.SECONDS.toNanos(2));
+			return profile("v1");
+		});
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(55));
+
+		cache.get("realm1", "user1", () -> profile("v2"));
+		assertTrue(refreshes.isEmpty());
+
+		random = 0.01;
+		cache.get("realm1", "user1", () -> profile("v2"));
+		assertEquals(1, refreshes.size());
+	}
+
+	@Test
+	void invalidatedProfileIsNotRestoredByAnInFlightRefresh() {
+		cache.get("realm1", "user1", () -> profile("v1"));
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(61));
+		cache.get("realm1", "user1", () -> profile("v2"));
+
+		cache.invalidate("realm1", "user1");
+		refreshes.get(0).run();
+
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void invalidatedProfileIsNotStoredByAnInFlightLoad() {
+		UserProfileResponse loaded = cache.get("realm1", "user1", () -> {
+			UserProfileResponse beforeWrite = profile("v1");
+			cache.invalidate("realm1", "user1");
+			return beforeWrite;
+		});
+
+		assertEquals("v1", loaded.getUserId());
+		assertEquals(0, cache.size());
+		assertEquals("v2", cache.get("realm1", "user1", () -> profile("v2")).getUserId());
+	}
+
+	private static UserProfileResponse profile(String userId) {
+		UserProfileResponse profile = new UserProfileResponse();
+		profile.setUserId(userId);
+		profile.setStatus("found");
+		return profile;
+	}
+}
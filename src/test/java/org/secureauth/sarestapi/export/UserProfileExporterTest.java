@@ -0,0 +1,106 @@
+package org.secureauth.sarestapi.export;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.secureauth.sarestapi.ISAAccess;
+import org.secureauth.sarestapi.data.Response.UserProfileResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserProfileExporterTest {
+
+	@TempDir
+	Path folder;
+
+	private ISAAccess saAccess;
+	private Path userIds;
+	private Path output;
+	private Path checkpoint;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		saAccess = mock(ISAAccess.class);
+		when(saAccess.getUserProfile(anyString())).thenAnswer(invocation -> profile(invocation.getArgument(0)));
+		when(saAccess.getUserProfile(eq("unknown"))).thenReturn(null);
+
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < 30; i++) {
+			ids.add(i == 7 ? "unknown" : "user" + i);
+		}
+		userIds = Files.write(folder.resolve("users.txt"), ids);
+		output = folder.resolve("profiles.jsonl");
+		checkpoint = folder.resolve("profiles.checkpoint");
+	}
+
+	@Test
+	void exportWritesOneLinePerProfileInInputOrder() throws Exception {
+		UserProfileExporter exporter = new UserProfileExporter(saAccess, 4, false);
+
+		UserProfileExporter.ExportSummary summary = exporter.export(userIds, output, checkpoint);
+
+		List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+		assertEquals(29, summary.getExported());
+		assertEquals(1, summary.getFailed());
+		assertEquals(29, lines.size());
+		assertTrue(lines.get(0).contains("\"userId\":\"user0\""));
+		assertTrue(lines.get(28).contains("\"userId\":\"user29\""));
+		assertEquals(List.of("unknown"), Files.readAllLines(folder.resolve("profiles.jsonl.failed")));
+		assertFalse(Files.exists(checkpoint));
+	}
+
+	@Test
+	void exportResumesFromCheckpoint() throws Exception {
+		String first = "{\"userId\":\"user0\"}\n";
+		Files.write(output, (first + "partial line written after the checkpoint").getBytes(StandardCharsets.UTF_8));
+		String failedBefore = "gone\n";
+		Files.write(folder.resolve("profiles.jsonl.failed"),
+				(failedBefore + "unknown\n").getBytes(StandardCharsets.UTF_8));
+		Files.write(checkpoint, List.of("next.line=1", "output.size=" + first.length(),
+				"failed.size=" + failedBefore.length()));
+		UserProfileExporter exporter = new UserProfileExporter(saAccess, 2, false);
+
+		UserProfileExporter.ExportSummary summary = exporter.export(userIds, output, checkpoint);
+
+		List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+		assertEquals(1, summary.getResumedFromLine());
+		assertEquals(28, summary.getExported());
+		assertEquals(29, lines.size());
+		assertEquals("{\"userId\":\"user0\"}", lines.get(0));
+		assertTrue(lines.get(1).contains("\"userId\":\"user1\""));
+		verify(saAccess, never()).getUserProfile("user0");
+		assertEquals(List.of("gone", "unknown"), Files.readAllLines(folder.resolve("profiles.jsonl.failed")));
+	}
+
+	@Test
+	void sharedProfilesAreNotModified() throws Exception {
+		UserProfileResponse cached = new UserProfileResponse();
+		cached.setStatus("found");
+		when(saAccess.getUserProfile(eq("user3"))).thenReturn(cached);
+		UserProfileExporter exporter = new UserProfileExporter(saAccess, 4, false);
+
+		exporter.export(userIds, output, checkpoint);
+
+		assertTrue(Files.readAllLines(output, StandardCharsets.UTF_8).get(3).contains("\"userId\":\"user3\""));
+		assertNull(cached.getUserId());
+	}
+
+	private static UserProfileResponse profile(String userId) {
+		UserProfileResponse profile = new UserProfileResponse();
+		profile.setUserId(userId);
+		profile.setStatus("found");
+		return profile;
+	}
+}
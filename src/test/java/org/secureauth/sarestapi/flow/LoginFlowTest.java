@@ -0,0 +1,111 @@
+package org.secureauth.sarestapi.flow;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.secureauth.sarestapi.data.Response.AdaptiveAuthResponse;
+import org.secureauth.sarestapi.data.Response.FactorsResponse;
+
+import java.util.EnumSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginFlowTest {
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final CountDownLatch interrupted = new CountDownLatch(1);
+
+	@AfterEach
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void checksRunConcurrently() {
+		long start = System.nanoTime();
+		LoginVerdict verdict = new LoginFlow(null, executor, "alice")
+				.check(LoginCheck.ADAPTIVE_AUTH, delayed(200, adaptiveAuth("CONTINUE")), null)
+				.check(LoginCheck.FACTORS, delayed(200, new FactorsResponse()), null)
+				.check(LoginCheck.DFP_SCORE, delayed(200, "scored"), null)
+				.run(5, TimeUnit.SECONDS);
+
+		assertEquals(LoginVerdict.Decision.ALLOW, verdict.getDecision());
+		assertEquals("CONTINUE", verdict.getAdaptiveAuth().getSuggested_action());
+		assertNotNull(verdict.getFactors());
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 550);
+	}
+
+	@Test
+	void vetoAbandonsTheRemainingChecks() throws Exception {
+		LoginVerdict verdict = new LoginFlow(null, executor, "alice")
+				.check(LoginCheck.ADAPTIVE_AUTH, delayed(10, adaptiveAuth("DENY")),
+						response -> "DENY".equals(response.getSuggested_action()))
+				.check(LoginCheck.FACTORS, blocked(), null)
+				.run(5, TimeUnit.SECONDS);
+
+		assertEquals(LoginVerdict.Decision.DENY, verdict.getDecision());
+		assertEquals(LoginCheck.ADAPTIVE_AUTH, verdict.getVetoedBy());
+		assertEquals(EnumSet.of(LoginCheck.FACTORS), verdict.getAbandoned());
+		assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void deadlineReturnsTheCompletedChecks() throws Exception {
+		LoginVerdict verdict = new LoginFlow(null, executor, "alice")
+				.check(LoginCheck.ADAPTIVE_AUTH, delayed(10, adaptiveAuth("CONTINUE")), null)
+				.check(LoginCheck.FACTORS, blocked(), null)
+				.run(200, TimeUnit.MILLISECONDS);
+
+		assertEquals(LoginVerdict.Decision.INCOMPLETE, verdict.getDecision());
+		assertNotNull(verdict.getAdaptiveAuth());
+		assertEquals(EnumSet.of(LoginCheck.FACTORS), verdict.getAbandoned());
+		assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void failedCheckMakesTheVerdictIncomplete() {
+		LoginVerdict verdict = new LoginFlow(null, executor, "alice")
+				.check(LoginCheck.IP_EVALUATION, () -> null, null)
+				.check(LoginCheck.DFP_SCORE, () -> {
+					throw new IllegalStateException("appliance down");
+				}, null)
+				.check(LoginCheck.FACTORS, delayed(10, new FactorsResponse()), null)
+				.run(5, TimeUnit.SECONDS);
+
+		assertEquals(LoginVerdict.Decision.INCOMPLETE, verdict.getDecision());
+		assertEquals(EnumSet.of(LoginCheck.IP_EVALUATION, LoginCheck.DFP_SCORE), verdict.getFailed());
+		assertTrue(verdict.getAbandoned().isEmpty());
+	}
+
+	private static <T> Supplier<T> delayed(long millis, T response) {
+		return () -> {
+			try {
+				Thread.sleep(millis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return response;
+		};
+	}
+
+	private Supplier<FactorsResponse> blocked() {
+		return () -> {
+			try {
+				Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+			}
+			return null;
+		};
+	}
+
+	private static AdaptiveAuthResponse adaptiveAuth(String suggestedAction) {
+		AdaptiveAuthResponse response = new AdaptiveAuthResponse();
+		response.setSuggested_action(suggestedAction);
+		return response;
+	}
+}
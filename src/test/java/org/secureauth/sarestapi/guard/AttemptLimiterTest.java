@@ -0,0 +1,125 @@
+package org.secureauth.sarestapi.guard;
+
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttemptLimiterTest {
+
+	private final AtomicLong nanos = new AtomicLong();
+	private final AttemptLimiter limiter = new AttemptLimiter(1, TimeUnit.MINUTES, 3, 5, 1024, new Ticker() {
+		@Override
+		public long read() {
+			return nanos.get();
+		}
+	});
+
+	@Test
+	void userIsLimitedWithinTheWindow() {
+		for (int i = 0; i < 3; i++) {
+			assertTrue(limiter.tryAcquire("realm1", "alice", null));
+		}
+
+		assertFalse(limiter.tryAcquire("realm1", "alice", null));
+		assertTrue(limiter.tryAcquire("realm1", "bob", null));
+		assertTrue(limiter.tryAcquire("realm2", "alice", null));
+		// the rejected attempt is counted too.
+		assertEquals(4.0, limiter.getUserAttempts("realm1", "alice"), 0.0001);
+		assertEquals(1, limiter.getRejectedCount());
+	}
+
+	@Test
+	void slidingWindowForgetsOldAttemptsGradually() {
+		for (int i = 0; i < 3; i++) {
+			limiter.tryAcquire("realm1", "alice", null);
+		}
+
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(80));
+		// a third of the previous window is still inside the sliding window.
+		assertEquals(2.0, limiter.getUserAttempts("realm1", "alice"), 0.0001);
+		assertTrue(limiter.tryAcquire("realm1", "alice", null));
+		assertFalse(limiter.tryAcquire("realm1", "alice", null));
+
+		nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+		assertEquals(0.0, limiter.getUserAttempts("realm1", "alice"), 0.0001);
+	}
+
+	@Test
+	void addressIsLimitedAcrossUsers() {
+		for (int i = 0; i < 5; i++) {
+			assertTrue(limiter.tryAcquire("realm1", "user" + i, "203.0.113.9"));
+		}
+
+		assertFalse(limiter.tryAcquire("realm1", "user9", "203.0.113.9"));
+		assertTrue(limiter.tryAcquire("realm1", "user9", "203.0.113.10"));
+		assertEquals(6.0, limiter.getIpAttempts("203.0.113.9"), 0.0001);
+	}
+
+	@Test
+	void successfulValidationResetsTheUser() {
+		for (int i = 0; i < 3; i++) {
+			limiter.tryAcquire("realm1", "alice", null);
+		}
+
+		limiter.onResult("realm1", "alice", "invalid");
+		assertFalse(limiter.tryAcquire("realm1", "alice", null));
+		limiter.onResult("realm1", "alice", "valid");
+
+		assertTrue(limiter.tryAcquire("realm1", "alice", null));
+	}
+
+	@Test
+	void concurrentBurstIsLimited() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicInteger accepted = new AtomicInteger();
+		List<Future<?>> attempts = new ArrayList<>();
+		for (int i = 0; i < 64; i++) {
+			attempts.add(executor.submit(() -> {
+				start.await();
+				return limiter.tryAcquire("realm1", "alice", null) ? accepted.incrementAndGet() : 0;
+			}));
+		}
+		start.countDown();
+		for (Future<?> attempt : attempts) {
+			attempt.get();
+		}
+		executor.shutdown();
+
+		assertEquals(3, accepted.get());
+	}
+
+	@Test
+	void resetDoesNotLowerCollidingUsers() {
+		// a single counter per row, every user shares it.
+		AttemptLimiter shared = new AttemptLimiter(1, TimeUnit.MINUTES, 3, 0, 1, new Ticker() {
+			@Override
+			public long read() {
+				return nanos.get();
+			}
+		});
+		for (int i = 0; i < 3; i++) {
+			shared.tryAcquire("realm1", "victim", null);
+		}
+		shared.tryAcquire("realm1", "attacker", null);
+
+		shared.onResult("realm1", "attacker", "valid");
+
+		assertEquals(0.0, shared.getUserAttempts("realm1", "attacker"), 0.0001);
+		assertFalse(shared.tryAcquire("realm1", "victim", null));
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(90));
+		// the attempts before the reset are still left out in the next window.
+		assertTrue(shared.getUserAttempts("realm1", "attacker") < shared.getUserAttempts("realm1", "victim"));
+	}
+}
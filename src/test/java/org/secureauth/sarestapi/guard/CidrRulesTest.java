@@ -0,0 +1,70 @@
+package org.secureauth.sarestapi.guard;
+
+import org.junit.jupiter.api.Test;
+import org.secureauth.sarestapi.data.IPEval;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CidrRulesTest {
+
+	private final CidrRules rules = new CidrRules();
+
+	@Test
+	void mostSpecificRuleWins() {
+		rules.reload(List.of(
+				"# corporate egress",
+				"allow 10.0.0.0/8",
+				"deny 10.1.0.0/16",
+				"allow 10.1.2.3/32",
+				"",
+				"deny 2001:db8::/32",
+				"allow 2001:db8:1::/48"));
+
+		assertEquals(5, rules.getRuleCount());
+		assertSame(CidrVerdict.ALLOW, rules.match("10.200.0.1"));
+		assertSame(CidrVerdict.DENY, rules.match("10.1.9.9"));
+		assertSame(CidrVerdict.ALLOW, rules.match("10.1.2.3"));
+		assertSame(CidrVerdict.DENY, rules.match("2001:db8:2::1"));
+		assertSame(CidrVerdict.ALLOW, rules.match("2001:db8:1:ffff::1"));
+		assertNull(rules.match("11.0.0.1"));
+		assertNull(rules.match("2001:db9::1"));
+		assertNull(rules.match("not-an-ip"));
+	}
+
+	@Test
+	void siblingRangesAreBranched() {
+		rules.reload(List.of("deny 192.168.1.0/24", "allow 192.168.2.0/24", "deny 192.168.0.0/23"));
+
+		assertSame(CidrVerdict.DENY, rules.match("192.168.1.10"));
+		assertSame(CidrVerdict.ALLOW, rules.match("192.168.2.10"));
+		assertSame(CidrVerdict.DENY, rules.match("192.168.0.10"));
+		assertNull(rules.match("192.168.3.10"));
+	}
+
+	@Test
+	void matchingAddressIsEvaluatedLocally() {
+		rules.registerVerdict(new CidrVerdict("review", 50, "yellow", "Partner range", "STEP_UP"));
+		rules.reload(List.of("review 172.16.0.0/12"));
+
+		IPEval eval = rules.evaluate("user1", "172.16.5.5");
+
+		assertEquals(50, eval.getIp_evaluation().getRisk_factor());
+		assertEquals("user1", eval.getUser_id());
+		assertEquals("STEP_UP", rules.adaptiveAuth("user1", "172.16.5.5").getSuggested_action());
+		assertNull(rules.evaluate("user1", "8.8.8.8"));
+		assertEquals(2, rules.getMatchCount());
+	}
+
+	@Test
+	void invalidReloadKeepsTheOldRules() {
+		rules.reload(List.of("deny 203.0.113.0/24"));
+
+		assertThrows(IllegalArgumentException.class, () -> rules.reload(List.of("allow 10.0.0.0/8", "deny 300.0.0.0/8")));
+		assertThrows(IllegalArgumentException.class, () -> rules.reload(List.of("block 10.0.0.0/8")));
+
+		assertSame(CidrVerdict.DENY, rules.match("203.0.113.7"));
+		assertNull(rules.match("10.0.0.1"));
+	}
+}
@@ -0,0 +1,100 @@
+package org.secureauth.sarestapi.guard;
+
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.Test;
+import org.secureauth.sarestapi.data.Response.ResponseObject;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OTPDeliveryGuardTest {
+
+	private final AtomicLong nanos = new AtomicLong();
+	private final AtomicInteger sent = new AtomicInteger();
+	private final OTPDeliveryGuard guard = new OTPDeliveryGuard(1, TimeUnit.MINUTES, 1000, new Ticker() {
+		@Override
+		public long read() {
+			return nanos.get();
+		}
+	});
+
+	@Test
+	void repeatedDeliveryIsNotSentAgain() {
+		ResponseObject first = guard.deliver("realm1", "alice", OTPDeliveryGuard.Channel.SMS, "Phone1",
+				() -> send("valid"));
+
+		assertSame(first, guard.deliver("realm1", "alice", OTPDeliveryGuard.Channel.SMS, "Phone1",
+				() -> send("valid")));
+		guard.deliver("realm1", "alice", OTPDeliveryGuard.Channel.CALL, "Phone1", () -> send("valid"));
+		guard.deliver("realm1", "alice", OTPDeliveryGuard.Channel.SMS, "Phone2", () -> send("valid"));
+		guard.deliver("realm1", "alice", OTPDeliveryGuard.Channel.HELP_DESK, "HelpDesk1", () -> send("valid"));
+		guard.deliver("realm1", "alice", OTPDeliveryGuard.Channel.HELP_DESK_EMAIL, "HelpDesk1", () -> send("valid"));
+		assertEquals(5, sent.get());
+		assertEquals(1, guard.getDeduplicatedCount());
+	}
+
+	@Test
+	void deliveryIsSentAgainAfterTheChannelWindow() {
+		guard.setWindow(OTPDeliveryGuard.Channel.EMAIL, 5, TimeUnit.MINUTES);
+		guard.deliver("realm1", "alice", OTPDeliveryGuard.Channel.SMS, "Phone1", () -> send("valid"));
+		guard.deliver("realm1", "alice", OTPDeliveryGuard.Channel.EMAIL, "Email1", () -> send("valid"));
+
+		nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+		guard.deliver("realm1", "alice", OTPDeliveryGuard.Channel.SMS, "Phone1", () -> send("valid"));
+		guard.deliver("realm1", "alice", OTPDeliveryGuard.Channel.EMAIL, "Email1", () -> send("valid"));
+
+		assertEquals(3, sent.get());
+	}
+
+	@Test
+	void failedDeliveryIsNotRemembered() {
+		guard.deliver("realm1", "alice", OTPDeliveryGuard.Channel.SMS, "Phone1", () -> send("invalid"));
+		assertNull(guard.deliver("realm1", "alice", OTPDeliveryGuard.Channel.SMS, "Phone1", () -> null));
+		guard.deliver("realm1", "alice", OTPDeliveryGuard.Channel.SMS, "Phone1", () -> send("valid"));
+
+		assertEquals(2, sent.get());
+	}
+
+	@Test
+	void concurrentDeliveriesShareTheInFlightOne() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<ResponseObject> first = executor.submit(() -> guard.deliver("realm1", "alice",
+					OTPDeliveryGuard.Channel.CALL, "Phone1", () -> {
+						started.countDown();
+						try {
+							release.await();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						return send("valid");
+					}));
+			started.await();
+			Future<ResponseObject> second = executor.submit(() -> guard.deliver("realm1", "alice",
+					OTPDeliveryGuard.Channel.CALL, "Phone1", () -> send("valid")));
+			Thread.sleep(50);
+			release.countDown();
+
+			assertSame(first.get(), second.get());
+			assertEquals(1, sent.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private ResponseObject send(String status) {
+		sent.incrementAndGet();
+		ResponseObject response = new ResponseObject();
+		response.setStatus(status);
+		return response;
+	}
+}
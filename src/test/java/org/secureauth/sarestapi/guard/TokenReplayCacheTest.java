@@ -0,0 +1,62 @@
+package org.secureauth.sarestapi.guard;
+
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenReplayCacheTest {
+
+	private final AtomicLong nanos = new AtomicLong();
+	private final TokenReplayCache cache = new TokenReplayCache(5, TimeUnit.MINUTES, 1 << 16, new Ticker() {
+		@Override
+		public long read() {
+			return nanos.get();
+		}
+	});
+
+	@Test
+	void replayIsRejectedWithinTheWindow() {
+		assertTrue(cache.tryConsume("realm1", "alice", "123456"));
+
+		assertFalse(cache.tryConsume("realm1", "alice", "123456"));
+		assertTrue(cache.tryConsume("realm1", "bob", "123456"));
+		assertTrue(cache.tryConsume("realm2", "alice", "123456"));
+		assertTrue(cache.tryConsume("realm1", "alice", "654321"));
+		assertEquals(1, cache.getReplayCount());
+	}
+
+	@Test
+	void tokenIsForgottenAfterTheWindow() {
+		cache.tryConsume("realm1", "alice", "123456");
+
+		nanos.addAndGet(TimeUnit.MINUTES.toNanos(4));
+		assertFalse(cache.tryConsume("realm1", "alice", "123456"));
+
+		nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+		assertTrue(cache.tryConsume("realm1", "alice", "123456"));
+	}
+
+	@Test
+	void releasedTokenCanBeSubmittedAgain() {
+		cache.tryConsume("realm1", "alice", "123456");
+
+		cache.release("realm1", "alice", "123456");
+
+		assertTrue(cache.tryConsume("realm1", "alice", "123456"));
+	}
+
+	@Test
+	void capacityIsBounded() {
+		TokenReplayCache small = new TokenReplayCache(5, TimeUnit.MINUTES, 1024);
+		for (int i = 0; i < 100_000; i++) {
+			assertTrue(small.tryConsume("realm1", "user" + i, "token"));
+		}
+
+		assertEquals(1024, small.getCapacity());
+		assertFalse(small.tryConsume("realm1", "user99999", "token"));
+	}
+}
@@ -0,0 +1,76 @@
+package org.secureauth.sarestapi.guard;
+
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.Test;
+import org.secureauth.sarestapi.data.Response.BaseResponse;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnknownUserFilterTest {
+
+	private final AtomicLong nanos = new AtomicLong();
+	private final UnknownUserFilter filter = new UnknownUserFilter(10, TimeUnit.MINUTES, 10_000, 0.000001,
+			new Ticker() {
+				@Override
+				public long read() {
+					return nanos.get();
+				}
+			});
+
+	@Test
+	void unknownUserIsAnsweredLocally() {
+		assertNull(filter.check("realm1", "ghost"));
+		filter.record("realm1", "ghost", response("not_found"));
+		filter.record("realm1", "alice", response("valid"));
+
+		BaseResponse local = filter.check("realm1", "ghost");
+
+		assertEquals("not_found", local.getStatus());
+		assertEquals("ghost", local.getUser_id());
+		assertNull(filter.check("realm2", "ghost"));
+		assertNull(filter.check("realm1", "alice"));
+		assertEquals(1, filter.getRecordedCount());
+		assertEquals(1, filter.getAnsweredCount());
+	}
+
+	@Test
+	void unknownUserDecaysWithinTheWindow() {
+		filter.record("realm1", "ghost", response("not_found"));
+
+		nanos.addAndGet(TimeUnit.MINUTES.toNanos(6));
+		assertNotNull(filter.check("realm1", "ghost"));
+
+		nanos.addAndGet(TimeUnit.MINUTES.toNanos(5));
+		assertNull(filter.check("realm1", "ghost"));
+	}
+
+	@Test
+	void createdUserIsForgotten() {
+		filter.record("realm1", "newbie", response("not_found"));
+
+		filter.forget("realm1", "newbie");
+
+		assertNull(filter.check("realm1", "newbie"));
+	}
+
+	@Test
+	void notFoundSentBeforeTheCreationDoesNotHideTheUser() {
+		assertNull(filter.check("realm1", "newbie"));
+		// the user is created while the validation is in flight, then the validation answers.
+		filter.forget("realm1", "newbie");
+		filter.record("realm1", "newbie", response("not_found"));
+
+		assertNull(filter.check("realm1", "newbie"));
+		nanos.addAndGet(TimeUnit.MINUTES.toNanos(11));
+		assertNull(filter.check("realm1", "newbie"));
+	}
+
+	private static BaseResponse response(String status) {
+		BaseResponse response = new BaseResponse();
+		response.setStatus(status);
+		return response;
+	}
+}
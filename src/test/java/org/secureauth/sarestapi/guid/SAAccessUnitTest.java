@@ -1,5 +1,6 @@
 package org.secureauth.sarestapi.guid;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.matching;
 import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
@@ -7,6 +8,7 @@ import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -15,7 +17,12 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.secureauth.sarestapi.SAAccess;
+import org.secureauth.sarestapi.data.SAAuth;
+import org.secureauth.sarestapi.data.SABaseURL;
 import org.secureauth.sarestapi.data.SAConfig;
+import org.secureauth.sarestapi.resources.SAExecuter;
+import org.secureauth.sarestapi.tracing.TraceParent;
+import org.secureauth.sarestapi.tracing.TraceSpan;
 import org.secureauth.sarestapi.util.SAFactory;
 
 import com.github.tomakehurst.wiremock.WireMockServer;
@@ -103,5 +110,64 @@ public class SAAccessUnitTest {
                         .withHeader( X_SA_DATE , matching( ".*\\d{2}\\d*:\\d{2}\\s.*" ) )
         );
     }
-}
 
+    // Checks that the traceparent sent is the one of the "http" span, under the request span, under the call span
+    @Test
+    public void given_TracedSAAccess_When_PerformOutOfBandAuthStateful_Then_TraceparentOfTheHttpSpanIsSent() {
+        // given
+        final List<RecordedSpan> spans = new CopyOnWriteArrayList<>();
+        final SABaseURL saBaseURL = new SABaseURL( "localhost", "8090", false, true );
+        final SAExecuter saExecuter = new SAExecuter( saBaseURL, UUID.randomUUID().toString() );
+        saExecuter.setTracer( ( name, parent, startEpochNanos ) -> {
+            RecordedSpan span = new RecordedSpan( name, ( RecordedSpan ) parent, spans.size() + 1 );
+            spans.add( span );
+            return span;
+        } );
+        final SAAccess saAccess = new SAAccess( saBaseURL,
+                new SAAuth( "Realm01-ApplicationId", "Realm01-ApplicationKey", "Realm01" ), saExecuter );
+        // when
+        saAccess.sendPushToAcceptReqStateful( "test-user-1", "9a29542309654256a0d71f9e86095f45", "127.0.0.1", "", "" );
+        // then
+        final RecordedSpan http = spans.stream().filter( span -> span.name.equals( "http" ) ).findFirst().orElseThrow();
+        Assert.assertEquals( "POST /{realm}/api/v1/auth", http.parent.name );
+        Assert.assertEquals( "sendPushToAcceptReqStateful", http.parent.parent.name );
+        Assert.assertNull( http.parent.parent.parent );
+        this.wireMockServer.verify(
+                postRequestedFor( urlEqualTo("/Realm01/api/v1/auth" ) )
+                        .withHeader( TraceParent.HEADER, equalTo( http.getTraceparent() ) )
+        );
+    }
+
+    private static class RecordedSpan implements TraceSpan {
+        private final String name;
+        private final RecordedSpan parent;
+        private final int id;
+
+        RecordedSpan(String name, RecordedSpan parent, int id) {
+            this.name = name;
+            this.parent = parent;
+            this.id = id;
+        }
+
+        @Override
+        public void setAttribute(String key, String value) {
+        }
+
+        @Override
+        public void setAttribute(String key, long value) {
+        }
+
+        @Override
+        public void setError(String description) {
+        }
+
+        @Override
+        public String getTraceparent() {
+            return TraceParent.format( "4bf92f3577b34da6a3ce929d0e0e4736", String.format( "%016x", id ), true );
+        }
+
+        @Override
+        public void end(long endEpochNanos) {
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.secureauth.sarestapi.loadtest;
+
+import org.junit.jupiter.api.Test;
+import org.secureauth.sarestapi.data.Response.BaseResponse;
+import org.secureauth.sarestapi.exception.SARestAPIException;
+
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadTestTest {
+
+	@Test
+	void outcomesAndErrorsAreCountedByKind() throws Exception {
+		AtomicLong calls = new AtomicLong();
+		LoadTest loadTest = new LoadTest("validateUser", () -> {
+			long call = calls.incrementAndGet();
+			if (call % 4 == 0) {
+				throw new SARestAPIException("Exception Get Request", new SocketTimeoutException("Read timed out"));
+			}
+			BaseResponse response = new BaseResponse();
+			response.setStatus(call % 4 == 1 ? "found" : "not_found");
+			return response;
+		});
+		loadTest.setConcurrency(4);
+		loadTest.setDuration(Duration.ofMillis(200));
+
+		LoadTestReport report = loadTest.run();
+
+		assertEquals(calls.get(), report.getRequests());
+		assertTrue(report.getRequests() > 0);
+		long completed = report.getOutcomes().values().stream().mapToLong(Long::longValue).sum();
+		assertEquals(report.getRequests(), completed + report.getErrorCount());
+		assertEquals(List.of("SocketTimeoutException"), List.copyOf(report.getErrors().keySet()));
+		assertTrue(report.getOutcomes().containsKey("found"));
+		assertTrue(report.getThroughput() > 0);
+		assertTrue(report.toString().startsWith("validateUser: " + report.getRequests() + " requests"));
+	}
+
+	@Test
+	void pacedCallsFollowTheTargetRate() throws Exception {
+		List<LoadTestReport> intervals = new CopyOnWriteArrayList<>();
+		LoadTest loadTest = new LoadTest("status", () -> "up");
+		loadTest.setConcurrency(2);
+		loadTest.setRequestsPerSecond(100);
+		loadTest.setDuration(Duration.ofMillis(500));
+		loadTest.setListener(Duration.ofMillis(100), intervals::add);
+
+		LoadTestReport report = loadTest.run();
+
+		assertEquals(50, report.getRequests());
+		assertEquals(50, (long) report.getOutcomes().get("ok"));
+		assertEquals(100.0, report.getTargetRequestsPerSecond());
+		assertFalse(intervals.isEmpty());
+		assertTrue(report.getPercentileMillis().containsKey("p99.9"));
+		assertThrows(IllegalArgumentException.class, () -> loadTest.setConcurrency(0));
+	}
+}
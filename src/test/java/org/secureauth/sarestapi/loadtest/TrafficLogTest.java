@@ -0,0 +1,78 @@
+package org.secureauth.sarestapi.loadtest;
+
+import org.junit.jupiter.api.Test;
+import org.secureauth.sarestapi.data.SAAuth;
+import org.secureauth.sarestapi.data.SABaseURL;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrafficLogTest {
+
+	private static final String FACTORS = "/{realm}/api/v1/users/{userId}/factors";
+	private static final String AUTH = "/{realm}/api/v1/auth";
+
+	@Test
+	void recordedRequestsAreReadBackInStartOrder() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long start = System.nanoTime();
+		try (TrafficRecorder recorder = new TrafficRecorder(out)) {
+			recorder.record("validateUserPassword", "POST", AUTH, 200, "valid", 120, 64,
+					start + TimeUnit.MILLISECONDS.toNanos(50), TimeUnit.MILLISECONDS.toNanos(30));
+			recorder.record("factorsByUser", "GET", FACTORS, 200, "found", 0, -1,
+					start + TimeUnit.MILLISECONDS.toNanos(10), TimeUnit.MILLISECONDS.toNanos(80));
+			recorder.record("factorsByUser", "GET", FACTORS, 0, "error", 0, -1,
+					start + TimeUnit.MILLISECONDS.toNanos(90), TimeUnit.SECONDS.toNanos(10));
+		}
+
+		List<TrafficRecord> records = TrafficLog.read(new ByteArrayInputStream(out.toByteArray()));
+
+		assertEquals(3, records.size());
+		TrafficRecord first = records.get(0);
+		assertEquals("factorsByUser", first.getOperation());
+		assertEquals("GET", first.getMethod());
+		assertEquals(FACTORS, first.getPath());
+		assertEquals(-1, first.getResponseSize());
+		assertEquals(80_000, first.getLatencyMicros());
+		assertEquals(40_000, records.get(1).getOffsetMicros() - first.getOffsetMicros(), 1_000);
+		assertEquals("valid", records.get(1).getOutcome());
+		assertEquals(120, records.get(1).getRequestSize());
+		assertEquals(0, records.get(2).getStatus());
+		assertEquals(10_000_000, records.get(2).getLatencyMicros());
+		// the strings are written once.
+		assertTrue(out.size() < 200, "log size " + out.size());
+	}
+
+	@Test
+	void truncatedLogsAreReadUpToTheLastCompleteRequest() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (TrafficRecorder recorder = new TrafficRecorder(out)) {
+			recorder.record("getUserProfile", "GET", "/{realm}/api/v1/users/{userId}", 200, "found", 0, 900,
+					System.nanoTime(), 1_000_000);
+			recorder.record("getUserProfile", "GET", "/{realm}/api/v1/users/{userId}", 200, "found", 0, 900,
+					System.nanoTime(), 2_000_000);
+		}
+		byte[] log = out.toByteArray();
+
+		assertEquals(1, TrafficLog.read(new ByteArrayInputStream(Arrays.copyOf(log, log.length - 2))).size());
+		assertThrows(IOException.class, () -> TrafficLog.read(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5 })));
+	}
+
+	@Test
+	void replayedPathsAreFilledIn() {
+		TrafficReplay replay = new TrafficReplay(new SABaseURL("localhost", "8443", true, true),
+				new SAAuth("id", "key", "secureauth1"), null);
+		replay.setGroupId("admins");
+
+		assertEquals("secureauth1/api/v1/users/jdoe/factors", replay.query(FACTORS, "jdoe"));
+		assertEquals("secureauth1/api/v1/groups/admins/users/jdoe",
+				replay.query("/{realm}/api/v1/groups/{groupId}/users/{userId}", "jdoe"));
+		assertThrows(IllegalArgumentException.class, () -> replay.setUserIds(List.of()));
+	}
+}
@@ -0,0 +1,69 @@
+package org.secureauth.sarestapi.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryMetricsRecorderTest {
+
+	private final InMemoryMetricsRecorder recorder = new InMemoryMetricsRecorder();
+
+	@Test
+	void requestsAreAggregatedPerOperation() {
+		recorder.record("validateOTP", "valid", 120, 80, 1_000_000);
+		recorder.record("validateOTP", "invalid", 120, -1, 3_000_000);
+		recorder.record("factorsByUser", "found", 0, 2000, 5_000_000);
+
+		assertEquals(List.of("factorsByUser", "validateOTP"), List.copyOf(recorder.getOperations().keySet()));
+		OperationMetrics otp = recorder.getOperation("validateOTP");
+		assertEquals(2, otp.getCount());
+		assertEquals(Map.of("invalid", 1L, "valid", 1L), otp.getOutcomes());
+		assertEquals(240, otp.getBytesOut());
+		assertEquals(80, otp.getBytesIn());
+		assertEquals(3_000_000, otp.getLatency().getMaxNanos());
+		assertEquals(2_000_000, otp.getLatency().getMeanNanos(), 0.1);
+
+		recorder.reset();
+		assertNull(recorder.getOperation("validateOTP"));
+	}
+
+	@Test
+	void percentilesAreWithinTheBucketError() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long millis = 1; millis <= 1000; millis++) {
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+		}
+
+		assertEquals(1000, histogram.getCount());
+		assertWithinError(TimeUnit.MILLISECONDS.toNanos(500), histogram.getValueAtPercentile(50));
+		assertWithinError(TimeUnit.MILLISECONDS.toNanos(990), histogram.getValueAtPercentile(99));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(1000), histogram.getValueAtPercentile(100));
+		assertEquals(500, histogram.getValueAtPercentile(50, TimeUnit.MILLISECONDS), 500 / 64.0);
+	}
+
+	@Test
+	void emptyHistogramReportsZero() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		assertEquals(0, histogram.getValueAtPercentile(99));
+		assertEquals(0.0, histogram.getMeanNanos());
+		assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(101));
+	}
+
+	@Test
+	void bucketsCoverEveryValue() {
+		for (long value : new long[] { 0, 1, 127, 128, 129, 1_000, 65_535, 1_000_000_007L, 1L << 40 }) {
+			int index = LatencyHistogram.index(value);
+			assertTrue(LatencyHistogram.highestValue(index) >= value, "value " + value);
+			assertTrue(index == 0 || LatencyHistogram.highestValue(index - 1) < value, "value " + value);
+		}
+	}
+
+	private static void assertWithinError(long expected, long actual) {
+		assertTrue(actual >= expected && actual <= expected + expected / 64, expected + " vs " + actual);
+	}
+}
@@ -0,0 +1,97 @@
+package org.secureauth.sarestapi.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.secureauth.sarestapi.data.SABaseURL;
+import org.secureauth.sarestapi.resources.SAExecuter;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrometheusExporterTest {
+
+	private final InMemoryMetricsRecorder recorder = new InMemoryMetricsRecorder();
+	private final PrometheusExporter exporter = new PrometheusExporter(recorder);
+
+	@Test
+	void requestsArePublishedPerOperation() {
+		recorder.record("validateOTP", "valid", 100, 50, TimeUnit.MILLISECONDS.toNanos(20));
+		recorder.record("validateOTP", "invalid", 100, -1, TimeUnit.MILLISECONDS.toNanos(40));
+
+		String text = exporter.scrape();
+
+		assertTrue(text.contains("# TYPE saidp_requests_total counter\n"));
+		assertTrue(text.contains("saidp_requests_total{operation=\"validateOTP\",outcome=\"valid\"} 1\n"));
+		assertTrue(text.contains("saidp_requests_total{operation=\"validateOTP\",outcome=\"invalid\"} 1\n"));
+		assertTrue(text.contains("saidp_request_bytes_total{operation=\"validateOTP\"} 200\n"));
+		assertTrue(text.contains("saidp_response_bytes_total{operation=\"validateOTP\"} 50\n"));
+		assertTrue(text.contains("# TYPE saidp_request_duration_seconds summary\n"));
+		assertTrue(text.contains("saidp_request_duration_seconds{operation=\"validateOTP\",quantile=\"0.99\"} 0.04"));
+		assertTrue(text.contains("saidp_request_duration_seconds_sum{operation=\"validateOTP\"} 0.06\n"));
+		assertTrue(text.contains("saidp_request_duration_seconds_count{operation=\"validateOTP\"} 2\n"));
+	}
+
+	@Test
+	void gaugesAreReadWhenScraped() {
+		double[] state = { Double.NaN };
+		exporter.addGauge("saidp_circuit_breaker_state", "Breaker state.", Map.of("realm", "se\"cure"),
+				() -> state[0]);
+
+		assertEquals("", exporter.scrape());
+		state[0] = 2;
+		assertEquals("# HELP saidp_circuit_breaker_state Breaker state.\n"
+				+ "# TYPE saidp_circuit_breaker_state gauge\n"
+				+ "saidp_circuit_breaker_state{realm=\"se\\\"cure\"} 2\n", exporter.scrape());
+		assertThrows(IllegalArgumentException.class,
+				() -> exporter.addCounter("saidp_circuit_breaker_state", "Breaker state.", Map.of(), () -> 0));
+		assertThrows(IllegalArgumentException.class,
+				() -> exporter.addGauge("saidp-invalid", "Invalid.", Map.of(), () -> 0));
+	}
+
+	@Test
+	void executersAreToldApartByName() {
+		SAExecuter first = new SAExecuter(new SABaseURL("localhost", "443"));
+		SAExecuter second = new SAExecuter(new SABaseURL("localhost", "443"));
+		exporter.addExecuter("first", first).addExecuter("second", second);
+
+		String text = exporter.scrape();
+
+		assertTrue(text.contains("saidp_coalesced_requests_total{executer=\"first\"} 0\n"));
+		assertTrue(text.contains("saidp_coalesced_requests_total{executer=\"second\"} 0\n"));
+		assertThrows(IllegalArgumentException.class, () -> exporter.addExecuter("first", second));
+		exporter.addExecuter(first);
+		assertThrows(IllegalArgumentException.class, () -> exporter.addExecuter(second));
+	}
+
+	@Test
+	void metricsAreServedOverHttp() throws Exception {
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(4, 4, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+		exporter.addExecutor("refresh", pool);
+		recorder.record("factorsByUser", "found", 0, 900, 1_000_000);
+		try (PrometheusExporter server = exporter) {
+			InetSocketAddress address = server.start(new InetSocketAddress("localhost", 0));
+			HttpURLConnection connection = (HttpURLConnection) new URL(
+					"http://localhost:" + address.getPort() + PrometheusExporter.PATH).openConnection();
+
+			assertEquals(200, connection.getResponseCode());
+			assertEquals(PrometheusExporter.CONTENT_TYPE, connection.getContentType());
+			String body;
+			try (InputStream in = connection.getInputStream()) {
+				body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+			}
+			assertTrue(body.contains("saidp_requests_total{operation=\"factorsByUser\",outcome=\"found\"} 1\n"));
+			assertTrue(body.contains("saidp_pool_utilization_ratio{pool=\"refresh\"} 0\n"));
+			assertTrue(body.contains("saidp_pool_queued_tasks{pool=\"refresh\"} 0\n"));
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package org.secureauth.sarestapi.resources;
+
+import org.junit.jupiter.api.Test;
+import org.secureauth.sarestapi.resources.FaultInjector.Fault;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FaultInjectorTest {
+
+	@Test
+	void rulesApplyToTheirOperation() {
+		FaultInjector injector = new FaultInjector(1);
+		Fault unavailable = Fault.status(503);
+		Fault latency = Fault.latency(Duration.ofMillis(100));
+		injector.addRule("validateUserPassword", 1, unavailable);
+		injector.addRule(null, 1, latency);
+		injector.addRule("factorsByUser", 0, Fault.reset());
+
+		assertEquals(List.of(unavailable, latency), injector.draw("validateUserPassword"));
+		assertEquals(List.of(latency), injector.draw("factorsByUser"));
+
+		injector.removeRules(null);
+		assertEquals(List.of(), injector.draw("factorsByUser"));
+		injector.setEnabled(false);
+		assertEquals(List.of(), injector.draw("validateUserPassword"));
+		assertEquals(2, injector.getInjectedCount());
+	}
+
+	@Test
+	void drawsAreReproducibleWithTheSameSeed() {
+		FaultInjector injector = new FaultInjector(42);
+		injector.addRule(null, 0.3, Fault.reset());
+
+		List<Integer> first = faultyRequests(injector);
+		injector.setSeed(42);
+		List<Integer> second = faultyRequests(injector);
+
+		assertEquals(first, second);
+		assertTrue(first.size() > 10 && first.size() < 50, "faulty requests " + first.size());
+	}
+
+	@Test
+	void invalidFaultsAreRejected() {
+		FaultInjector injector = new FaultInjector(1);
+
+		assertThrows(IllegalArgumentException.class, () -> injector.addRule(null, 1.5, Fault.reset()));
+		assertThrows(IllegalArgumentException.class, () -> Fault.status(200));
+		assertThrows(IllegalArgumentException.class, () -> Fault.slowBody(0));
+	}
+
+	@Test
+	void slowBodiesAreReadAtTheirRate() throws Exception {
+		byte[] body = new byte[1_000];
+		long start = System.nanoTime();
+		try (InputStream in = new FaultInjectionFilter.SlowInputStream(new ByteArrayInputStream(body), 5_000)) {
+			assertEquals(body.length, in.readAllBytes().length);
+		}
+
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+	}
+
+	@Test
+	void emptyReadsOfSlowBodiesReadNothing() throws Exception {
+		byte[] body = { 1 };
+		try (InputStream in = new FaultInjectionFilter.SlowInputStream(new ByteArrayInputStream(body), 5_000)) {
+			assertEquals(0, in.read(new byte[4], 0, 0));
+			assertEquals(1, in.read());
+		}
+	}
+
+	private static List<Integer> faultyRequests(FaultInjector injector) {
+		List<Integer> requests = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			if (!injector.draw("getUserProfile").isEmpty()) {
+				requests.add(i);
+			}
+		}
+		return requests;
+	}
+}
@@ -0,0 +1,70 @@
+package org.secureauth.sarestapi.resources;
+
+import org.junit.jupiter.api.Test;
+import org.secureauth.sarestapi.exception.SARestAPIException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestCoalescerTest {
+
+	private final RequestCoalescer coalescer = new RequestCoalescer();
+
+	@Test
+	void identicalConcurrentRequestsShareOneCall() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				results.add(executor.submit(() -> coalescer.execute("GET realm/users/user1/factors", () -> {
+					calls.incrementAndGet();
+					release.await(5, TimeUnit.SECONDS);
+					return "factors";
+				})));
+			}
+			// wait until the followers are parked behind the leader.
+			while (coalescer.getCoalescedCount() < 3) {
+				Thread.sleep(5);
+			}
+			release.countDown();
+			for (Future<String> result : results) {
+				assertEquals("factors", result.get(5, TimeUnit.SECONDS));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(1, calls.get());
+		assertEquals(3, coalescer.getCoalescedCount());
+		assertEquals(0, coalescer.getInFlightCount());
+	}
+
+	@Test
+	void sequentialRequestsAreNotCached() {
+		AtomicInteger calls = new AtomicInteger();
+
+		coalescer.execute("key", calls::incrementAndGet);
+		coalescer.execute("key", calls::incrementAndGet);
+
+		assertEquals(2, calls.get());
+		assertEquals(0, coalescer.getCoalescedCount());
+	}
+
+	@Test
+	void failureIsPropagatedAndKeyReleased() {
+		assertThrows(SARestAPIException.class, () -> coalescer.execute("key", () -> {
+			throw new IllegalStateException("appliance down");
+		}));
+
+		assertEquals("ok", coalescer.execute("key", () -> "ok"));
+	}
+}
@@ -0,0 +1,296 @@
+package org.secureauth.sarestapi.resources;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.secureauth.sarestapi.loadtest.TrafficLog;
+import org.secureauth.sarestapi.loadtest.TrafficRecord;
+import org.secureauth.sarestapi.loadtest.TrafficRecorder;
+import org.secureauth.sarestapi.metrics.MetricsRecorder;
+import org.secureauth.sarestapi.tracing.TraceParent;
+import org.secureauth.sarestapi.tracing.TraceSpan;
+import org.secureauth.sarestapi.tracing.Tracer;
+import org.secureauth.sarestapi.util.JSONUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestExchangeTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void pathsAreTemplated() {
+		assertArrayEquals(new String[] { "secureauth1", "/{realm}/api/v1/users/{userId}/factors" },
+				RequestExchange.template("https://idp.example.com:443/secureauth1/api/v1/users/jdoe/factors"));
+		assertArrayEquals(new String[] { "secureauth1", "/{realm}/api/v3/users/factors" },
+				RequestExchange.template("https://idp.example.com/secureauth1/api/v3/users/factors?username=jdoe"));
+		assertArrayEquals(new String[] { "secureauth1", "/{realm}/api/v1/groups/{groupId}/users/{userId}" },
+				RequestExchange.template("https://idp.example.com/secureauth1/api/v1/groups/admins/users/jdoe"));
+		assertArrayEquals(new String[] { "secureauth1", "/{realm}/api/v1/users/groups" },
+				RequestExchange.template("https://idp.example.com/secureauth1/api/v1/users/groups"));
+		assertArrayEquals(new String[] { "secureauth1", "/{realm}/api/v1/auth/link/{linkId}" },
+				RequestExchange.template("https://idp.example.com/secureauth1/api/v1/auth/link/c2a8f1"));
+		assertArrayEquals(new String[] { "secureauth1", "/{realm}/api/v1/users/" },
+				RequestExchange.template("https://idp.example.com/secureauth1/api/v1/users/"));
+	}
+
+	@Test
+	void requestsAreRecordedAsFlightRecorderEvents() throws Exception {
+		Path file = directory.resolve("requests.jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable(RequestEvent.NAME).withoutThreshold();
+			recording.start();
+			try (RequestExchange exchange = RequestExchange.start(MetricsRecorder.NOOP, null, Resource.METHOD_POST,
+					"https://idp.example.com/secureauth1/api/v1/users/jdoe/throttle")) {
+				exchange.json(Map.of("type", "user_id"));
+				RequestExchange.queued(TimeUnit.MILLISECONDS.toNanos(5));
+			}
+			recording.stop();
+			recording.dump(file);
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+		assertEquals(1, events.size());
+		RecordedEvent event = events.get(0);
+		assertEquals("other", event.getString("operation"));
+		assertEquals("secureauth1", event.getString("realm"));
+		assertEquals("POST", event.getString("method"));
+		assertEquals("/{realm}/api/v1/users/{userId}/throttle", event.getString("path"));
+		assertEquals(0, event.getInt("status"));
+		assertEquals("error", event.getString("outcome"));
+		assertEquals(JSONUtil.convertObjectToJSON(Map.of("type", "user_id")).length(), event.getLong("requestSize"));
+		assertEquals(-1, event.getLong("responseSize"));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(5), event.getDuration("queueWait").toNanos());
+	}
+
+	@Test
+	void waitsOutsideOfARequestAreIgnored() {
+		RequestExchange.queued(1);
+
+		try (RequestExchange exchange = RequestExchange.start(null, null, Resource.METHOD_GET, "/realm/api/v1/ipeval")) {
+			assertNotNull(exchange);
+		}
+		RequestExchange.queued(1);
+	}
+
+	@Test
+	void requestsAreNamedAfterTheOutermostScope() {
+		OperationScope.call("validateUser", () -> {
+			assertEquals("validateUser", OperationScope.call("factorsByUserV3", RequestExchangeTest::operationOfRequest));
+			assertEquals("validateUser", operationOfRequest());
+			return null;
+		});
+
+		assertEquals("other", operationOfRequest());
+	}
+
+	@Test
+	void boundCallsKeepTheNameOnOtherThreads() throws Exception {
+		Supplier<String> unbound = OperationScope.bind(RequestExchangeTest::operationOfRequest);
+		Supplier<String> bound = OperationScope.call("getUserProfile",
+				() -> OperationScope.bind(RequestExchangeTest::operationOfRequest));
+
+		assertEquals("other", CompletableFuture.supplyAsync(unbound).get());
+		assertEquals("getUserProfile", CompletableFuture.supplyAsync(bound).get());
+	}
+
+	@Test
+	void trafficIsRecordedWithoutUserData() throws Exception {
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		try (TrafficRecorder recorder = new TrafficRecorder(log)) {
+			try (RequestExchange exchange = RequestExchange.start(null, null, recorder, Resource.METHOD_GET,
+					"https://idp.example.com/secureauth1/api/v1/users/jdoe/factors?secret=hunter2")) {
+				assertNotNull(exchange);
+			}
+		}
+
+		List<TrafficRecord> records = TrafficLog.read(new ByteArrayInputStream(log.toByteArray()));
+		assertEquals(1, records.size());
+		assertEquals("other", records.get(0).getOperation());
+		assertEquals("/{realm}/api/v1/users/{userId}/factors", records.get(0).getPath());
+		assertEquals("error", records.get(0).getOutcome());
+		String bytes = log.toString(StandardCharsets.ISO_8859_1);
+		assertFalse(bytes.contains("jdoe") || bytes.contains("secureauth1") || bytes.contains("hunter2"));
+	}
+
+	@Test
+	void requestsAreTracedWithChildSpans() {
+		List<RecordedSpan> spans = new ArrayList<>();
+		Tracer tracer = (name, parent, startEpochNanos) -> {
+			RecordedSpan span = new RecordedSpan(name, (RecordedSpan) parent, startEpochNanos, spans.size() + 1);
+			spans.add(span);
+			return span;
+		};
+
+		String traceparent;
+		try (RequestExchange exchange = RequestExchange.start(null, tracer, Resource.METHOD_POST,
+				"https://idp.example.com/secureauth1/api/v1/users/jdoe/throttle")) {
+			exchange.json(Map.of("type", "user_id"));
+			traceparent = RequestExchange.current().traceparent();
+			assertEquals(traceparent, exchange.traceparent());
+		}
+
+		assertNull(RequestExchange.current());
+		assertEquals(List.of("POST /{realm}/api/v1/users/{userId}/throttle", "serialize", "http"),
+				spans.stream().map(span -> span.name).toList());
+		RecordedSpan request = spans.get(0);
+		assertNull(request.parent);
+		assertEquals("other", request.attributes.get("sa.operation"));
+		assertSame(request, spans.get(1).parent);
+		assertSame(request, spans.get(2).parent);
+		assertEquals("secureauth1", request.attributes.get("sa.realm"));
+		assertEquals("/{realm}/api/v1/users/{userId}/throttle", request.attributes.get("url.template"));
+		assertEquals("error", request.attributes.get("sa.outcome"));
+		assertEquals("Request failed", request.error);
+		assertEquals("No response", spans.get(2).error);
+		assertEquals(spans.get(2).getTraceparent(), traceparent);
+		for (RecordedSpan span : spans) {
+			assertTrue(span.endEpochNanos >= span.startEpochNanos, span.name);
+		}
+	}
+
+	@Test
+	void callsAreTracedWithTheirSignaturesAndRequests() {
+		List<RecordedSpan> spans = new ArrayList<>();
+		Tracer tracer = (name, parent, startEpochNanos) -> {
+			RecordedSpan span = new RecordedSpan(name, (RecordedSpan) parent, startEpochNanos, spans.size() + 1);
+			spans.add(span);
+			return span;
+		};
+
+		OperationScope.call("getUserProfile", tracer, () -> {
+			OperationScope.signed(OperationScope.signing());
+			request(tracer);
+			return OperationScope.call("factorsByUserV3", tracer, () -> {
+				request(tracer);
+				return null;
+			});
+		});
+		OperationScope.call("factorsByUserV3", tracer, () -> "cached");
+
+		assertEquals(List.of("getUserProfile", "sign", "GET /{realm}/api/v1/users/{userId}",
+				"GET /{realm}/api/v1/users/{userId}", "factorsByUserV3"), spans.stream().map(span -> span.name).toList());
+		RecordedSpan call = spans.get(0);
+		assertNull(call.parent);
+		assertSame(call, spans.get(1).parent);
+		assertSame(call, spans.get(2).parent);
+		assertSame(call, spans.get(3).parent);
+		assertNull(spans.get(4).parent);
+		for (RecordedSpan span : spans) {
+			assertTrue(span.endEpochNanos >= span.startEpochNanos, span.name);
+		}
+		assertTrue(call.endEpochNanos >= spans.get(3).endEpochNanos);
+	}
+
+	@Test
+	void failedCallsAreMarkedAsErrors() {
+		List<RecordedSpan> spans = new ArrayList<>();
+		Tracer tracer = (name, parent, startEpochNanos) -> {
+			RecordedSpan span = new RecordedSpan(name, (RecordedSpan) parent, startEpochNanos, spans.size() + 1);
+			spans.add(span);
+			return span;
+		};
+
+		assertThrows(IllegalStateException.class, () -> OperationScope.call("validateUser", tracer, () -> {
+			throw new IllegalStateException("appliance down");
+		}));
+
+		assertEquals("IllegalStateException", spans.get(0).error);
+		assertTrue(spans.get(0).endEpochNanos >= spans.get(0).startEpochNanos);
+		assertNull(OperationScope.current());
+	}
+
+	@Test
+	void signingTimeOnlyGoesToTheNextRequestOfItsScope() throws Exception {
+		Path file = directory.resolve("signatures.jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable(RequestEvent.NAME).withoutThreshold();
+			recording.start();
+			OperationScope.signed(System.nanoTime() - TimeUnit.SECONDS.toNanos(1));
+			OperationScope.call("getUserProfile", () -> {
+				request(null);
+				OperationScope.signed(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(2));
+				request(null);
+				request(null);
+				return null;
+			});
+			recording.stop();
+			recording.dump(file);
+		}
+
+		long[] signatures = RecordingFile.readAllEvents(file).stream()
+				.mapToLong(event -> event.getDuration("sign").toNanos()).toArray();
+		assertEquals(3, signatures.length);
+		assertEquals(0, signatures[0]);
+		assertTrue(signatures[1] >= TimeUnit.MILLISECONDS.toNanos(2));
+		assertTrue(signatures[1] < TimeUnit.SECONDS.toNanos(1));
+		assertEquals(0, signatures[2]);
+	}
+
+	private static String operationOfRequest() {
+		try (RequestExchange exchange = RequestExchange.start(null, null, Resource.METHOD_GET, "/realm/api/v1/ipeval")) {
+			return exchange.operation();
+		}
+	}
+
+	private static void request(Tracer tracer) {
+		RequestExchange.start(null, tracer, Resource.METHOD_GET, "/realm/api/v1/users/jdoe").close();
+	}
+
+	private static class RecordedSpan implements TraceSpan {
+		private final String name;
+		private final RecordedSpan parent;
+		private final long startEpochNanos;
+		private final int id;
+		private final Map<String, Object> attributes = new HashMap<>();
+		private String error;
+		private long endEpochNanos = -1;
+
+		RecordedSpan(String name, RecordedSpan parent, long startEpochNanos, int id) {
+			this.name = name;
+			this.parent = parent;
+			this.startEpochNanos = startEpochNanos;
+			this.id = id;
+		}
+
+		@Override
+		public void setAttribute(String key, String value) {
+			attributes.put(key, value);
+		}
+
+		@Override
+		public void setAttribute(String key, long value) {
+			attributes.put(key, value);
+		}
+
+		@Override
+		public void setError(String description) {
+			error = description;
+		}
+
+		@Override
+		public String getTraceparent() {
+			return TraceParent.format("4bf92f3577b34da6a3ce929d0e0e4736", String.format("%016x", id), true);
+		}
+
+		@Override
+		public void end(long endEpochNanos) {
+			this.endEpochNanos = endEpochNanos;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package org.secureauth.sarestapi.resources;
+
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.Test;
+import org.secureauth.sarestapi.exception.SARestAPIException;
+import org.secureauth.sarestapi.resources.RequestRateLimiter.OperationClass;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestRateLimiterTest {
+
+	private final AtomicLong nanos = new AtomicLong();
+	private final RequestRateLimiter limiter = new RequestRateLimiter(0, TimeUnit.SECONDS, new Ticker() {
+		@Override
+		public long read() {
+			return nanos.get();
+		}
+	});
+
+	@Test
+	void burstIsAllowedThenTheRateApplies() {
+		limiter.setLimit("realm1", OperationClass.AUTH, 2, 3);
+
+		for (int i = 0; i < 3; i++) {
+			limiter.acquire("realm1", OperationClass.AUTH);
+		}
+		assertThrows(SARestAPIException.class, () -> limiter.acquire("realm1", OperationClass.AUTH));
+		limiter.acquire("realm1", OperationClass.IDM);
+		limiter.acquire("realm2", OperationClass.AUTH);
+
+		nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+		limiter.acquire("realm1", OperationClass.AUTH);
+		assertThrows(SARestAPIException.class, () -> limiter.acquire("realm1", OperationClass.AUTH));
+		assertEquals(2, limiter.getRejectedCount());
+	}
+
+	@Test
+	void limitOfEveryRealmGivesEachRealmItsOwnBucket() {
+		limiter.setLimit(null, OperationClass.OTP_DELIVERY, 1, 1);
+
+		limiter.acquire("realm1", OperationClass.OTP_DELIVERY);
+		limiter.acquire("realm2", OperationClass.OTP_DELIVERY);
+
+		assertThrows(SARestAPIException.class, () -> limiter.acquire("realm1", OperationClass.OTP_DELIVERY));
+	}
+
+	@Test
+	void limitsCanBeChangedAndRemovedAtRuntime() {
+		limiter.setLimit(null, OperationClass.DFP, 1, 1);
+		limiter.acquire("realm1", OperationClass.DFP);
+
+		limiter.setLimit(null, OperationClass.DFP, 10, 1);
+		nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+		limiter.acquire("realm1", OperationClass.DFP);
+
+		limiter.removeLimit(null, OperationClass.DFP);
+		for (int i = 0; i < 10; i++) {
+			limiter.acquire("realm1", OperationClass.DFP);
+		}
+	}
+
+	@Test
+	void waitingRequestsAreServedByPriority() throws Exception {
+		limiter.setLimit("realm1", OperationClass.AUTH, 5, 1);
+		limiter.acquire("realm1", OperationClass.AUTH);
+		List<String> served = new CopyOnWriteArrayList<>();
+
+		Thread low = new Thread(() -> acquire(0, "low", served));
+		Thread high = new Thread(() -> acquire(10, "high", served));
+		low.start();
+		awaitQueued(low);
+		high.start();
+		awaitQueued(high);
+
+		// the ticker does not move until both are queued, so no token shows up before.
+		nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+		high.join(5000);
+		nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+		low.join(5000);
+
+		assertEquals(List.of("high", "low"), served);
+	}
+
+	@Test
+	void deadlineRejectsTheRequest() {
+		RequestRateLimiter waiting = new RequestRateLimiter(50, TimeUnit.MILLISECONDS);
+		waiting.setLimit("realm1", OperationClass.AUTH, 1, 1);
+		waiting.acquire("realm1", OperationClass.AUTH);
+
+		long start = System.nanoTime();
+		assertThrows(SARestAPIException.class, () -> waiting.acquire("realm1", OperationClass.AUTH));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+	}
+
+	private void acquire(int priority, String name, List<String> served) {
+		RequestRateLimiter.Scope scope = limiter.withPolicy(priority, 5, TimeUnit.SECONDS);
+		try {
+			limiter.acquire("realm1", OperationClass.AUTH);
+			served.add(name);
+		} finally {
+			scope.close();
+		}
+	}
+
+	// a waiting request is the only timed wait of the thread.
+	private static void awaitQueued(Thread thread) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (thread.getState() != Thread.State.TIMED_WAITING) {
+			assertTrue(System.nanoTime() < deadline, "the request was never queued");
+			Thread.onSpinWait();
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package org.secureauth.sarestapi.simulator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.secureauth.sarestapi.data.SAAuth;
+import org.secureauth.sarestapi.util.JSONUtil;
+import org.secureauth.sarestapi.util.RestApiHeader;
+import org.secureauth.sarestapi.util.TimeUtils;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApplianceSimulatorTest {
+
+	private static final String REALM = "secureauth1";
+	private static final String APPLICATION_ID = "8f3c2a6d1e7b4c9fa0d5e2b1c3f4a5b6";
+	private static final String APPLICATION_KEY = "c2b7f8a1d94e4f0b9a6e3d2c1b0a9f8e7d6c5b4a39281706f5e4d3c2b1a09f8e";
+
+	private final SAAuth saAuth = new SAAuth(APPLICATION_ID, APPLICATION_KEY, REALM);
+	private final HttpClient client = HttpClient.newHttpClient();
+	private ApplianceSimulator simulator;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		simulator = new ApplianceSimulator(REALM, APPLICATION_ID, APPLICATION_KEY);
+		simulator.addUser("jdoe", "Corr3ct-Horse");
+		simulator.start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		simulator.close();
+	}
+
+	@Test
+	void passwordsAreValidatedAndFailuresThrottled() throws Exception {
+		assertEquals(200, post("api/v1/auth", Map.of("user_id", "jdoe", "type", "password", "token", "Corr3ct-Horse")).statusCode());
+		assertTrue(post("api/v1/auth", Map.of("user_id", "jdoe", "type", "password", "token", "Corr3ct-Horse")).body()
+				.contains("\"valid\""));
+		assertTrue(post("api/v1/auth", Map.of("user_id", "jdoe", "type", "password", "token", "wrong")).body()
+				.contains("\"invalid\""));
+		assertTrue(post("api/v1/auth", Map.of("user_id", "nobody", "type", "user_id")).body().contains("\"not_found\""));
+
+		assertEquals(1, simulator.getThrottleCount("jdoe"));
+		assertTrue(get("api/v1/users/jdoe/throttle").body().contains("\"1\""));
+		assertEquals(4, simulator.getRequestCount(Endpoint.AUTH));
+	}
+
+	@Test
+	void endpointsAreRoutedAndAnswered() throws Exception {
+		assertTrue(get("api/v3/users/jdoe/factors").body().contains("\"push_accept\""));
+		assertTrue(get("api/v1/users/factors?username=jdoe").body().contains("\"Phone1\""));
+		assertTrue(get("api/v1/users/jdoe").body().contains("\"firstName\""));
+		assertTrue(post("api/v1/users/jdoe/groups/admins", null).body().contains("\"success\""));
+		assertTrue(get("api/v1/users/jdoe").body().contains("\"admins\""));
+		assertTrue(post("api/v1/users/jdoe/status", Map.of("status", "lock")).body().contains("\"success\""));
+		assertTrue(post("api/v1/auth", Map.of("user_id", "jdoe", "type", "password", "token", "Corr3ct-Horse")).body()
+				.contains("\"invalid\""));
+		assertTrue(post("api/v1/ipeval", Map.of("user_id", "jdoe", "type", "risk", "ip_address", "10.0.0.1")).body()
+				.contains("\"risk_factor\""));
+		assertTrue(post("api/v1/otp/validate", Map.of("user_id", "jdoe", "type", "oath", "otp", "123456")).body()
+				.contains("\"valid\""));
+
+		assertEquals(2, simulator.getRequestCount(Endpoint.FACTORS));
+		assertEquals(1, simulator.getRequestCount(Endpoint.GROUPS));
+		assertEquals(1, simulator.getRequestCount(Endpoint.STATUS));
+		assertEquals(404, get("api/v1/unknown").statusCode());
+	}
+
+	@Test
+	void unsignedRequestsAreRejected() throws Exception {
+		String ts = TimeUtils.getServerTime(false);
+		HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("api/v1/users/jdoe"))
+				.header("X-SA-Ext-Date", ts)
+				.header("Authorization", RestApiHeader.getAuthorizationHeader(
+						new SAAuth(APPLICATION_ID, "00" + APPLICATION_KEY.substring(2), REALM), "GET",
+						REALM + "/api/v1/users/jdoe", ts))
+				.build(), HttpResponse.BodyHandlers.ofString());
+
+		assertEquals(401, response.statusCode());
+		assertEquals(1, simulator.getUnauthorizedCount());
+	}
+
+	@Test
+	void errorsRateLimitAndLatencyAreInjected() throws Exception {
+		simulator.setErrorRate(Endpoint.FACTORS, 1);
+		assertEquals(500, get("api/v1/users/jdoe/factors").statusCode());
+		assertEquals(200, get("api/v1/users/jdoe").statusCode());
+
+		simulator.setLatency(Endpoint.USERS, LatencyDistribution.fixed(Duration.ofMillis(100)));
+		long start = System.nanoTime();
+		get("api/v1/users/jdoe");
+		assertTrue(System.nanoTime() - start >= Duration.ofMillis(100).toNanos());
+
+		simulator.setRateLimit(2);
+		int throttled = 0;
+		for (int i = 0; i < 5; i++) {
+			throttled += get("api/v1/users/jdoe/status").statusCode() == 429 ? 1 : 0;
+		}
+		assertEquals(3, throttled);
+		assertEquals(3, simulator.getThrottledCount());
+	}
+
+	private HttpResponse<String> get(String path) throws Exception {
+		String query = REALM + "/" + path;
+		int separator = query.indexOf('?');
+		String signed = separator < 0 ? query : query.substring(0, separator);
+		String ts = TimeUtils.getServerTime(false);
+		return client.send(HttpRequest.newBuilder(uri(path))
+				.header("X-SA-Ext-Date", ts)
+				.header("Authorization", RestApiHeader.getAuthorizationHeader(saAuth, "GET", signed, ts))
+				.build(), HttpResponse.BodyHandlers.ofString());
+	}
+
+	private HttpResponse<String> post(String path, Object body) throws Exception {
+		String ts = TimeUtils.getServerTime(false);
+		String header = body == null
+				? RestApiHeader.getAuthorizationHeader(saAuth, "POST", REALM + "/" + path, ts)
+				: RestApiHeader.getAuthorizationHeader(saAuth, "POST", REALM + "/" + path, body, ts);
+		return client.send(HttpRequest.newBuilder(uri(path))
+				.header("X-SA-Ext-Date", ts)
+				.header("Authorization", header)
+				.POST(HttpRequest.BodyPublishers.ofString(body == null ? "" : JSONUtil.convertObjectToJSON(body)))
+				.build(), HttpResponse.BodyHandlers.ofString());
+	}
+
+	private URI uri(String path) {
+		return URI.create(simulator.getBaseURL().getApplianceURL() + REALM + "/" + path);
+	}
+}
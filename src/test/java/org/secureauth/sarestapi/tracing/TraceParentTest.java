@@ -0,0 +1,25 @@
+package org.secureauth.sarestapi.tracing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceParentTest {
+
+	@Test
+	void headerIsFormattedFromValidIds() {
+		assertEquals("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01",
+				TraceParent.format("4bf92f3577b34da6a3ce929d0e0e4736", "00f067aa0ba902b7", true));
+		assertEquals("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00",
+				TraceParent.format("4bf92f3577b34da6a3ce929d0e0e4736", "00f067aa0ba902b7", false));
+	}
+
+	@Test
+	void invalidIdsGiveNoHeader() {
+		assertNull(TraceParent.format("00000000000000000000000000000000", "00f067aa0ba902b7", true));
+		assertNull(TraceParent.format("4bf92f3577b34da6a3ce929d0e0e4736", "0000000000000000", true));
+		assertNull(TraceParent.format("4BF92F3577B34DA6A3CE929D0E0E4736", "00f067aa0ba902b7", true));
+		assertNull(TraceParent.format("4bf92f3577b34da6", "00f067aa0ba902b7", true));
+		assertNull(TraceParent.format(null, "00f067aa0ba902b7", true));
+	}
+}
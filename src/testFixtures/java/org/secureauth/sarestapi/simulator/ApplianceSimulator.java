@@ -0,0 +1,608 @@
+package org.secureauth.sarestapi.simulator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.secureauth.sarestapi.data.SABaseURL;
+import org.secureauth.sarestapi.util.HMACUtil;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * <p>
+ * In-process simulator of the SecureAuth appliance for performance and
+ * integration tests, served over plain HTTP on a local port.
+ * </p>
+ * <p>
+ * Like the appliance it checks the HMAC Authorization header and the
+ * timestamp header of every request (401 when they are wrong), keeps users
+ * with a password, factors, groups, a status and a throttle count (failed
+ * password and OTP attempts increase it), and answers with the bodies the SDK
+ * expects. The latency of every {@link Endpoint} follows a configurable
+ * {@link LatencyDistribution}, a configurable share of its requests fail with
+ * a 500 and requests above the configured rate are rejected with a 429. The
+ * responses are delayed without holding a server thread, so slow endpoints do
+ * not limit the concurrency of the simulator.
+ * </p>
+ * <p>
+ * The random choices use a seed, see {@link #setSeed(long)}, so that runs are
+ * reproducible.
+ * </p>
+ */
+public class ApplianceSimulator implements AutoCloseable {
+
+    private static final String DEFAULT_OTP = "123456";
+    private static final String CONTENT_TYPE = "application/json; charset=utf-8";
+    private static final Set<String> TIMESTAMP_HEADERS = Set.of("X-SA-Ext-Date", "X-SA-Date");
+    private static final Set<String> ONE_TIME_PASSWORD_TYPES = Set.of("pin", "kba", "oath", "yubikey");
+    private static final Set<String> PUSH_TYPES = Set.of("push", "push_accept", "symbol_accept",
+            "push_accept_biometric", "email_link", "sms_link");
+    private static final Set<String> OTP_DELIVERY_TYPES = Set.of("sms", "call", "email", "help_desk");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String realm;
+    private final String applicationId;
+    private final String applicationKey;
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    private final Map<Endpoint, LatencyDistribution> latencies = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, Double> errorRates = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, LongAdder> requests = new EnumMap<>(Endpoint.class);
+    private final LongAdder unauthorized = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private volatile Random random = new Random(0);
+    private volatile String otp = DEFAULT_OTP;
+    private volatile boolean verifySignatures = true;
+    private double requestsPerSecond;
+    private double tokens;
+    private long refillNanos;
+    private int threads = 8;
+    private HttpServer server;
+    private ExecutorService executor;
+    private ScheduledExecutorService delayer;
+
+    /**
+     * @param realm          the realm of the simulated appliance
+     * @param applicationId  the application ID of the realm
+     * @param applicationKey the application key of the realm, in hex
+     */
+    public ApplianceSimulator(String realm, String applicationId, String applicationKey) {
+        this.realm = realm;
+        this.applicationId = applicationId;
+        this.applicationKey = applicationKey;
+        for (Endpoint endpoint : Endpoint.values()) {
+            this.latencies.put(endpoint, LatencyDistribution.NONE);
+            this.errorRates.put(endpoint, 0.0);
+            this.requests.put(endpoint, new LongAdder());
+        }
+    }
+
+    /**
+     * Adds a user with a phone, an email and a push factor, or replaces it.
+     *
+     * @param userId   the ID of the user
+     * @param password the password of the user
+     * @return this simulator
+     */
+    public ApplianceSimulator addUser(String userId, String password) {
+        this.users.put(userId, new User(userId, password));
+        return this;
+    }
+
+    /**
+     * @param otp the one time password accepted for every user (pin, kba, oath,
+     *            yubikey and OTP validation), "123456" by default
+     */
+    public void setOtp(String otp) {
+        this.otp = otp;
+    }
+
+    public void setSeed(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @param verifySignatures false to accept the requests without checking
+     *                         their Authorization header
+     */
+    public void setVerifySignatures(boolean verifySignatures) {
+        this.verifySignatures = verifySignatures;
+    }
+
+    public synchronized void setLatency(LatencyDistribution latency) {
+        for (Endpoint endpoint : Endpoint.values()) {
+            this.latencies.put(endpoint, latency);
+        }
+    }
+
+    public synchronized void setLatency(Endpoint endpoint, LatencyDistribution latency) {
+        this.latencies.put(endpoint, latency);
+    }
+
+    /**
+     * @param errorRate the share of the requests answered with a 500, from 0 to 1
+     */
+    public synchronized void setErrorRate(double errorRate) {
+        for (Endpoint endpoint : Endpoint.values()) {
+            setErrorRate(endpoint, errorRate);
+        }
+    }
+
+    public synchronized void setErrorRate(Endpoint endpoint, double errorRate) {
+        if (!(errorRate >= 0 && errorRate <= 1)) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 1.");
+        }
+        this.errorRates.put(endpoint, errorRate);
+    }
+
+    /**
+     * Throttles the appliance: the requests above the given rate, with bursts of
+     * up to one second of requests, are answered with a 429.
+     *
+     * @param requestsPerSecond the accepted rate, 0 for no limit
+     */
+    public synchronized void setRateLimit(double requestsPerSecond) {
+        if (requestsPerSecond < 0 || Double.isNaN(requestsPerSecond)) {
+            throw new IllegalArgumentException("Requests per second must be a positive value.");
+        }
+        this.requestsPerSecond = requestsPerSecond;
+        this.tokens = requestsPerSecond;
+        this.refillNanos = System.nanoTime();
+    }
+
+    /**
+     * @param threads the number of threads building the responses, 8 by default
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be a positive integer value.");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Starts the simulator on a free local port.
+     *
+     * @return the URL of the simulator, for an {@link org.secureauth.sarestapi.SAAccess}
+     * @throws IOException when the server can not be started
+     */
+    public synchronized SABaseURL start() throws IOException {
+        if (this.server != null) {
+            throw new IllegalStateException("The simulator is already started.");
+        }
+        this.executor = Executors.newFixedThreadPool(this.threads, daemon("appliance-simulator"));
+        this.delayer = Executors.newSingleThreadScheduledExecutor(daemon("appliance-simulator-delay"));
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(this.executor);
+        this.server.start();
+        return getBaseURL();
+    }
+
+    public SABaseURL getBaseURL() {
+        return new SABaseURL("localhost", String.valueOf(getPort()), false, false);
+    }
+
+    public int getPort() {
+        if (this.server == null) {
+            throw new IllegalStateException("The simulator is not started.");
+        }
+        return this.server.getAddress().getPort();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (this.server != null) {
+            this.server.stop(0);
+            this.delayer.shutdownNow();
+            this.executor.shutdownNow();
+            this.server = null;
+        }
+    }
+
+    /**
+     * @return the number of requests of the endpoint, including the rejected ones
+     */
+    public long getRequestCount(Endpoint endpoint) {
+        return this.requests.get(endpoint).sum();
+    }
+
+    /**
+     * @return the number of requests rejected with a 401
+     */
+    public long getUnauthorizedCount() {
+        return this.unauthorized.sum();
+    }
+
+    /**
+     * @return the number of requests rejected with a 429
+     */
+    public long getThrottledCount() {
+        return this.throttled.sum();
+    }
+
+    /**
+     * @return the throttle count of the user, -1 for an unknown user
+     */
+    public int getThrottleCount(String userId) {
+        User user = this.users.get(userId);
+        return user == null ? -1 : user.throttle.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readAllBytes();
+        }
+        String path = exchange.getRequestURI().getRawPath();
+        String[] segments = path.split("/");
+        Endpoint endpoint = segments.length > 1 && this.realm.equals(segments[1]) ? Endpoint.of(segments) : null;
+        if (endpoint == null) {
+            respond(exchange, 404, error("not_found", "Unknown endpoint " + path), 0);
+            return;
+        }
+        this.requests.get(endpoint).increment();
+        if (this.verifySignatures && !isSigned(exchange, path, body)) {
+            this.unauthorized.increment();
+            respond(exchange, 401, error("invalid", "AuthorizationHeader is invalid."), 0);
+            return;
+        }
+        if (!acquire()) {
+            this.throttled.increment();
+            exchange.getResponseHeaders().add("Retry-After", "1");
+            respond(exchange, 429, error("throttled", "Too many requests."), 0);
+            return;
+        }
+        long latency;
+        boolean failed;
+        synchronized (this) {
+            latency = this.latencies.get(endpoint).nextNanos(this.random);
+            failed = this.random.nextDouble() < this.errorRates.get(endpoint);
+        }
+        if (failed) {
+            respond(exchange, 500, error("server_error", "Simulated failure."), latency);
+            return;
+        }
+        Map<String, Object> response;
+        try {
+            JsonNode request = body.length == 0 ? MAPPER.createObjectNode() : MAPPER.readTree(body);
+            response = answer(endpoint, exchange.getRequestMethod(), segments, user(exchange, segments, request),
+                    request);
+        } catch (JsonProcessingException e) {
+            response = error("invalid", "Invalid body: " + e.getOriginalMessage());
+        }
+        respond(exchange, 200, response, latency);
+    }
+
+    private boolean isSigned(HttpExchange exchange, String path, byte[] body) {
+        String ts = null;
+        for (String header : TIMESTAMP_HEADERS) {
+            ts = ts == null ? exchange.getRequestHeaders().getFirst(header) : ts;
+        }
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (ts == null || authorization == null || !authorization.startsWith("Basic ")) {
+            return false;
+        }
+        String credentials;
+        try {
+            credentials = new String(Base64.getDecoder().decode(authorization.substring(6)), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        int colon = credentials.indexOf(':');
+        if (colon < 0 || !this.applicationId.equals(credentials.substring(0, colon))) {
+            return false;
+        }
+        byte[] signature = credentials.substring(colon + 1).getBytes(StandardCharsets.UTF_8);
+        String signed = exchange.getRequestMethod() + "\n" + ts + "\n" + this.applicationId + "\n" + path;
+        // requests without body are signed with or without an empty body line.
+        return matches(signature, signed + "\n" + new String(body, StandardCharsets.UTF_8))
+                || (body.length == 0 && matches(signature, signed));
+    }
+
+    private boolean matches(byte[] signature, String signed) {
+        try {
+            byte[] expected = Base64.getEncoder().encode(HMACUtil.encode(this.applicationKey, signed));
+            return MessageDigest.isEqual(expected, signature);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private synchronized boolean acquire() {
+        if (this.requestsPerSecond <= 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        this.tokens = Math.min(this.requestsPerSecond,
+                this.tokens + (now - this.refillNanos) * this.requestsPerSecond / TimeUnit.SECONDS.toNanos(1));
+        this.refillNanos = now;
+        if (this.tokens < 1) {
+            return false;
+        }
+        this.tokens--;
+        return true;
+    }
+
+    // the user of the path, of the "username" query parameter or of the body.
+    private String user(HttpExchange exchange, String[] segments, JsonNode request) {
+        if (segments.length > 5 && !segments[5].isEmpty()
+                && !(segments.length == 6 && Set.of("factors", "throttle", "status", "groups").contains(segments[5]))
+                && "users".equals(segments[4])) {
+            return decode(segments[5]);
+        }
+        if (segments.length > 7 && "groups".equals(segments[4]) && "users".equals(segments[6])) {
+            return decode(segments[7]);
+        }
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("username=")) {
+                    return decode(parameter.substring("username=".length()));
+                }
+            }
+        }
+        return request.path("user_id").asText(null);
+    }
+
+    private Map<String, Object> answer(Endpoint endpoint, String method, String[] segments, String userId,
+            JsonNode request) {
+        User user = userId == null ? null : this.users.get(userId);
+        switch (endpoint) {
+        case AUTH:
+            return auth(method, segments, user, userId, request);
+        case FACTORS:
+            if (user == null) {
+                return notFound(userId);
+            }
+            return response("found", "", "user_id", userId, "factors", user.factors());
+        case USERS:
+            return users(method, segments, user, userId, request);
+        case GROUPS:
+            if (user == null && userId != null && !"POST".equals(method)) {
+                return notFound(userId);
+            }
+            if ("GET".equals(method) && user != null) {
+                return response("found", "", "user_id", userId, "groups", List.copyOf(user.groups));
+            }
+            if (user != null && segments.length > 7 && "groups".equals(segments[6])) {
+                user.groups.add(decode(segments[7]));
+            }
+            return response("success", "");
+        case IPEVAL:
+            return response("verified", "", "ip_evaluation", map("method", "ip_evaluation", "ip",
+                    request.path("ip_address").asText(""), "risk_factor", 10, "risk_color", "green", "risk_desc",
+                    "Very Low Risk", "factoring", map("latitude", "0", "longitude", "0"), "factor_description",
+                    map("latitude", "Latitude")));
+        case DFP:
+            return dfp(segments);
+        case BEHAVEBIO:
+            if (segments.length > 5 && "js".equals(segments[5])) {
+                return response("found", "", "src", "/behavebio.js");
+            }
+            if ("PUT".equals(method)) {
+                return response("success", "");
+            }
+            return response("found", "", "BehaviorBioResults", map());
+        case NUMBERPROFILE:
+            if ("PUT".equals(method)) {
+                return response("success", "");
+            }
+            return response("found", "", "numberProfileResult", map("providerRequestId",
+                    UUID.randomUUID().toString(), "internationalFormat", "+1 555-0100", "nationalFormat",
+                    "(555) 0100", "countryPrefix", "1", "countryCode", "US", "countryCodeISO3", "USA", "country",
+                    "United States", "portedStatus", "not_ported", "validNumber", "valid"));
+        case OTP:
+            if (user == null) {
+                return notFound(userId);
+            }
+            return attempt(user, this.otp.equals(request.path("otp").asText()));
+        case THROTTLE:
+            if (user == null) {
+                return notFound(userId);
+            }
+            if ("PUT".equals(method) || "POST".equals(method)) {
+                user.throttle.set(request.path("count").asInt(0));
+                return response("success", "");
+            }
+            return response("found", "", "count", String.valueOf(user.throttle.get()));
+        case STATUS:
+            if (user == null) {
+                return notFound(userId);
+            }
+            if ("POST".equals(method) || "PUT".equals(method)) {
+                user.status = request.path("status").asText(user.status);
+                return response("success", "");
+            }
+            return response("found", user.status);
+        default:
+            return error("not_found", "Unknown endpoint.");
+        }
+    }
+
+    private Map<String, Object> auth(String method, String[] segments, User user, String userId, JsonNode request) {
+        if ("GET".equals(method)) {
+            // push notification or link status, by reference ID.
+            return response("found", "ACCEPTED");
+        }
+        String type = request.path("type").asText("");
+        if (user == null) {
+            return notFound(userId);
+        }
+        if (!user.isEnabled() && !"user_id".equals(type)) {
+            return response("invalid", "User is " + user.status + ".");
+        }
+        String token = request.path("token").asText("");
+        if ("user_id".equals(type)) {
+            return response("found", "User Id found");
+        } else if ("password".equals(type)) {
+            return attempt(user, user.password.equals(token));
+        } else if (ONE_TIME_PASSWORD_TYPES.contains(type)) {
+            return attempt(user, this.otp.equals(token));
+        } else if (PUSH_TYPES.contains(type)) {
+            Map<String, Object> response = response("valid", "", "reference_id", UUID.randomUUID().toString());
+            if ("symbol_accept".equals(type)) {
+                response.put("symbol", "42");
+            }
+            return response;
+        } else if (OTP_DELIVERY_TYPES.contains(type)) {
+            return response("valid", "", "otp", Integer.parseInt(this.otp));
+        }
+        return response("valid", "");
+    }
+
+    private Map<String, Object> users(String method, String[] segments, User user, String userId,
+            JsonNode request) {
+        if (segments.length <= 5 || "POST".equals(method) && segments.length == 5) {
+            // a new user.
+            String newUserId = request.path("userId").asText(null);
+            if (newUserId == null) {
+                return error("invalid", "No user ID.");
+            }
+            this.users.putIfAbsent(newUserId, new User(newUserId, request.path("password").asText("")));
+            return response("success", "");
+        }
+        if (user == null) {
+            return notFound(userId);
+        }
+        String last = segments[segments.length - 1];
+        if ("resetpwd".equals(last) || "changepwd".equals(last)) {
+            user.password = request.path("password").asText(user.password);
+            return response("success", "");
+        }
+        if ("PUT".equals(method)) {
+            return response("success", "");
+        }
+        return response("found", "", "userId", user.userId, "properties", map(
+                "firstName", map("value", "First" + user.userId, "isWritable", "true"),
+                "lastName", map("value", "Last", "isWritable", "true"),
+                "email1", map("value", user.userId + "@example.com", "isWritable", "true")),
+                "groups", List.copyOf(user.groups));
+    }
+
+    private Map<String, Object> dfp(String[] segments) {
+        String operation = segments.length > 5 ? segments[5] : "";
+        if ("js".equals(operation)) {
+            return response("found", "", "src", "/dfp.js");
+        }
+        return response("found", "", "fingerprint_id", "d4d1b7f0c3a2", "fingerprint_name", "Simulated browser",
+                "score", 100.0, "match_score", 100.0, "update_score", 100.0);
+    }
+
+    // a failed password or OTP increases the throttle count of the user.
+    private Map<String, Object> attempt(User user, boolean valid) {
+        if (valid) {
+            return response("valid", "");
+        }
+        user.throttle.incrementAndGet();
+        return response("invalid", "Invalid credentials.");
+    }
+
+    private void respond(HttpExchange exchange, int status, Map<String, Object> body, long delayNanos) {
+        Runnable write = () -> {
+            try (OutputStream out = exchange.getResponseBody()) {
+                byte[] bytes = MAPPER.writeValueAsBytes(body);
+                exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                exchange.sendResponseHeaders(status, bytes.length);
+                out.write(bytes);
+            } catch (IOException e) {
+                // the client is gone.
+            } finally {
+                exchange.close();
+            }
+        };
+        if (delayNanos > 0) {
+            this.delayer.schedule(write, delayNanos, TimeUnit.NANOSECONDS);
+        } else {
+            write.run();
+        }
+    }
+
+    private static Map<String, Object> notFound(String userId) {
+        return error("not_found", "User Id was not found.", "user_id", userId);
+    }
+
+    private static Map<String, Object> error(String status, String message, Object... fields) {
+        return response(status, message, fields);
+    }
+
+    private static Map<String, Object> response(String status, String message, Object... fields) {
+        Map<String, Object> response = map(fields);
+        response.put("status", status);
+        response.put("message", message);
+        return response;
+    }
+
+    private static Map<String, Object> map(Object... keysAndValues) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < keysAndValues.length; i += 2) {
+            map.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return map;
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class User {
+        private final String userId;
+        private final Set<String> groups = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger throttle = new AtomicInteger();
+        private volatile String password;
+        private volatile String status = "enabled";
+
+        User(String userId, String password) {
+            this.userId = userId;
+            this.password = password;
+        }
+
+        boolean isEnabled() {
+            return !"lock".equals(this.status) && !"disable".equals(this.status);
+        }
+
+        List<Map<String, Object>> factors() {
+            List<Map<String, Object>> factors = new ArrayList<>();
+            factors.add(map("type", "phone", "id", "Phone1", "value", "XXX-XXX-0100", "capabilities",
+                    List.of("sms", "call")));
+            factors.add(map("type", "email", "id", "Email1", "value", this.userId + "@example.com"));
+            factors.add(map("type", "push", "id", "9a29542309654256a0d71f9e86095f45", "value", "Simulated phone",
+                    "capabilities", List.of("push", "push_accept", "symbol_accept")));
+            return factors;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.secureauth.sarestapi.simulator;
+
+/**
+ * The endpoints simulated by the {@link ApplianceSimulator}, the latencies and
+ * error rates are configured by endpoint.
+ */
+public enum Endpoint {
+    /** /api/v1/auth, including the push status and the link status. */
+    AUTH,
+    /** /api/v1/users/{userId}/factors, v1 and v3. */
+    FACTORS,
+    /** /api/v1/users, the profiles and the passwords. */
+    USERS,
+    /** /api/v1/groups and the groups of the users. */
+    GROUPS,
+    /** /api/v1/ipeval. */
+    IPEVAL,
+    /** /api/v1/dfp. */
+    DFP,
+    /** /api/v1/behavebio. */
+    BEHAVEBIO,
+    /** /api/v1/numberprofile. */
+    NUMBERPROFILE,
+    /** /api/v1/otp/validate. */
+    OTP,
+    /** /api/v1/users/{userId}/throttle. */
+    THROTTLE,
+    /** /api/v1/users/{userId}/status. */
+    STATUS;
+
+    /**
+     * @param segments the segments of the path, "/{realm}/api/{version}/..."
+     * @return the endpoint of the path, null when it is not simulated
+     */
+    static Endpoint of(String[] segments) {
+        if (segments.length < 5 || !"api".equals(segments[2])) {
+            return null;
+        }
+        switch (segments[4]) {
+        case "auth":
+            return AUTH;
+        case "users":
+            return users(segments);
+        case "groups":
+            return GROUPS;
+        case "ipeval":
+            return IPEVAL;
+        case "dfp":
+            return DFP;
+        case "behavebio":
+            return BEHAVEBIO;
+        case "numberprofile":
+            return NUMBERPROFILE;
+        case "otp":
+            return OTP;
+        default:
+            return null;
+        }
+    }
+
+    // the user is either the 6th segment or a query parameter (users/factors?username=).
+    private static Endpoint users(String[] segments) {
+        String last = segments[segments.length - 1];
+        if (segments.length > 5 && segments.length <= 7) {
+            switch (last) {
+            case "factors":
+                return FACTORS;
+            case "throttle":
+                return THROTTLE;
+            case "status":
+                return STATUS;
+            case "groups":
+                return GROUPS;
+            default:
+                break;
+            }
+        }
+        if (segments.length > 6 && "groups".equals(segments[6])) {
+            return GROUPS;
+        }
+        return USERS;
+    }
+}
@@ -0,0 +1,50 @@
+package org.secureauth.sarestapi.simulator;
+
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * The distribution of the time the {@link ApplianceSimulator} takes to answer
+ * a request.
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    LatencyDistribution NONE = random -> 0;
+
+    /**
+     * @param random the random source of the simulator
+     * @return the latency of the next response, in nanoseconds
+     */
+    long nextNanos(Random random);
+
+    static LatencyDistribution fixed(Duration latency) {
+        long nanos = latency.toNanos();
+        return random -> nanos;
+    }
+
+    static LatencyDistribution uniform(Duration min, Duration max) {
+        long minNanos = min.toNanos();
+        long range = max.toNanos() - minNanos;
+        if (range < 0) {
+            throw new IllegalArgumentException("The max latency must not be lower than the min latency.");
+        }
+        return random -> minNanos + (long) (random.nextDouble() * range);
+    }
+
+    /**
+     * A long tailed distribution, as the latencies of a real appliance.
+     *
+     * @param median the median latency
+     * @param p99    the 99th percentile latency, not lower than the median
+     */
+    static LatencyDistribution logNormal(Duration median, Duration p99) {
+        if (p99.compareTo(median) < 0 || median.isNegative() || median.isZero()) {
+            throw new IllegalArgumentException("The p99 latency must not be lower than the positive median latency.");
+        }
+        double mu = Math.log(median.toNanos());
+        // 2.326 is the 99th percentile of the standard normal distribution.
+        double sigma = (Math.log(p99.toNanos()) - mu) / 2.326;
+        return random -> (long) Math.exp(mu + sigma * random.nextGaussian());
+    }
+}